@@ -0,0 +1,209 @@
+package com.mapbox.mapboxsdk.events;
+
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.util.MapMetrics;
+import com.mapbox.mapboxsdk.views.MapView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class CameraEventDispatcherTest extends InstrumentationTestCase {
+
+    /**
+     * A dispatcher without a map: frames are run by the test, and events count the frames.
+     */
+    private static class TestDispatcher extends CameraEventDispatcher {
+        int scheduled;
+        int frames;
+
+        TestDispatcher(final List<MapListener> mapListeners) {
+            super(null, mapListeners);
+        }
+
+        @Override
+        void scheduleFrame() {
+            scheduled++;
+        }
+
+        @Override
+        CameraEvent createEvent(final int changes, final boolean userAction,
+                final int changeCount) {
+            frames++;
+            return new CameraEvent(null, new LatLng(frames, 0), frames, 0, null, frames, 0,
+                    changes, userAction, changeCount);
+        }
+    }
+
+    private static class RecordingMapListener implements MapListener {
+        final List<MapEvent> events = new ArrayList<MapEvent>();
+
+        @Override
+        public void onScroll(final ScrollEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onZoom(final ZoomEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onRotate(final RotateEvent event) {
+            events.add(event);
+        }
+    }
+
+    private static class RecordingCameraListener implements CameraListener {
+        final List<CameraEvent> events = new ArrayList<CameraEvent>();
+
+        @Override
+        public void onCameraChange(final CameraEvent event) {
+            events.add(event);
+        }
+    }
+
+    /**
+     * Holds the tasks until the test runs them.
+     */
+    private static class QueueExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MapMetrics.setEnabled(false);
+        MapMetrics.reset();
+        super.tearDown();
+    }
+
+    public void testChangesOfAFrameMakeOneEvent() throws Exception {
+        final List<MapListener> mapListeners = new ArrayList<MapListener>();
+        final RecordingMapListener mapListener = new RecordingMapListener();
+        mapListeners.add(mapListener);
+        final TestDispatcher dispatcher = new TestDispatcher(mapListeners);
+        final RecordingCameraListener cameraListener = new RecordingCameraListener();
+        dispatcher.addCameraListener(cameraListener, null);
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.onCameraChange(CameraEvent.SCROLL, i == 3);
+        }
+        dispatcher.onCameraChange(CameraEvent.ZOOM, false);
+        assertEquals(1, dispatcher.scheduled);
+        dispatcher.run();
+
+        assertEquals(1, cameraListener.events.size());
+        final CameraEvent event = cameraListener.events.get(0);
+        assertEquals(CameraEvent.SCROLL | CameraEvent.ZOOM, event.getChanges());
+        assertFalse(event.hasChanged(CameraEvent.ROTATE));
+        assertTrue(event.getUserAction());
+        assertEquals(11, event.getCoalescedCount());
+
+        assertEquals(2, mapListener.events.size());
+        assertTrue(mapListener.events.get(0) instanceof ScrollEvent);
+        assertTrue(((ScrollEvent) mapListener.events.get(0)).getUserAction());
+        assertTrue(mapListener.events.get(1) instanceof ZoomEvent);
+
+        // nothing happened since
+        dispatcher.run();
+        assertEquals(1, cameraListener.events.size());
+        dispatcher.onCameraChange(CameraEvent.ROTATE, false);
+        assertEquals(2, dispatcher.scheduled);
+        dispatcher.run();
+        assertEquals(2, cameraListener.events.size());
+        assertTrue(mapListener.events.get(2) instanceof RotateEvent);
+
+        dispatcher.removeCameraListener(cameraListener);
+        dispatcher.onCameraChange(CameraEvent.SCROLL, false);
+        dispatcher.run();
+        assertEquals(2, cameraListener.events.size());
+    }
+
+    public void testNoEventWithoutListeners() throws Exception {
+        final TestDispatcher dispatcher = new TestDispatcher(new ArrayList<MapListener>());
+        dispatcher.onCameraChange(CameraEvent.SCROLL, true);
+        dispatcher.run();
+        assertEquals(0, dispatcher.frames);
+
+        // the old listener only hears of zooming and coming to rest
+        final int[] calls = new int[1];
+        dispatcher.setOnCameraChangeListener(new MapView.OnCameraChangeListener() {
+            @Override
+            public void onCameraChange(final BoundingBox boundingBox, final float zoomLevel) {
+                calls[0]++;
+            }
+        });
+        dispatcher.onCameraChange(CameraEvent.SCROLL | CameraEvent.ROTATE, true);
+        dispatcher.run();
+        assertEquals(0, dispatcher.frames);
+        dispatcher.onCameraChange(CameraEvent.IDLE, false);
+        dispatcher.run();
+        assertEquals(1, dispatcher.frames);
+        assertEquals(1, calls[0]);
+
+        dispatcher.setOnCameraChangeListener(null);
+        final RecordingCameraListener listener = new RecordingCameraListener();
+        dispatcher.addCameraListener(listener, null);
+        dispatcher.onCameraChange(CameraEvent.SCROLL, false);
+        dispatcher.run();
+        assertEquals(2, dispatcher.frames);
+        assertEquals(1, listener.events.size());
+    }
+
+    public void testListenerOnExecutorIsGivenTheLatestEvent() throws Exception {
+        final TestDispatcher dispatcher = new TestDispatcher(new ArrayList<MapListener>());
+        final RecordingCameraListener listener = new RecordingCameraListener();
+        final QueueExecutor executor = new QueueExecutor();
+        dispatcher.addCameraListener(listener, executor);
+        dispatcher.addCameraListener(listener, executor);
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.onCameraChange(CameraEvent.SCROLL, false);
+            dispatcher.run();
+        }
+        // the listener hasn't run yet, so the three frames wait as one task
+        assertEquals(1, executor.tasks.size());
+        assertTrue(listener.events.isEmpty());
+        executor.runAll();
+        assertEquals(1, listener.events.size());
+        assertEquals(3, listener.events.get(0).getZoomLevel(), 0);
+
+        dispatcher.onCameraChange(CameraEvent.ZOOM, false);
+        dispatcher.run();
+        executor.runAll();
+        assertEquals(2, listener.events.size());
+        assertEquals(4, listener.events.get(1).getZoomLevel(), 0);
+    }
+
+    public void testListenerTimesAreRecorded() throws Exception {
+        MapMetrics.setEnabled(true);
+        MapMetrics.reset();
+        final TestDispatcher dispatcher = new TestDispatcher(new ArrayList<MapListener>());
+        final RecordingCameraListener listener = new RecordingCameraListener();
+        dispatcher.addCameraListener(listener, null);
+        dispatcher.onCameraChange(CameraEvent.SCROLL, false);
+        dispatcher.onCameraChange(CameraEvent.SCROLL, false);
+        dispatcher.run();
+
+        final MapMetrics.Snapshot snapshot = MapMetrics.getSnapshot();
+        assertEquals(1, snapshot.getCount(MapMetrics.Counter.CAMERA_EVENTS));
+        assertEquals(1, snapshot.getCount(MapMetrics.Counter.CAMERA_CHANGES_COALESCED));
+        assertEquals(1, snapshot.getMeasure(MapMetrics.Measure.CAMERA_DISPATCH_TIME).getCount());
+        assertEquals(1, snapshot.getListenerTimes()
+                .get(RecordingCameraListener.class.getName()).getCount());
+    }
+}
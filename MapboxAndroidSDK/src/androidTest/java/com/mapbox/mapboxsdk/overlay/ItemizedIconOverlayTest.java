@@ -0,0 +1,35 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ItemizedIconOverlayTest extends InstrumentationTestCase {
+
+    /**
+     * Items given to the constructor and added later, all at the same place and without sort
+     * keys, have to stay in the order they were added in, as MapView.addMarker does.
+     */
+    public void testConstructorAndAddedItemsKeepTheirOrder() throws Exception {
+        final List<Marker> markers = new ArrayList<Marker>();
+        for (int i = 0; i < 5; i++) {
+            markers.add(new Marker("" + i, "", new LatLng(10, 20)));
+        }
+        final ItemizedIconOverlay overlay = new ItemizedIconOverlay(null,
+                new ArrayList<Marker>(markers.subList(0, 2)), null);
+        overlay.addItem(markers.get(2));
+        overlay.addItems(markers.subList(3, markers.size()));
+
+        // least index in front
+        final List<Marker> expected = new ArrayList<Marker>(markers);
+        Collections.reverse(expected);
+        assertEquals(expected, new ArrayList<Marker>(overlay.mItemList));
+        for (int i = 0; i < markers.size(); i++) {
+            assertEquals(i, markers.get(i).getIndexForFastSort());
+        }
+    }
+}
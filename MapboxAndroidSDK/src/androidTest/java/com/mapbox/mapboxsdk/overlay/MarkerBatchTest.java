@@ -0,0 +1,180 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.drawable.BitmapDrawable;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.safecanvas.SafeTranslatedCanvas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MarkerBatchTest extends InstrumentationTestCase {
+
+    private static final String TAG = "MarkerBatchTest";
+    private static final int SIZE = 512;
+
+    private Random random;
+    private BitmapDrawable[] icons;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        random = new Random(42);
+        final int[] colors = { Color.RED, Color.GREEN, Color.BLUE, Color.MAGENTA };
+        icons = new BitmapDrawable[colors.length];
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i = 0; i < colors.length; i++) {
+            final Bitmap bitmap = Bitmap.createBitmap(20 + i * 4, 30, Bitmap.Config.ARGB_8888);
+            paint.setColor(colors[i]);
+            new Canvas(bitmap).drawCircle(bitmap.getWidth() / 2f, 10, 9, paint);
+            icons[i] = new BitmapDrawable(getInstrumentation().getTargetContext().getResources(),
+                    bitmap);
+        }
+    }
+
+    private List<Marker> createMarkers(final int count) {
+        final List<Marker> markers = new ArrayList<Marker>(count);
+        for (int i = 0; i < count; i++) {
+            final Marker marker = new Marker("", "", new LatLng(0, 0));
+            marker.setMarker(icons[random.nextInt(icons.length)]);
+            marker.getPositionOnMap().set(random.nextInt(SIZE), random.nextInt(SIZE));
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * The per-marker path of {@link Marker#draw}, which needs a MapView to run itself.
+     */
+    private static void drawOneByOne(final SafeTranslatedCanvas canvas,
+            final List<Marker> markers, final float bearing, final float mapScale) {
+        for (Marker marker : markers) {
+            canvas.save();
+            canvas.scale(mapScale, mapScale, marker.getPositionOnMap().x,
+                    marker.getPositionOnMap().y);
+            Overlay.drawAt(canvas, marker.getMarker(0), marker.getPositionOnMap(),
+                    marker.getAnchor(), bearing);
+            canvas.restore();
+        }
+    }
+
+    private static void drawBatched(final MarkerBatch batch, final SafeTranslatedCanvas canvas,
+            final List<Marker> markers, final float bearing, final float mapScale) {
+        assertTrue(batch.begin(canvas));
+        for (Marker marker : markers) {
+            assertTrue(batch.add(marker, bearing, mapScale));
+        }
+        batch.end();
+    }
+
+    /**
+     * Draw the markers one by one and batched, and check the two match.
+     */
+    private static void assertBatchedMatchesOneByOne(final MarkerBatch batch,
+            final List<Marker> markers, final float bearing, final float mapScale) {
+        final Bitmap expected = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        final Bitmap actual = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        drawOneByOne(new SafeTranslatedCanvas(new Canvas(expected)), markers, bearing, mapScale);
+        drawBatched(batch, new SafeTranslatedCanvas(new Canvas(actual)), markers, bearing,
+                mapScale);
+
+        // filtering differs along the edges of the icons
+        int different = 0;
+        int drawn = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                final int a = expected.getPixel(x, y);
+                final int b = actual.getPixel(x, y);
+                if (Color.alpha(a) > 0) {
+                    drawn++;
+                }
+                if (Math.abs(Color.alpha(a) - Color.alpha(b)) > 64
+                        || Math.abs(Color.red(a) - Color.red(b)) > 64
+                        || Math.abs(Color.green(a) - Color.green(b)) > 64
+                        || Math.abs(Color.blue(a) - Color.blue(b)) > 64) {
+                    different++;
+                }
+            }
+        }
+        assertTrue(drawn > 0);
+        assertTrue(different + " of " + drawn + " pixels differ", different * 20 < drawn);
+    }
+
+    public void testBatchedMatchesOneByOne() throws Exception {
+        assertBatchedMatchesOneByOne(new MarkerBatch(), createMarkers(200), 30, 0.8f);
+    }
+
+    public void testIconAlpha() throws Exception {
+        for (BitmapDrawable icon : icons) {
+            icon.setAlpha(96);
+        }
+        final List<Marker> markers = createMarkers(100);
+        // translucent and opaque markers mixed
+        markers.get(0).setMarker(new BitmapDrawable(
+                getInstrumentation().getTargetContext().getResources(), icons[0].getBitmap()));
+        assertBatchedMatchesOneByOne(new MarkerBatch(), markers, 0, 1);
+    }
+
+    public void testChangedIconIsPackedAgain() throws Exception {
+        final MarkerBatch batch = new MarkerBatch();
+        final List<Marker> markers = createMarkers(50);
+        assertBatchedMatchesOneByOne(batch, markers, 0, 1);
+
+        // the icons are changed in place
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.YELLOW);
+        for (BitmapDrawable icon : icons) {
+            final Bitmap bitmap = icon.getBitmap();
+            new Canvas(bitmap).drawRect(0, 15, bitmap.getWidth(), 30, paint);
+        }
+        assertBatchedMatchesOneByOne(batch, markers, 0, 1);
+    }
+
+    public void testRecycle() throws Exception {
+        final MarkerBatch batch = new MarkerBatch();
+        final List<Marker> markers = createMarkers(50);
+        assertBatchedMatchesOneByOne(batch, markers, 0, 1);
+        assertEquals(1, batch.getAtlas().getPageCount());
+        batch.recycle();
+        assertEquals(0, batch.getAtlas().getPageCount());
+        assertBatchedMatchesOneByOne(batch, markers, 0, 1);
+    }
+
+    /**
+     * Frame time of drawing markers one by one, with a save, transform and restore each,
+     * against drawing them batched.
+     */
+    public void testDrawTime() throws Exception {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        final SafeTranslatedCanvas canvas = new SafeTranslatedCanvas(new Canvas(bitmap));
+        final MarkerBatch batch = new MarkerBatch();
+        final int frames = 20;
+        for (int count : new int[] { 100, 1000, 5000 }) {
+            final List<Marker> markers = createMarkers(count);
+            drawBatched(batch, canvas, markers, 0, 1);
+
+            long start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                bitmap.eraseColor(0);
+                drawOneByOne(canvas, markers, 0, 1);
+            }
+            final long oneByOne = (System.nanoTime() - start) / frames;
+
+            start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                bitmap.eraseColor(0);
+                drawBatched(batch, canvas, markers, 0, 1);
+            }
+            final long batched = (System.nanoTime() - start) / frames;
+
+            Log.i(TAG, count + " markers: one by one " + oneByOne / 1000 + "us/frame, batched "
+                    + batched / 1000 + "us/frame");
+        }
+    }
+}
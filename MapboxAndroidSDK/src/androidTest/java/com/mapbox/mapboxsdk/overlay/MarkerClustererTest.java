@@ -0,0 +1,129 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.HashSet;
+import java.util.Random;
+
+public class MarkerClustererTest extends InstrumentationTestCase {
+
+    private static final String TAG = "MarkerClustererTest";
+
+    private Marker[] markers;
+    private double[] xs;
+    private double[] ys;
+
+    private void createMarkers(final int count) {
+        final Random random = new Random(42);
+        markers = new Marker[count];
+        xs = new double[count];
+        ys = new double[count];
+        final double[] xy = new double[2];
+        for (int i = 0; i < count; i++) {
+            final LatLng point = new LatLng(40 + random.nextDouble() * 10,
+                    -5 + random.nextDouble() * 15);
+            markers[i] = new Marker("", "", point);
+            Projection.latLongToWorldXY(point.getLatitude(), point.getLongitude(), xy);
+            xs[i] = xy[0];
+            ys[i] = xy[1];
+        }
+    }
+
+    public void testEveryLevelHoldsAllMarkers() throws Exception {
+        createMarkers(10000);
+        final MarkerClusterer.Snapshot snapshot =
+                MarkerClusterer.Snapshot.build(markers, xs, ys, markers.length, 16);
+        for (int zoom = 0; zoom <= 16; zoom++) {
+            final MarkerClusterer.ClusterIds ids = new MarkerClusterer.ClusterIds();
+            snapshot.query(zoom, 0, 0, 1, 1, ids);
+            assertEquals(snapshot.size(zoom), ids.size());
+            final HashSet<Marker> seen = new HashSet<Marker>();
+            for (int i = 0; i < ids.size(); i++) {
+                seen.addAll(snapshot.getCluster(zoom, ids.get(i)).getMarkers());
+            }
+            assertEquals(markers.length, seen.size());
+        }
+        assertTrue(snapshot.size(0) <= 16);
+        assertTrue(snapshot.size(16) > snapshot.size(8));
+    }
+
+    private static int countParts(final MarkerClusterer.Snapshot snapshot, final int zoom,
+            final HashSet<Marker> members) {
+        int parts = 0;
+        for (int id = 0; id < snapshot.size(zoom); id++) {
+            if (members.contains(snapshot.getMarker(zoom, id))) {
+                parts++;
+            }
+        }
+        return parts;
+    }
+
+    public void testClustersSplitAtExpansionZoom() throws Exception {
+        createMarkers(1000);
+        final MarkerClusterer.Snapshot snapshot =
+                MarkerClusterer.Snapshot.build(markers, xs, ys, markers.length, 16);
+        for (int id = 0; id < snapshot.size(2); id++) {
+            final MarkerClusterer.Cluster cluster = snapshot.getCluster(2, id);
+            if (cluster.getCount() < 2) {
+                continue;
+            }
+            final HashSet<Marker> members = new HashSet<Marker>(cluster.getMarkers());
+            final int expansion = cluster.getExpansionZoom();
+            assertTrue(expansion > 2);
+            assertEquals(1, countParts(snapshot, expansion - 1, members));
+            if (expansion <= 16) {
+                assertTrue(countParts(snapshot, expansion, members) > 1);
+            }
+        }
+    }
+
+    public void testQueryMatchesCenters() throws Exception {
+        createMarkers(10000);
+        final MarkerClusterer.Snapshot snapshot =
+                MarkerClusterer.Snapshot.build(markers, xs, ys, markers.length, 16);
+        final double[] min = Projection.latLongToWorldXY(46, 1, null);
+        final double[] max = Projection.latLongToWorldXY(44, 4, null);
+        for (int zoom = 4; zoom <= 12; zoom++) {
+            final MarkerClusterer.ClusterIds ids = new MarkerClusterer.ClusterIds();
+            snapshot.query(zoom, min[0], min[1], max[0], max[1], ids);
+            int expected = 0;
+            for (int id = 0; id < snapshot.size(zoom); id++) {
+                final float x = snapshot.getX(zoom, id);
+                final float y = snapshot.getY(zoom, id);
+                if (x >= min[0] && x <= max[0] && y >= min[1] && y <= max[1]) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, ids.size());
+        }
+    }
+
+    public void testLabels() throws Exception {
+        assertEquals("7", ClusterIcons.label(7));
+        assertEquals("99", ClusterIcons.label(99));
+        assertEquals("100+", ClusterIcons.label(150));
+        assertEquals("200+", ClusterIcons.label(499));
+        assertEquals("2k+", ClusterIcons.label(2500));
+        assertEquals("50k+", ClusterIcons.label(99999));
+        assertEquals("1M+", ClusterIcons.label(1500000));
+    }
+
+    /**
+     * Time to build the clusters of all zoom levels, which happens off the main thread.
+     */
+    public void testBuildTime() throws Exception {
+        for (int count : new int[] { 1000, 10000, 100000 }) {
+            createMarkers(count);
+            final long start = System.nanoTime();
+            final MarkerClusterer.Snapshot snapshot =
+                    MarkerClusterer.Snapshot.build(markers, xs, ys, count, 16);
+            final long elapsed = (System.nanoTime() - start) / 1000000;
+            Log.i(TAG, count + " markers clustered in " + elapsed + "ms, "
+                    + snapshot.size(8) + " clusters at zoom 8");
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class MarkerListTest extends InstrumentationTestCase {
+
+    private static final String TAG = "MarkerListTest";
+
+    private static final Comparator<Marker> BY_SORTKEY = new Comparator<Marker>() {
+        @Override
+        public int compare(final Marker a, final Marker b) {
+            return ((Integer) a.getSortkey()).compareTo((Integer) b.getSortkey());
+        }
+    };
+
+    private Random random;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        random = new Random(42);
+    }
+
+    private Marker createMarker() {
+        final Marker marker = new Marker("", "", new LatLng(0, 0));
+        marker.setSortkey(random.nextInt(100));
+        return marker;
+    }
+
+    /**
+     * A stable sort of the reference list, which is the order MarkerList keeps.
+     */
+    private static void assertSameOrder(final List<Marker> expected, final MarkerList list) {
+        final List<Marker> sorted = new ArrayList<Marker>(expected);
+        Collections.sort(sorted, BY_SORTKEY);
+        assertEquals(sorted.size(), list.size());
+        assertEquals(sorted, new ArrayList<Marker>(list));
+        for (int i = 0; i < sorted.size(); i++) {
+            assertSame(sorted.get(i), list.get(i));
+            assertEquals(i, list.indexOf(sorted.get(i)));
+        }
+    }
+
+    public void testAddRemoveAndReorder() throws Exception {
+        final MarkerList list = new MarkerList(BY_SORTKEY);
+        final List<Marker> reference = new ArrayList<Marker>();
+        for (int i = 0; i < 2000; i++) {
+            final Marker marker = createMarker();
+            assertTrue(list.add(marker));
+            reference.add(marker);
+        }
+        assertFalse(list.add(reference.get(0)));
+        assertSameOrder(reference, list);
+
+        for (int i = 0; i < 500; i++) {
+            final Marker marker = reference.remove(random.nextInt(reference.size()));
+            assertTrue(list.remove(marker));
+            assertFalse(list.contains(marker));
+        }
+        assertSameOrder(reference, list);
+
+        for (int i = 0; i < 500; i++) {
+            // re-keyed markers go after the markers equal to them
+            final Marker marker = reference.remove(random.nextInt(reference.size()));
+            marker.setSortkey(random.nextInt(100));
+            list.reorder(marker);
+            reference.add(marker);
+        }
+        assertSameOrder(reference, list);
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(-1, list.indexOf(reference.get(0)));
+    }
+
+    public void testInsertionOrderWithoutComparator() throws Exception {
+        final MarkerList list = new MarkerList(null);
+        final MarkerList other = new MarkerList(null);
+        final List<Marker> reference = new ArrayList<Marker>();
+        for (int i = 0; i < 100; i++) {
+            final Marker marker = createMarker();
+            list.add(marker);
+            reference.add(marker);
+        }
+        assertEquals(reference, new ArrayList<Marker>(list));
+
+        // a marker belongs to one list at a time
+        other.add(reference.get(10));
+        assertFalse(list.contains(reference.get(10)));
+        assertEquals(99, list.size());
+        assertEquals(0, other.indexOf(reference.get(10)));
+    }
+
+    public void testAddAtIndexAndSet() throws Exception {
+        final MarkerList list = new MarkerList(null);
+        final List<Marker> reference = new ArrayList<Marker>();
+        for (int i = 0; i < 200; i++) {
+            final Marker marker = createMarker();
+            final int index = random.nextInt(reference.size() + 1);
+            list.add(index, marker);
+            reference.add(index, marker);
+        }
+        assertEquals(reference, new ArrayList<Marker>(list));
+
+        final Marker replacement = createMarker();
+        assertSame(reference.get(50), list.set(50, replacement));
+        reference.set(50, replacement);
+        assertEquals(reference, new ArrayList<Marker>(list));
+        assertEquals(50, list.indexOf(replacement));
+
+        // a sorted list keeps its order whatever the index
+        final MarkerList sorted = new MarkerList(BY_SORTKEY);
+        final List<Marker> sortedReference = new ArrayList<Marker>();
+        for (int i = 0; i < 200; i++) {
+            final Marker marker = createMarker();
+            sorted.add(random.nextInt(sorted.size() + 1), marker);
+            sortedReference.add(marker);
+        }
+        final Marker moved = createMarker();
+        sortedReference.remove(sorted.set(0, moved));
+        sortedReference.add(moved);
+        assertSameOrder(sortedReference, sorted);
+
+        try {
+            list.add(list.size() + 1, createMarker());
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testOverlayOrderWithoutSortKeys() throws Exception {
+        final List<Marker> markers = new ArrayList<Marker>();
+        for (int i = 0; i < 100; i++) {
+            final Marker marker = createMarker();
+            if (i % 3 == 0) {
+                marker.setSortkey(null);
+            }
+            markers.add(marker);
+        }
+        final ItemizedIconOverlay overlay = new ItemizedIconOverlay(null, markers, null);
+        int keyless = 0;
+        Integer last = null;
+        for (int i = 0; i < overlay.size(); i++) {
+            final Integer key = (Integer) overlay.getItem(i).getSortkey();
+            if (key == null) {
+                // keyless markers come first
+                assertNull(last);
+                keyless++;
+            } else {
+                assertTrue(last == null || last <= key);
+                last = key;
+            }
+        }
+        assertEquals(34, keyless);
+
+        // the order holds as markers come and go
+        for (int i = 0; i < 50; i++) {
+            final Marker marker = createMarker();
+            if (i % 2 == 0) {
+                marker.setSortkey(null);
+            }
+            overlay.addItem(marker);
+            overlay.removeItem(overlay.getItem(random.nextInt(overlay.size())));
+        }
+        boolean keyed = false;
+        for (int i = 0; i < overlay.size(); i++) {
+            final boolean hasKey = overlay.getItem(i).getSortkey() != null;
+            assertTrue(hasKey || !keyed);
+            keyed |= hasKey;
+        }
+    }
+
+    /**
+     * Adding markers one at a time, as a live feed does: re-sorting the whole list after each
+     * as populate() used to, against inserting into the MarkerList.
+     */
+    public void testIncrementalInsertTime() throws Exception {
+        for (int count : new int[] { 1000, 2000, 5000 }) {
+            final List<Marker> markers = new ArrayList<Marker>(count);
+            for (int i = 0; i < count; i++) {
+                markers.add(createMarker());
+            }
+
+            long start = System.nanoTime();
+            final List<Marker> sorted = new ArrayList<Marker>();
+            for (int i = 0; i < count; i++) {
+                sorted.add(markers.get(i));
+                Collections.sort(sorted, BY_SORTKEY);
+            }
+            final long resort = (System.nanoTime() - start) / count;
+
+            start = System.nanoTime();
+            final MarkerList list = new MarkerList(BY_SORTKEY);
+            for (int i = 0; i < count; i++) {
+                list.add(markers.get(i));
+            }
+            final long insert = (System.nanoTime() - start) / count;
+
+            assertEquals(count, list.size());
+            Log.i(TAG, count + " markers added one by one: re-sort " + resort / 1000
+                    + "us/marker, ordered insert " + insert + "ns/marker");
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class MarkerSpatialIndexTest extends InstrumentationTestCase {
+
+    private static final String TAG = "MarkerSpatialIndexTest";
+
+    private Random random;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        random = new Random(42);
+    }
+
+    private List<Marker> createMarkers(final int count) {
+        final List<Marker> markers = new ArrayList<Marker>(count);
+        for (int i = 0; i < count; i++) {
+            // roughly the extent of a country, so viewports hold a realistic share of markers
+            final LatLng point = new LatLng(40 + random.nextDouble() * 10,
+                    -5 + random.nextDouble() * 15);
+            markers.add(new Marker("", "", point));
+        }
+        return markers;
+    }
+
+    private static HashSet<Marker> linearQuery(final List<Marker> markers, final double minX,
+            final double minY, final double maxX, final double maxY) {
+        final HashSet<Marker> result = new HashSet<Marker>();
+        final double[] xy = new double[2];
+        for (Marker marker : markers) {
+            final LatLng point = marker.getPoint();
+            Projection.latLongToWorldXY(point.getLatitude(), point.getLongitude(), xy);
+            if (xy[0] >= minX && xy[0] <= maxX && xy[1] >= minY && xy[1] <= maxY) {
+                result.add(marker);
+            }
+        }
+        return result;
+    }
+
+    private void assertQueryMatches(final MarkerSpatialIndex index, final List<Marker> markers) {
+        final double[] min = Projection.latLongToWorldXY(48, -2, null);
+        final double[] max = Projection.latLongToWorldXY(42, 6, null);
+        final List<Marker> found = new ArrayList<Marker>();
+        index.query(min[0], min[1], max[0], max[1], found);
+        assertEquals(linearQuery(markers, min[0], min[1], max[0], max[1]),
+                new HashSet<Marker>(found));
+    }
+
+    public void testQueryMatchesLinearScan() throws Exception {
+        final List<Marker> markers = createMarkers(5000);
+        final MarkerSpatialIndex index = new MarkerSpatialIndex();
+        for (Marker marker : markers) {
+            index.insert(marker);
+        }
+        assertEquals(5000, index.size());
+        assertQueryMatches(index, markers);
+    }
+
+    public void testRemoveAndMove() throws Exception {
+        final List<Marker> markers = createMarkers(2000);
+        final MarkerSpatialIndex index = new MarkerSpatialIndex();
+        for (Marker marker : markers) {
+            index.insert(marker);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.remove(markers.remove(markers.size() - 1)));
+        }
+        for (Marker marker : markers) {
+            marker.setPoint(new LatLng(40 + random.nextDouble() * 10,
+                    -5 + random.nextDouble() * 15));
+            index.update(marker);
+        }
+        assertEquals(1000, index.size());
+        assertQueryMatches(index, markers);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertFalse(index.contains(markers.get(0)));
+    }
+
+    /**
+     * Culling time per frame of a city-sized viewport, scanning every marker as drawSafe used
+     * to against querying the index and sorting the matches into drawing order.
+     */
+    public void testCullingFrameTime() throws Exception {
+        final double[] min = Projection.latLongToWorldXY(45.2, 2.8, null);
+        final double[] max = Projection.latLongToWorldXY(44.8, 3.2, null);
+        final int frames = 50;
+        for (int count : new int[] { 1000, 10000, 100000 }) {
+            final List<Marker> markers = createMarkers(count);
+            final MarkerSpatialIndex index = new MarkerSpatialIndex();
+            for (int i = 0; i < count; i++) {
+                markers.get(i).mDrawOrder = i;
+                index.insert(markers.get(i));
+            }
+
+            long start = System.nanoTime();
+            int visible = 0;
+            for (int frame = 0; frame < frames; frame++) {
+                visible = linearQuery(markers, min[0], min[1], max[0], max[1]).size();
+            }
+            final long linear = (System.nanoTime() - start) / frames;
+
+            final ArrayList<Marker> found = new ArrayList<Marker>();
+            start = System.nanoTime();
+            for (int frame = 0; frame < frames; frame++) {
+                found.clear();
+                index.query(min[0], min[1], max[0], max[1], found);
+                Collections.sort(found, new Comparator<Marker>() {
+                    @Override
+                    public int compare(final Marker a, final Marker b) {
+                        return a.mDrawOrder - b.mDrawOrder;
+                    }
+                });
+            }
+            final long indexed = (System.nanoTime() - start) / frames;
+
+            assertEquals(visible, found.size());
+            Log.i(TAG, count + " markers, " + visible + " visible: linear scan "
+                    + linear / 1000 + "us/frame, spatial index " + indexed / 1000 + "us/frame");
+        }
+    }
+}
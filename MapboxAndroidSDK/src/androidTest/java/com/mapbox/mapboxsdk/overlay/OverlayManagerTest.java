@@ -0,0 +1,102 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Canvas;
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.views.MapView;
+
+public class OverlayManagerTest extends InstrumentationTestCase {
+
+    private static class StaticOverlay extends Overlay {
+        private final boolean mCacheable;
+
+        StaticOverlay(final boolean cacheable, final int index) {
+            mCacheable = cacheable;
+            setOverlayIndex(index);
+        }
+
+        @Override
+        protected void draw(final Canvas c, final MapView mapView) {
+        }
+
+        @Override
+        public boolean isLayerCacheable() {
+            return mCacheable;
+        }
+
+        void change() {
+            invalidateLayer();
+        }
+    }
+
+    private static OverlayManager.LayerState createState(final int stampCount) {
+        final OverlayManager.LayerState state = new OverlayManager.LayerState();
+        state.scrollX = 120;
+        state.scrollY = -40;
+        state.width = 1080;
+        state.height = 1920;
+        state.zoomLevel = 15.5f;
+        state.matrix[0] = 1;
+        state.matrix[2] = 540;
+        state.matrix[4] = 1;
+        state.matrix[5] = 960;
+        state.matrix[8] = 1;
+        state.generation = 7;
+        state.stamps = new int[stampCount];
+        for (int i = 0; i < stampCount; i++) {
+            state.stamps[i] = i * 2 + 1;
+        }
+        state.stampCount = stampCount;
+        return state;
+    }
+
+    public void testLayerStateCopy() throws Exception {
+        final OverlayManager.LayerState state = createState(20);
+        final OverlayManager.LayerState copy = new OverlayManager.LayerState();
+        assertFalse(state.equals(copy));
+
+        copy.set(state);
+        assertEquals(state, copy);
+        assertEquals(state.hashCode(), copy.hashCode());
+
+        // a frame later, with one overlay changed
+        copy.stamps[12] += 2;
+        assertFalse(state.equals(copy));
+        copy.set(state);
+        copy.zoomLevel = 15.6f;
+        assertFalse(state.equals(copy));
+        copy.set(state);
+        copy.matrix[2] = 541;
+        assertFalse(state.equals(copy));
+    }
+
+    public void testOverlayInvalidatesItsLayer() throws Exception {
+        final StaticOverlay overlay = new StaticOverlay(true, 1);
+        final int generation = overlay.getLayerGeneration();
+        overlay.change();
+        assertTrue(overlay.getLayerGeneration() != generation);
+        assertFalse(new Overlay() {
+            @Override
+            protected void draw(final Canvas c, final MapView mapView) {
+            }
+        }.isLayerCacheable());
+    }
+
+    public void testOverlaysStaySorted() throws Exception {
+        final OverlayManager manager = new OverlayManager(null);
+        assertTrue(manager.isUsingLayerCache());
+        final StaticOverlay markers = new StaticOverlay(false, 3);
+        final StaticOverlay path = new StaticOverlay(true, 2);
+        final StaticOverlay events = new StaticOverlay(true, 0);
+        manager.add(markers);
+        manager.add(path);
+        manager.add(events);
+        assertSame(events, manager.get(0));
+        assertSame(path, manager.get(1));
+        assertSame(markers, manager.get(2));
+
+        manager.remove(path);
+        assertEquals(2, manager.size());
+        assertSame(markers, manager.get(1));
+    }
+}
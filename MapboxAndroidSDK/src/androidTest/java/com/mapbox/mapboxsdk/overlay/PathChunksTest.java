@@ -0,0 +1,132 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.Random;
+
+public class PathChunksTest extends InstrumentationTestCase {
+
+    private static final String TAG = "PathChunksTest";
+
+    private static double[] createTrack(final int count, final Random random) {
+        final double[] coords = new double[count * 2];
+        double x = 0.5;
+        double y = 0.5;
+        for (int i = 0; i < count; i++) {
+            x += (random.nextDouble() - 0.5) * 1e-4;
+            y += (random.nextDouble() - 0.5) * 1e-4;
+            coords[i * 2] = x;
+            coords[i * 2 + 1] = y;
+        }
+        return coords;
+    }
+
+    private static boolean isCovered(final PathChunks.Runs runs, final int segment) {
+        for (int r = 0; r < runs.size; r++) {
+            if (segment >= runs.getFirst(r) && segment < runs.getLast(r)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void testQueryFindsIntersectingSegments() throws Exception {
+        final Random random = new Random(42);
+        final int count = 5000;
+        final double[] coords = createTrack(count, random);
+        // one built at once, one caught up with appended points
+        final PathChunks built = PathChunks.build(coords, count);
+        final PathChunks appended = new PathChunks();
+        for (int size = 0; size < count; size += 1 + random.nextInt(100)) {
+            appended.update(coords, size);
+        }
+        appended.update(coords, count);
+
+        final PathChunks.Runs runs = new PathChunks.Runs();
+        for (int q = 0; q < 100; q++) {
+            final double minX = 0.5 + (random.nextDouble() - 0.5) * 2e-3;
+            final double minY = 0.5 + (random.nextDouble() - 0.5) * 2e-3;
+            final double maxX = minX + random.nextDouble() * 5e-4;
+            final double maxY = minY + random.nextDouble() * 5e-4;
+            final int from = random.nextInt(count);
+            for (PathChunks chunks : new PathChunks[] { built, appended }) {
+                chunks.query(minX, minY, maxX, maxY, from, runs);
+                int previous = -1;
+                for (int r = 0; r < runs.size; r++) {
+                    assertTrue(runs.getFirst(r) > previous);
+                    assertTrue(runs.getFirst(r) >= from);
+                    assertTrue(runs.getLast(r) > runs.getFirst(r));
+                    assertTrue(runs.getLast(r) <= count - 1);
+                    previous = runs.getLast(r);
+                }
+                for (int s = from; s < count - 1; s++) {
+                    final double sMinX = Math.min(coords[s * 2], coords[s * 2 + 2]);
+                    final double sMaxX = Math.max(coords[s * 2], coords[s * 2 + 2]);
+                    final double sMinY = Math.min(coords[s * 2 + 1], coords[s * 2 + 3]);
+                    final double sMaxY = Math.max(coords[s * 2 + 1], coords[s * 2 + 3]);
+                    if (sMinX <= maxX && sMaxX >= minX && sMinY <= maxY && sMaxY >= minY) {
+                        assertTrue("segment " + s, isCovered(runs, s));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testClearAndRebuild() throws Exception {
+        final Random random = new Random(7);
+        final double[] coords = createTrack(1000, random);
+        final PathChunks chunks = PathChunks.build(coords, 1000);
+        chunks.clear();
+        chunks.update(coords, 10);
+        final PathChunks.Runs runs = new PathChunks.Runs();
+        assertEquals(1, chunks.query(0, 0, 1, 1, 0, runs));
+        assertEquals(0, runs.getFirst(0));
+        assertEquals(9, runs.getLast(0));
+    }
+
+    /**
+     * Time to find the visible part of a million point track, against a pass over its
+     * segments.
+     */
+    public void testQueryTime() throws Exception {
+        final int count = 1000000;
+        final double[] coords = createTrack(count, new Random(42));
+        final PathChunks chunks = PathChunks.build(coords, count);
+        final PathChunks.Runs runs = new PathChunks.Runs();
+        final double minX = coords[count] - 1e-4;
+        final double minY = coords[count + 1] - 1e-4;
+        final double maxX = minX + 2e-4;
+        final double maxY = minY + 2e-4;
+        final int rounds = 20;
+
+        long start = System.nanoTime();
+        int visible = 0;
+        for (int round = 0; round < rounds; round++) {
+            chunks.query(minX, minY, maxX, maxY, 0, runs);
+        }
+        for (int r = 0; r < runs.size; r++) {
+            visible += runs.getLast(r) - runs.getFirst(r);
+        }
+        final long indexed = (System.nanoTime() - start) / rounds;
+
+        start = System.nanoTime();
+        int intersecting = 0;
+        for (int round = 0; round < rounds; round++) {
+            intersecting = 0;
+            for (int s = 0; s < count - 1; s++) {
+                if (Math.min(coords[s * 2], coords[s * 2 + 2]) <= maxX
+                        && Math.max(coords[s * 2], coords[s * 2 + 2]) >= minX
+                        && Math.min(coords[s * 2 + 1], coords[s * 2 + 3]) <= maxY
+                        && Math.max(coords[s * 2 + 1], coords[s * 2 + 3]) >= minY) {
+                    intersecting++;
+                }
+            }
+        }
+        final long linear = (System.nanoTime() - start) / rounds;
+        assertTrue(visible >= intersecting);
+
+        Log.i(TAG, count + " points: " + intersecting + " segments in view, " + visible
+                + " visited, indexed " + indexed / 1000 + "us, linear " + linear / 1000 + "us");
+    }
+}
@@ -0,0 +1,106 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.Random;
+
+public class PathLevelsTest extends InstrumentationTestCase {
+
+    private static final String TAG = "PathLevelsTest";
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * A GPS-like track: a random walk with steps of about a meter.
+     */
+    private static double[] createTrack(final int count) {
+        final Random random = new Random(42);
+        final double[] coords = new double[count * 2];
+        double x = 0.5;
+        double y = 0.5;
+        double heading = 0;
+        for (int i = 0; i < count; i++) {
+            heading += (random.nextDouble() - 0.5) * 0.3;
+            x += Math.cos(heading) * 2.5e-8;
+            y += Math.sin(heading) * 2.5e-8;
+            coords[i * 2] = x;
+            coords[i * 2 + 1] = y;
+        }
+        return coords;
+    }
+
+    private static double distance(final double[] c, final int p, final int a, final int b) {
+        final double dx = c[b * 2] - c[a * 2];
+        final double dy = c[b * 2 + 1] - c[a * 2 + 1];
+        final double px = c[p * 2] - c[a * 2];
+        final double py = c[p * 2 + 1] - c[a * 2 + 1];
+        final double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? (px * dx + py * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(px - t * dx, py - t * dy);
+    }
+
+    public void testStraightLineKeepsEnds() throws Exception {
+        final double[] coords = new double[200];
+        for (int i = 0; i < 100; i++) {
+            coords[i * 2] = 0.1 + i * 1e-4;
+            coords[i * 2 + 1] = 0.2 + i * 2e-4;
+        }
+        final PathLevels levels = PathLevels.build(coords, 100, TILE_SIZE, 0);
+        assertEquals(2, levels.getLevelSize(0));
+        assertEquals(2, levels.getLevelSize(10));
+        assertEquals(coords[198], levels.getLevel(10)[2]);
+    }
+
+    public void testLevelsStayWithinTolerance() throws Exception {
+        final int count = 20000;
+        final double[] coords = createTrack(count);
+        final PathLevels levels = PathLevels.build(coords, count, TILE_SIZE, 0);
+        int previousSize = 0;
+        for (int zoom = 0; zoom < 23; zoom++) {
+            final double[] level = levels.getLevel(zoom);
+            if (level == null) {
+                break;
+            }
+            final int size = levels.getLevelSize(zoom);
+            assertTrue(size >= previousSize);
+            previousSize = size;
+            final double tolerance = PathLevels.TOLERANCE_PX / ((double) TILE_SIZE * (1L << zoom));
+            // the level is a subsequence of the track: find each kept point
+            int kept = 0;
+            int last = 0;
+            for (int i = 0; i < count; i++) {
+                if (coords[i * 2] == level[kept * 2] && coords[i * 2 + 1] == level[kept * 2 + 1]) {
+                    for (int p = last + 1; p < i; p++) {
+                        assertTrue(distance(coords, p, last, i) <= tolerance * 1.0001);
+                    }
+                    last = i;
+                    kept++;
+                    if (kept == size) {
+                        break;
+                    }
+                }
+            }
+            assertEquals(size, kept);
+            assertEquals(count - 1, last);
+        }
+        assertTrue(previousSize > 2);
+    }
+
+    /**
+     * Time to simplify a million point track for all zoom levels, which happens off the main
+     * thread, and the points left to draw per level.
+     */
+    public void testBuildTime() throws Exception {
+        final int count = 1000000;
+        final double[] coords = createTrack(count);
+        final long start = System.nanoTime();
+        final PathLevels levels = PathLevels.build(coords, count, TILE_SIZE, 0);
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        final StringBuilder sizes = new StringBuilder();
+        for (int zoom = 0; zoom < 23 && levels.getLevel(zoom) != null; zoom++) {
+            sizes.append(' ').append(zoom).append(':').append(levels.getLevelSize(zoom));
+        }
+        Log.i(TAG, count + " points simplified in " + elapsed + "ms, points per zoom" + sizes);
+    }
+}
@@ -0,0 +1,58 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.RectF;
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+public class PathOverlayTest extends InstrumentationTestCase {
+
+    private static final int SIZE = 256;
+
+    public void testDrawTile() throws Exception {
+        // along the equator, from x 64 to 192 on tile 0/0/0
+        final PathOverlay overlay = new PathOverlay(Color.RED, 10);
+        overlay.setPoints(new LatLng(0, -90), new LatLng(0, 0), new LatLng(0, 90));
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        assertTrue(overlay.drawTile(new Canvas(tile), 0, SIZE, 0, 0,
+                new RectF(0, 0, SIZE, SIZE)));
+
+        assertEquals(Color.RED, tile.getPixel(128, 128));
+        assertEquals(Color.RED, tile.getPixel(80, 126));
+        assertEquals(Color.RED, tile.getPixel(180, 130));
+        // past the ends and the stroke width
+        assertEquals(0, tile.getPixel(40, 128));
+        assertEquals(0, tile.getPixel(220, 128));
+        assertEquals(0, tile.getPixel(128, 110));
+        assertEquals(0, tile.getPixel(128, 146));
+    }
+
+    public void testDrawTileOffset() throws Exception {
+        final PathOverlay overlay = new PathOverlay(Color.RED, 10);
+        overlay.setPoints(new LatLng(0, -90), new LatLng(0, 90));
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        // tile 1/0/1, whose top edge is the equator
+        assertTrue(overlay.drawTile(new Canvas(tile), 1, SIZE * 2, 0, -SIZE,
+                new RectF(0, 0, SIZE, SIZE)));
+        assertEquals(Color.RED, tile.getPixel(200, 2));
+        assertEquals(0, tile.getPixel(200, 20));
+        assertEquals(0, tile.getPixel(100, 2));
+    }
+
+    public void testDrawTileWithoutLine() throws Exception {
+        final PathOverlay overlay = new PathOverlay(Color.RED, 10);
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(tile);
+        final RectF bounds = new RectF(0, 0, SIZE, SIZE);
+        overlay.addPoint(new LatLng(0, 0));
+        assertFalse(overlay.drawTile(canvas, 0, SIZE, 0, 0, bounds));
+
+        // tile 2/0/0 is far from the line
+        overlay.addPoint(new LatLng(0, 90));
+        assertFalse(overlay.drawTile(canvas, 2, SIZE * 4, 0, 0, bounds));
+        assertEquals(0, tile.getPixel(128, 128));
+    }
+}
@@ -0,0 +1,77 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.test.InstrumentationTestCase;
+
+public class PolygonOverlayTest extends InstrumentationTestCase {
+
+    private static final int SIZE = 256;
+
+    /**
+     * A ring as longitude, latitude pairs, counterclockwise on the map.
+     */
+    private static double[] box(final double west, final double south, final double east,
+            final double north) {
+        return new double[] { west, south, east, south, east, north, west, north, west, south };
+    }
+
+    private static PolygonOverlay createOverlay() {
+        final PolygonOverlay overlay = new PolygonOverlay();
+        // an outline with a hole, both wound the same way, and an island in the hole
+        final double[] outline = box(-80, -60, 80, 60);
+        final double[] hole = box(-30, -20, 30, 20);
+        final double[] coordinates = new double[outline.length + hole.length];
+        System.arraycopy(outline, 0, coordinates, 0, outline.length);
+        System.arraycopy(hole, 0, coordinates, outline.length, hole.length);
+        overlay.addPolygon(coordinates, new int[] { 5, 10 }, 0, 2, Color.RED);
+        overlay.addPolygon(box(-10, -5, 10, 5), new int[] { 5 }, 0, 1, Color.BLUE);
+        return overlay;
+    }
+
+    public void testFillAndHoles() throws Exception {
+        final PolygonOverlay overlay = createOverlay();
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        // tile 0/0/0
+        assertTrue(overlay.drawTile(new Canvas(tile), 0, SIZE, 0, 0,
+                new RectF(0, 0, SIZE, SIZE)));
+
+        assertEquals(Color.RED, tile.getPixel(80, 128));
+        assertEquals(Color.RED, tile.getPixel(128, 90));
+        // the hole
+        assertEquals(0, tile.getPixel(112, 128));
+        assertEquals(0, tile.getPixel(128, 118));
+        // the island
+        assertEquals(Color.BLUE, tile.getPixel(128, 128));
+        // outside
+        assertEquals(0, tile.getPixel(10, 10));
+        assertEquals(0, tile.getPixel(200, 128));
+    }
+
+    public void testEvenOddFill() throws Exception {
+        final PolygonOverlay overlay = createOverlay();
+        overlay.addPolygon(box(-50, -40, 50, 40), new int[] { 5 }, 0, 1, Color.RED);
+        overlay.setFillType(Path.FillType.EVEN_ODD);
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        assertTrue(overlay.drawTile(new Canvas(tile), 0, SIZE, 0, 0,
+                new RectF(0, 0, SIZE, SIZE)));
+
+        // the red polygons overlap outside the hole, and fill the hole
+        assertEquals(0, tile.getPixel(100, 128));
+        assertEquals(Color.RED, tile.getPixel(112, 128));
+        assertEquals(Color.RED, tile.getPixel(80, 128));
+    }
+
+    public void testTileWithoutPolygons() throws Exception {
+        final PolygonOverlay overlay = createOverlay();
+        final Bitmap tile = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        // tile 2/0/0, off the outline's north west corner
+        assertFalse(overlay.drawTile(new Canvas(tile), 2, SIZE * 4, 0, 0,
+                new RectF(0, 0, SIZE, SIZE)));
+        assertFalse(new PolygonOverlay().drawTile(new Canvas(tile), 0, SIZE, 0, 0,
+                new RectF(0, 0, SIZE, SIZE)));
+    }
+}
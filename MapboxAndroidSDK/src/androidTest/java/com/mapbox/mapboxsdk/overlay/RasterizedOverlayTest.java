@@ -0,0 +1,71 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.views.MapView;
+
+public class RasterizedOverlayTest extends InstrumentationTestCase {
+
+    private static PolygonOverlay createPolygons() {
+        final PolygonOverlay overlay = new PolygonOverlay();
+        // around the middle of the world
+        overlay.addPolygon(new double[] { -10, -10, 10, -10, 10, 10, -10, 10 },
+                new int[] { 4 }, 0, 1, Color.RED);
+        return overlay;
+    }
+
+    public void testOnlyRasterizableOverlays() throws Exception {
+        try {
+            new RasterizedOverlay(createPolygons(), new Overlay() {
+                @Override
+                protected void draw(final Canvas c, final MapView mapView) {
+                }
+            });
+            fail();
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCacheKeyFollowsTheOverlays() throws Exception {
+        final PolygonOverlay polygons = createPolygons();
+        final PathOverlay path = new PathOverlay(Color.BLUE, 4);
+        final RasterizedOverlay overlay = new RasterizedOverlay(polygons, path);
+        final String key = overlay.updateCacheKey();
+        assertEquals(key, overlay.updateCacheKey());
+        // tiles of two rasterized overlays are kept apart
+        assertFalse(key.equals(new RasterizedOverlay(polygons, path).updateCacheKey()));
+
+        polygons.setPolygonColor(0, Color.GREEN);
+        final String recolored = overlay.updateCacheKey();
+        assertFalse(key.equals(recolored));
+
+        path.setEnabled(false);
+        final String disabled = overlay.updateCacheKey();
+        assertFalse(recolored.equals(disabled));
+        assertEquals(disabled, overlay.updateCacheKey());
+    }
+
+    public void testEmptyTilesAreRemembered() throws Exception {
+        final PolygonOverlay polygons = createPolygons();
+        final RasterizedOverlay overlay = new RasterizedOverlay(polygons);
+        final String key = overlay.updateCacheKey();
+
+        // the north west corner of zoom 2, far from the polygon
+        final MapTile empty = new MapTile(key, 2, 0, 0);
+        assertFalse(overlay.isEmptyTile(empty));
+        overlay.rasterizeTile(empty);
+        assertTrue(overlay.isEmptyTile(empty));
+        assertFalse(overlay.isEmptyTile(new MapTile(key, 2, 1, 0)));
+
+        // a change may fill any tile
+        polygons.addPolygon(new double[] { -170, 70, -100, 70, -100, 80, -170, 80 },
+                new int[] { 4 }, 0, 1, Color.BLUE);
+        final String changed = overlay.updateCacheKey();
+        assertFalse(overlay.isEmptyTile(empty));
+        assertFalse(overlay.isEmptyTile(new MapTile(changed, 2, 0, 0)));
+    }
+}
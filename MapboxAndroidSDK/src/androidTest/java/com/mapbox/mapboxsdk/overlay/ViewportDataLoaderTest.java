@@ -0,0 +1,167 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ViewportDataLoaderTest extends InstrumentationTestCase {
+
+    /**
+     * Holds the tasks until the test runs them.
+     */
+    private static class QueueExecutor extends AbstractExecutorService {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+            return true;
+        }
+    }
+
+    /**
+     * Gives each region one marker at its center, and keeps the boxes asked for.
+     */
+    private static class TestSource implements ViewportDataSource {
+        final List<BoundingBox> boxes = new ArrayList<BoundingBox>();
+
+        @Override
+        public List<Marker> loadMarkers(final BoundingBox box, final int zoom,
+                final Request request) {
+            boxes.add(box);
+            final List<Marker> markers = new ArrayList<Marker>();
+            markers.add(new Marker("", "", box.getCenter()));
+            return markers;
+        }
+    }
+
+    /**
+     * A loader without a map, which takes results at once.
+     */
+    private static class TestLoader extends ViewportDataLoader {
+        TestLoader(final ViewportDataSource source, final QueueExecutor executor) {
+            super(null, source, new ItemizedIconOverlay(null, new ArrayList<Marker>(), null),
+                    executor, 16);
+        }
+
+        @Override
+        void show(final Marker marker) {
+        }
+
+        @Override
+        void post(final Runnable task) {
+            task.run();
+        }
+    }
+
+    // the two regions of zoom level 2 from 180W to 90W, north and south of the equator
+    private static final BoundingBox WEST = new BoundingBox(10, -100, -10, -170);
+    // the two regions east of those
+    private static final BoundingBox WEST_CENTER = new BoundingBox(10, -10, -10, -80);
+
+    private static boolean isWestCenter(final Marker marker) {
+        return Math.abs(marker.getPoint().getLongitude() + 45) < 1e-6;
+    }
+
+    public void testRegions() throws Exception {
+        final List<MapTile> regions = ViewportDataLoader.getRegions(WEST, 2);
+        assertEquals(2, regions.size());
+        assertEquals(new MapTile(2, 0, 1), regions.get(0));
+        assertEquals(new MapTile(2, 0, 2), regions.get(1));
+
+        assertEquals(4, ViewportDataLoader.getRegions(BoundingBox.WORLD_BOUNDING_BOX, 1).size());
+
+        // across the date line
+        final List<MapTile> across =
+                ViewportDataLoader.getRegions(new BoundingBox(10, -170, 5, 170), 2);
+        assertEquals(2, across.size());
+        assertEquals(new MapTile(2, 3, 1), across.get(0));
+        assertEquals(new MapTile(2, 0, 1), across.get(1));
+    }
+
+    public void testRegionsAreLoadedCachedAndDiffed() throws Exception {
+        final TestSource source = new TestSource();
+        final QueueExecutor executor = new QueueExecutor();
+        final TestLoader loader = new TestLoader(source, executor);
+        final ItemizedIconOverlay overlay = loader.getOverlay();
+
+        loader.update(WEST, 2.5f);
+        assertEquals(2, executor.tasks.size());
+        executor.runAll();
+        assertEquals(2, overlay.size());
+
+        // the markers of the regions left stay until those in view are loaded
+        loader.update(WEST_CENTER, 2);
+        assertEquals(2, overlay.size());
+        assertEquals(2, executor.tasks.size());
+        executor.runAll();
+        assertEquals(2, overlay.size());
+        assertTrue(isWestCenter(overlay.getItem(0)));
+        assertTrue(isWestCenter(overlay.getItem(1)));
+
+        // back to cached regions
+        loader.update(WEST, 2);
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(2, overlay.size());
+        assertEquals(-135, overlay.getItem(0).getPoint().getLongitude(), 1e-6);
+        assertEquals(4, source.boxes.size());
+
+        // below the lowest zoom level, nothing is shown
+        loader.setMinZoom(3).update(WEST, 2);
+        assertEquals(0, overlay.size());
+    }
+
+    public void testLoadsOutOfViewAreCancelled() throws Exception {
+        final TestSource source = new TestSource();
+        final QueueExecutor executor = new QueueExecutor();
+        final TestLoader loader = new TestLoader(source, executor);
+
+        loader.update(WEST, 2);
+        loader.update(WEST_CENTER, 2);
+        assertEquals(4, executor.tasks.size());
+        executor.runAll();
+        // the cancelled loads never reached the source
+        assertEquals(2, source.boxes.size());
+        for (BoundingBox box : source.boxes) {
+            assertEquals(-45, box.getCenter().getLongitude(), 1e-6);
+        }
+        assertEquals(2, loader.getOverlay().size());
+        assertTrue(isWestCenter(loader.getOverlay().getItem(0)));
+    }
+}
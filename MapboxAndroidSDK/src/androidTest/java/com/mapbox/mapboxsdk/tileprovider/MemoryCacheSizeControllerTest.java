@@ -0,0 +1,134 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.test.InstrumentationTestCase;
+
+import uk.co.senab.bitmapcache.BitmapLruCache;
+
+public class MemoryCacheSizeControllerTest extends InstrumentationTestCase {
+
+    private static final int MB = 1024 * 1024;
+    private static final int TILE_BYTES = 256 * 256 * 4;
+    // nine ARGB_8888 tiles
+    private static final int MINIMUM_SIZE = 9 * TILE_BYTES;
+
+    private MemoryCacheSizeController mController;
+    private BitmapLruCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mController = new MemoryCacheSizeController(4 * MB, 32 * MB);
+        mCache = new BitmapLruCache.Builder().setMemoryCacheEnabled(true)
+                .setMemoryCacheMaxSize(4 * MB).setDiskCacheEnabled(false).build();
+        mController.setCache(mCache);
+    }
+
+    public void testDemandIsSummedPerConfig() throws Exception {
+        final Object first = new Object();
+        final Object second = new Object();
+        assertEquals(4 * MB, mController.getCurrentMaxSize());
+
+        mController.setDemand(first, 20, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(20, mController.getVisibleTileCount());
+        assertEquals((int) (20 * TILE_BYTES * MemoryCacheSizeController.DEFAULT_HEADROOM),
+                mController.getCurrentMaxSize());
+
+        // RGB_565 tiles take half the room
+        mController.setDemand(second, 20, 256, Bitmap.Config.RGB_565);
+        assertEquals(40, mController.getVisibleTileCount());
+        final int both = (int) (30 * TILE_BYTES * MemoryCacheSizeController.DEFAULT_HEADROOM);
+        assertEquals(both, mController.getCurrentMaxSize());
+        assertEquals(2, mController.getGrowCount());
+
+        // a slightly smaller viewport doesn't shrink the cache
+        mController.removeDemand(second);
+        assertEquals(both, mController.getCurrentMaxSize());
+        assertEquals(0, mController.getShrinkCount());
+
+        // a much smaller one does, down to the minimum
+        mController.setDemand(first, 4, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(MINIMUM_SIZE, mController.getCurrentMaxSize());
+        assertEquals(1, mController.getShrinkCount());
+    }
+
+    public void testReservationsCapTheSize() throws Exception {
+        mController.setReservedSize(28 * MB);
+        assertEquals(4 * MB, mController.getAvailableSize());
+        mController.setDemand(new Object(), 40, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(4 * MB, mController.getTargetSize());
+
+        mController.setReservedSize(0);
+        assertEquals(32 * MB, mController.getAvailableSize());
+        assertEquals((int) (40 * TILE_BYTES * MemoryCacheSizeController.DEFAULT_HEADROOM),
+                mController.getCurrentMaxSize());
+    }
+
+    public void testGrowingReservationsShrinkTheCache() throws Exception {
+        mController.setDemand(new Object(), 80, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(30 * MB, mController.getCurrentMaxSize());
+
+        // less than the shrink threshold would allow for a smaller demand
+        mController.setReservedSize(new Object(), 8 * MB);
+        assertEquals(24 * MB, mController.getCurrentMaxSize());
+        mController.setReservedSize(4 * MB);
+        assertEquals(20 * MB, mController.getCurrentMaxSize());
+        assertTrue(mController.getCurrentMaxSize() + 4 * MB
+                + mController.getOwnerReservedSize() <= mController.getMaximumSize());
+        assertEquals(2, mController.getShrinkCount());
+    }
+
+    public void testOwnerReservations() throws Exception {
+        final Object layer = new Object();
+        mController.setReservedSize(8 * MB);
+        mController.setReservedSize(layer, 20 * MB);
+        assertEquals(20 * MB, mController.getOwnerReservedSize());
+        assertEquals(4 * MB, mController.getAvailableSize());
+
+        mController.setReservedSize(layer, 10 * MB);
+        assertEquals(14 * MB, mController.getAvailableSize());
+        mController.setReservedSize(layer, 0);
+        assertEquals(0, mController.getOwnerReservedSize());
+        assertEquals(24 * MB, mController.getAvailableSize());
+    }
+
+    public void testTrimMemoryListeners() throws Exception {
+        final int[] levels = new int[2];
+        final MemoryCacheSizeController.OnTrimMemoryListener listener =
+                new MemoryCacheSizeController.OnTrimMemoryListener() {
+                    @Override
+                    public void onTrimMemory(final int level) {
+                        levels[0]++;
+                        levels[1] = level;
+                        // as the map's layer does when it frees its bitmap
+                        mController.removeOnTrimMemoryListener(this);
+                    }
+                };
+        mController.addOnTrimMemoryListener(listener);
+        mController.addOnTrimMemoryListener(listener);
+        mController.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        mController.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(1, levels[0]);
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, levels[1]);
+    }
+
+    public void testTrimMemory() throws Exception {
+        final BitmapLruCache partition = new BitmapLruCache.Builder().setMemoryCacheEnabled(true)
+                .setMemoryCacheMaxSize(MB).setDiskCacheEnabled(false).build();
+        mController.addTrimmableCache(partition);
+        mController.setDemand(new Object(), 20, 256, Bitmap.Config.ARGB_8888);
+
+        mController.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(ComponentCallbacks2.TRIM_MEMORY_MODERATE, mController.getLastTrimLevel());
+        assertEquals(MINIMUM_SIZE, mController.getCurrentMaxSize());
+        assertEquals(0, mController.getCurrentSize());
+        // partitions keep their quota
+        assertEquals(MB, partition.getMemoryCacheMaxSize());
+
+        mController.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        // held at the visible tiles while under pressure
+        mController.setDemand(new Object(), 20, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(40 * TILE_BYTES, mController.getTargetSize());
+    }
+}
@@ -0,0 +1,66 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.test.InstrumentationTestCase;
+
+public class TileCachePolicyTest extends InstrumentationTestCase {
+
+    private static final int MB = 1024 * 1024;
+
+    private MapTileCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        MapTileCache.sSizeController = new MemoryCacheSizeController(4 * MB, 32 * MB);
+        mCache = new MapTileCache(null, 100 * MB, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.setCachePolicy("a", null);
+        mCache.setCachePolicy("b", null);
+        MapTileCache.sSizeController = null;
+        super.tearDown();
+    }
+
+    public void testQuotas() throws Exception {
+        final TileCachePolicy policy = new TileCachePolicy(-1, -1).setTimeToLive(-5);
+        assertEquals(0, policy.getMemoryQuota());
+        assertEquals(0, policy.getDiskQuota());
+        assertEquals(0, policy.getTimeToLive());
+        assertFalse(policy.isExpired(1));
+
+        final TileCachePolicy fits = new TileCachePolicy(MB, 10 * MB);
+        assertSame(fits, fits.clamp(MB, 10 * MB));
+
+        final TileCachePolicy pinned = new TileCachePolicy(8 * MB, 50 * MB)
+                .setPinned(true).setTimeToLive(1000);
+        final TileCachePolicy clamped = pinned.clamp(2 * MB, 60 * MB);
+        assertEquals(2 * MB, clamped.getMemoryQuota());
+        assertEquals(50 * MB, clamped.getDiskQuota());
+        assertTrue(clamped.isPinned());
+        assertEquals(1000, clamped.getTimeToLive());
+    }
+
+    public void testPoliciesShareTheGlobalBudget() throws Exception {
+        mCache.setCachePolicy("a", new TileCachePolicy(20 * MB, 60 * MB));
+        assertEquals(20 * MB, mCache.getCachePolicy("a").getMemoryQuota());
+        assertEquals(12 * MB, MapTileCache.sSizeController.getAvailableSize());
+
+        // what doesn't fit anymore is lowered instead of refused
+        mCache.setCachePolicy("b", new TileCachePolicy(20 * MB, 60 * MB).setPinned(true));
+        final TileCachePolicy b = mCache.getCachePolicy("b");
+        assertEquals(12 * MB, b.getMemoryQuota());
+        assertEquals(40 * MB, b.getDiskQuota());
+        assertTrue(b.isPinned());
+        assertEquals(0, MapTileCache.sSizeController.getAvailableSize());
+
+        // replacing a policy frees its own quota first
+        mCache.setCachePolicy("a", new TileCachePolicy(10 * MB, 10 * MB));
+        assertEquals(10 * MB, mCache.getCachePolicy("a").getMemoryQuota());
+
+        mCache.setCachePolicy("a", null);
+        assertNull(mCache.getCachePolicy("a"));
+        assertEquals(20 * MB, MapTileCache.sSizeController.getAvailableSize());
+    }
+}
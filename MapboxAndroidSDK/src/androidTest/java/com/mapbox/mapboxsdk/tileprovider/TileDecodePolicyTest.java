@@ -0,0 +1,61 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.tileprovider.tilesource.TileLayer;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+
+import java.util.Arrays;
+
+public class TileDecodePolicyTest extends InstrumentationTestCase {
+
+    public void testLayerConfig() throws Exception {
+        final TileLayer layer = new TileLayer("test", "http://example.com/{z}/{x}/{y}.png");
+        assertFalse(layer.isOpaque());
+        assertEquals(Bitmap.Config.ARGB_8888, layer.getBitmapConfig());
+
+        layer.setOpaque(true);
+        assertTrue(layer.isOpaque());
+        assertEquals(Bitmap.Config.RGB_565, layer.getBitmapConfig());
+
+        // an explicit config wins over the one picked for opacity
+        layer.setBitmapConfig(Bitmap.Config.ARGB_8888);
+        assertTrue(layer.isOpaque());
+        assertEquals(Bitmap.Config.ARGB_8888, layer.getBitmapConfig());
+
+        layer.setOpaque(false);
+        assertEquals(Bitmap.Config.ARGB_8888, layer.getBitmapConfig());
+    }
+
+    public void testBitmapOptions() throws Exception {
+        final BitmapFactory.Options options = BitmapUtils.getBitmapOptions(Bitmap.Config.RGB_565);
+        assertEquals(Bitmap.Config.RGB_565, options.inPreferredConfig);
+        assertFalse(options.inDither);
+        assertEquals(Bitmap.Config.ARGB_8888, BitmapUtils.getBitmapOptions(
+                (Bitmap.Config) null).inPreferredConfig);
+
+        // decoding mutates the options, so they're never shared
+        assertNotSame(options, BitmapUtils.getBitmapOptions(Bitmap.Config.RGB_565));
+    }
+
+    public void testCompositeConfig() throws Exception {
+        final Bitmap opaque = Bitmap.createBitmap(256, 256, Bitmap.Config.RGB_565);
+        opaque.eraseColor(Color.WHITE);
+        final Bitmap translucent = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+        assertEquals(Bitmap.Config.RGB_565, BitmapUtils.getCompositeConfig(opaque));
+        assertEquals(Bitmap.Config.ARGB_8888, BitmapUtils.getCompositeConfig(translucent));
+
+        // half transparent red over white
+        translucent.eraseColor(Color.argb(128, 255, 0, 0));
+        final Bitmap composite = BitmapUtils.compositeBitmaps(Bitmap.createBitmap(256, 256,
+                BitmapUtils.getCompositeConfig(opaque)), Arrays.asList(opaque, translucent));
+        assertEquals(Bitmap.Config.RGB_565, composite.getConfig());
+        final int pixel = composite.getPixel(128, 128);
+        assertEquals(255, Color.red(pixel), 8);
+        assertEquals(127, Color.green(pixel), 8);
+        assertEquals(127, Color.blue(pixel), 8);
+    }
+}
@@ -0,0 +1,99 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.test.InstrumentationTestCase;
+
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+public class TileExpirationTest extends InstrumentationTestCase {
+
+    private static final long NOW = 1400000000000L;
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static Response.Builder response(final int code) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("http://example.com/1/2/3.png").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code);
+    }
+
+    public void testFromResponse() throws Exception {
+        final TileExpiration maxAge = TileExpiration.fromResponse(response(200)
+                .header("Cache-Control", "max-age=7200")
+                .header("ETag", "\"abc\"")
+                .build(), NOW);
+        assertEquals(NOW + 2 * HOUR, maxAge.getExpiresAt());
+        assertEquals("\"abc\"", maxAge.getETag());
+        assertNull(maxAge.getLastModified());
+        assertTrue(maxAge.hasValidators());
+
+        // Expires is measured against the server's Date
+        final TileExpiration expires = TileExpiration.fromResponse(response(200)
+                .header("Date", "Thu, 01 Jan 2015 00:00:00 GMT")
+                .header("Expires", "Thu, 01 Jan 2015 03:00:00 GMT")
+                .header("Last-Modified", "Wed, 31 Dec 2014 00:00:00 GMT")
+                .build(), NOW);
+        assertEquals(NOW + 3 * HOUR, expires.getExpiresAt());
+        assertEquals("Wed, 31 Dec 2014 00:00:00 GMT", expires.getLastModified());
+
+        final TileExpiration forever = TileExpiration.fromResponse(response(200).build(), NOW);
+        assertEquals(0, forever.getExpiresAt());
+        assertFalse(forever.hasValidators());
+    }
+
+    public void testTilesAreFreshForAMinimumTime() throws Exception {
+        final String[] headers = {"no-cache", "no-store", "max-age=0", "max-age=1"};
+        for (String cacheControl : headers) {
+            final TileExpiration expiration = TileExpiration.fromResponse(response(200)
+                    .header("Cache-Control", cacheControl).build(), NOW);
+            assertEquals(cacheControl, NOW + TileExpiration.MINIMUM_FRESHNESS,
+                    expiration.getExpiresAt());
+        }
+
+        final TileExpiration expired = TileExpiration.fromResponse(response(200)
+                .header("Date", "Thu, 01 Jan 2015 00:00:00 GMT")
+                .header("Expires", "Wed, 31 Dec 2014 00:00:00 GMT")
+                .build(), NOW);
+        assertEquals(NOW + TileExpiration.MINIMUM_FRESHNESS, expired.getExpiresAt());
+    }
+
+    public void testRevalidated() throws Exception {
+        final TileExpiration cached = new TileExpiration(NOW, "\"abc\"", "yesterday");
+
+        // a 304 without validators keeps the known ones
+        final TileExpiration notModified = TileExpiration.fromResponse(response(304)
+                .header("Cache-Control", "max-age=7200").build(), NOW);
+        final TileExpiration revalidated = cached.revalidated(notModified, NOW);
+        assertEquals(NOW + 2 * HOUR, revalidated.getExpiresAt());
+        assertEquals("\"abc\"", revalidated.getETag());
+        assertEquals("yesterday", revalidated.getLastModified());
+        assertEquals(1, revalidated.getNotModifiedCount());
+
+        // new validators replace the known ones
+        final TileExpiration replaced = cached.revalidated(
+                new TileExpiration(NOW + HOUR, "\"def\"", null), NOW);
+        assertEquals("\"def\"", replaced.getETag());
+        assertEquals("yesterday", replaced.getLastModified());
+    }
+
+    public void testRepeatedNotModifiedBacksOff() throws Exception {
+        final TileExpiration noCache = TileExpiration.fromResponse(response(304)
+                .header("Cache-Control", "no-cache").build(), NOW);
+        TileExpiration expiration = new TileExpiration(NOW, "\"abc\"", null);
+        long freshness = TileExpiration.MINIMUM_FRESHNESS;
+        for (int i = 1; i <= 10; i++) {
+            expiration = expiration.revalidated(noCache, NOW);
+            freshness = Math.min(freshness * 2, TileExpiration.MAXIMUM_BACKOFF);
+            assertEquals(i, expiration.getNotModifiedCount());
+            assertEquals(NOW + freshness, expiration.getExpiresAt());
+        }
+        assertEquals(NOW + TileExpiration.MAXIMUM_BACKOFF, expiration.getExpiresAt());
+
+        // a full download starts over
+        final TileExpiration downloaded = TileExpiration.fromResponse(response(200)
+                .header("Cache-Control", "no-cache").build(), NOW);
+        assertEquals(0, downloaded.getNotModifiedCount());
+        assertEquals(NOW + TileExpiration.MINIMUM_FRESHNESS, downloaded.getExpiresAt());
+    }
+}
@@ -0,0 +1,57 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.graphics.Bitmap;
+import android.test.InstrumentationTestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+public class TileWorkingSetTest extends InstrumentationTestCase {
+
+    public void testParseKey() throws Exception {
+        final MapTile tile = TileWorkingSet.parseKey(
+                new MapTile("mapbox.streets", 3, 4, 5).getCacheKey());
+        assertNotNull(tile);
+        assertEquals("mapbox.streets", tile.getLayerCacheKey());
+        assertEquals(3, tile.getZ());
+        assertEquals(4, tile.getX());
+        assertEquals(5, tile.getY());
+
+        // layer keys may contain slashes themselves
+        final MapTile nested = TileWorkingSet.parseKey("http://example.com/tiles/12/654/1583");
+        assertEquals("http://example.com/tiles", nested.getLayerCacheKey());
+        assertEquals(new MapTile(12, 654, 1583), nested);
+
+        assertEquals(new MapTile(0, 0, 0), TileWorkingSet.parseKey("/0/0/0"));
+
+        assertNull(TileWorkingSet.parseKey("4/5"));
+        assertNull(TileWorkingSet.parseKey("layer/a/4/5"));
+        assertNull(TileWorkingSet.parseKey("layer/3/4/"));
+        assertNull(TileWorkingSet.parseKey(""));
+    }
+
+    public void testRead() throws Exception {
+        final File file = File.createTempFile("working_set", null);
+        try {
+            assertTrue(new TileWorkingSet(new File(file.getPath() + ".missing")).read().isEmpty());
+
+            final FileWriter writer = new FileWriter(file);
+            writer.write("RGB_565\tlayer/1/0/0\n");
+            writer.write("no tab\n");
+            writer.write("\tlayer/1/1/0\n");
+            writer.write("NOT_A_CONFIG\tlayer/1/1/1\n");
+            writer.close();
+
+            final List<TileWorkingSet.Entry> entries = new TileWorkingSet(file).read();
+            assertEquals(3, entries.size());
+            assertEquals("layer/1/0/0", entries.get(0).key);
+            assertEquals(Bitmap.Config.RGB_565, entries.get(0).config);
+            assertEquals("layer/1/1/0", entries.get(1).key);
+            assertNull(entries.get(1).config);
+            assertNull(entries.get(2).config);
+        } finally {
+            file.delete();
+        }
+    }
+}
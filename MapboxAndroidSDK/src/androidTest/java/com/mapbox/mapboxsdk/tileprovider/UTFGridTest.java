@@ -0,0 +1,60 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.test.InstrumentationTestCase;
+
+import org.json.JSONException;
+
+public class UTFGridTest extends InstrumentationTestCase {
+
+    // '#' stands for the third key, as '"' is skipped
+    private static final String GRID = "{\"grid\":[\"  !!\",\"  !!\",\"##  \",\"##  \"],"
+            + "\"keys\":[\"\",\"1\",\"2\"],"
+            + "\"data\":{\"1\":{\"name\":\"One\"},\"2\":{\"name\":\"Two\"}}}";
+
+    public void testDecode() throws Exception {
+        assertEquals(0, UTFGrid.decode(' '));
+        assertEquals(1, UTFGrid.decode('!'));
+        assertEquals(2, UTFGrid.decode('#'));
+        assertEquals(59, UTFGrid.decode(']'));
+    }
+
+    public void testHitTest() throws Exception {
+        final UTFGrid grid = UTFGrid.parse(GRID);
+        assertEquals(4, grid.getDimension());
+        assertFalse(grid.isEmpty());
+
+        assertEquals(UTFGrid.NO_FEATURE, grid.getKeyIndex(0.1, 0.1));
+        assertNull(grid.getKey(grid.getKeyIndex(0.1, 0.1)));
+
+        final int one = grid.getKeyIndex(0.8, 0.3);
+        assertEquals("1", grid.getKey(one));
+        assertEquals("One", grid.getData(one).getString("name"));
+
+        final int two = grid.getKeyIndex(0.2, 0.9);
+        assertEquals("2", grid.getKey(two));
+        assertEquals("Two", grid.getData(two).getString("name"));
+
+        // keys are shared between grids
+        assertSame(grid.getKey(one), UTFGrid.parse(GRID).getKey(one));
+
+        assertEquals(UTFGrid.NO_FEATURE, grid.getKeyIndex(1, 0.5));
+        assertEquals(UTFGrid.NO_FEATURE, grid.getKeyIndex(-0.1, 0.5));
+        assertTrue(grid.getByteSize() > 16 * 4);
+    }
+
+    public void testMalformedRow() throws Exception {
+        try {
+            UTFGrid.parse("{\"grid\":[\" !\",\"\\u0001!\"],\"keys\":[\"\",\"1\"]}");
+            fail("A control character in a row is malformed");
+        } catch (final JSONException e) {
+            // expected
+        }
+    }
+
+    public void testEmptyGrid() throws Exception {
+        final UTFGrid grid = UTFGrid.parse("{\"grid\":[\"  \",\"  \"],\"keys\":[\"\"]}");
+        assertTrue(grid.isEmpty());
+        assertEquals(UTFGrid.NO_FEATURE, grid.getKeyIndex(0.5, 0.5));
+        assertTrue(grid.getByteSize() < UTFGrid.parse(GRID).getByteSize());
+    }
+}
@@ -0,0 +1,77 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+
+public class UTFGridProviderTest extends InstrumentationTestCase {
+
+    private static final String URL = "http://example.com/{z}/{x}/{y}.grid.json";
+
+    /**
+     * A provider whose loaders never run, so requests stay pending.
+     */
+    private static class IdleProvider extends UTFGridProvider {
+        int loaders;
+
+        IdleProvider() {
+            super(URL);
+        }
+
+        @Override
+        protected Runnable getTileLoader() {
+            loaders++;
+            return new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+        }
+    }
+
+    public void testPendingGridsAreRequestedOnce() throws Exception {
+        final IdleProvider provider = new IdleProvider();
+        final MapTile tile = new MapTile(provider.getCacheKey(), 3, 4, 5);
+        assertTrue(provider.requestGrid(tile, null));
+        assertTrue(provider.requestGrid(tile, null));
+        assertTrue(provider.requestGrid(new MapTile(provider.getCacheKey(), 3, 4, 5), null));
+        assertEquals(1, provider.loaders);
+
+        assertTrue(provider.requestGrid(new MapTile(provider.getCacheKey(), 3, 4, 6), null));
+        assertEquals(2, provider.loaders);
+        provider.detach();
+    }
+
+    public void testFailuresExpire() throws Exception {
+        final UTFGridProvider provider = new UTFGridProvider(URL);
+        final long now = 1000000;
+        provider.addFailed("a", now);
+        assertTrue(provider.hasFailed("a", now));
+        assertTrue(provider.hasFailed("a", now + UTFGridProvider.FAILED_GRID_RETRY_DELAY - 1));
+        assertFalse(provider.hasFailed("b", now));
+
+        assertFalse(provider.hasFailed("a", now + UTFGridProvider.FAILED_GRID_RETRY_DELAY));
+        // and forgotten
+        assertFalse(provider.hasFailed("a", now));
+
+        provider.addFailed("b", now);
+        provider.retryFailed();
+        assertFalse(provider.hasFailed("b", now));
+        provider.detach();
+    }
+
+    public void testExpiredFailuresMakeRoom() throws Exception {
+        final UTFGridProvider provider = new UTFGridProvider(URL);
+        final long now = 1000000;
+        for (int i = 0; i < 255; i++) {
+            provider.addFailed("old" + i, now);
+        }
+        provider.addFailed("recent", now + UTFGridProvider.FAILED_GRID_RETRY_DELAY / 2);
+        // full: the expired ones are dropped, the one still failing is kept
+        final long later = now + UTFGridProvider.FAILED_GRID_RETRY_DELAY;
+        provider.addFailed("new", later);
+        assertTrue(provider.hasFailed("recent", later));
+        assertTrue(provider.hasFailed("new", later));
+        provider.detach();
+    }
+}
@@ -0,0 +1,46 @@
+package com.mapbox.mapboxsdk.util;
+
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import com.cocoahero.android.geojson.FeatureCollection;
+import com.cocoahero.android.geojson.GeoJSON;
+import com.mapbox.mapboxsdk.overlay.PathOverlay;
+import com.mapbox.mapboxsdk.overlay.PolygonOverlay;
+
+import java.util.ArrayList;
+
+public class DataLoadingUtilsTest extends InstrumentationTestCase {
+
+    private static final String SQUARE_WITH_HOLE = "[[[0,0],[0,10],[10,10],[10,0],[0,0]],"
+            + "[[2,2],[2,8],[8,8],[8,2],[2,2]]]";
+
+    private static String feature(final String type, final String coordinates,
+            final String properties) {
+        return "{\"type\":\"Feature\",\"properties\":" + properties + ",\"geometry\":{\"type\":\""
+                + type + "\",\"coordinates\":" + coordinates + "}}";
+    }
+
+    public void testPolygonsShareOneOverlay() throws Exception {
+        final String json = "{\"type\":\"FeatureCollection\",\"features\":["
+                + feature("Polygon", SQUARE_WITH_HOLE, "{\"fill\":\"#ff0000\"}") + ","
+                + feature("LineString", "[[0,0],[1,1]]", "{}") + ","
+                + feature("MultiPolygon", "[" + SQUARE_WITH_HOLE + ",[[[20,20],[20,30],[30,30]]]]",
+                "{\"fill\":\"#00ff00\",\"fill-opacity\":0.5}") + ","
+                + feature("Polygon", "[[[40,40],[40,50],[50,50]]]", "{}")
+                + "]}";
+        final FeatureCollection features = (FeatureCollection) GeoJSON.parse(json);
+        final ArrayList<Object> objects =
+                DataLoadingUtils.createUIObjectsFromGeoJSONObjects(features, null);
+
+        assertEquals(2, objects.size());
+        assertTrue(objects.get(0) instanceof PolygonOverlay);
+        assertTrue(objects.get(1) instanceof PathOverlay);
+        final PolygonOverlay polygons = (PolygonOverlay) objects.get(0);
+        assertEquals(4, polygons.getPolygonCount());
+        assertEquals(Color.RED, polygons.getPolygonColor(0));
+        assertEquals(Color.argb(128, 0, 255, 0), polygons.getPolygonColor(1));
+        assertEquals(Color.argb(128, 0, 255, 0), polygons.getPolygonColor(2));
+        assertEquals(polygons.getFillPaint().getColor(), polygons.getPolygonColor(3));
+    }
+}
@@ -0,0 +1,178 @@
+package com.mapbox.mapboxsdk.util;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+public class GeoJSONStreamReaderTest extends InstrumentationTestCase {
+
+    private static final String TAG = "GeoJSONStreamReaderTest";
+
+    /**
+     * Keeps what the reader hands out, which it reuses.
+     */
+    private static class Collector implements GeoJSONStreamReader.FeatureListener {
+        final ArrayList<String> types = new ArrayList<String>();
+        final ArrayList<String> titles = new ArrayList<String>();
+        final ArrayList<double[]> coordinates = new ArrayList<double[]>();
+        final ArrayList<int[]> lineEnds = new ArrayList<int[]>();
+        final ArrayList<int[]> groupEnds = new ArrayList<int[]>();
+
+        @Override
+        public void onFeature(final GeoJSONStreamReader.StreamedFeature feature)
+                throws JSONException {
+            types.add(feature.getGeometryType());
+            titles.add(feature.getProperties().optString("title"));
+            final double[] coords = new double[feature.getCoordinateCount() * 2];
+            System.arraycopy(feature.getCoordinates(), 0, coords, 0, coords.length);
+            coordinates.add(coords);
+            final int[] lines = new int[feature.getLineCount()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = feature.getLineEnd(i);
+            }
+            lineEnds.add(lines);
+            final int[] groups = new int[feature.getGroupCount()];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = feature.getGroupEnd(i);
+            }
+            groupEnds.add(groups);
+        }
+    }
+
+    private static Collector read(final String json) throws Exception {
+        final Collector collector = new Collector();
+        new GeoJSONStreamReader().read(new ByteArrayInputStream(json.getBytes("UTF-8")),
+                collector);
+        return collector;
+    }
+
+    public void testGeometries() throws Exception {
+        final Collector c = read("{\"type\":\"FeatureCollection\",\"features\":["
+                // geometry before type and properties, with an altitude
+                + "{\"geometry\":{\"coordinates\":[1.5,2.5,100],\"type\":\"Point\"},"
+                + "\"type\":\"Feature\",\"properties\":{\"title\":\"a\",\"n\":{\"x\":[1,2]}}},"
+                + "{\"type\":\"Feature\",\"properties\":null,\"geometry\":{\"type\":\"LineString\","
+                + "\"coordinates\":[[0,0],[1,1],[2,2]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Polygon\",\"coordinates\":"
+                + "[[[0,0],[0,10],[10,10],[0,0]],[[1,1],[1,2],[2,2],[1,1]]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiPolygon\",\"coordinates\":"
+                + "[[[[0,0],[0,1],[1,1],[0,0]]],[[[5,5],[5,6],[6,6],[5,5]],[[5,5],[5,6],[6,6]]]]}},"
+                + "{\"type\":\"Feature\",\"properties\":{},\"geometry\":null}"
+                + "]}");
+
+        assertEquals(5, c.types.size());
+        assertEquals("Point", c.types.get(0));
+        assertEquals("a", c.titles.get(0));
+        assertEquals(1.5, c.coordinates.get(0)[0]);
+        assertEquals(2.5, c.coordinates.get(0)[1]);
+        assertEquals(0, c.lineEnds.get(0).length);
+
+        assertEquals("LineString", c.types.get(1));
+        assertEquals("", c.titles.get(1));
+        assertEquals(6, c.coordinates.get(1).length);
+        assertEquals(1, c.lineEnds.get(1).length);
+        assertEquals(3, c.lineEnds.get(1)[0]);
+        assertEquals(0, c.groupEnds.get(1).length);
+
+        assertEquals("Polygon", c.types.get(2));
+        assertEquals(2, c.lineEnds.get(2).length);
+        assertEquals(4, c.lineEnds.get(2)[0]);
+        assertEquals(8, c.lineEnds.get(2)[1]);
+        assertEquals(1, c.groupEnds.get(2).length);
+        assertEquals(2, c.groupEnds.get(2)[0]);
+
+        assertEquals("MultiPolygon", c.types.get(3));
+        assertEquals(3, c.lineEnds.get(3).length);
+        assertEquals(2, c.groupEnds.get(3).length);
+        assertEquals(1, c.groupEnds.get(3)[0]);
+        assertEquals(3, c.groupEnds.get(3)[1]);
+
+        assertNull(c.types.get(4));
+        assertEquals(0, c.coordinates.get(4).length);
+    }
+
+    public void testBareGeometry() throws Exception {
+        final Collector c = read("{\"type\":\"MultiLineString\",\"coordinates\":"
+                + "[[[0,0],[1,1]],[[2,2],[3,3],[4,4]]]}");
+        assertEquals(1, c.types.size());
+        assertEquals("MultiLineString", c.types.get(0));
+        assertEquals(2, c.lineEnds.get(0)[0]);
+        assertEquals(5, c.lineEnds.get(0)[1]);
+        assertEquals(1, c.groupEnds.get(0).length);
+    }
+
+    public void testPropertiesThatAreNotObjects() throws Exception {
+        final Collector c = read("{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":[1,{\"title\":\"a\"}],"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]}},"
+                + "{\"type\":\"Feature\",\"properties\":\"b\","
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[3,4]}},"
+                + "{\"type\":\"Feature\",\"properties\":{\"title\":\"c\"},"
+                + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[5,6]}}"
+                + "]}");
+        assertEquals(3, c.types.size());
+        assertEquals("", c.titles.get(0));
+        assertEquals("", c.titles.get(1));
+        assertEquals("c", c.titles.get(2));
+        assertEquals(3.0, c.coordinates.get(1)[0]);
+    }
+
+    /**
+     * Streams a large generated FeatureCollection, which is never held as a whole.
+     */
+    public void testReadTime() throws Exception {
+        final int features = 20000;
+        final InputStream in = new InputStream() {
+            private byte[] mChunk = "{\"type\":\"FeatureCollection\",\"features\":[".getBytes();
+            private int mPosition = 0;
+            private int mFeature = 0;
+
+            @Override
+            public int read() {
+                if (mPosition == mChunk.length) {
+                    if (mFeature > features) {
+                        return -1;
+                    }
+                    final StringBuilder sb = new StringBuilder();
+                    if (mFeature == features) {
+                        sb.append("]}");
+                    } else {
+                        if (mFeature > 0) {
+                            sb.append(',');
+                        }
+                        sb.append("{\"type\":\"Feature\",\"properties\":{\"id\":").append(mFeature)
+                                .append("},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+                        for (int i = 0; i < 50; i++) {
+                            sb.append(i > 0 ? ",[" : "[").append(mFeature * 1e-4 + i * 1e-5)
+                                    .append(',').append(i * 1e-5).append(']');
+                        }
+                        sb.append("]}}");
+                    }
+                    mFeature++;
+                    mChunk = sb.toString().getBytes();
+                    mPosition = 0;
+                }
+                return mChunk[mPosition++];
+            }
+        };
+        final int[] count = new int[2];
+        final long start = System.nanoTime();
+        new GeoJSONStreamReader().read(in, new GeoJSONStreamReader.FeatureListener() {
+            @Override
+            public void onFeature(final GeoJSONStreamReader.StreamedFeature feature) {
+                count[0]++;
+                count[1] += feature.getCoordinateCount();
+            }
+        });
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        assertEquals(features, count[0]);
+        assertEquals(features * 50, count[1]);
+        Log.i(TAG, features + " features, " + count[1] + " coordinates streamed in " + elapsed
+                + "ms");
+    }
+}
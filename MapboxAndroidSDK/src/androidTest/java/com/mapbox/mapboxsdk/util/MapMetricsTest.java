@@ -0,0 +1,124 @@
+package com.mapbox.mapboxsdk.util;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+public class MapMetricsTest extends InstrumentationTestCase {
+
+    private static final String TAG = "MapMetricsTest";
+
+    @Override
+    protected void tearDown() throws Exception {
+        MapMetrics.setEnabled(false);
+        MapMetrics.setListener(null);
+        MapMetrics.reset();
+        super.tearDown();
+    }
+
+    public void testDisabledRecordsNothing() throws Exception {
+        MapMetrics.setEnabled(false);
+        MapMetrics.reset();
+        MapMetrics.increment(MapMetrics.Counter.MEMORY_HIT);
+        MapMetrics.record(MapMetrics.Measure.PENDING_QUEUE_DEPTH, 10);
+        final long start = MapMetrics.start();
+        assertEquals(0, start);
+        MapMetrics.frameDrawn(start);
+        final InputStream in = new ByteArrayInputStream(new byte[16]);
+        assertSame(in, MapMetrics.countBytes(in));
+
+        final MapMetrics.Snapshot snapshot = MapMetrics.getSnapshot();
+        assertEquals(0, snapshot.getCount(MapMetrics.Counter.MEMORY_HIT));
+        assertEquals(0, snapshot.getMeasure(MapMetrics.Measure.PENDING_QUEUE_DEPTH).getCount());
+        assertEquals(0, snapshot.getMeasure(MapMetrics.Measure.FRAME_TIME).getCount());
+    }
+
+    public void testCountersAndHistograms() throws Exception {
+        MapMetrics.setEnabled(true);
+        MapMetrics.reset();
+        for (int i = 0; i < 3; i++) {
+            MapMetrics.increment(MapMetrics.Counter.MEMORY_HIT);
+        }
+        MapMetrics.increment(MapMetrics.Counter.MEMORY_MISS);
+        for (int i = 1; i <= 100; i++) {
+            MapMetrics.record(MapMetrics.Measure.DOWNLOAD_LATENCY, i);
+        }
+        final InputStream in = MapMetrics.countBytes(new ByteArrayInputStream(new byte[1000]));
+        final byte[] buffer = new byte[300];
+        while (in.read(buffer) > 0) {
+            in.read();
+        }
+
+        final MapMetrics.Snapshot snapshot = MapMetrics.getSnapshot();
+        assertEquals(0.75, snapshot.getMemoryHitRate(), 1e-9);
+        assertEquals(0.0, snapshot.getDiskHitRate(), 1e-9);
+        assertEquals(1000, snapshot.getCount(MapMetrics.Counter.BYTES_FETCHED));
+
+        final MapMetrics.HistogramSnapshot latency =
+                snapshot.getMeasure(MapMetrics.Measure.DOWNLOAD_LATENCY);
+        assertEquals(100, latency.getCount());
+        assertEquals(5050, latency.getSum());
+        assertEquals(100, latency.getMax());
+        assertEquals(1, latency.getBucketCount(1));
+        assertEquals(2, latency.getBucketCount(2));
+        assertEquals(37, latency.getBucketCount(7));
+        // 50 falls in the bucket of 32 to 63, a percentile is within a factor of two
+        assertEquals(63, latency.getPercentile(50));
+        assertEquals(100, latency.getPercentile(100));
+    }
+
+    public void testListenerAndOverlays() throws Exception {
+        MapMetrics.setEnabled(true);
+        MapMetrics.reset();
+        final MapMetrics.Snapshot[] reported = new MapMetrics.Snapshot[1];
+        final int[] reports = new int[1];
+        MapMetrics.setListener(new MapMetrics.MetricsListener() {
+            @Override
+            public void onMetrics(final MapMetrics.Snapshot snapshot) {
+                reported[0] = snapshot;
+                reports[0]++;
+            }
+        }, 60000);
+
+        for (int frame = 0; frame < 10; frame++) {
+            final long frameStart = MapMetrics.start();
+            final long start = MapMetrics.start();
+            MapMetrics.stopOverlay(this, start);
+            MapMetrics.frameDrawn(frameStart);
+        }
+        // the interval is far longer than the frames, so only the first one is reported
+        assertEquals(1, reports[0]);
+        assertEquals(1, reported[0].getMeasure(MapMetrics.Measure.FRAME_TIME).getCount());
+
+        final MapMetrics.Snapshot snapshot = MapMetrics.getSnapshot();
+        assertEquals(10, snapshot.getMeasure(MapMetrics.Measure.FRAME_TIME).getCount());
+        assertEquals(10, snapshot.getOverlayDrawTimes().get(getClass().getName()).getCount());
+        Log.i(TAG, snapshot.toString());
+    }
+
+    public void testOverhead() throws Exception {
+        MapMetrics.setEnabled(false);
+        final int calls = 1000000;
+        long time = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            final long start = MapMetrics.start();
+            MapMetrics.increment(MapMetrics.Counter.MEMORY_HIT);
+            MapMetrics.stopOverlay(this, start);
+        }
+        final long disabled = System.nanoTime() - time;
+
+        MapMetrics.setEnabled(true);
+        time = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            final long start = MapMetrics.start();
+            MapMetrics.increment(MapMetrics.Counter.MEMORY_HIT);
+            MapMetrics.stopOverlay(this, start);
+        }
+        final long enabled = System.nanoTime() - time;
+        Log.i(TAG, "per call: disabled " + disabled / calls + "ns, enabled " + enabled / calls
+                + "ns");
+        assertEquals(calls, MapMetrics.getSnapshot().getCount(MapMetrics.Counter.MEMORY_HIT));
+    }
+}
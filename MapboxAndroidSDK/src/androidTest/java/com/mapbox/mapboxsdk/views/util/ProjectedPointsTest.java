@@ -0,0 +1,53 @@
+package com.mapbox.mapboxsdk.views.util;
+
+import android.graphics.PointF;
+import android.test.InstrumentationTestCase;
+
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+
+public class ProjectedPointsTest extends InstrumentationTestCase {
+
+    public void testSkipsRepeatedPoints() throws Exception {
+        final ProjectedPoints points = new ProjectedPoints(1);
+        assertTrue(points.add(45, 3));
+        assertFalse(points.add(45, 3));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(points.add(45 + i * 0.001, 3.001));
+        }
+        assertEquals(101, points.size());
+        final double[] xy = Projection.latLongToWorldXY(45, 3, null);
+        assertEquals(xy[0], points.getX(0));
+        assertEquals(xy[1], points.getY(0));
+        points.clear();
+        assertTrue(points.isEmpty());
+    }
+
+    /**
+     * Points a few centimeters apart must stay apart at the deepest zoom level, which float map
+     * pixels at that level can't do.
+     */
+    public void testPrecisionAtHighZoom() throws Exception {
+        final int zoom = TileLayerConstants.MAXIMUM_ZOOMLEVEL;
+        final double mapSize = Projection.mapSize(zoom);
+        final ProjectedPoints points = new ProjectedPoints();
+        for (int i = 0; i < 10; i++) {
+            points.add(45, 3 + i * 0.0000005);
+        }
+        int distinctFloat = 0;
+        float lastFloat = Float.NaN;
+        double lastDouble = Double.NaN;
+        for (int i = 0; i < points.size(); i++) {
+            final PointF pixel = Projection.latLongToPixelXY(45, 3 + i * 0.0000005, zoom, null);
+            if (pixel.x != lastFloat) {
+                distinctFloat++;
+            }
+            lastFloat = pixel.x;
+            final double x = points.getX(i) * mapSize;
+            if (i > 0) {
+                assertTrue(x - lastDouble > 0.5);
+            }
+            lastDouble = x;
+        }
+        assertTrue(distinctFloat < points.size());
+    }
+}
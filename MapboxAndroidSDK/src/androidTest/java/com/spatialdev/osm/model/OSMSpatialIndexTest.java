@@ -0,0 +1,64 @@
+package com.spatialdev.osm.model;
+
+import android.test.InstrumentationTestCase;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+public class OSMSpatialIndexTest extends InstrumentationTestCase {
+
+    private OSMDataSet ds;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        InputStream in = getInstrumentation().getTargetContext().getResources().getAssets().open("test/osm/ballard_relation.osm");
+        ds = OSMXmlParser.parseFromInputStream(in);
+    }
+
+    public void testWholeWorld() throws Exception {
+        OSMSpatialIndex index = ds.getSpatialIndex();
+        assertEquals(ds.getWayCount() + ds.getStandaloneNodesCount(), index.size());
+        ArrayList<OSMElement> result = new ArrayList<>();
+        index.query(0, 0, 1, 1, result);
+        assertEquals(index.size(), new HashSet<>(result).size());
+    }
+
+    public void testQueryMatchesBruteForce() throws Exception {
+        OSMSpatialIndex index = ds.getSpatialIndex();
+        OSMWay fourBs = ds.getWays().get((long) 234714287);
+        double width = fourBs.getMaxX() - fourBs.getMinX();
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            double x = fourBs.getMinX() + (random.nextDouble() - 0.5) * width * 200;
+            double y = fourBs.getMinY() + (random.nextDouble() - 0.5) * width * 200;
+            double size = random.nextDouble() * width * 20;
+            ArrayList<OSMElement> result = new ArrayList<>();
+            index.query(x, y, x + size, y + size, result);
+            HashSet<OSMElement> expected = new HashSet<>();
+            for (OSMWay w : ds.getWays().values()) {
+                if (w.getMinX() <= x + size && w.getMaxX() >= x
+                        && w.getMinY() <= y + size && w.getMaxY() >= y) {
+                    expected.add(w);
+                }
+            }
+            assertEquals(expected, new HashSet<>(result));
+        }
+    }
+
+    public void testElementsById() throws Exception {
+        OSMElementMap<OSMNode> nodes = new OSMElementMap<>(4);
+        for (long id = -50; id < 50; id++) {
+            nodes.put(new OSMNode(id * 1000003L, 0, 0, 1, 1, null));
+        }
+        assertEquals(100, nodes.size());
+        assertEquals(-50 * 1000003L, nodes.values().iterator().next().getId());
+        assertEquals(7 * 1000003L, nodes.get(7 * 1000003L).getId());
+        assertNull(nodes.get(7L));
+        assertNotNull(nodes.remove(7 * 1000003L));
+        assertNull(nodes.get(7 * 1000003L));
+        assertEquals(99, nodes.size());
+        assertEquals(99, nodes.entrySet().size());
+    }
+}
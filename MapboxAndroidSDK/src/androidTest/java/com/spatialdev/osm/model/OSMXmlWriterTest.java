@@ -10,10 +10,16 @@ import com.spatialdev.osm.model.OSMWay;
 import com.spatialdev.osm.model.OSMXmlParser;
 import com.spatialdev.osm.model.OSMXmlWriter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created by Nicholas Hallahan on 1/16/15.
@@ -107,4 +113,33 @@ public class OSMXmlWriterTest extends InstrumentationTestCase {
         String xml = OSMXmlWriter.elementToString(spdv, USER);
         assertEquals(SPDV_MOD_TAGS_XML, xml);
     }
+
+    public void testEscapingTagValues() throws Exception {
+        InputStream in = getInstrumentation().getTargetContext().getResources().getAssets().open("test/osm/spatialdev_small.osm");
+        OSMDataSet ds = OSMXmlParser.parseFromInputStream(in);
+
+        OSMNode spdv = ds.getNodes().get(Long.valueOf("3203542408"));
+        spdv.addOrEditTag("note", "a\tb\nc\rd\u0000e\u001bf\uFFFFg <&> \"h\"");
+
+        String xml = OSMXmlWriter.elementToString(spdv, USER);
+        assertTrue(xml, xml.contains(
+                "v=\"a&#9;b&#10;c&#13;defg &lt;&amp;&gt; &quot;h&quot;\""));
+    }
+
+    public void testWriteBallardWaysToGzipStream() throws Exception {
+        InputStream in = getInstrumentation().getTargetContext().getResources().getAssets().open("test/osm/ballard_relation.osm");
+        OSMDataSet ds = OSMXmlParser.parseFromInputStream(in);
+        Collection<OSMWay> ways = ds.getWays().values();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OSMXmlWriter.writeElements(ways, USER, out, true);
+
+        Reader reader = new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8");
+        StringWriter xml = new StringWriter();
+        char[] buffer = new char[1024];
+        for (int read; (read = reader.read(buffer)) != -1; ) {
+            xml.write(buffer, 0, read);
+        }
+        assertEquals(OSMXmlWriter.elementsToString(ways, USER), xml.toString());
+    }
 }
@@ -0,0 +1,129 @@
+package com.mapbox.mapboxsdk.events;
+
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.MapView;
+
+/**
+ * Where the camera of a map was at the end of a frame in which it moved, and what changed since
+ * the last event. The event can't change, so it may be kept and read on any thread.
+ */
+public final class CameraEvent implements MapEvent {
+
+    /** The map was scrolled. */
+    public static final int SCROLL = 1;
+    /** The map was zoomed. */
+    public static final int ZOOM = 1 << 1;
+    /** The map was rotated. */
+    public static final int ROTATE = 1 << 2;
+    /** The map came to rest after the user let go of it. */
+    public static final int IDLE = 1 << 3;
+
+    private final MapView mSource;
+    private final LatLng mCenter;
+    private final float mZoomLevel;
+    private final float mBearing;
+    private final BoundingBox mBoundingBox;
+    private final int mScrollX;
+    private final int mScrollY;
+    private final int mChanges;
+    private final boolean mUserAction;
+    private final int mCoalescedCount;
+
+    public CameraEvent(final MapView source, final LatLng center, final float zoomLevel,
+            final float bearing, final BoundingBox boundingBox, final int scrollX,
+            final int scrollY, final int changes, final boolean userAction,
+            final int coalescedCount) {
+        mSource = source;
+        mCenter = center;
+        mZoomLevel = zoomLevel;
+        mBearing = bearing;
+        mBoundingBox = boundingBox;
+        mScrollX = scrollX;
+        mScrollY = scrollY;
+        mChanges = changes;
+        mUserAction = userAction;
+        mCoalescedCount = coalescedCount;
+    }
+
+    /**
+     * Return the map which generated this event. Unlike the rest of the event, the map may only
+     * be used on the UI thread.
+     */
+    public MapView getSource() {
+        return mSource;
+    }
+
+    public LatLng getCenter() {
+        return mCenter;
+    }
+
+    public float getZoomLevel() {
+        return mZoomLevel;
+    }
+
+    /**
+     * @return the rotation of the map, in degrees
+     */
+    public float getBearing() {
+        return mBearing;
+    }
+
+    /**
+     * @return the area in view, or null if the map wasn't laid out yet
+     */
+    public BoundingBox getBoundingBox() {
+        return mBoundingBox;
+    }
+
+    /**
+     * Return the x-coordinate scrolled to, in map pixels.
+     */
+    public int getScrollX() {
+        return mScrollX;
+    }
+
+    /**
+     * Return the y-coordinate scrolled to, in map pixels.
+     */
+    public int getScrollY() {
+        return mScrollY;
+    }
+
+    /**
+     * @return what changed, a combination of {@link #SCROLL}, {@link #ZOOM}, {@link #ROTATE}
+     * and {@link #IDLE}
+     */
+    public int getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return true if the change is one of {@link #SCROLL}, {@link #ZOOM}, {@link #ROTATE}
+     * or {@link #IDLE}
+     */
+    public boolean hasChanged(final int change) {
+        return (mChanges & change) != 0;
+    }
+
+    /**
+     * @return true if any of the changes was a user action (touch action).
+     */
+    public boolean getUserAction() {
+        return mUserAction;
+    }
+
+    /**
+     * @return how many changes of the camera this event stands for
+     */
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraEvent [center=" + mCenter + ", zoomLevel=" + mZoomLevel + ", bearing="
+                + mBearing + ", changes=" + mChanges + ", userAction=" + mUserAction
+                + ", coalescedCount=" + mCoalescedCount + "]";
+    }
+}
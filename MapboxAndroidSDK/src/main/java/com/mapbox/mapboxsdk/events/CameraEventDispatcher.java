@@ -0,0 +1,270 @@
+package com.mapbox.mapboxsdk.events;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.util.MapMetrics;
+import com.mapbox.mapboxsdk.views.MapView;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the camera changes of a map to its listeners, at most once for each frame. Scrolls,
+ * zooms and rotations of a frame are gathered as they happen, then on the next animation frame
+ * one {@link CameraEvent} is taken from the map and given to the {@link MapListener}s, the
+ * {@link MapView.OnCameraChangeListener} and the {@link CameraListener}s.
+ * <p/>
+ * A CameraListener added with an executor runs there, off the UI thread. It is given one event
+ * at a time, and when it falls behind, the events it missed are dropped in favour of the latest.
+ */
+public class CameraEventDispatcher implements Runnable {
+
+    private static final String TAG = "CameraEventDispatcher";
+    private static final boolean JELLY_BEAN_OR_GREATER =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+    /**
+     * How long to wait for the next frame, without Choreographer.
+     */
+    private static final long FRAME_DELAY = 16;
+
+    private final MapView mMapView;
+    private final List<MapListener> mMapListeners;
+    private final CopyOnWriteArrayList<Registration> mCameraListeners =
+            new CopyOnWriteArrayList<Registration>();
+    private MapView.OnCameraChangeListener mOnCameraChangeListener;
+
+    /**
+     * The changes since the last event, guarded by this.
+     */
+    private int mChanges;
+    private boolean mUserAction;
+    private int mChangeCount;
+    private boolean mScheduled;
+
+    /**
+     * @param mapListeners the MapListeners of the map, only used on the UI thread
+     */
+    public CameraEventDispatcher(final MapView mapView, final List<MapListener> mapListeners) {
+        mMapView = mapView;
+        mMapListeners = mapListeners;
+    }
+
+    public void setOnCameraChangeListener(final MapView.OnCameraChangeListener listener) {
+        mOnCameraChangeListener = listener;
+    }
+
+    /**
+     * @param executor where the listener is called, or null for the UI thread
+     */
+    public void addCameraListener(final CameraListener listener, final Executor executor) {
+        if (listener == null) {
+            throw new IllegalArgumentException("A camera listener can't be null");
+        }
+        for (Registration registration : mCameraListeners) {
+            if (registration.mListener == listener) {
+                return;
+            }
+        }
+        mCameraListeners.add(new Registration(listener, executor));
+    }
+
+    public void removeCameraListener(final CameraListener listener) {
+        for (Registration registration : mCameraListeners) {
+            if (registration.mListener == listener) {
+                mCameraListeners.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * @param change {@link CameraEvent#SCROLL}, {@link CameraEvent#ZOOM},
+     * {@link CameraEvent#ROTATE} or {@link CameraEvent#IDLE}
+     * @param userAction true if the change was a user action (touch action)
+     */
+    public void onCameraChange(final int change, final boolean userAction) {
+        synchronized (this) {
+            mChanges |= change;
+            mUserAction |= userAction;
+            mChangeCount++;
+            if (mScheduled) {
+                MapMetrics.increment(MapMetrics.Counter.CAMERA_CHANGES_COALESCED);
+                return;
+            }
+            mScheduled = true;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * Run {@link #run()} on the next frame.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    void scheduleFrame() {
+        if (JELLY_BEAN_OR_GREATER) {
+            mMapView.postOnAnimation(this);
+        } else {
+            mMapView.postDelayed(this, FRAME_DELAY);
+        }
+    }
+
+    /**
+     * Send the changes gathered since the last frame, on the UI thread.
+     */
+    @Override
+    public void run() {
+        final int changes;
+        final boolean userAction;
+        final int changeCount;
+        synchronized (this) {
+            changes = mChanges;
+            userAction = mUserAction;
+            changeCount = mChangeCount;
+            mChanges = 0;
+            mUserAction = false;
+            mChangeCount = 0;
+            mScheduled = false;
+        }
+        if (changes == 0 || !hasListeners(changes)) {
+            return;
+        }
+        final CameraEvent event = createEvent(changes, userAction, changeCount);
+        MapMetrics.increment(MapMetrics.Counter.CAMERA_EVENTS);
+        final long start = MapMetrics.start();
+        dispatchToMapListeners(event);
+        if (mOnCameraChangeListener != null
+                && event.hasChanged(CameraEvent.ZOOM | CameraEvent.IDLE)) {
+            final long listenerStart = MapMetrics.start();
+            mOnCameraChangeListener.onCameraChange(event.getBoundingBox(), event.getZoomLevel());
+            MapMetrics.stopListener(mOnCameraChangeListener, listenerStart);
+        }
+        for (Registration registration : mCameraListeners) {
+            registration.dispatch(event);
+        }
+        MapMetrics.stop(MapMetrics.Measure.CAMERA_DISPATCH_TIME, start);
+    }
+
+    /**
+     * Whether any listener wants an event for the changes, as taking the camera of the map
+     * isn't free.
+     */
+    private boolean hasListeners(final int changes) {
+        return !mMapListeners.isEmpty() || !mCameraListeners.isEmpty()
+                || (mOnCameraChangeListener != null
+                && (changes & (CameraEvent.ZOOM | CameraEvent.IDLE)) != 0);
+    }
+
+    /**
+     * Take the camera of the map, on the UI thread.
+     */
+    CameraEvent createEvent(final int changes, final boolean userAction, final int changeCount) {
+        return new CameraEvent(mMapView, mMapView.getCenter(), mMapView.getZoomLevel(false),
+                mMapView.getMapOrientation(), mMapView.getBoundingBox(), mMapView.getScrollX(),
+                mMapView.getScrollY(), changes, userAction, changeCount);
+    }
+
+    private void dispatchToMapListeners(final CameraEvent event) {
+        if (mMapListeners.isEmpty()) {
+            return;
+        }
+        // a listener may remove itself while being called
+        final MapListener[] listeners =
+                mMapListeners.toArray(new MapListener[mMapListeners.size()]);
+        final MapView source = event.getSource();
+        final boolean userAction = event.getUserAction();
+        if (event.hasChanged(CameraEvent.SCROLL)) {
+            final ScrollEvent scroll = new ScrollEvent(source, event.getScrollX(),
+                    event.getScrollY(), userAction);
+            for (MapListener listener : listeners) {
+                final long start = MapMetrics.start();
+                listener.onScroll(scroll);
+                MapMetrics.stopListener(listener, start);
+            }
+        }
+        if (event.hasChanged(CameraEvent.ZOOM)) {
+            final ZoomEvent zoom = new ZoomEvent(source, event.getZoomLevel(), userAction);
+            for (MapListener listener : listeners) {
+                final long start = MapMetrics.start();
+                listener.onZoom(zoom);
+                MapMetrics.stopListener(listener, start);
+            }
+        }
+        if (event.hasChanged(CameraEvent.ROTATE)) {
+            final RotateEvent rotate = new RotateEvent(source, event.getBearing(), userAction);
+            for (MapListener listener : listeners) {
+                final long start = MapMetrics.start();
+                listener.onRotate(rotate);
+                MapMetrics.stopListener(listener, start);
+            }
+        }
+    }
+
+    /**
+     * A CameraListener, and the latest event it has yet to be given when it runs on an executor.
+     */
+    private static final class Registration implements Runnable {
+        private final CameraListener mListener;
+        private final Executor mExecutor;
+        private final AtomicReference<CameraEvent> mPending = new AtomicReference<CameraEvent>();
+        private final AtomicBoolean mRunning = new AtomicBoolean();
+
+        Registration(final CameraListener listener, final Executor executor) {
+            mListener = listener;
+            mExecutor = executor;
+        }
+
+        void dispatch(final CameraEvent event) {
+            if (mExecutor == null) {
+                call(event);
+                return;
+            }
+            mPending.set(event);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!mRunning.compareAndSet(false, true)) {
+                // the running task picks the event up
+                return;
+            }
+            try {
+                mExecutor.execute(this);
+            } catch (RejectedExecutionException e) {
+                Log.e(TAG, "Camera listener executor rejected an event", e);
+                mPending.set(null);
+                mRunning.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            final CameraEvent event = mPending.getAndSet(null);
+            try {
+                if (event != null) {
+                    call(event);
+                }
+            } finally {
+                mRunning.set(false);
+            }
+            // an event that came while the listener ran
+            if (mPending.get() != null) {
+                schedule();
+            }
+        }
+
+        private void call(final CameraEvent event) {
+            final long start = MapMetrics.start();
+            try {
+                mListener.onCameraChange(event);
+            } finally {
+                MapMetrics.stopListener(mListener, start);
+            }
+        }
+    }
+}
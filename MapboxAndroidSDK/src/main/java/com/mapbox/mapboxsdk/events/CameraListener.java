@@ -0,0 +1,13 @@
+package com.mapbox.mapboxsdk.events;
+
+/**
+ * The listener interface for receiving camera events, at most one for each frame, register with
+ * the MapView using addCameraListener.
+ */
+public interface CameraListener {
+    /**
+     * Called when the camera of a map moved, on the UI thread or on the executor the listener
+     * was added with.
+     */
+    void onCameraChange(CameraEvent event);
+}
@@ -1,13 +1,17 @@
 package com.mapbox.mapboxsdk.events;
 
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
  * A MapListener that aggregates multiple events called in quick succession.
  * After an event arrives, if another event arrives within <code>delay</code> milliseconds,
  * the original event is discarded.  Otherwise, the event is propagated to the wrapped
- * MapListener.  Note: This class is not thread-safe.]
+ * MapListener.  The map already sends at most one event a frame; one callback is posted for
+ * each burst of events, and put off until the delay has passed since the last of them.
+ * Note: This class is not thread-safe, and is meant to be called on the UI thread.
  */
 public class DelayedMapListener implements MapListener {
 
@@ -27,7 +31,14 @@ public class DelayedMapListener implements MapListener {
     protected long delay;
 
     protected Handler handler;
-    protected CallbackTask callback;
+    protected CallbackTask callback = new CallbackTask();
+
+    /**
+     * The latest event, and when it arrived, while a callback is posted.
+     */
+    protected MapEvent pendingEvent;
+    protected long pendingEventTime;
+    protected boolean posted;
 
     /**
      * @param aWrappedListener The wrapped MapListener
@@ -36,8 +47,7 @@ public class DelayedMapListener implements MapListener {
     public DelayedMapListener(final MapListener aWrappedListener, final long aDelay) {
         this.wrappedListener = aWrappedListener;
         this.delay = aDelay;
-        this.handler = new Handler();
-        this.callback = null;
+        this.handler = new Handler(Looper.getMainLooper());
     }
 
     /**
@@ -68,26 +78,29 @@ public class DelayedMapListener implements MapListener {
      * Process an incoming MapEvent.
      */
     protected void dispatch(final MapEvent event) {
-        // cancel any pending callback
-        if (callback != null) {
-            handler.removeCallbacks(callback);
+        // the event replaces any pending one, and the posted callback waits for it
+        pendingEvent = event;
+        pendingEventTime = SystemClock.uptimeMillis();
+        if (!posted) {
+            posted = true;
+            handler.postDelayed(callback, delay);
         }
-        callback = new CallbackTask(event);
-
-        // set timer
-        handler.postDelayed(callback, delay);
     }
 
-    // Callback tasks
+    // Callback task
     private class CallbackTask implements Runnable {
-        private final MapEvent event;
-
-        public CallbackTask(final MapEvent event) {
-            this.event = event;
-        }
 
         @Override
         public void run() {
+            final long wait = pendingEventTime + delay - SystemClock.uptimeMillis();
+            if (wait > 0) {
+                handler.postDelayed(this, wait);
+                return;
+            }
+            final MapEvent event = pendingEvent;
+            pendingEvent = null;
+            posted = false;
+
             // do the callback
             if (event instanceof ScrollEvent) {
                 wrappedListener.onScroll((ScrollEvent) event);
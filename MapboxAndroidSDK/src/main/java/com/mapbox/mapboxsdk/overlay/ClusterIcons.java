@@ -0,0 +1,86 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.util.HashMap;
+
+/**
+ * Bitmaps of cluster icons, a circle with the number of markers in it. Counts are rounded to a
+ * small set of labels (99, 100+, 200+, 500+, 1k+, ...), so there are only ever a few hundred
+ * icons and each is drawn once.
+ */
+class ClusterIcons {
+
+    private static final int FILL_COLOR = 0xcc3887be;
+    private static final int STROKE_WIDTH = 3;
+
+    private final HashMap<String, Bitmap> mIcons = new HashMap<String, Bitmap>();
+    private final Paint mTextPaint;
+    private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private int mMaxSize;
+
+    ClusterIcons(final Paint textPaint) {
+        mTextPaint = textPaint;
+        mFillPaint.setColor(FILL_COLOR);
+        mStrokePaint.setColor(Color.WHITE);
+        mStrokePaint.setStyle(Paint.Style.STROKE);
+        mStrokePaint.setStrokeWidth(STROKE_WIDTH);
+    }
+
+    static String label(final int count) {
+        if (count < 100) {
+            return String.valueOf(count);
+        }
+        int unit = 100;
+        while (unit < 100000000 && count >= unit * 10) {
+            unit *= 10;
+        }
+        final int base = count >= unit * 5 ? 5 : (count >= unit * 2 ? 2 : 1);
+        final long value = (long) base * unit;
+        if (value >= 1000000) {
+            return (value / 1000000) + "M+";
+        } else if (value >= 1000) {
+            return (value / 1000) + "k+";
+        }
+        return value + "+";
+    }
+
+    Bitmap get(final int count) {
+        final String label = label(count);
+        Bitmap icon = mIcons.get(label);
+        if (icon == null) {
+            icon = draw(label);
+            mIcons.put(label, icon);
+            mMaxSize = Math.max(mMaxSize, Math.max(icon.getWidth(), icon.getHeight()));
+        }
+        return icon;
+    }
+
+    /**
+     * The edge of the largest icon drawn so far, in pixels.
+     */
+    int getMaxSize() {
+        return mMaxSize;
+    }
+
+    private Bitmap draw(final String label) {
+        final Paint.FontMetrics metrics = mTextPaint.getFontMetrics();
+        final float textHeight = metrics.descent - metrics.ascent;
+        final float diameter = Math.max(mTextPaint.measureText(label), textHeight) * 1.4f
+                + STROKE_WIDTH * 2;
+        final int size = (int) Math.ceil(diameter);
+        final Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final float center = size / 2f;
+        final float radius = center - STROKE_WIDTH;
+        canvas.drawCircle(center, center, radius, mFillPaint);
+        canvas.drawCircle(center, center, radius, mStrokePaint);
+        canvas.drawText(label, center, center - (metrics.ascent + metrics.descent) / 2,
+                mTextPaint);
+        return bitmap;
+    }
+}
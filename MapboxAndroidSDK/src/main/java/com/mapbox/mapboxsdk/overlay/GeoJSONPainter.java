@@ -4,7 +4,6 @@ import android.os.AsyncTask;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.cocoahero.android.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.util.DataLoadingUtils;
 import com.mapbox.mapboxsdk.util.Utils;
 import com.mapbox.mapboxsdk.views.MapView;
@@ -41,8 +40,7 @@ public class GeoJSONPainter {
             ArrayList<Object> uiObjects = new ArrayList<Object>();
 
             try {
-                FeatureCollection parsed = DataLoadingUtils.loadGeoJSONFromUrl(params[0]);
-                uiObjects = DataLoadingUtils.createUIObjectsFromGeoJSONObjects(parsed, markerIcon);
+                uiObjects = DataLoadingUtils.loadUIObjectsFromGeoJSONUrl(params[0], markerIcon);
             } catch (Exception e) {
                 Log.e(TAG, "Error loading / parsing GeoJSON: " + e.toString());
                 e.printStackTrace();
@@ -56,8 +54,8 @@ public class GeoJSONPainter {
             for (Object obj : objects) {
                 if (obj instanceof Marker) {
                     mapView.addMarker((Marker) obj);
-                } else if (obj instanceof PathOverlay) {
-                    mapView.getOverlays().add((PathOverlay) obj);
+                } else if (obj instanceof Overlay) {
+                    mapView.getOverlays().add((Overlay) obj);
                 }
             }
             if (objects.size() > 0) {
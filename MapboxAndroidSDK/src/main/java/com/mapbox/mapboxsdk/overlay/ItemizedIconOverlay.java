@@ -9,45 +9,131 @@ import android.view.WindowManager;
 
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.views.MapView;
-import com.mapbox.mapboxsdk.views.util.Projection;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
 public class ItemizedIconOverlay extends ItemizedOverlay {
 
+    /**
+     * Items without a sort key come first, by index, then the others by sort key. This has to
+     * be a total order for {@link MarkerList}; items with equal sort keys keep the order they
+     * were added in.
+     */
+    private static final Comparator<Marker> ITEM_ORDER = new Comparator<Marker>() {
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        public int compare(Marker a, Marker b) {
+            Comparable sortA = a.getSortkey();
+            Comparable sortB = b.getSortkey();
+            if (sortA != null && sortB != null) {
+                return sortA.compareTo(sortB);
+            }
+            if (sortA != null) {
+                return 1;
+            }
+            if (sortB != null) {
+                return -1;
+            }
+            //least index in front
+            final int byIndex = compareInts(b.getIndexForFastSort(), a.getIndexForFastSort());
+            if (byIndex != 0) {
+                return byIndex;
+            }
+            return compareInts(System.identityHashCode(a), System.identityHashCode(b));
+        }
+
+        private int compareInts(final int x, final int y) {
+            return (x < y) ? -1 : ((x == y) ? 0 : 1);
+        }
+    };
+
+    /**
+     * The items, kept sorted by sort key as they are added, removed and re-keyed. The list
+     * given to the constructor is copied into it.
+     */
     protected final List<Marker> mItemList;
     protected OnItemGestureListener<Marker> mOnItemGestureListener;
     private MapView view;
     private Context context;
+    private int mNextIndexForFastSort = 0;
 
     public ItemizedIconOverlay(final Context pContext, final List<Marker> pList,
                                final com.mapbox.mapboxsdk.overlay.ItemizedIconOverlay.OnItemGestureListener<Marker> pOnItemGestureListener) {
-        super();
+        super(ITEM_ORDER);
         this.context = pContext;
-        this.mItemList = pList;
+        this.mItemList = getItemList();
         this.mOnItemGestureListener = pOnItemGestureListener;
-        populate();
+        for (Marker item : pList) {
+            item.setParentHolder(this);
+            item.setIndexForFastSort(mNextIndexForFastSort++);
+            mItemList.add(item);
+        }
+        reindexItems();
     }
 
+    /**
+     * Sort the items again and rebuild the spatial index. Adding, removing and re-keying items
+     * keeps them in order already, so this is only needed after changing them behind the
+     * overlay's back.
+     */
     @Override
     protected void populate() {
-        Collections.sort(mItemList, new Comparator<Marker>() {
-            @SuppressWarnings({ "rawtypes", "unchecked" })
-            public int compare(Marker a, Marker b) {
-                Comparable sortA = a.getSortkey();
-                Comparable sortB = b.getSortkey();
-                if (sortA != null && sortB != null) {
-                    return sortA.compareTo(sortB);
-                }
-                //least index in front
-                return b.getIndexForFastSort() - a.getIndexForFastSort();
+        getItemList().sort();
+        reindexItemsLater();
+    }
+
+    /**
+     * Apply many changes with one update of the index and one redraw, which is much cheaper
+     * than populating after each. Changes made while the transaction runs through
+     * {@link #addItem}, {@link #removeItem(Marker)} or setters on the items are all deferred.
+     *
+     * @return a transaction to end with {@link Transaction#commit()}
+     */
+    public Transaction beginTransaction() {
+        beginItemChanges();
+        return new Transaction();
+    }
+
+    /**
+     * A batch of changes to the items of this overlay.
+     */
+    public class Transaction {
+        private boolean mCommitted = false;
+
+        public Transaction add(final Marker item) {
+            addItem(item);
+            return this;
+        }
+
+        public Transaction addAll(final List<Marker> items) {
+            for (Marker item : items) {
+                addItem(item);
             }
-        });
-        super.populate();
+            return this;
+        }
 
+        public Transaction remove(final Marker item) {
+            removeItem(item);
+            return this;
+        }
+
+        /**
+         * Re-key an item; the same as calling {@link Marker#setSortkey} on it.
+         */
+        @SuppressWarnings("rawtypes")
+        public Transaction setSortkey(final Marker item, final Comparable sortkey) {
+            item.setSortkey(sortkey);
+            return this;
+        }
+
+        public void commit() {
+            if (mCommitted) {
+                throw new IllegalStateException("Transaction committed already");
+            }
+            mCommitted = true;
+            endItemChanges();
+        }
     }
 
     @Override
@@ -67,12 +153,13 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
         return mItemList.size();
     }
 
+    /**
+     * Add an item at its place in the sort order, in O(log n).
+     */
     public boolean addItem(final Marker item) {
         item.setParentHolder(this);
-        item.setIndexForFastSort(mItemList.size());
-        final boolean result = mItemList.add(item);
-        populate();
-        return result;
+        item.setIndexForFastSort(mNextIndexForFastSort++);
+        return addItemInternal(item);
     }
 
     /**
@@ -84,24 +171,20 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
     private boolean activateSelectedItems(final MotionEvent event,
                                           final MapView mapView,
                                           final ActiveItem task) {
-        final Projection projection = mapView.getProjection();
-        final float x = event.getX();
-        final float y = event.getY();
-        final int size = this.mVisibleMarkers.size() - 1;
-        
+        final List<Marker> hits = getItemsAt(mapView.getProjection(), event.getX(),
+                event.getY());
+        final int size = hits.size();
+
         boolean tappedFocused = false;
-        //to respect sort order we must travel backwards
-        for (int i = size; i >= 0; i--) {
-            final Marker item = mVisibleMarkers.get(i);
-            
-            if (markerHitTest(item, projection, x, y)) {
-                if (item == getFocus()) {
-                    tappedFocused = true;
-                }
-                else if (task.run(item)) {
-                    this.setFocus(item);
-                    return true;
-                }
+        //hits are sorted topmost first
+        for (int i = 0; i < size; i++) {
+            final Marker item = hits.get(i);
+            if (item == getFocus()) {
+                tappedFocused = true;
+            }
+            else if (task.run(item)) {
+                this.setFocus(item);
+                return true;
             }
         }
         if (tappedFocused) {
@@ -114,13 +197,14 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
     }
 
     public boolean addItems(final List<Marker> items) {
+        boolean result = false;
+        beginItemChanges();
         for (Object item : items) {
             if (item instanceof Marker) {
-                ((Marker) item).setParentHolder(this);
+                result |= addItem((Marker) item);
             }
         }
-        final boolean result = mItemList.addAll(items);
-        populate();
+        endItemChanges();
         return result;
     }
 
@@ -135,7 +219,7 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
         }
         mItemList.clear();
         if (withPopulate) {
-            populate();
+            reindexItemsLater();
         }
     }
 
@@ -144,37 +228,34 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
         item.setParentHolder(null);
     }
 
+    /**
+     * Remove an item in O(log n).
+     */
     public boolean removeItem(final Marker item) {
-        final boolean result = mItemList.remove(item);
+        final boolean result = removeItemInternal(item);
         if (getFocus() == item) {
             setFocus(null);
         }
         if (result) {
             onItemRemoved(item);
         }
-        populate();
         return result;
     }
 
     public Marker removeItem(final int position) {
-        final Marker item = mItemList.remove(position);
-        if (item != null) {
-            onItemRemoved(item);
-        }
-        populate();
+        final Marker item = mItemList.get(position);
+        removeItem(item);
         return item;
     }
 
     public void removeItems(final List items) {
+        beginItemChanges();
         for (Object item : items) {
             if (item instanceof Marker) {
-                final boolean result = mItemList.remove(item);
-                if (result) {
-                    onItemRemoved((Marker) item);
-                }
+                removeItem((Marker) item);
             }
         }
-        populate();
+        endItemChanges();
     }
 
     /**
@@ -186,6 +267,9 @@ public class ItemizedIconOverlay extends ItemizedOverlay {
      */
     @Override
     public boolean onSingleTapConfirmed(final MotionEvent event, final MapView mapView) {
+        if (dispatchClusterTap(event.getX(), event.getY(), mapView)) {
+            return true;
+        }
         return (activateSelectedItems(event, mapView, new ActiveItem() {
             @Override
             public boolean run(final Marker marker) {
@@ -1,6 +1,8 @@
 // Created by plusminus on 23:18:23 - 02.10.2008
 package com.mapbox.mapboxsdk.overlay;
 
+import android.graphics.Bitmap;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.PointF;
 import android.graphics.RectF;
@@ -13,6 +15,9 @@ import com.mapbox.mapboxsdk.views.safecanvas.SafePaint;
 import com.mapbox.mapboxsdk.views.util.Projection;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Draws a list of {@link Marker} as markers to a map. The item with the lowest index is drawn
@@ -35,8 +40,7 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
         MARKER_DRAG_STATE_ENDING
     };
 
-    private final ArrayList<Marker> mInternalItemList;
-    private int mItemListSize = 0;
+    private final MarkerList mInternalItemList;
     protected final ArrayList<Marker> mVisibleMarkers;
     protected boolean mDrawFocusedItem = true;
     private Marker mFocusedItem;
@@ -49,6 +53,47 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
 
     private static SafePaint mClusterTextPaint;
 
+    /**
+     * Markers by position, so culling and hit-testing only look at markers near the viewport.
+     */
+    private final MarkerSpatialIndex mSpatialIndex = new MarkerSpatialIndex();
+    private final ArrayList<Marker> mCandidates = new ArrayList<Marker>();
+    private final ArrayList<Marker> mHitItems = new ArrayList<Marker>();
+    private final RectF mHitQueryRect = new RectF();
+    private final RectF mHitRect = new RectF();
+    private final PointF mScreenOffset = new PointF();
+    private int mMaxItemExtent = 0;
+
+    private int mBatchDepth = 0;
+    private boolean mBatchReindex = false;
+    private final ArrayList<Marker> mBatchItems = new ArrayList<Marker>();
+
+    private MarkerBatch mMarkerBatch;
+    private boolean mBatchedRendering = true;
+
+    private static ClusterIcons mClusterIcons;
+    private MarkerClusterer mClusterer;
+    private MarkerClusterer.Snapshot mDrawnClusters;
+    private int mDrawnClusterZoom;
+    private final MarkerClusterer.ClusterIds mClusterIds = new MarkerClusterer.ClusterIds();
+    private final MarkerClusterer.ClusterIds mVisibleClusters = new MarkerClusterer.ClusterIds();
+    private final PointF mClusterPosition = new PointF();
+    private final PointF mClusterOffset = new PointF();
+    private MapView mMapView;
+
+    /**
+     * Past this share of the items changed in one batch, the spatial index is rebuilt instead
+     * of updated item by item.
+     */
+    private static final int BATCH_REINDEX_DIVISOR = 4;
+
+    private static final Comparator<Marker> DRAW_ORDER = new Comparator<Marker>() {
+        @Override
+        public int compare(final Marker a, final Marker b) {
+            return a.mDrawOrder < b.mDrawOrder ? -1 : (a.mDrawOrder == b.mDrawOrder ? 0 : 1);
+        }
+    };
+
     /**
      * Method by which subclasses create the actual Items. This will only be called from populate()
      * we'll cache them for later use.
@@ -61,6 +106,14 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
     public abstract int size();
 
     public ItemizedOverlay() {
+        this(null);
+    }
+
+    /**
+     * @param itemOrder the drawing order of the items, from bottom to top; null to draw them in
+     * the order they were added
+     */
+    protected ItemizedOverlay(final Comparator<? super Marker> itemOrder) {
 
         super();
 
@@ -70,9 +123,11 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
             mClusterTextPaint.setTextAlign(Paint.Align.CENTER);
             mClusterTextPaint.setTextSize(30);
             mClusterTextPaint.setFakeBoldText(true);
+            mClusterTextPaint.setColor(Color.WHITE);
+            mClusterTextPaint.setAntiAlias(true);
         }
 
-        mInternalItemList = new ArrayList<Marker>();
+        mInternalItemList = new MarkerList(itemOrder);
         mVisibleMarkers = new ArrayList<Marker>();
     }
     
@@ -120,33 +175,216 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
         }
         mPendingFocusChangedEvent = false;
 
+        mMapView = mapView;
         final Projection pj = mapView.getProjection();
-        final int size = this.mItemListSize - 1;
 
         final float mapScale = 1 / mapView.getScale();
         final float bearing = mapView.getMapOrientation();
         final RectF bounds = pj.getTransformScreenRect();
         mVisibleMarkers.clear();
+        mVisibleClusters.clear();
+        mDrawnClusters = null;
         /* sort order is handled in populate */
-        for (int i = 0; i <= size; i++) {
-            final Marker item = getItem(i);
+        final MarkerClusterer.Snapshot clusters = (mClusterer != null)
+                ? mClusterer.getSnapshot() : null;
+        final int zoom = (int) pj.getZoomLevel();
+        final List<Marker> items;
+        if (clusters != null && zoom <= clusters.getMaxZoom()) {
+            items = getUnclusteredItems(pj, bounds, clusters, zoom);
+        } else {
+            items = getItemsInMapRect(pj, bounds, mMaxItemExtent);
+        }
+        if (mBatchedRendering && mMarkerBatch == null) {
+            mMarkerBatch = new MarkerBatch();
+        }
+        final boolean batched = mBatchedRendering && mMarkerBatch.begin(canvas);
+        final int size = items.size();
+        for (int i = 0; i < size; i++) {
+            final Marker item = items.get(i);
             if (item == mFocusedItem || item == mDraggedItem) {
                 continue;
             }
             if (shouldDrawItem(item, pj, bounds)) {
-                item.draw(canvas, bearing, mapScale, false);
+                if (!batched) {
+                    item.draw(canvas, bearing, mapScale, false);
+                } else if (!mMarkerBatch.add(item, bearing, mapScale)) {
+                    mMarkerBatch.flush();
+                    item.draw(canvas, bearing, mapScale, false);
+                }
             }
         }
+        if (batched) {
+            mMarkerBatch.end();
+        }
         if (mFocusedItem != null && mFocusedItem != mDraggedItem) {
             if (shouldDrawItem(mFocusedItem, pj, bounds)) {
                 mFocusedItem.draw(canvas, bearing, mapScale, mDrawFocusedItem);
             }
         }
+        if (mDrawnClusters != null) {
+            drawClusters(canvas, pj, bearing, mapScale);
+        }
         if (mDraggedItem != null) {
             mDraggedItem.draw(canvas, bearing, mapScale*1.5f, false);
         }
     }
 
+    /**
+     * Sort the clusters around the viewport into markers on their own, returned in drawing
+     * order, and groups, kept in mVisibleClusters for drawClusters.
+     */
+    private List<Marker> getUnclusteredItems(final Projection pj, final RectF mapRect,
+            final MarkerClusterer.Snapshot clusters, final int zoom) {
+        final int halfWorldSize = pj.getHalfWorldSize();
+        final double worldSize = halfWorldSize * 2.0;
+        final float margin = Math.max(mMaxItemExtent, mClusterIcons.getMaxSize());
+        clusters.query(zoom, (mapRect.left - margin + halfWorldSize) / worldSize,
+                (mapRect.top - margin + halfWorldSize) / worldSize,
+                (mapRect.right + margin + halfWorldSize) / worldSize,
+                (mapRect.bottom + margin + halfWorldSize) / worldSize, mClusterIds);
+        mCandidates.clear();
+        for (int i = 0; i < mClusterIds.size(); i++) {
+            final int id = mClusterIds.get(i);
+            if (clusters.getCount(zoom, id) > 1) {
+                mVisibleClusters.add(id);
+            } else {
+                final Marker item = clusters.getMarker(zoom, id);
+                // the snapshot may still hold a marker removed since
+                if (mSpatialIndex.contains(item)) {
+                    mCandidates.add(item);
+                }
+            }
+        }
+        sortInDrawingOrder(mCandidates);
+        mDrawnClusters = clusters;
+        mDrawnClusterZoom = zoom;
+        return mCandidates;
+    }
+
+    private void drawClusters(final ISafeCanvas canvas, final Projection pj, final float bearing,
+            final float mapScale) {
+        final int halfWorldSize = pj.getHalfWorldSize();
+        final int worldSize = halfWorldSize * 2;
+        for (int i = 0; i < mVisibleClusters.size(); i++) {
+            final int id = mVisibleClusters.get(i);
+            final Bitmap icon = mClusterIcons.get(mDrawnClusters.getCount(mDrawnClusterZoom, id));
+            mClusterPosition.set(mDrawnClusters.getX(mDrawnClusterZoom, id) * worldSize
+                    - halfWorldSize, mDrawnClusters.getY(mDrawnClusterZoom, id) * worldSize
+                    - halfWorldSize);
+            mClusterOffset.set(-icon.getWidth() / 2f, -icon.getHeight() / 2f);
+            canvas.save();
+            canvas.scale(mapScale, mapScale, mClusterPosition.x, mClusterPosition.y);
+            drawAt(canvas, icon, null, mClusterPosition, mClusterOffset, bearing);
+            canvas.restore();
+        }
+    }
+
+    /**
+     * Turn clustering of this overlay's markers on or off. Clusters are built in the
+     * background, so they show up a moment after markers change.
+     */
+    public void setClusteringEnabled(final boolean enabled) {
+        if (enabled == (mClusterer != null)) {
+            return;
+        }
+        if (enabled) {
+            if (mClusterIcons == null) {
+                mClusterIcons = new ClusterIcons(mClusterTextPaint);
+            }
+            mClusterer = new MarkerClusterer();
+            mClusterer.setOnClustersChangedListener(
+                    new MarkerClusterer.OnClustersChangedListener() {
+                        @Override
+                        public void onClustersChanged(final MarkerClusterer clusterer,
+                                final MarkerClusterer.Snapshot snapshot) {
+                            final MapView mapView = mMapView;
+                            if (mapView != null) {
+                                mapView.postInvalidate();
+                            }
+                        }
+                    });
+            mClusterer.setMarkers(mInternalItemList);
+        } else {
+            mClusterer.setOnClustersChangedListener(null);
+            mClusterer = null;
+        }
+        if (mMapView != null) {
+            mMapView.invalidate();
+        }
+    }
+
+    /**
+     * Draw the markers in batches, a few canvas calls for all of them, rather than one by one.
+     * On by default.
+     */
+    public void setBatchedRenderingEnabled(final boolean enabled) {
+        mBatchedRendering = enabled;
+        if (mMapView != null) {
+            mMapView.invalidate();
+        }
+    }
+
+    public boolean isBatchedRenderingEnabled() {
+        return mBatchedRendering;
+    }
+
+    public boolean isClusteringEnabled() {
+        return mClusterer != null;
+    }
+
+    /**
+     * Set the deepest zoom level at which markers are clustered.
+     *
+     * @param maxZoom up to {@link MarkerClusterer#MAX_CLUSTER_ZOOM}
+     */
+    public void setMaxClusterZoom(final int maxZoom) {
+        if (mClusterer == null) {
+            setClusteringEnabled(true);
+        }
+        mClusterer.setMaxZoom(maxZoom);
+    }
+
+    /**
+     * Called when a cluster is tapped. By default the map zooms in on the cluster until it
+     * falls apart.
+     *
+     * @return true if the tap was handled
+     */
+    protected boolean onClusterTap(final MarkerClusterer.Cluster cluster, final MapView mapView) {
+        mapView.getController().setZoomAnimated(cluster.getExpansionZoom(),
+                cluster.getPosition(), true, false);
+        return true;
+    }
+
+    /**
+     * Hit-test the clusters drawn in the last frame, topmost first, and dispatch a tap on one
+     * to {@link #onClusterTap}.
+     */
+    protected boolean dispatchClusterTap(final float x, final float y, final MapView mapView) {
+        if (mDrawnClusters == null) {
+            return false;
+        }
+        final Projection projection = mapView.getProjection();
+        final int halfWorldSize = projection.getHalfWorldSize();
+        final int worldSize = halfWorldSize * 2;
+        for (int i = mVisibleClusters.size() - 1; i >= 0; i--) {
+            final int id = mVisibleClusters.get(i);
+            final float radius = mClusterIcons.get(
+                    mDrawnClusters.getCount(mDrawnClusterZoom, id)).getWidth() / 2f;
+            mClusterPosition.set(mDrawnClusters.getX(mDrawnClusterZoom, id) * worldSize
+                    - halfWorldSize, mDrawnClusters.getY(mDrawnClusterZoom, id) * worldSize
+                    - halfWorldSize);
+            projection.toPixels(mClusterPosition, mClusterPosition);
+            final float dx = mClusterPosition.x - x;
+            final float dy = mClusterPosition.y - y;
+            if (dx * dx + dy * dy <= radius * radius
+                    && onClusterTap(mDrawnClusters.getCluster(mDrawnClusterZoom, id), mapView)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Utility method to perform all processing on a new ItemizedOverlay. Subclasses provide Items
      * through the createItem(int) method. The subclass should call this as soon as it has data,
@@ -156,13 +394,271 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
 
         final int size = size();
         mInternalItemList.clear();
-        mItemListSize = 0;
-        mInternalItemList.ensureCapacity(size);
         for (int i = 0; i < size; i++) {
             mInternalItemList.add(createItem(i));
         }
-        mItemListSize = mInternalItemList.size();
+        reindexItems();
+
+    }
+
+    /**
+     * The items in drawing order, kept sorted as they are added and removed.
+     */
+    protected MarkerList getItemList() {
+        return mInternalItemList;
+    }
+
+    /**
+     * Rebuild the spatial index and the clusters from the item list, after it was changed
+     * directly.
+     */
+    protected void reindexItems() {
+        mSpatialIndex.clear();
+        mMaxItemExtent = 0;
+        for (Marker item : mInternalItemList) {
+            mSpatialIndex.insert(item);
+            updateItemExtent(item);
+        }
+        if (mClusterer != null) {
+            mClusterer.setMarkers(mInternalItemList);
+        }
+    }
+
+    /**
+     * Add an item at its place in the drawing order, in O(log n) without a populate().
+     *
+     * @return false if the item is in this overlay already
+     */
+    protected boolean addItemInternal(final Marker item) {
+        if (!mInternalItemList.add(item)) {
+            return false;
+        }
+        onItemAddedOrRemoved(item);
+        return true;
+    }
+
+    /**
+     * Remove an item in O(log n) without a populate().
+     *
+     * @return false if the item is not in this overlay
+     */
+    protected boolean removeItemInternal(final Marker item) {
+        if (!mInternalItemList.remove(item)) {
+            return false;
+        }
+        onItemAddedOrRemoved(item);
+        return true;
+    }
+
+    private void onItemAddedOrRemoved(final Marker item) {
+        if (mBatchDepth > 0) {
+            if (!mBatchReindex) {
+                mBatchItems.add(item);
+            }
+            return;
+        }
+        indexItem(item);
+        invalidateMapView();
+    }
+
+    /**
+     * Bring the spatial index and clusters in line with whether the item is in the list.
+     */
+    private void indexItem(final Marker item) {
+        if (mInternalItemList.contains(item)) {
+            mSpatialIndex.insert(item);
+            updateItemExtent(item);
+            if (mClusterer != null) {
+                mClusterer.update(item);
+            }
+        } else {
+            mSpatialIndex.remove(item);
+            if (mClusterer != null) {
+                mClusterer.remove(item);
+            }
+        }
+    }
+
+    /**
+     * Start a batch of changes to the items. Until the matching {@link #endItemChanges()} the
+     * spatial index, clusters and map are left alone; then they are updated once, rebuilding the
+     * index outright when a large share of the items changed. Batches may be nested.
+     */
+    public void beginItemChanges() {
+        mBatchDepth++;
+    }
+
+    /**
+     * End a batch of changes started with {@link #beginItemChanges()}.
+     */
+    public void endItemChanges() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("endItemChanges() without beginItemChanges()");
+        }
+        if (--mBatchDepth > 0) {
+            return;
+        }
+        final int changes = mBatchItems.size();
+        if (mBatchReindex
+                || changes > mInternalItemList.size() / BATCH_REINDEX_DIVISOR + 1) {
+            reindexItems();
+        } else {
+            for (int i = 0; i < changes; i++) {
+                indexItem(mBatchItems.get(i));
+            }
+        }
+        final boolean changed = mBatchReindex || changes > 0;
+        mBatchItems.clear();
+        mBatchReindex = false;
+        if (changed) {
+            invalidateMapView();
+        }
+    }
+
+    /**
+     * Rebuild the index when the current batch ends, rather than tracking single changes.
+     */
+    protected void reindexItemsLater() {
+        if (mBatchDepth > 0) {
+            mBatchReindex = true;
+            mBatchItems.clear();
+        } else {
+            reindexItems();
+            invalidateMapView();
+        }
+    }
 
+    private void invalidateMapView() {
+        if (mMapView != null) {
+            mMapView.invalidate();
+        }
+    }
+
+    /**
+     * Called by a marker of this overlay when its sort key changed, to move it to its new place
+     * in the drawing order.
+     */
+    protected void onItemOrderChanged(final Marker item) {
+        if (mInternalItemList.contains(item)) {
+            mInternalItemList.reorder(item);
+            if (mBatchDepth == 0) {
+                invalidateMapView();
+            }
+        }
+    }
+
+    /**
+     * Called by a marker of this overlay when its position, icon or anchor changed, to keep
+     * the spatial index up to date.
+     */
+    protected void onItemChanged(final Marker item) {
+        if (mBatchDepth > 0) {
+            if (!mBatchReindex && mInternalItemList.contains(item)) {
+                mBatchItems.add(item);
+            }
+        } else if (mSpatialIndex.contains(item)) {
+            mSpatialIndex.update(item);
+            updateItemExtent(item);
+            if (mClusterer != null) {
+                mClusterer.update(item);
+            }
+        }
+    }
+
+    /**
+     * Track how far, in pixels, any marker can reach from its position, which is how much a
+     * spatial query has to be widened to not miss markers that only partly overlap it.
+     */
+    private void updateItemExtent(final Marker item) {
+        float reach = 1;
+        final PointF anchor = item.mAnchor;
+        if (anchor != null) {
+            reach = Math.max(Math.max(reach, Math.abs(anchor.x)), Math.abs(anchor.y));
+            reach = Math.max(Math.max(reach, Math.abs(1 - anchor.x)), Math.abs(1 - anchor.y));
+        }
+        final int extent = (int) Math.ceil(
+                Math.max(item.getWidth(), item.getRealHeight()) * reach);
+        if (extent > mMaxItemExtent) {
+            mMaxItemExtent = extent;
+        }
+    }
+
+    /**
+     * Get the markers whose position lies within a rectangle of map pixels widened by a margin,
+     * in drawing order. Costs O(k log n) through the spatial index; when most markers are
+     * in the rectangle anyway the full list is copied instead of sorting the matches.
+     *
+     * @return a list that is only valid until the next call
+     */
+    private List<Marker> getItemsInMapRect(final Projection projection, final RectF mapRect,
+            final float margin) {
+        final int halfWorldSize = projection.getHalfWorldSize();
+        mCandidates.clear();
+        if (halfWorldSize > 0) {
+            final double worldSize = halfWorldSize * 2.0;
+            mSpatialIndex.query((mapRect.left - margin + halfWorldSize) / worldSize,
+                    (mapRect.top - margin + halfWorldSize) / worldSize,
+                    (mapRect.right + margin + halfWorldSize) / worldSize,
+                    (mapRect.bottom + margin + halfWorldSize) / worldSize, mCandidates);
+            if (mCandidates.size() * 2 <= mInternalItemList.size()) {
+                sortInDrawingOrder(mCandidates);
+                return mCandidates;
+            }
+            mCandidates.clear();
+        }
+        for (Marker item : mInternalItemList) {
+            mCandidates.add(item);
+        }
+        return mCandidates;
+    }
+
+    private void sortInDrawingOrder(final ArrayList<Marker> items) {
+        final int size = items.size();
+        for (int i = 0; i < size; i++) {
+            final Marker item = items.get(i);
+            item.mDrawOrder = mInternalItemList.indexOf(item);
+        }
+        Collections.sort(items, DRAW_ORDER);
+    }
+
+    /**
+     * Get the visible markers under a point on screen, topmost first: the focused marker, then
+     * the others in reverse drawing order.
+     *
+     * @return a list that is only valid until the next call
+     */
+    protected List<Marker> getItemsAt(final Projection projection, final float x,
+            final float y) {
+        mHitItems.clear();
+        // map pixels are screen pixels shifted by the scroll position
+        mScreenOffset.set(0, 0);
+        projection.toPixels(mScreenOffset, mScreenOffset);
+        final float mapX = x - mScreenOffset.x;
+        final float mapY = y - mScreenOffset.y;
+        mHitQueryRect.set(mapX, mapY, mapX, mapY);
+        // with clusters only the markers drawn on their own can be hit
+        final List<Marker> items = (mDrawnClusters != null) ? mVisibleMarkers
+                : getItemsInMapRect(projection, mHitQueryRect, mMaxItemExtent + 1);
+        if (mFocusedItem != null && mFocusedItem != mDraggedItem
+                && isHit(mFocusedItem, projection, x, y)) {
+            mHitItems.add(mFocusedItem);
+        }
+        for (int i = items.size() - 1; i >= 0; i--) {
+            final Marker item = items.get(i);
+            if (item != mFocusedItem && item != mDraggedItem && isHit(item, projection, x, y)) {
+                mHitItems.add(item);
+            }
+        }
+        return mHitItems;
+    }
+
+    private boolean isHit(final Marker item, final Projection projection, final float x,
+            final float y) {
+        if (!item.shouldDraw()) {
+            return false;
+        }
+        item.updateDrawingPosition();
+        return markerHitTest(item, projection, x, y);
     }
 
     /**
@@ -177,26 +673,36 @@ public abstract class ItemizedOverlay extends SafeDrawOverlay implements Overlay
 
     protected boolean markerHitTest(final Marker pMarker, final Projection pProjection,
             final float pX, final float pY) {
-        RectF rect = pMarker.getHitBounds(pProjection, null);
+        final RectF rect = pMarker.getHitBounds(pProjection, mHitRect);
         return rect.contains(pX, pY);
     }
 
+    /**
+     * Free the marker atlas; it is built again if the overlay is drawn after this.
+     */
+    @Override
+    public void onDetach(final MapView mapView) {
+        if (mMarkerBatch != null) {
+            mMarkerBatch.recycle();
+            mMarkerBatch = null;
+        }
+        super.onDetach(mapView);
+    }
+
     @Override
     public boolean onSingleTapConfirmed(MotionEvent e, MapView mapView) {
-        final int size = mVisibleMarkers.size() - 1;
-        final Projection projection = mapView.getProjection();
-        final float x = e.getX();
-        final float y = e.getY();
-
-      //to respect sort order we must travel backwards
-        for (int i = size; i >= 0; i--) {
-            final Marker item = mVisibleMarkers.get(i);
-            if (markerHitTest(item, projection, x, y)) {
-                // We have a hit, do we get a response from onTap?
-                if (onTap(item)) {
-                    // We got a response so consume the event
-                    return true;
-                }
+        if (dispatchClusterTap(e.getX(), e.getY(), mapView)) {
+            return true;
+        }
+        final List<Marker> hits = getItemsAt(mapView.getProjection(), e.getX(), e.getY());
+        final int size = hits.size();
+
+        //hits are sorted topmost first
+        for (int i = 0; i < size; i++) {
+            // We have a hit, do we get a response from onTap?
+            if (onTap(hits.get(i))) {
+                // We got a response so consume the event
+                return true;
             }
         }
 
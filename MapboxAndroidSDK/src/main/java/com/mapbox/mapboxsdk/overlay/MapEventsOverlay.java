@@ -34,6 +34,11 @@ public class MapEventsOverlay extends Overlay {
         //Nothing to draw
     }
 
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
     @Override
     public boolean onSingleTapConfirmed(final MotionEvent e, final MapView mapView) {
         Projection proj = mapView.getProjection();
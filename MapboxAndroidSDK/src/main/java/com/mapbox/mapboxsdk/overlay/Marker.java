@@ -26,6 +26,12 @@ public class Marker {
     private final RectF mMyLocationRect = new RectF(0, 0, 0, 0);
     private final RectF mMyLocationPreviousRect = new RectF(0, 0, 0, 0);
     protected final PointF mCurMapCoords = new PointF();
+    /**
+     * World coordinates of mProjectedLatLng, so moving the map doesn't re-project the marker.
+     */
+    private final double[] mProjected = new double[2];
+    private LatLng mProjectedLatLng;
+    private final PointF mScreenPosition = new PointF();
 
     protected Context context;
     private MapView mapView;
@@ -57,6 +63,19 @@ public class Marker {
     private float mMaxZoom = 22;
     private float mHeading = 0;
 
+    /**
+     * Position of this marker in the spatial index of its overlay, maintained by
+     * {@link MarkerSpatialIndex}.
+     */
+    MarkerSpatialIndex mSpatialIndex;
+    double mWorldX = Double.NaN;
+    double mWorldY = Double.NaN;
+    int mDrawOrder;
+    /**
+     * Position of this marker in the {@link MarkerList} of its overlay.
+     */
+    MarkerList.Node mListNode;
+
     /**
      * Construct a new Marker, given title, description, and place
      * @param title Marker title
@@ -81,7 +100,8 @@ public class Marker {
         this.setTitle(aTitle);
         this.setDescription(aDescription);
         this.mLatLng = aLatLng;
-        mAnchor = mv.getDefaultPinAnchor();
+        mAnchor = (mv != null) ? mv.getDefaultPinAnchor()
+                : new PointF(MapView.DEFAULT_PIN_ANCHOR.x, MapView.DEFAULT_PIN_ANCHOR.y);
         mParentHolder = null;
     }
 
@@ -236,6 +256,10 @@ public class Marker {
         invalidate();
     }
 
+    public float getHeading() {
+        return mHeading;
+    }
+
 
     /**
      * Set the centerpoint of this marker in geographical coordinates
@@ -286,6 +310,9 @@ public class Marker {
     @SuppressWarnings("rawtypes")
     public void setSortkey(Comparable value) {
         mSortkey = value;
+        if (mParentHolder != null) {
+            mParentHolder.onItemOrderChanged(this);
+        }
     }
 
     @SuppressWarnings("rawtypes")
@@ -460,7 +487,7 @@ public class Marker {
         if (reuse == null) {
             reuse = new RectF();
         }
-        final PointF position = getPositionOnScreen(projection, null);
+        final PointF position = getPositionOnScreen(projection, mScreenPosition);
         final int w = getWidth();
         final int h = realSize?getRealHeight():getHeight();
         final float x = position.x - mAnchor.x * w;
@@ -481,7 +508,14 @@ public class Marker {
         if (reuse == null) {
             reuse = new RectF();
         }
-        projection.toMapPixels(mLatLng, mCurMapCoords);
+        if (mLatLng != null) {
+            if (mLatLng != mProjectedLatLng) {
+                Projection.latLongToWorldXY(mLatLng.getLatitude(), mLatLng.getLongitude(),
+                        mProjected);
+                mProjectedLatLng = mLatLng;
+            }
+            projection.worldToMapPixels(mProjected[0], mProjected[1], mCurMapCoords);
+        }
         final int w = getWidth();
         final float x = mCurMapCoords.x - mAnchor.x * w;
         final float y = mCurMapCoords.y - mAnchor.y * getHeight();
@@ -623,6 +657,9 @@ public class Marker {
      * Sets the marker to be redrawn.
      */
     public void invalidate() {
+        if (mParentHolder != null) {
+            mParentHolder.onItemChanged(this);
+        }
         if (mapView == null) {
             return; //not on map yet
         }
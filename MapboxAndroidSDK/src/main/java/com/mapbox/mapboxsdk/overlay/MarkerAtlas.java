@@ -0,0 +1,211 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * Marker icons packed into a few large bitmaps, so markers with different icons can be drawn
+ * with one call per page. Icons are packed on shelves as they are first drawn, and packed again
+ * if their bitmap changes. When every page is full the atlas starts over.
+ */
+class MarkerAtlas {
+
+    private static final boolean HONEYCOMB_MR1_OR_GREATER =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1;
+
+    static final int PAGE_SIZE = 1024;
+    static final int MAX_PAGES = 4;
+
+    /**
+     * Transparent pixels around each icon, so filtering never samples a neighbour.
+     */
+    private static final int PADDING = 2;
+
+    /**
+     * Where an icon is in the atlas, in pixels of its page.
+     */
+    static final class Region {
+        final int page;
+        final int left;
+        final int top;
+        final int width;
+        final int height;
+        /**
+         * The bitmap the icon was packed from, and its generation then.
+         */
+        final Bitmap bitmap;
+        final int generationId;
+
+        Region(final int page, final int left, final int top, final int width, final int height,
+                final Bitmap bitmap) {
+            this.page = page;
+            this.left = left;
+            this.top = top;
+            this.width = width;
+            this.height = height;
+            this.bitmap = bitmap;
+            this.generationId = getGenerationId(bitmap);
+        }
+
+        /**
+         * @return false if the icon changed since it was packed
+         */
+        boolean matches(final BitmapDrawable drawable) {
+            final Bitmap current = drawable.getBitmap();
+            return current == bitmap && getGenerationId(current) == generationId
+                    && drawable.getIntrinsicWidth() == width
+                    && drawable.getIntrinsicHeight() == height;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+    private static int getGenerationId(final Bitmap bitmap) {
+        return (HONEYCOMB_MR1_OR_GREATER && bitmap != null) ? bitmap.getGenerationId() : 0;
+    }
+
+    private final WeakHashMap<BitmapDrawable, Region> mRegions =
+            new WeakHashMap<BitmapDrawable, Region>();
+    private final ArrayList<Bitmap> mPages = new ArrayList<Bitmap>();
+    private final ArrayList<Paint> mPaints = new ArrayList<Paint>();
+    private final Canvas mPageCanvas = new Canvas();
+    private final Rect mBounds = new Rect();
+    private int mPage = -1;
+    private int mShelfX;
+    private int mShelfY;
+    private int mShelfHeight;
+
+    /**
+     * @return where the icon was packed, or null if it is not in the atlas or changed since
+     */
+    Region find(final BitmapDrawable drawable) {
+        final Region region = mRegions.get(drawable);
+        if (region != null && !region.matches(drawable)) {
+            // its old room is reclaimed when the atlas starts over
+            mRegions.remove(drawable);
+            return null;
+        }
+        return region;
+    }
+
+    /**
+     * Pack an icon, drawn at its intrinsic size and full opacity. This may start the atlas
+     * over, moving all other icons, so anything drawn from it has to be flushed first.
+     *
+     * @return null if the icon is empty or too large for a page
+     */
+    Region add(final BitmapDrawable drawable) {
+        Region region = find(drawable);
+        if (region != null) {
+            return region;
+        }
+        final int width = drawable.getIntrinsicWidth();
+        final int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0 || width + PADDING * 2 > PAGE_SIZE
+                || height + PADDING * 2 > PAGE_SIZE) {
+            return null;
+        }
+        if (!reserve(width + PADDING * 2, height + PADDING * 2)) {
+            clear();
+            reserve(width + PADDING * 2, height + PADDING * 2);
+        }
+        region = new Region(mPage, mShelfX + PADDING, mShelfY + PADDING, width, height,
+                drawable.getBitmap());
+        mShelfX += width + PADDING * 2;
+
+        mPageCanvas.setBitmap(mPages.get(mPage));
+        drawable.copyBounds(mBounds);
+        drawable.setBounds(region.left, region.top, region.left + width, region.top + height);
+        // the alpha of the drawable is applied when drawing from the atlas
+        final int alpha = drawable.getPaint().getAlpha();
+        if (alpha != 255) {
+            drawable.getPaint().setAlpha(255);
+        }
+        drawable.draw(mPageCanvas);
+        if (alpha != 255) {
+            drawable.getPaint().setAlpha(alpha);
+        }
+        drawable.setBounds(mBounds);
+        mRegions.put(drawable, region);
+        return region;
+    }
+
+    /**
+     * Make room for a box at (mShelfX, mShelfY) of the current page.
+     */
+    private boolean reserve(final int width, final int height) {
+        if (mPage >= 0) {
+            if (mShelfX + width <= PAGE_SIZE && mShelfY + height <= PAGE_SIZE) {
+                mShelfHeight = Math.max(mShelfHeight, height);
+                return true;
+            }
+            // next shelf
+            if (mShelfY + mShelfHeight + height <= PAGE_SIZE) {
+                mShelfY += mShelfHeight;
+                mShelfX = 0;
+                mShelfHeight = height;
+                return true;
+            }
+        }
+        if (mPage + 1 >= MAX_PAGES) {
+            return false;
+        }
+        mPage++;
+        if (mPage == mPages.size()) {
+            final Bitmap page = Bitmap.createBitmap(PAGE_SIZE, PAGE_SIZE, Bitmap.Config.ARGB_8888);
+            final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+            paint.setShader(new BitmapShader(page, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+            mPages.add(page);
+            mPaints.add(paint);
+        }
+        mShelfX = 0;
+        mShelfY = 0;
+        mShelfHeight = height;
+        return true;
+    }
+
+    Bitmap getPage(final int page) {
+        return mPages.get(page);
+    }
+
+    /**
+     * A paint whose shader samples the page, for drawing vertices textured with it.
+     */
+    Paint getPaint(final int page) {
+        return mPaints.get(page);
+    }
+
+    void clear() {
+        mRegions.clear();
+        for (Bitmap page : mPages) {
+            page.eraseColor(0);
+        }
+        mPage = -1;
+    }
+
+    /**
+     * Free the pages. The atlas can still be used, it allocates them again.
+     */
+    void recycle() {
+        mRegions.clear();
+        for (Bitmap page : mPages) {
+            page.recycle();
+        }
+        mPages.clear();
+        mPaints.clear();
+        mPage = -1;
+    }
+
+    int getPageCount() {
+        return mPages.size();
+    }
+}
@@ -0,0 +1,255 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PointF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+
+import com.mapbox.mapboxsdk.views.safecanvas.ISafeCanvas;
+
+import java.util.HashMap;
+
+/**
+ * Draws many markers without touching the canvas state for each. The corners of every marker
+ * are computed with its scale and rotation already applied, then
+ * <ul>
+ * <li>on a software canvas, all markers are drawn from a {@link MarkerAtlas} page with one
+ * {@link Canvas#drawVertices} call,</li>
+ * <li>on a hardware accelerated canvas, which ignores drawVertices, each marker with a bitmap
+ * icon is drawn with one {@link Canvas#drawBitmapMesh} call (API 18 and up).</li>
+ * </ul>
+ * Markers that can't be drawn this way, including those of subclasses overriding
+ * {@link Marker#draw} and those with icons other than bitmaps, are left to draw themselves.
+ */
+class MarkerBatch {
+
+    private static final boolean HONEYCOMB_OR_GREATER =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    private static final boolean JELLY_BEAN_MR2_OR_GREATER =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    /**
+     * Markers per drawVertices call, keeping vertex indices within a short.
+     */
+    static final int MAX_QUADS = 4096;
+
+    private static final HashMap<Class<?>, Boolean> sBatchable = new HashMap<Class<?>, Boolean>();
+
+    private final MarkerAtlas mAtlas = new MarkerAtlas();
+    private final float[] mVerts = new float[MAX_QUADS * 8];
+    private final float[] mTexs = new float[MAX_QUADS * 8];
+    private final short[] mIndices = new short[MAX_QUADS * 6];
+    private final float[] mMeshVerts = new float[8];
+    private final Paint mMeshPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+
+    private Canvas mCanvas;
+    private boolean mHardwareAccelerated;
+    private int mXOffset;
+    private int mYOffset;
+    private int mQuads;
+    private int mPage = -1;
+    private int mAlpha = 255;
+
+    MarkerBatch() {
+        for (int i = 0; i < MAX_QUADS; i++) {
+            final int vertex = i * 4;
+            final int index = i * 6;
+            // two triangles, top left - top right - bottom right and top left - bottom right -
+            // bottom left
+            mIndices[index] = (short) vertex;
+            mIndices[index + 1] = (short) (vertex + 1);
+            mIndices[index + 2] = (short) (vertex + 2);
+            mIndices[index + 3] = (short) vertex;
+            mIndices[index + 4] = (short) (vertex + 2);
+            mIndices[index + 5] = (short) (vertex + 3);
+        }
+    }
+
+    /**
+     * Start drawing markers to a canvas.
+     *
+     * @return false if markers can't be batched on it
+     */
+    boolean begin(final ISafeCanvas canvas) {
+        final Canvas wrapped = canvas.getWrappedCanvas();
+        mHardwareAccelerated = isHardwareAccelerated(wrapped);
+        if (mHardwareAccelerated && !JELLY_BEAN_MR2_OR_GREATER) {
+            return false;
+        }
+        mCanvas = wrapped;
+        mXOffset = canvas.getXOffset();
+        mYOffset = canvas.getYOffset();
+        mQuads = 0;
+        mPage = -1;
+        mAlpha = 255;
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static boolean isHardwareAccelerated(final Canvas canvas) {
+        return HONEYCOMB_OR_GREATER && canvas.isHardwareAccelerated();
+    }
+
+    /**
+     * Queue a marker, drawn the way {@link Marker#draw} would draw it unfocused.
+     *
+     * @return false if the marker can't be batched and has to be drawn on its own, after a
+     * {@link #flush()} to keep the drawing order
+     */
+    boolean add(final Marker marker, final float bearing, final float mapScale) {
+        if (!isBatchable(marker.getClass())) {
+            return false;
+        }
+        final Drawable icon = marker.getMarker(0);
+        if (icon == null) {
+            return true;
+        }
+        if (!(icon instanceof BitmapDrawable) || ((BitmapDrawable) icon).getBitmap() == null) {
+            return false;
+        }
+        final BitmapDrawable drawable = (BitmapDrawable) icon;
+        if (mHardwareAccelerated) {
+            return drawMesh(marker, drawable, bearing, mapScale);
+        }
+        MarkerAtlas.Region region = mAtlas.find(drawable);
+        if (region == null) {
+            // packing may start the atlas over, which would move the icons already queued
+            flush();
+            region = mAtlas.add(drawable);
+            if (region == null) {
+                return false;
+            }
+        }
+        final int alpha = drawable.getPaint().getAlpha();
+        if (region.page != mPage || alpha != mAlpha || mQuads == MAX_QUADS) {
+            flush();
+            mPage = region.page;
+            mAlpha = alpha;
+        }
+        computeCorners(marker, drawable, bearing, mapScale, mVerts, mQuads * 8);
+        final int t = mQuads * 8;
+        final float left = region.left;
+        final float top = region.top;
+        final float right = left + region.width;
+        final float bottom = top + region.height;
+        mTexs[t] = left;
+        mTexs[t + 1] = top;
+        mTexs[t + 2] = right;
+        mTexs[t + 3] = top;
+        mTexs[t + 4] = right;
+        mTexs[t + 5] = bottom;
+        mTexs[t + 6] = left;
+        mTexs[t + 7] = bottom;
+        mQuads++;
+        return true;
+    }
+
+    /**
+     * Markers of a class that draws itself differently have to keep doing so.
+     */
+    private static boolean isBatchable(final Class<?> markerClass) {
+        if (markerClass == Marker.class) {
+            return true;
+        }
+        Boolean batchable = sBatchable.get(markerClass);
+        if (batchable == null) {
+            batchable = true;
+            for (Class<?> c = markerClass; c != Marker.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("draw", ISafeCanvas.class, float.class, float.class,
+                            boolean.class);
+                    batchable = false;
+                    break;
+                } catch (NoSuchMethodException e) {
+                    // not overridden here
+                }
+            }
+            sBatchable.put(markerClass, batchable);
+        }
+        return batchable;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private boolean drawMesh(final Marker marker, final BitmapDrawable drawable,
+            final float bearing, final float mapScale) {
+        final Bitmap bitmap = drawable.getBitmap();
+        computeCorners(marker, drawable, bearing, mapScale, mMeshVerts, 0);
+        // the mesh is a single cell, its vertices go row by row: swap in the bottom corners
+        float x = mMeshVerts[4];
+        float y = mMeshVerts[5];
+        mMeshVerts[4] = mMeshVerts[6];
+        mMeshVerts[5] = mMeshVerts[7];
+        mMeshVerts[6] = x;
+        mMeshVerts[7] = y;
+        mMeshPaint.setAlpha(drawable.getPaint().getAlpha());
+        mCanvas.drawBitmapMesh(bitmap, 1, 1, mMeshVerts, 0, null, 0, mMeshPaint);
+        return true;
+    }
+
+    /**
+     * Put the corners of the marker in clockwise order from the top left, in coordinates of
+     * the wrapped canvas. Matches the scale, rotate and translate of {@link Marker#draw} and
+     * {@link Overlay#drawAt}.
+     */
+    private void computeCorners(final Marker marker, final Drawable drawable,
+            final float bearing, final float mapScale, final float[] out, final int offset) {
+        final PointF position = marker.getPositionOnMap();
+        final float width = drawable.getIntrinsicWidth();
+        final float height = drawable.getIntrinsicHeight();
+        final PointF anchor = marker.mAnchor;
+        final float left = anchor != null ? -anchor.x * marker.getWidth() : 0;
+        final float top = anchor != null ? -anchor.y * marker.getRealHeight() : 0;
+        final double angle = Math.toRadians(-(bearing - marker.getHeading()));
+        final float cos = (float) (Math.cos(angle) * mapScale);
+        final float sin = (float) (Math.sin(angle) * mapScale);
+        // map pixels can exceed float precision, so offset them to the screen first
+        final float x = (float) ((double) position.x + mXOffset);
+        final float y = (float) ((double) position.y + mYOffset);
+        corner(x, y, cos, sin, left, top, out, offset);
+        corner(x, y, cos, sin, left + width, top, out, offset + 2);
+        corner(x, y, cos, sin, left + width, top + height, out, offset + 4);
+        corner(x, y, cos, sin, left, top + height, out, offset + 6);
+    }
+
+    private static void corner(final float x, final float y, final float cos, final float sin,
+            final float dx, final float dy, final float[] out, final int offset) {
+        out[offset] = x + dx * cos - dy * sin;
+        out[offset + 1] = y + dx * sin + dy * cos;
+    }
+
+    /**
+     * Draw the queued markers.
+     */
+    void flush() {
+        if (mQuads > 0) {
+            final Paint paint = mAtlas.getPaint(mPage);
+            paint.setAlpha(mAlpha);
+            mCanvas.drawVertices(Canvas.VertexMode.TRIANGLES, mQuads * 8, mVerts, 0, mTexs, 0,
+                    null, 0, mIndices, 0, mQuads * 6, paint);
+        }
+        mQuads = 0;
+    }
+
+    /**
+     * Draw what is left and let go of the canvas.
+     */
+    void end() {
+        flush();
+        mCanvas = null;
+    }
+
+    /**
+     * Free the atlas pages, e.g. once the overlay is detached.
+     */
+    void recycle() {
+        mAtlas.recycle();
+    }
+
+    MarkerAtlas getAtlas() {
+        return mAtlas;
+    }
+}
@@ -0,0 +1,536 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups markers into clusters for every integer zoom level up to a maximum.
+ * <p/>
+ * The clusters form a hierarchical grid: at zoom z the world is split into 2^(z+2) cells per
+ * side (64px cells with 256px tiles), and every cell holds the markers that fall in it. Cells of
+ * zoom z are exactly four cells of zoom z+1, so the markers are sorted once by the Morton code of
+ * their deepest cell and every coarser level is aggregated from the one below in a linear pass.
+ * A cluster's markers stay a contiguous run of that order at every level.
+ * <p/>
+ * Marker changes are applied to a point store on the main thread and coalesced; the hierarchy is
+ * then rebuilt on a background thread into an immutable {@link Snapshot} that replaces the
+ * previous one atomically, so drawing never waits on clustering.
+ */
+public class MarkerClusterer {
+
+    private static final String TAG = "MarkerClusterer";
+
+    public static final int DEFAULT_MAX_CLUSTER_ZOOM = 16;
+
+    /**
+     * The deepest zoom that can be clustered, bounded by the bits of a packed sort key.
+     */
+    public static final int MAX_CLUSTER_ZOOM = 18;
+
+    /**
+     * Grid cells per tile side at any zoom, as a power of two.
+     */
+    private static final int CELLS_PER_TILE_SHIFT = 2;
+
+    private static final int INDEX_BITS = 23;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    /**
+     * The most markers that can be clustered.
+     */
+    public static final int MAXIMUM_MARKERS = 1 << INDEX_BITS;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(runnable, TAG);
+                }
+            });
+
+    /**
+     * Notified on a background thread whenever a new snapshot replaced the previous one.
+     */
+    public interface OnClustersChangedListener {
+        void onClustersChanged(MarkerClusterer clusterer, Snapshot snapshot);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private volatile Snapshot mSnapshot;
+    private volatile OnClustersChangedListener mListener;
+    private int mMaxZoom = DEFAULT_MAX_CLUSTER_ZOOM;
+
+    // the point store, only touched on the main thread
+    private final IdentityHashMap<Marker, Integer> mSlots = new IdentityHashMap<Marker, Integer>();
+    private Marker[] mMarkers = new Marker[16];
+    private double[] mX = new double[16];
+    private double[] mY = new double[16];
+    private int mCount;
+    private boolean mRebuildPosted;
+
+    private final Runnable mSubmitRebuild = new Runnable() {
+        @Override
+        public void run() {
+            mRebuildPosted = false;
+            submitRebuild();
+        }
+    };
+
+    public MarkerClusterer setOnClustersChangedListener(final OnClustersChangedListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Set the deepest zoom level markers are clustered at. Above it markers are drawn
+     * individually.
+     */
+    public MarkerClusterer setMaxZoom(final int maxZoom) {
+        if (maxZoom < 0 || maxZoom > MAX_CLUSTER_ZOOM) {
+            throw new IllegalArgumentException("maxZoom must be between 0 and "
+                    + MAX_CLUSTER_ZOOM + ": " + maxZoom);
+        }
+        if (maxZoom != mMaxZoom) {
+            mMaxZoom = maxZoom;
+            scheduleRebuild();
+        }
+        return this;
+    }
+
+    public int getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /**
+     * The clusters built from the markers known when the last rebuild started, or null before
+     * the first rebuild finished.
+     */
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Replace all markers. Their positions are read from the spatial index of their overlay.
+     */
+    public void setMarkers(final List<Marker> markers) {
+        clearStore();
+        for (int i = 0; i < markers.size(); i++) {
+            store(markers.get(i));
+        }
+        scheduleRebuild();
+    }
+
+    public void add(final Marker marker) {
+        if (!mSlots.containsKey(marker)) {
+            store(marker);
+            scheduleRebuild();
+        }
+    }
+
+    public void remove(final Marker marker) {
+        final Integer slot = mSlots.remove(marker);
+        if (slot == null) {
+            return;
+        }
+        // move the last marker into the freed slot
+        final int last = --mCount;
+        if (slot != last) {
+            mMarkers[slot] = mMarkers[last];
+            mX[slot] = mX[last];
+            mY[slot] = mY[last];
+            mSlots.put(mMarkers[slot], slot);
+        }
+        mMarkers[last] = null;
+        scheduleRebuild();
+    }
+
+    /**
+     * Pick up the new position of a marker.
+     */
+    public void update(final Marker marker) {
+        final Integer slot = mSlots.get(marker);
+        if (slot == null) {
+            add(marker);
+        } else if (Double.isNaN(marker.mWorldX)) {
+            remove(marker);
+        } else if (mX[slot] != marker.mWorldX || mY[slot] != marker.mWorldY) {
+            mX[slot] = marker.mWorldX;
+            mY[slot] = marker.mWorldY;
+            scheduleRebuild();
+        }
+    }
+
+    public void clear() {
+        clearStore();
+        scheduleRebuild();
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    private void clearStore() {
+        Arrays.fill(mMarkers, 0, mCount, null);
+        mSlots.clear();
+        mCount = 0;
+    }
+
+    private void store(final Marker marker) {
+        if (Double.isNaN(marker.mWorldX)) {
+            // markers without a position are never drawn
+            return;
+        }
+        if (mCount == MAXIMUM_MARKERS) {
+            Log.e(TAG, "Can't cluster more than " + MAXIMUM_MARKERS + " markers");
+            return;
+        }
+        if (mCount == mMarkers.length) {
+            final int capacity = mCount * 2;
+            mMarkers = Arrays.copyOf(mMarkers, capacity);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+        }
+        mMarkers[mCount] = marker;
+        mX[mCount] = marker.mWorldX;
+        mY[mCount] = marker.mWorldY;
+        mSlots.put(marker, mCount);
+        mCount++;
+    }
+
+    /**
+     * Changes made in one pass of the main thread are rebuilt together.
+     */
+    private void scheduleRebuild() {
+        mGeneration.incrementAndGet();
+        if (!mRebuildPosted) {
+            mRebuildPosted = true;
+            mMainHandler.post(mSubmitRebuild);
+        }
+    }
+
+    private void submitRebuild() {
+        final int generation = mGeneration.get();
+        final int count = mCount;
+        final int maxZoom = mMaxZoom;
+        final Marker[] markers = Arrays.copyOf(mMarkers, count);
+        final double[] xs = Arrays.copyOf(mX, count);
+        final double[] ys = Arrays.copyOf(mY, count);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration.get()) {
+                    // outdated before it started, and a newer rebuild is queued behind it
+                    return;
+                }
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                final Snapshot snapshot = Snapshot.build(markers, xs, ys, count, maxZoom);
+                // a snapshot outdated while it was built is still published, so a steady
+                // stream of changes still shows up; rebuilds run in order on one thread, so
+                // a newer snapshot is never replaced by an older one
+                mSnapshot = snapshot;
+                final OnClustersChangedListener listener = mListener;
+                if (listener != null) {
+                    listener.onClustersChanged(MarkerClusterer.this, snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Interleave the bits of two cell coordinates into a Morton code.
+     */
+    static long interleave(final long x, final long y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(long v) {
+        v &= 0xffffffffL;
+        v = (v | (v << 16)) & 0x0000ffff0000ffffL;
+        v = (v | (v << 8)) & 0x00ff00ff00ff00ffL;
+        v = (v | (v << 4)) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    private static long cell(final double worldCoordinate, final long side) {
+        return Math.max(0, Math.min(side - 1, (long) Math.floor(worldCoordinate * side)));
+    }
+
+    /**
+     * A growable list of cluster ids, filled by {@link Snapshot#query}.
+     */
+    public static final class ClusterIds {
+        int[] mIds = new int[64];
+        int mSize;
+
+        public int size() {
+            return mSize;
+        }
+
+        public int get(final int i) {
+            return mIds[i];
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+
+        void add(final int id) {
+            if (mSize == mIds.length) {
+                mIds = Arrays.copyOf(mIds, mSize * 2);
+            }
+            mIds[mSize++] = id;
+        }
+    }
+
+    private static final class Level {
+        final long[] keys;
+        final int[] starts;
+        final int[] counts;
+        final float[] xs;
+        final float[] ys;
+
+        Level(final long[] keys, final int[] starts, final int[] counts, final double[] sumX,
+                final double[] sumY, final int size) {
+            this.keys = Arrays.copyOf(keys, size);
+            this.starts = Arrays.copyOf(starts, size);
+            this.counts = Arrays.copyOf(counts, size);
+            xs = new float[size];
+            ys = new float[size];
+            for (int i = 0; i < size; i++) {
+                xs[i] = (float) (sumX[i] / counts[i]);
+                ys[i] = (float) (sumY[i] / counts[i]);
+            }
+        }
+    }
+
+    /**
+     * The clusters of every zoom level up to {@link #getMaxZoom()} at one point in time.
+     * Clusters are addressed by zoom and id, ids being valid only within their snapshot.
+     */
+    public static final class Snapshot {
+        private final int mMaxZoom;
+        private final Marker[] mMarkers;
+        private final long[] mLeafKeys;
+        private final Level[] mLevels;
+
+        private Snapshot(final int maxZoom, final Marker[] markers, final long[] leafKeys,
+                final Level[] levels) {
+            mMaxZoom = maxZoom;
+            mMarkers = markers;
+            mLeafKeys = leafKeys;
+            mLevels = levels;
+        }
+
+        static Snapshot build(final Marker[] markers, final double[] xs, final double[] ys,
+                final int n, final int maxZoom) {
+            final long side = 1L << (maxZoom + CELLS_PER_TILE_SHIFT);
+            final long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = (interleave(cell(xs[i], side), cell(ys[i], side)) << INDEX_BITS) | i;
+            }
+            Arrays.sort(packed);
+
+            final Marker[] sorted = new Marker[n];
+            final long[] leafKeys = new long[n];
+            final long[] keys = new long[n];
+            final int[] starts = new int[n];
+            final int[] counts = new int[n];
+            final double[] sumX = new double[n];
+            final double[] sumY = new double[n];
+            int size = 0;
+            for (int i = 0; i < n; i++) {
+                final int index = (int) (packed[i] & INDEX_MASK);
+                final long key = packed[i] >>> INDEX_BITS;
+                sorted[i] = markers[index];
+                leafKeys[i] = key;
+                if (size == 0 || keys[size - 1] != key) {
+                    keys[size] = key;
+                    starts[size] = i;
+                    counts[size] = 0;
+                    sumX[size] = 0;
+                    sumY[size] = 0;
+                    size++;
+                }
+                counts[size - 1]++;
+                sumX[size - 1] += xs[index];
+                sumY[size - 1] += ys[index];
+            }
+
+            final Level[] levels = new Level[maxZoom + 1];
+            levels[maxZoom] = new Level(keys, starts, counts, sumX, sumY, size);
+            for (int zoom = maxZoom - 1; zoom >= 0; zoom--) {
+                // merge the cells of the level below in place, parents have a key two bits shorter
+                int merged = 0;
+                for (int i = 0; i < size; i++) {
+                    final long key = keys[i] >>> 2;
+                    if (merged == 0 || keys[merged - 1] != key) {
+                        keys[merged] = key;
+                        starts[merged] = starts[i];
+                        counts[merged] = counts[i];
+                        sumX[merged] = sumX[i];
+                        sumY[merged] = sumY[i];
+                        merged++;
+                    } else {
+                        counts[merged - 1] += counts[i];
+                        sumX[merged - 1] += sumX[i];
+                        sumY[merged - 1] += sumY[i];
+                    }
+                }
+                size = merged;
+                levels[zoom] = new Level(keys, starts, counts, sumX, sumY, size);
+            }
+            return new Snapshot(maxZoom, sorted, leafKeys, levels);
+        }
+
+        public int getMaxZoom() {
+            return mMaxZoom;
+        }
+
+        /**
+         * The number of clusters at a zoom level, single markers included.
+         */
+        public int size(final int zoom) {
+            return mLevels[zoom].keys.length;
+        }
+
+        /**
+         * Find the clusters whose center lies in a rectangle of world coordinates.
+         *
+         * @param out cleared and filled with the ids of the clusters, in no particular order
+         */
+        public void query(final int zoom, final double minX, final double minY,
+                final double maxX, final double maxY, final ClusterIds out) {
+            out.clear();
+            final Level level = mLevels[zoom];
+            final long side = 1L << (zoom + CELLS_PER_TILE_SHIFT);
+            final long cx0 = cell(minX, side);
+            final long cy0 = cell(minY, side);
+            final long cx1 = cell(maxX, side);
+            final long cy1 = cell(maxY, side);
+            if ((cx1 - cx0 + 1) * (cy1 - cy0 + 1) > level.keys.length) {
+                for (int i = 0; i < level.keys.length; i++) {
+                    if (contains(level, i, minX, minY, maxX, maxY)) {
+                        out.add(i);
+                    }
+                }
+                return;
+            }
+            for (long cy = cy0; cy <= cy1; cy++) {
+                for (long cx = cx0; cx <= cx1; cx++) {
+                    final int i = Arrays.binarySearch(level.keys, interleave(cx, cy));
+                    if (i >= 0 && contains(level, i, minX, minY, maxX, maxY)) {
+                        out.add(i);
+                    }
+                }
+            }
+        }
+
+        private static boolean contains(final Level level, final int i, final double minX,
+                final double minY, final double maxX, final double maxY) {
+            final float x = level.xs[i];
+            final float y = level.ys[i];
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+
+        public int getCount(final int zoom, final int id) {
+            return mLevels[zoom].counts[id];
+        }
+
+        /**
+         * The x world coordinate of the center of a cluster.
+         */
+        public float getX(final int zoom, final int id) {
+            return mLevels[zoom].xs[id];
+        }
+
+        /**
+         * The y world coordinate of the center of a cluster.
+         */
+        public float getY(final int zoom, final int id) {
+            return mLevels[zoom].ys[id];
+        }
+
+        /**
+         * The first marker of a cluster, the only one for clusters of one.
+         */
+        public Marker getMarker(final int zoom, final int id) {
+            return mMarkers[mLevels[zoom].starts[id]];
+        }
+
+        public Cluster getCluster(final int zoom, final int id) {
+            return new Cluster(this, zoom, id);
+        }
+    }
+
+    /**
+     * A group of markers drawn as one at a zoom level.
+     */
+    public static final class Cluster {
+        private final Snapshot mSnapshot;
+        private final int mZoom;
+        private final int mId;
+
+        private Cluster(final Snapshot snapshot, final int zoom, final int id) {
+            mSnapshot = snapshot;
+            mZoom = zoom;
+            mId = id;
+        }
+
+        public int getZoom() {
+            return mZoom;
+        }
+
+        public int getCount() {
+            return mSnapshot.getCount(mZoom, mId);
+        }
+
+        /**
+         * The center of the markers in this cluster.
+         */
+        public LatLng getPosition() {
+            final int mapSize = Projection.mapSize(0);
+            return Projection.pixelXYToLatLong(mSnapshot.getX(mZoom, mId) * mapSize,
+                    mSnapshot.getY(mZoom, mId) * mapSize, 0);
+        }
+
+        public List<Marker> getMarkers() {
+            final int start = mSnapshot.mLevels[mZoom].starts[mId];
+            return Collections.unmodifiableList(
+                    Arrays.asList(mSnapshot.mMarkers).subList(start, start + getCount()));
+        }
+
+        /**
+         * The lowest zoom level at which this cluster falls apart, one past the deepest
+         * clustered zoom if its markers are never separated.
+         */
+        public int getExpansionZoom() {
+            final int start = mSnapshot.mLevels[mZoom].starts[mId];
+            final long first = mSnapshot.mLeafKeys[start];
+            final long last = mSnapshot.mLeafKeys[start + getCount() - 1];
+            for (int zoom = mZoom + 1; zoom <= mSnapshot.mMaxZoom; zoom++) {
+                final int shift = 2 * (mSnapshot.mMaxZoom - zoom);
+                if ((first >>> shift) != (last >>> shift)) {
+                    return zoom;
+                }
+            }
+            return mSnapshot.mMaxZoom + 1;
+        }
+    }
+}
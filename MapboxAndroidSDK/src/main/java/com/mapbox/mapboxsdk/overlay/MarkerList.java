@@ -0,0 +1,402 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A list of markers kept sorted by a comparator, or in insertion order without one.
+ * <p/>
+ * Backed by a treap whose nodes know their subtree size and parent, so adding, removing,
+ * re-sorting a single marker, {@link #get(int)} and {@link #indexOf(Object)} all cost
+ * O(log n). Each marker remembers its node, so like {@link MarkerSpatialIndex} adding it to
+ * one list takes it out of any other.
+ * Markers that compare equal keep their insertion order.
+ * <p/>
+ * {@link #add(int, Marker)} and {@link #set(int, Marker)} put the marker at the given index
+ * only in a list without a comparator; a sorted list puts it at its sorted position instead.
+ */
+public class MarkerList extends AbstractList<Marker> {
+
+    static final class Node {
+        final Marker marker;
+        final int priority;
+        final MarkerList owner;
+        Node left;
+        Node right;
+        Node parent;
+        int size = 1;
+
+        Node(final Marker marker, final int priority, final MarkerList owner) {
+            this.marker = marker;
+            this.priority = priority;
+            this.owner = owner;
+        }
+    }
+
+    private final Comparator<? super Marker> mOrder;
+    private final Random mRandom = new Random();
+    private Node mRoot;
+
+    /**
+     * @param order the order of the markers, null to keep them in insertion order
+     */
+    public MarkerList(final Comparator<? super Marker> order) {
+        mOrder = order;
+    }
+
+    public Comparator<? super Marker> getOrder() {
+        return mOrder;
+    }
+
+    @Override
+    public int size() {
+        return size(mRoot);
+    }
+
+    private static int size(final Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private Node nodeOf(final Object object) {
+        if (!(object instanceof Marker)) {
+            return null;
+        }
+        final Node node = ((Marker) object).mListNode;
+        return (node != null && node.owner == this) ? node : null;
+    }
+
+    @Override
+    public boolean contains(final Object object) {
+        return nodeOf(object) != null;
+    }
+
+    @Override
+    public Marker get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node node = mRoot;
+        int i = index;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (i < leftSize) {
+                node = node.left;
+            } else if (i == leftSize) {
+                return node.marker;
+            } else {
+                i -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public int indexOf(final Object object) {
+        Node node = nodeOf(object);
+        if (node == null) {
+            return -1;
+        }
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node == node.parent.right) {
+                index += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(final Object object) {
+        return indexOf(object);
+    }
+
+    /**
+     * Insert a marker at its sorted position, after the markers equal to it.
+     *
+     * @return false if the marker is in this list already
+     */
+    @Override
+    public boolean add(final Marker marker) {
+        if (contains(marker)) {
+            return false;
+        }
+        if (marker.mListNode != null) {
+            marker.mListNode.owner.remove(marker);
+        }
+        final Node node = new Node(marker, mRandom.nextInt(), this);
+        marker.mListNode = node;
+        insert(node, -1);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Insert a marker at the given index, or at its sorted position if the list is sorted.
+     * A marker in the list already is moved.
+     */
+    @Override
+    public void add(final int index, final Marker marker) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        if (mOrder != null) {
+            add(marker);
+            return;
+        }
+        if (marker.mListNode != null) {
+            marker.mListNode.owner.remove(marker);
+        }
+        final Node node = new Node(marker, mRandom.nextInt(), this);
+        marker.mListNode = node;
+        insert(node, Math.min(index, size()));
+        modCount++;
+    }
+
+    /**
+     * Replace the marker at the given index. In a sorted list the new marker goes to its
+     * sorted position, which may be another index.
+     *
+     * @return the marker replaced
+     */
+    @Override
+    public Marker set(final int index, final Marker marker) {
+        final Marker previous = get(index);
+        if (previous != marker) {
+            remove(previous);
+            add(mOrder != null ? 0 : index, marker);
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean addAll(final Collection<? extends Marker> markers) {
+        boolean changed = false;
+        for (Marker marker : markers) {
+            changed |= add(marker);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean remove(final Object object) {
+        final Node node = nodeOf(object);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        node.marker.mListNode = null;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Marker remove(final int index) {
+        final Marker marker = get(index);
+        remove(marker);
+        return marker;
+    }
+
+    /**
+     * Move a marker to its sorted position after its sort key changed.
+     */
+    public void reorder(final Marker marker) {
+        final Node node = nodeOf(marker);
+        if (node == null || mOrder == null) {
+            return;
+        }
+        unlink(node);
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.size = 1;
+        insert(node, -1);
+        modCount++;
+    }
+
+    /**
+     * Sort all markers again, after many sort keys changed at once.
+     */
+    public void sort() {
+        if (mOrder == null) {
+            return;
+        }
+        final Marker[] markers = toArray(new Marker[size()]);
+        clear();
+        Arrays.sort(markers, mOrder);
+        for (Marker marker : markers) {
+            add(marker);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Marker marker : this) {
+            marker.mListNode = null;
+        }
+        mRoot = null;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<Marker> iterator() {
+        return new Iterator<Marker>() {
+            private Node mNext = first(mRoot);
+            private Node mLast;
+            private int mExpectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return mNext != null;
+            }
+
+            @Override
+            public Marker next() {
+                if (mExpectedModCount != modCount) {
+                    throw new java.util.ConcurrentModificationException();
+                }
+                if (mNext == null) {
+                    throw new NoSuchElementException();
+                }
+                mLast = mNext;
+                mNext = successor(mNext);
+                return mLast.marker;
+            }
+
+            @Override
+            public void remove() {
+                if (mLast == null) {
+                    throw new IllegalStateException();
+                }
+                MarkerList.this.remove(mLast.marker);
+                mLast = null;
+                mExpectedModCount = modCount;
+            }
+        };
+    }
+
+    private static Node first(Node node) {
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+
+    private static Node successor(Node node) {
+        if (node.right != null) {
+            return first(node.right);
+        }
+        while (node.parent != null && node == node.parent.right) {
+            node = node.parent;
+        }
+        return node.parent;
+    }
+
+    /**
+     * @param index the index to insert the node at, or -1 for its sorted position
+     */
+    private void insert(final Node node, int index) {
+        if (mRoot == null) {
+            mRoot = node;
+            return;
+        }
+        Node parent = mRoot;
+        while (true) {
+            parent.size++;
+            final boolean left;
+            if (index >= 0) {
+                final int leftSize = size(parent.left);
+                left = index <= leftSize;
+                if (!left) {
+                    index -= leftSize + 1;
+                }
+            } else {
+                // equal markers go right, so they keep their insertion order
+                left = mOrder != null && mOrder.compare(node.marker, parent.marker) < 0;
+            }
+            final Node child = left ? parent.left : parent.right;
+            if (child == null) {
+                if (left) {
+                    parent.left = node;
+                } else {
+                    parent.right = node;
+                }
+                node.parent = parent;
+                break;
+            }
+            parent = child;
+        }
+        while (node.parent != null && node.parent.priority < node.priority) {
+            rotateUp(node);
+        }
+    }
+
+    private void unlink(final Node node) {
+        // rotate the node down until it is a leaf, then cut it off
+        while (node.left != null || node.right != null) {
+            final Node child;
+            if (node.left == null) {
+                child = node.right;
+            } else if (node.right == null) {
+                child = node.left;
+            } else {
+                child = node.left.priority > node.right.priority ? node.left : node.right;
+            }
+            rotateUp(child);
+        }
+        final Node parent = node.parent;
+        if (parent == null) {
+            mRoot = null;
+        } else {
+            if (parent.left == node) {
+                parent.left = null;
+            } else {
+                parent.right = null;
+            }
+            for (Node n = parent; n != null; n = n.parent) {
+                n.size--;
+            }
+        }
+        node.parent = null;
+    }
+
+    /**
+     * Rotate a node above its parent, keeping the in-order sequence and subtree sizes.
+     */
+    private void rotateUp(final Node node) {
+        final Node parent = node.parent;
+        final Node grandParent = parent.parent;
+        if (node == parent.left) {
+            parent.left = node.right;
+            if (node.right != null) {
+                node.right.parent = parent;
+            }
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) {
+                node.left.parent = parent;
+            }
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent = grandParent;
+        if (grandParent == null) {
+            mRoot = node;
+        } else if (grandParent.left == parent) {
+            grandParent.left = node;
+        } else {
+            grandParent.right = node;
+        }
+        parent.size = size(parent.left) + size(parent.right) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+}
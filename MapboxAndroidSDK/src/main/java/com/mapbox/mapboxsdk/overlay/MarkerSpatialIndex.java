@@ -0,0 +1,315 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A point quadtree of markers over their world coordinates (see
+ * {@link Projection#latLongToWorldXY(double, double, double[])}). As world coordinates
+ * don't depend on the zoom level, the index only changes when markers are added, removed or
+ * moved, and finding the markers in a viewport costs O(log n + k) instead of a walk over all
+ * of them. Markers without a position are kept aside and returned by every query.
+ */
+public class MarkerSpatialIndex {
+
+    /**
+     * Markers a leaf holds before it is split into four.
+     */
+    private static final int NODE_CAPACITY = 16;
+
+    /**
+     * Leaves this deep are never split, about 40m at the equator, so many markers on the same
+     * spot don't recurse forever.
+     */
+    private static final int MAX_DEPTH = 20;
+
+    private static final class Node {
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final int depth;
+        Node[] children;
+        Marker[] items = new Marker[NODE_CAPACITY];
+        int itemCount;
+        int count;
+
+        Node(final double minX, final double minY, final double maxX, final double maxY,
+                final int depth) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.depth = depth;
+        }
+
+        int childIndex(final double x, final double y) {
+            final double midX = (minX + maxX) / 2;
+            final double midY = (minY + maxY) / 2;
+            return (x >= midX ? 1 : 0) + (y >= midY ? 2 : 0);
+        }
+    }
+
+    private Node mRoot = newRoot();
+    private final ArrayList<Marker> mUnplaced = new ArrayList<Marker>();
+    private final double[] mWorldXY = new double[2];
+    private int mSize;
+
+    private static Node newRoot() {
+        return new Node(0, 0, 1, 1, 0);
+    }
+
+    /**
+     * The number of markers in the index.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(final Marker marker) {
+        return marker.mSpatialIndex == this;
+    }
+
+    /**
+     * Add a marker, or update its position if it is indexed already.
+     */
+    public void insert(final Marker marker) {
+        if (marker.mSpatialIndex == this) {
+            update(marker);
+            return;
+        }
+        if (marker.mSpatialIndex != null) {
+            marker.mSpatialIndex.remove(marker);
+        }
+        project(marker);
+        place(marker);
+        marker.mSpatialIndex = this;
+        mSize++;
+    }
+
+    /**
+     * Remove a marker.
+     *
+     * @return false if the marker wasn't in this index
+     */
+    public boolean remove(final Marker marker) {
+        if (marker.mSpatialIndex != this) {
+            return false;
+        }
+        unplace(marker);
+        marker.mSpatialIndex = null;
+        mSize--;
+        return true;
+    }
+
+    /**
+     * Move a marker to its current position. Does nothing for markers of other indexes.
+     */
+    public void update(final Marker marker) {
+        if (marker.mSpatialIndex != this) {
+            return;
+        }
+        final double oldX = marker.mWorldX;
+        final double oldY = marker.mWorldY;
+        final LatLng point = marker.getPoint();
+        if (point != null) {
+            Projection.latLongToWorldXY(point.getLatitude(), point.getLongitude(), mWorldXY);
+            if (mWorldXY[0] == oldX && mWorldXY[1] == oldY) {
+                return;
+            }
+        } else if (Double.isNaN(oldX)) {
+            return;
+        }
+        unplace(marker);
+        project(marker);
+        place(marker);
+    }
+
+    /**
+     * Remove all markers.
+     */
+    public void clear() {
+        for (Marker marker : mUnplaced) {
+            marker.mSpatialIndex = null;
+        }
+        mUnplaced.clear();
+        detachAll(mRoot);
+        mRoot = newRoot();
+        mSize = 0;
+    }
+
+    /**
+     * Find the markers inside a rectangle of world coordinates, edges included. Markers without
+     * a position are always added. The order of the results is undefined.
+     *
+     * @param out the list the markers are added to
+     */
+    public void query(final double minX, final double minY, final double maxX, final double maxY,
+            final List<Marker> out) {
+        out.addAll(mUnplaced);
+        query(mRoot, minX, minY, maxX, maxY, out);
+    }
+
+    private void project(final Marker marker) {
+        final LatLng point = marker.getPoint();
+        if (point == null) {
+            marker.mWorldX = Double.NaN;
+            marker.mWorldY = Double.NaN;
+            return;
+        }
+        Projection.latLongToWorldXY(point.getLatitude(), point.getLongitude(), mWorldXY);
+        marker.mWorldX = mWorldXY[0];
+        marker.mWorldY = mWorldXY[1];
+    }
+
+    private void place(final Marker marker) {
+        if (Double.isNaN(marker.mWorldX)) {
+            mUnplaced.add(marker);
+            return;
+        }
+        Node node = mRoot;
+        while (true) {
+            node.count++;
+            if (node.children == null) {
+                break;
+            }
+            node = node.children[node.childIndex(marker.mWorldX, marker.mWorldY)];
+        }
+        addItem(node, marker);
+        if (node.itemCount > NODE_CAPACITY && node.depth < MAX_DEPTH) {
+            split(node);
+        }
+    }
+
+    private void unplace(final Marker marker) {
+        if (Double.isNaN(marker.mWorldX)) {
+            mUnplaced.remove(marker);
+            return;
+        }
+        // find the leaf first, so counts stay right if the marker isn't where it should be
+        Node node = mRoot;
+        while (node.children != null) {
+            node = node.children[node.childIndex(marker.mWorldX, marker.mWorldY)];
+        }
+        if (!removeItem(node, marker)) {
+            return;
+        }
+        node = mRoot;
+        while (node != null) {
+            node.count--;
+            if (node.children == null) {
+                break;
+            }
+            if (node.count <= NODE_CAPACITY / 2) {
+                collapse(node);
+                break;
+            }
+            node = node.children[node.childIndex(marker.mWorldX, marker.mWorldY)];
+        }
+    }
+
+    private static void addItem(final Node node, final Marker marker) {
+        if (node.itemCount == node.items.length) {
+            final Marker[] items = new Marker[node.items.length * 2];
+            System.arraycopy(node.items, 0, items, 0, node.itemCount);
+            node.items = items;
+        }
+        node.items[node.itemCount++] = marker;
+    }
+
+    private static boolean removeItem(final Node node, final Marker marker) {
+        for (int i = 0; i < node.itemCount; i++) {
+            if (node.items[i] == marker) {
+                node.items[i] = node.items[--node.itemCount];
+                node.items[node.itemCount] = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void split(final Node node) {
+        final double midX = (node.minX + node.maxX) / 2;
+        final double midY = (node.minY + node.maxY) / 2;
+        final int depth = node.depth + 1;
+        node.children = new Node[] {
+                new Node(node.minX, node.minY, midX, midY, depth),
+                new Node(midX, node.minY, node.maxX, midY, depth),
+                new Node(node.minX, midY, midX, node.maxY, depth),
+                new Node(midX, midY, node.maxX, node.maxY, depth)
+        };
+        for (int i = 0; i < node.itemCount; i++) {
+            final Marker marker = node.items[i];
+            final Node child = node.children[node.childIndex(marker.mWorldX, marker.mWorldY)];
+            child.count++;
+            addItem(child, marker);
+        }
+        node.items = null;
+        node.itemCount = 0;
+        for (Node child : node.children) {
+            if (child.itemCount > NODE_CAPACITY && child.depth < MAX_DEPTH) {
+                split(child);
+            }
+        }
+    }
+
+    private static void collapse(final Node node) {
+        node.items = new Marker[Math.max(NODE_CAPACITY, node.count)];
+        node.itemCount = 0;
+        final Node[] children = node.children;
+        node.children = null;
+        for (Node child : children) {
+            gather(child, node);
+        }
+    }
+
+    private static void gather(final Node from, final Node into) {
+        if (from.children != null) {
+            for (Node child : from.children) {
+                gather(child, into);
+            }
+            return;
+        }
+        for (int i = 0; i < from.itemCount; i++) {
+            addItem(into, from.items[i]);
+        }
+    }
+
+    private static void detachAll(final Node node) {
+        if (node.children != null) {
+            for (Node child : node.children) {
+                detachAll(child);
+            }
+            return;
+        }
+        for (int i = 0; i < node.itemCount; i++) {
+            node.items[i].mSpatialIndex = null;
+        }
+    }
+
+    private static void query(final Node node, final double minX, final double minY,
+            final double maxX, final double maxY, final List<Marker> out) {
+        if (node.count == 0 || node.minX > maxX || node.maxX < minX
+                || node.minY > maxY || node.maxY < minY) {
+            return;
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                query(child, minX, minY, maxX, maxY, out);
+            }
+            return;
+        }
+        final boolean inside = node.minX >= minX && node.maxX <= maxX
+                && node.minY >= minY && node.maxY <= maxY;
+        for (int i = 0; i < node.itemCount; i++) {
+            final Marker marker = node.items[i];
+            if (inside || (marker.mWorldX >= minX && marker.mWorldX <= maxX
+                    && marker.mWorldY >= minY && marker.mWorldY <= maxY)) {
+                out.add(marker);
+            }
+        }
+    }
+}
@@ -36,6 +36,7 @@ public abstract class Overlay {
     private static final Rect mRect = new Rect();
     private boolean mEnabled = true;
     private int mOverlayIndex = 3;
+    private volatile int mLayerGeneration = 0;
 
     public static final int MAPEVENTSOVERLAY_INDEX = 0;
     public static final int PATHOVERLAY_INDEX = 1;
@@ -95,6 +96,28 @@ public abstract class Overlay {
         return this.mEnabled;
     }
 
+    /**
+     * Whether the overlay only looks different when the map moves or zooms, or after it calls
+     * {@link #invalidateLayer()}. The overlays at the bottom of the stack that are, with the
+     * tiles, are drawn once into a layer the map keeps, so redrawing the overlays above them,
+     * such as a moving marker, doesn't draw them again. False by default.
+     */
+    public boolean isLayerCacheable() {
+        return false;
+    }
+
+    /**
+     * Have the layer this overlay is kept in drawn again, once the map is redrawn. Layer
+     * cacheable overlays call this when they change. Invalidating the whole map does this too.
+     */
+    protected void invalidateLayer() {
+        mLayerGeneration++;
+    }
+
+    int getLayerGeneration() {
+        return mLayerGeneration;
+    }
+
     /**
      * Since the menu-chain will pass through several independent Overlays, menu IDs cannot be
      * fixed
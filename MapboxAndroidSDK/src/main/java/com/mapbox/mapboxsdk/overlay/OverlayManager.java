@@ -1,12 +1,19 @@
 package com.mapbox.mapboxsdk.overlay;
 
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Point;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.MotionEvent;
 import com.mapbox.mapboxsdk.overlay.Overlay.Snappable;
+import com.mapbox.mapboxsdk.tileprovider.MemoryCacheSizeController;
+import com.mapbox.mapboxsdk.util.MapMetrics;
 import com.mapbox.mapboxsdk.views.MapView;
 import java.util.AbstractList;
 import java.util.Arrays;
@@ -17,10 +24,40 @@ import java.util.concurrent.CopyOnWriteArrayList;
 
 public class OverlayManager extends AbstractList<Overlay> {
 
+    private static final String TAG = "OverlayManager";
+    private static final Overlay[] NO_OVERLAYS = new Overlay[0];
+
     private TilesOverlay mTilesOverlay;
     private boolean mUseSafeCanvas = true;
 
     private final CopyOnWriteArrayList<Overlay> mOverlayList;
+    private volatile Overlay[] mOverlays = NO_OVERLAYS;
+
+    private volatile boolean mUseLayerCache = true;
+    private volatile int mLayerGeneration = 0;
+    private Bitmap mLayerBitmap;
+    private Canvas mLayerCanvas;
+    private boolean mLayerValid;
+    private LayerState mFrameState = new LayerState();
+    private LayerState mLastFrameState = new LayerState();
+    private final LayerState mLayerState = new LayerState();
+    private final Matrix mCanvasMatrix = new Matrix();
+    private final Matrix mInverseMatrix = new Matrix();
+
+    /**
+     * Where the layer bitmap is accounted for while it exists, and frees it under pressure.
+     */
+    private MemoryCacheSizeController mSizeController;
+    private final MemoryCacheSizeController.OnTrimMemoryListener mTrimMemoryListener =
+            new MemoryCacheSizeController.OnTrimMemoryListener() {
+                @Override
+                public void onTrimMemory(final int level) {
+                    // drawn again from the overlays once the map is still
+                    if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                        releaseLayer();
+                    }
+                }
+            };
 
     public OverlayManager(final TilesOverlay tilesOverlay) {
         setTilesOverlay(tilesOverlay);
@@ -80,6 +117,8 @@ public class OverlayManager extends AbstractList<Overlay> {
         });
         mOverlayList.clear();
         mOverlayList.addAll(Arrays.asList(array));
+        mOverlays = array;
+        mLayerGeneration++;
     }
 
     public boolean isUsingSafeCanvas() {
@@ -119,6 +158,30 @@ public class OverlayManager extends AbstractList<Overlay> {
         if (mTilesOverlay != null) {
             mTilesOverlay.setUseSafeCanvas(this.isUsingSafeCanvas());
         }
+        mLayerGeneration++;
+    }
+
+    public boolean isUsingLayerCache() {
+        return mUseLayerCache;
+    }
+
+    /**
+     * Whether to keep the tiles and the layer cacheable overlays above them in a bitmap the size
+     * of the map, so frames in which only the overlays above them change, such as a moving
+     * marker, copy it instead of drawing them again. On by default.
+     *
+     * @see Overlay#isLayerCacheable()
+     */
+    public void setUseLayerCache(final boolean useLayerCache) {
+        mUseLayerCache = useLayerCache;
+        mLayerGeneration++;
+    }
+
+    /**
+     * Draw the cached map layer again on the next frame.
+     */
+    public void invalidateLayer() {
+        mLayerGeneration++;
     }
 
     public Iterable<Overlay> overlaysReversed() {
@@ -148,18 +211,218 @@ public class OverlayManager extends AbstractList<Overlay> {
     }
 
     public void draw(final Canvas c, final MapView pMapView) {
-        if (mTilesOverlay != null && mTilesOverlay.isEnabled()) {
-            mTilesOverlay.draw(c, pMapView);
+        final long frameStart = MapMetrics.start();
+        final Overlay[] overlays = mOverlays;
+
+        // the tiles and the layer cacheable overlays right above them make up the layer
+        int layerEnd = 0;
+        if (mUseLayerCache && (mTilesOverlay == null || mTilesOverlay.isLayerCacheable())) {
+            while (layerEnd < overlays.length && overlays[layerEnd].isLayerCacheable()) {
+                layerEnd++;
+            }
+            if (!drawCachedLayer(c, pMapView, overlays, layerEnd)) {
+                drawLayer(c, pMapView, overlays, layerEnd);
+            }
+        } else {
+            if (mLayerBitmap != null) {
+                releaseLayer();
+            }
+            drawLayer(c, pMapView, overlays, 0);
         }
 
-        for (final Overlay overlay : mOverlayList) {
-            if (overlay.isEnabled()) {
-                overlay.draw(c, pMapView);
+        for (int i = layerEnd; i < overlays.length; i++) {
+            drawOverlay(c, pMapView, overlays[i]);
+        }
+        MapMetrics.frameDrawn(frameStart);
+    }
+
+    private void drawLayer(final Canvas c, final MapView pMapView, final Overlay[] overlays,
+            final int end) {
+        if (mTilesOverlay != null) {
+            drawOverlay(c, pMapView, mTilesOverlay);
+        }
+        for (int i = 0; i < end; i++) {
+            drawOverlay(c, pMapView, overlays[i]);
+        }
+    }
+
+    private static void drawOverlay(final Canvas c, final MapView pMapView, final Overlay overlay) {
+        if (overlay.isEnabled()) {
+            final long start = MapMetrics.start();
+            overlay.draw(c, pMapView);
+            MapMetrics.stopOverlay(overlay, start);
+        }
+    }
+
+    /**
+     * Copy the layer from its bitmap, drawing it there first if the map has stayed put since the
+     * last frame. While the map moves the layer changes every frame, and is drawn directly.
+     *
+     * @return false if the layer has to be drawn directly
+     */
+    private boolean drawCachedLayer(final Canvas c, final MapView pMapView,
+            final Overlay[] overlays, final int end) {
+        final int width = pMapView.getWidth();
+        final int height = pMapView.getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
+        }
+        pMapView.getProjection().getCanvasMatrix(mCanvasMatrix);
+        if (!mCanvasMatrix.invert(mInverseMatrix)) {
+            return false;
+        }
+        final LayerState state = mLastFrameState;
+        state.set(pMapView, mCanvasMatrix, mLayerGeneration, mTilesOverlay, overlays, end);
+        final boolean still = state.equals(mFrameState);
+        mLastFrameState = mFrameState;
+        mFrameState = state;
+
+        if (!mLayerValid || !state.equals(mLayerState)) {
+            if (!still || !renderLayer(pMapView, overlays, end, width, height)) {
+                mLayerValid = false;
+                return false;
+            }
+            mLayerState.set(state);
+            mLayerValid = true;
+        }
+
+        c.save();
+        c.concat(mInverseMatrix);
+        c.drawBitmap(mLayerBitmap, state.scrollX, state.scrollY, null);
+        c.restore();
+        return true;
+    }
+
+    private boolean renderLayer(final MapView pMapView, final Overlay[] overlays, final int end,
+            final int width, final int height) {
+        if (mLayerBitmap == null || mLayerBitmap.getWidth() != width
+                || mLayerBitmap.getHeight() != height) {
+            releaseLayer();
+            try {
+                mLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (final OutOfMemoryError e) {
+                Log.e(TAG, "Not enough memory to cache the map layer, drawing it every frame", e);
+                mUseLayerCache = false;
+                return false;
+            }
+            // copied one to one, whatever the density of the map's canvas
+            mLayerBitmap.setDensity(Bitmap.DENSITY_NONE);
+            mLayerCanvas = new Canvas(mLayerBitmap);
+            // taken out of the tile cache's budget, reserved under the listener as lists like
+            // this one compare by content
+            mSizeController = pMapView.getTileProvider().getMemoryCacheSizeController();
+            mSizeController.setReservedSize(mTrimMemoryListener, width * height * 4);
+            mSizeController.addOnTrimMemoryListener(mTrimMemoryListener);
+        }
+        mLayerBitmap.eraseColor(Color.TRANSPARENT);
+
+        // the map's canvas, as the view system and the projection set it up
+        final int saveCount = mLayerCanvas.save();
+        mLayerCanvas.translate(-pMapView.getScrollX(), -pMapView.getScrollY());
+        mLayerCanvas.concat(mCanvasMatrix);
+        drawLayer(mLayerCanvas, pMapView, overlays, end);
+        mLayerCanvas.restoreToCount(saveCount);
+        return true;
+    }
+
+    private void releaseLayer() {
+        if (mLayerBitmap != null) {
+            mLayerBitmap.recycle();
+            mLayerBitmap = null;
+            mLayerCanvas = null;
+        }
+        if (mSizeController != null) {
+            mSizeController.removeOnTrimMemoryListener(mTrimMemoryListener);
+            mSizeController.setReservedSize(mTrimMemoryListener, 0);
+            mSizeController = null;
+        }
+        mLayerValid = false;
+    }
+
+    /**
+     * What the cached layer was drawn from: where the map is, and the overlays in it.
+     */
+    static final class LayerState {
+        int scrollX;
+        int scrollY;
+        int width;
+        int height;
+        float zoomLevel;
+        final float[] matrix = new float[9];
+        int generation;
+        int[] stamps = new int[8];
+        int stampCount;
+
+        void set(final MapView mapView, final Matrix canvasMatrix, final int layerGeneration,
+                final Overlay tilesOverlay, final Overlay[] overlays, final int end) {
+            scrollX = mapView.getScrollX();
+            scrollY = mapView.getScrollY();
+            width = mapView.getWidth();
+            height = mapView.getHeight();
+            zoomLevel = mapView.getProjection().getZoomLevel();
+            canvasMatrix.getValues(matrix);
+            generation = layerGeneration;
+            stampCount = 0;
+            if (tilesOverlay != null) {
+                addStamp(tilesOverlay);
+            }
+            for (int i = 0; i < end; i++) {
+                addStamp(overlays[i]);
+            }
+        }
+
+        private void addStamp(final Overlay overlay) {
+            if (stampCount == stamps.length) {
+                stamps = Arrays.copyOf(stamps, stampCount * 2);
+            }
+            stamps[stampCount++] = overlay.getLayerGeneration() << 1
+                    | (overlay.isEnabled() ? 1 : 0);
+        }
+
+        void set(final LayerState other) {
+            scrollX = other.scrollX;
+            scrollY = other.scrollY;
+            width = other.width;
+            height = other.height;
+            zoomLevel = other.zoomLevel;
+            System.arraycopy(other.matrix, 0, matrix, 0, matrix.length);
+            generation = other.generation;
+            if (stamps.length < other.stampCount) {
+                stamps = new int[other.stamps.length];
             }
+            System.arraycopy(other.stamps, 0, stamps, 0, other.stampCount);
+            stampCount = other.stampCount;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof LayerState)) {
+                return false;
+            }
+            final LayerState other = (LayerState) o;
+            if (scrollX != other.scrollX || scrollY != other.scrollY || width != other.width
+                    || height != other.height || zoomLevel != other.zoomLevel
+                    || generation != other.generation || stampCount != other.stampCount
+                    || !Arrays.equals(matrix, other.matrix)) {
+                return false;
+            }
+            for (int i = 0; i < stampCount; i++) {
+                if (stamps[i] != other.stamps[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((scrollX * 31 + scrollY) * 31 + generation) * 31
+                    + Float.floatToIntBits(zoomLevel);
         }
     }
 
     public void onDetach(final MapView pMapView) {
+        releaseLayer();
         if (mTilesOverlay != null) {
             mTilesOverlay.onDetach(pMapView);
         }
@@ -0,0 +1,238 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import com.mapbox.mapboxsdk.util.GeometryMath;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.Arrays;
+
+/**
+ * Turns a line in world coordinates into a {@link Path}, projected with a fixed scale and
+ * offset. Only the chunks of the line whose bounding boxes intersect the clip are projected,
+ * and their segments are clipped to it, so the cost follows the points in view.
+ * <p/>
+ * Nothing here depends on the map's projection, so paths can be built off the main thread.
+ */
+class PathBuilder {
+
+    /**
+     * The points collected since {@link #begin}, in pixels, interleaved, as runs of consecutive
+     * points.
+     */
+    private float[] mPoints = new float[0];
+    private int mPointCount = 0;
+    private int[] mRunSizes = new int[16];
+    private int mRunCount = 0;
+    private final PathChunks.Runs mRuns = new PathChunks.Runs();
+    private final float[] mClipped = new float[4];
+
+    private double mScale;
+    private double mOffsetX;
+    private double mOffsetY;
+    private final RectF mClip = new RectF();
+    private boolean mClipping;
+    // the clip in world coordinates
+    private double mMinX;
+    private double mMinY;
+    private double mMaxX;
+    private double mMaxY;
+
+    // bounding rectangle of the line, when not clipping
+    private final RectF mLineBounds = new RectF();
+
+    /**
+     * Start collecting points, projected to pixels as x * scale + offsetX, y * scale + offsetY.
+     *
+     * @param clip the pixels to keep, or null to keep every point, as filled paths need
+     */
+    void begin(final double scale, final double offsetX, final double offsetY, final RectF clip) {
+        mScale = scale;
+        mOffsetX = offsetX;
+        mOffsetY = offsetY;
+        mClipping = clip != null;
+        if (mClipping) {
+            mClip.set(clip);
+            mMinX = (clip.left - offsetX) / scale;
+            mMinY = (clip.top - offsetY) / scale;
+            mMaxX = (clip.right - offsetX) / scale;
+            mMaxY = (clip.bottom - offsetY) / scale;
+        }
+        mPointCount = 0;
+        mRunCount = 0;
+    }
+
+    /**
+     * @return true if the clip given to {@link #begin} is inside a box of world coordinates
+     */
+    boolean isClipInside(final double minX, final double minY, final double maxX,
+            final double maxY) {
+        return mClipping && mMinX >= minX && mMinY >= minY && mMaxX <= maxX && mMaxY <= maxY;
+    }
+
+    /**
+     * The clip given to {@link #begin}, in world coordinates.
+     */
+    double getClipMinX() {
+        return mMinX;
+    }
+
+    double getClipMinY() {
+        return mMinY;
+    }
+
+    double getClipMaxX() {
+        return mMaxX;
+    }
+
+    double getClipMaxY() {
+        return mMaxY;
+    }
+
+    /**
+     * Collect a line: the level simplified for the zoom if there is one, then the points added
+     * after it.
+     *
+     * @param chunks the bounding boxes over the line, up to date
+     * @param levels simplified copies of the line, or null to collect every point
+     * @param fromPoint the first point to collect, skipping the levels if not 0
+     */
+    void addLine(final double[] coords, final int count, final PathChunks chunks,
+            final PathLevels levels, final int zoom, final int fromPoint) {
+        int tailStart = fromPoint;
+        final double[] level = (levels != null && fromPoint == 0) ? levels.getLevel(zoom) : null;
+        if (level != null) {
+            addVisible(level, levels.getLevelSize(zoom), levels.getChunks(zoom), 0);
+            // the level ends on the point the tail starts from
+            tailStart = levels.getPointCount() - 1;
+        }
+        addVisible(coords, count, chunks, tailStart);
+    }
+
+    private void addVisible(final double[] coords, final int count, final PathChunks chunks,
+            final int fromPoint) {
+        if (!mClipping) {
+            addRun(coords, fromPoint, count - 1);
+            return;
+        }
+        chunks.query(mMinX, mMinY, mMaxX, mMaxY, fromPoint, mRuns);
+        for (int r = 0; r < mRuns.size; r++) {
+            addRun(coords, mRuns.getFirst(r), mRuns.getLast(r));
+        }
+    }
+
+    /**
+     * Project the points first to last, inclusive.
+     */
+    private void addRun(final double[] coords, final int first, final int last) {
+        final int count = last - first + 1;
+        if (count < 2) {
+            return;
+        }
+        if (mPoints.length < (mPointCount + count) * 2) {
+            mPoints = Arrays.copyOf(mPoints, Math.max((mPointCount + count) * 2,
+                    mPoints.length * 2));
+        }
+        if (mRunSizes.length == mRunCount) {
+            mRunSizes = Arrays.copyOf(mRunSizes, mRunSizes.length * 2);
+        }
+        Projection.worldToPixels(coords, first * 2, mPoints, mPointCount * 2, count, mScale,
+                mOffsetX, mOffsetY);
+        mPointCount += count;
+        mRunSizes[mRunCount++] = count;
+    }
+
+    /**
+     * Put the collected points in a path.
+     *
+     * @return true if anything is left to draw
+     */
+    boolean build(final Path path) {
+        return mClipping ? buildClippedPath(path) : buildPath(path);
+    }
+
+    /**
+     * Put every projected point in the path.
+     */
+    private boolean buildPath(final Path path) {
+        final float[] points = mPoints;
+        if (mPointCount == 0) {
+            return false;
+        }
+        mLineBounds.set(points[0], points[1], points[0], points[1]);
+        path.moveTo(points[0], points[1]);
+        int start = 0;
+        for (int r = 0; r < mRunCount; r++) {
+            final int end = start + mRunSizes[r];
+            int last = start;
+            for (int i = start + 1; i < end; i++) {
+                final float x = points[i * 2];
+                final float y = points[i * 2 + 1];
+                // skip this point, too close to previous point
+                if (i < end - 1
+                        && Math.abs(x - points[last * 2]) + Math.abs(y - points[last * 2 + 1]) <= 1) {
+                    continue;
+                }
+                path.lineTo(x, y);
+                mLineBounds.union(x, y);
+                last = i;
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    /**
+     * Put the projected segments in the path, clipped.
+     */
+    private boolean buildClippedPath(final Path path) {
+        final float[] points = mPoints;
+        final float[] clipped = mClipped;
+        boolean needsDrawing = false;
+        // whether the path ends on the last point
+        boolean started = false;
+        float lastX = 0;
+        float lastY = 0;
+        int start = 0;
+        for (int r = 0; r < mRunCount; r++) {
+            final int end = start + mRunSizes[r];
+            if (points[start * 2] != lastX || points[start * 2 + 1] != lastY) {
+                started = false;
+            }
+            lastX = points[start * 2];
+            lastY = points[start * 2 + 1];
+            for (int i = start + 1; i < end; i++) {
+                final float x = points[i * 2];
+                final float y = points[i * 2 + 1];
+                // skip this point, too close to previous point
+                if (started && i < end - 1 && Math.abs(x - lastX) + Math.abs(y - lastY) <= 1) {
+                    continue;
+                }
+                if (!GeometryMath.clipSegment(lastX, lastY, x, y, mClip, clipped)) {
+                    started = false;
+                } else {
+                    // the starting point may be not added, because the previous segment was
+                    // out of clip bounds
+                    if (!started) {
+                        path.moveTo(clipped[0], clipped[1]);
+                    }
+                    path.lineTo(clipped[2], clipped[3]);
+                    started = clipped[2] == x && clipped[3] == y;
+                    needsDrawing = true;
+                }
+                lastX = x;
+                lastY = y;
+            }
+            start = end;
+        }
+        return needsDrawing;
+    }
+
+    /**
+     * @return the bounds of the path, when built without a clip
+     */
+    RectF getLineBounds() {
+        return mLineBounds;
+    }
+}
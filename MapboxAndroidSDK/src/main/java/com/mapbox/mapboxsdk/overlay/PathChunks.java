@@ -0,0 +1,238 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import java.util.Arrays;
+
+/**
+ * Bounding boxes over the segments of a polyline, so drawing can skip the parts that are off
+ * screen without looking at their points.
+ * <p/>
+ * The segments are cut in chunks of {@link #CHUNK_SIZE}, each with the box of its points, and
+ * every {@link #FANOUT} boxes of a level are boxed again in the level above, up to a single
+ * root. Points can be appended, which only updates the boxes along the right edge.
+ */
+class PathChunks {
+
+    /**
+     * Segments per chunk.
+     */
+    static final int CHUNK_SIZE = 32;
+    static final int FANOUT = 8;
+
+    /**
+     * Boxes per level, the chunks first, as min x, min y, max x, max y.
+     */
+    private double[][] mBoxes = new double[1][];
+    private int[] mBoxCounts = new int[1];
+    private int mPointCount = 0;
+
+    PathChunks() {
+        mBoxes[0] = new double[16 * 4];
+    }
+
+    /**
+     * Box the segments of a line that is complete.
+     */
+    static PathChunks build(final double[] coords, final int count) {
+        final PathChunks chunks = new PathChunks();
+        chunks.update(coords, count);
+        return chunks;
+    }
+
+    int getPointCount() {
+        return mPointCount;
+    }
+
+    void clear() {
+        mPointCount = 0;
+        Arrays.fill(mBoxCounts, 0);
+    }
+
+    /**
+     * Catch up with points appended to the line since the last update.
+     *
+     * @param coords interleaved x, y coordinates of the whole line
+     * @param count the number of points, not less than at the last update
+     */
+    void update(final double[] coords, final int count) {
+        if (count < mPointCount) {
+            throw new IllegalArgumentException("Points can only be appended");
+        }
+        if (count == mPointCount) {
+            return;
+        }
+        // the last chunk was maybe not full, so it is boxed again
+        final int firstChunk = mPointCount > 1 ? (mPointCount - 2) / CHUNK_SIZE : 0;
+        final int chunkCount = count > 1 ? (count - 2) / CHUNK_SIZE + 1 : 0;
+        mPointCount = count;
+        ensureCapacity(0, chunkCount);
+        final double[] chunks = mBoxes[0];
+        for (int c = firstChunk; c < chunkCount; c++) {
+            final int first = c * CHUNK_SIZE;
+            final int last = Math.min(first + CHUNK_SIZE, count - 1);
+            double minX = coords[first * 2];
+            double minY = coords[first * 2 + 1];
+            double maxX = minX;
+            double maxY = minY;
+            for (int i = first + 1; i <= last; i++) {
+                final double x = coords[i * 2];
+                final double y = coords[i * 2 + 1];
+                if (x < minX) {
+                    minX = x;
+                } else if (x > maxX) {
+                    maxX = x;
+                }
+                if (y < minY) {
+                    minY = y;
+                } else if (y > maxY) {
+                    maxY = y;
+                }
+            }
+            chunks[c * 4] = minX;
+            chunks[c * 4 + 1] = minY;
+            chunks[c * 4 + 2] = maxX;
+            chunks[c * 4 + 3] = maxY;
+        }
+        mBoxCounts[0] = chunkCount;
+
+        // box the changed boxes again, level by level
+        int changed = firstChunk;
+        int level = 0;
+        while (mBoxCounts[level] > 1) {
+            if (level + 1 == mBoxes.length) {
+                mBoxes = Arrays.copyOf(mBoxes, level + 2);
+                mBoxCounts = Arrays.copyOf(mBoxCounts, level + 2);
+                mBoxes[level + 1] = new double[16 * 4];
+            }
+            final int childCount = mBoxCounts[level];
+            final int parentCount = (childCount - 1) / FANOUT + 1;
+            ensureCapacity(level + 1, parentCount);
+            final double[] children = mBoxes[level];
+            final double[] parents = mBoxes[level + 1];
+            changed /= FANOUT;
+            for (int p = changed; p < parentCount; p++) {
+                final int first = p * FANOUT;
+                final int last = Math.min(first + FANOUT, childCount);
+                double minX = children[first * 4];
+                double minY = children[first * 4 + 1];
+                double maxX = children[first * 4 + 2];
+                double maxY = children[first * 4 + 3];
+                for (int c = first + 1; c < last; c++) {
+                    minX = Math.min(minX, children[c * 4]);
+                    minY = Math.min(minY, children[c * 4 + 1]);
+                    maxX = Math.max(maxX, children[c * 4 + 2]);
+                    maxY = Math.max(maxY, children[c * 4 + 3]);
+                }
+                parents[p * 4] = minX;
+                parents[p * 4 + 1] = minY;
+                parents[p * 4 + 2] = maxX;
+                parents[p * 4 + 3] = maxY;
+            }
+            mBoxCounts[level + 1] = parentCount;
+            level++;
+        }
+        // levels left from a longer line before a clear
+        for (int l = level + 1; l < mBoxCounts.length; l++) {
+            mBoxCounts[l] = 0;
+        }
+    }
+
+    private void ensureCapacity(final int level, final int boxes) {
+        if (mBoxes[level].length < boxes * 4) {
+            mBoxes[level] = Arrays.copyOf(mBoxes[level],
+                    Math.max(boxes * 4, mBoxes[level].length * 2));
+        }
+    }
+
+    /**
+     * Find the chunks that intersect a box, in order.
+     *
+     * @param fromSegment chunks before the one with this segment are skipped
+     * @param out receives runs of adjacent chunks as first and last segment index, exclusive,
+     * so [first, last) segments or [first, last] points
+     * @return the number of runs
+     */
+    int query(final double minX, final double minY, final double maxX, final double maxY,
+            final int fromSegment, final Runs out) {
+        out.clear();
+        int top = mBoxCounts.length - 1;
+        while (top > 0 && mBoxCounts[top] == 0) {
+            top--;
+        }
+        if (mBoxCounts[0] == 0) {
+            return 0;
+        }
+        visit(top, 0, minX, minY, maxX, maxY, Math.max(fromSegment, 0) / CHUNK_SIZE, out);
+        if (out.size > 0 && fromSegment > out.data[0]) {
+            // the first chunk starts before the segment
+            out.data[0] = fromSegment;
+            if (out.data[0] >= out.data[1]) {
+                out.removeFirst();
+            }
+        }
+        return out.size;
+    }
+
+    private void visit(final int level, final int box, final double minX, final double minY,
+            final double maxX, final double maxY, final int fromChunk, final Runs out) {
+        final double[] boxes = mBoxes[level];
+        final int count = mBoxCounts[level];
+        // chunks under one box of this level
+        int span = 1;
+        for (int l = 0; l < level; l++) {
+            span *= FANOUT;
+        }
+        final int last = Math.min(box + FANOUT, count);
+        for (int b = box; b < last; b++) {
+            if ((b + 1) * span <= fromChunk) {
+                continue;
+            }
+            if (boxes[b * 4] > maxX || boxes[b * 4 + 2] < minX || boxes[b * 4 + 1] > maxY
+                    || boxes[b * 4 + 3] < minY) {
+                continue;
+            }
+            if (level > 0) {
+                visit(level - 1, b * FANOUT, minX, minY, maxX, maxY, fromChunk, out);
+            } else {
+                out.add(b * CHUNK_SIZE, Math.min((b + 1) * CHUNK_SIZE, mPointCount - 1));
+            }
+        }
+    }
+
+    /**
+     * Runs of segments as first and last index pairs, merged where they touch.
+     */
+    static final class Runs {
+        int[] data = new int[16];
+        int size = 0;
+
+        void clear() {
+            size = 0;
+        }
+
+        int getFirst(final int run) {
+            return data[run * 2];
+        }
+
+        int getLast(final int run) {
+            return data[run * 2 + 1];
+        }
+
+        void removeFirst() {
+            System.arraycopy(data, 2, data, 0, size * 2 - 2);
+            size--;
+        }
+
+        void add(final int first, final int last) {
+            if (size > 0 && data[size * 2 - 1] == first) {
+                data[size * 2 - 1] = last;
+                return;
+            }
+            if (data.length < size * 2 + 2) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 2] = first;
+            data[size * 2 + 1] = last;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+
+/**
+ * Simplified copies of a polyline for every integer zoom level, so a long path draws about as
+ * many points as it has pixels.
+ * <p/>
+ * One Douglas-Peucker pass over the whole line gives each point the distance at which it stops
+ * mattering; a zoom level keeps the points that matter by more than {@link #TOLERANCE_PX} at
+ * that level. Levels that would keep most of the points are left out, drawing the full line
+ * instead.
+ */
+class PathLevels {
+
+    /**
+     * How far, in pixels, a simplified line may stray from the original.
+     */
+    static final float TOLERANCE_PX = 0.5f;
+
+    private final int mPointCount;
+    private final int mSetGeneration;
+    private final double[][] mLevels = new double[TileLayerConstants.MAXIMUM_ZOOMLEVEL + 1][];
+    private final int[] mSizes = new int[TileLayerConstants.MAXIMUM_ZOOMLEVEL + 1];
+    private final PathChunks[] mChunks = new PathChunks[TileLayerConstants.MAXIMUM_ZOOMLEVEL + 1];
+
+    private PathLevels(final int pointCount, final int setGeneration) {
+        mPointCount = pointCount;
+        mSetGeneration = setGeneration;
+    }
+
+    /**
+     * Simplify a line for every zoom level.
+     *
+     * @param coords interleaved x, y world coordinates
+     * @param count the number of points
+     * @param tileSize the tile size in pixels, which sets the pixels per world unit
+     * @param setGeneration tells apart lines that replaced each other
+     */
+    static PathLevels build(final double[] coords, final int count, final int tileSize,
+            final int setGeneration) {
+        final PathLevels levels = new PathLevels(count, setGeneration);
+        if (count < 3) {
+            return levels;
+        }
+        final double[] importance = computeImportance(coords, count);
+        for (int zoom = 0; zoom <= TileLayerConstants.MAXIMUM_ZOOMLEVEL; zoom++) {
+            final double tolerance = TOLERANCE_PX / ((double) tileSize * (1L << zoom));
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if (importance[i] > tolerance) {
+                    size++;
+                }
+            }
+            if (size * 2 > count) {
+                // deeper levels keep even more points
+                break;
+            }
+            final double[] level = new double[size * 2];
+            for (int i = 0, j = 0; i < count; i++) {
+                if (importance[i] > tolerance) {
+                    level[j++] = coords[i * 2];
+                    level[j++] = coords[i * 2 + 1];
+                }
+            }
+            levels.mLevels[zoom] = level;
+            levels.mSizes[zoom] = size;
+            levels.mChunks[zoom] = PathChunks.build(level, size);
+        }
+        return levels;
+    }
+
+    /**
+     * Run Douglas-Peucker to the end, giving every point the distance from its simplified
+     * neighbours at which it was kept. A point never matters more than the point that split its
+     * range, so every tolerance keeps a valid simplification.
+     */
+    static double[] computeImportance(final double[] coords, final int count) {
+        final double[] importance = new double[count];
+        importance[0] = Double.POSITIVE_INFINITY;
+        importance[count - 1] = Double.POSITIVE_INFINITY;
+        // ranges still to split, as first and last index
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            final int last = stack[--top];
+            final int first = stack[--top];
+            if (last - first < 2) {
+                continue;
+            }
+            final double parent = Math.min(importance[first], importance[last]);
+            final double ax = coords[first * 2];
+            final double ay = coords[first * 2 + 1];
+            final double dx = coords[last * 2] - ax;
+            final double dy = coords[last * 2 + 1] - ay;
+            final double lengthSquared = dx * dx + dy * dy;
+            int split = first + 1;
+            double max = -1;
+            for (int i = first + 1; i < last; i++) {
+                final double distance = distanceSquared(coords[i * 2] - ax,
+                        coords[i * 2 + 1] - ay, dx, dy, lengthSquared);
+                if (distance > max) {
+                    max = distance;
+                    split = i;
+                }
+            }
+            importance[split] = Math.min(Math.sqrt(max), parent);
+            if (top + 4 > stack.length) {
+                final int[] grown = new int[stack.length * 2];
+                System.arraycopy(stack, 0, grown, 0, top);
+                stack = grown;
+            }
+            stack[top++] = first;
+            stack[top++] = split;
+            stack[top++] = split;
+            stack[top++] = last;
+        }
+        return importance;
+    }
+
+    /**
+     * The squared distance of a point from a segment, both relative to the segment's start.
+     */
+    private static double distanceSquared(final double px, final double py, final double dx,
+            final double dy, final double lengthSquared) {
+        double t = lengthSquared > 0 ? (px * dx + py * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        final double ex = px - t * dx;
+        final double ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * The number of points of the original line these levels were built from; points added
+     * after them are drawn as they are.
+     */
+    int getPointCount() {
+        return mPointCount;
+    }
+
+    int getSetGeneration() {
+        return mSetGeneration;
+    }
+
+    /**
+     * @return the simplified line for an integer zoom level as interleaved world coordinates, or
+     * null to draw the full line
+     */
+    double[] getLevel(final int zoom) {
+        if (zoom < 0 || zoom >= mLevels.length) {
+            return null;
+        }
+        return mLevels[zoom];
+    }
+
+    int getLevelSize(final int zoom) {
+        return mSizes[zoom];
+    }
+
+    /**
+     * @return the bounding boxes over the segments of a level
+     */
+    PathChunks getChunks(final int zoom) {
+        return mChunks[zoom];
+    }
+}
@@ -4,16 +4,20 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PointF;
-import android.graphics.Rect;
 import android.graphics.RectF;
+import android.os.Process;
 
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.ProjectedPoints;
 import com.mapbox.mapboxsdk.views.util.Projection;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Viesturs Zarins
@@ -21,15 +25,59 @@ import java.util.List;
  *         <p/>
  *         This class draws a path line in given color.
  */
-public class PathOverlay extends Overlay {
+public class PathOverlay extends Overlay implements TileRasterizable {
 
     private static final String TAG = "PathOverlay";
+
+    /**
+     * Appended points are drawn as they are until there are this many.
+     */
+    private static final int MIN_UNSIMPLIFIED_POINTS = 256;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(runnable, TAG);
+                }
+            });
+
     /**
-     * Stores points, converted to the map projection.
+     * Stores points, converted to world coordinates.
      */
-    private ArrayList<PointF> mPoints = new ArrayList<PointF>();
-    private int mSize = 0;
-    private MapView mapView = null;
+    private final ProjectedPoints mPoints = new ProjectedPoints();
+    private volatile MapView mapView = null;
+
+    /**
+     * Simplified copies of the points per zoom level, built in the background.
+     */
+    private volatile PathLevels mLevels;
+    /**
+     * Counts replacements of the points, as opposed to points appended.
+     */
+    private int mSetGeneration = 0;
+    private final AtomicBoolean mLevelsPending = new AtomicBoolean();
+    private final Runnable mBuildLevels = new Runnable() {
+        @Override
+        public void run() {
+            mLevelsPending.set(false);
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            final double[] coords;
+            final int count;
+            final int setGeneration;
+            synchronized (mPoints) {
+                count = mPoints.size();
+                coords = Arrays.copyOf(mPoints.getCoordinates(), count * 2);
+                setGeneration = mSetGeneration;
+            }
+            mLevels = PathLevels.build(coords, count, Projection.getTileSize(), setGeneration);
+            invalidateLayer();
+            final MapView mapView = PathOverlay.this.mapView;
+            if (mapView != null) {
+                mapView.postInvalidate();
+            }
+        }
+    };
 
     private boolean mOptimizePath = true;
 
@@ -37,13 +85,100 @@ public class PathOverlay extends Overlay {
      * Paint settings.
      */
     protected Paint mPaint = new Paint();
+    /**
+     * mPaint with the stroke width drawing needs, so mPaint stays as set while tiles are drawn
+     * with it in the background.
+     */
+    private final Paint mScaledPaint = new Paint();
     private final Path mPath = new Path();
 
-    private final PointF mTempPoint1 = new PointF();
-    private final PointF mTempPoint2 = new PointF();
+    /**
+     * Bounding boxes over the segments of mPoints, caught up at drawing.
+     */
+    private final PathChunks mChunks = new PathChunks();
+    private final PathBuilder mBuilder = new PathBuilder();
+
+    /**
+     * The line around the screen as a path in pixels of an integer zoom, built in the
+     * background, and what to build next.
+     */
+    private volatile RetainedPath mRetained;
+    private volatile RetainedPath mRetainedRequest;
+    private final AtomicBoolean mRetainedPending = new AtomicBoolean();
+    private final PathBuilder mRetainedBuilder = new PathBuilder();
+    private final RectF mRetainedClip = new RectF();
+    /**
+     * A copy of the points for the background build, which doesn't hold the lock drawing
+     * takes, with its own boxes. Appended points are copied on top of it.
+     */
+    private double[] mRetainedCoords = new double[0];
+    private int mRetainedCoordsCount = 0;
+    private int mRetainedCoordsGeneration = -1;
+    private final PathChunks mRetainedChunks = new PathChunks();
+    private final Runnable mBuildRetainedPath = new Runnable() {
+        @Override
+        public void run() {
+            mRetainedPending.set(false);
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            final RetainedPath request = mRetainedRequest;
+            final double scale = Projection.mapSize(request.zoom);
+            // path coordinates stay small around the middle of the region
+            final double originX = Math.floor((request.minX + request.maxX) / 2 * scale);
+            final double originY = Math.floor((request.minY + request.maxY) / 2 * scale);
+            mRetainedClip.set((float) (request.minX * scale - originX),
+                    (float) (request.minY * scale - originY),
+                    (float) (request.maxX * scale - originX),
+                    (float) (request.maxY * scale - originY));
+            final RetainedPath retained = new RetainedPath(new Path(), request.zoom,
+                    request.clipped, request.minX, request.minY, request.maxX, request.maxY);
+            retained.scale = scale;
+            retained.originX = originX;
+            retained.originY = originY;
+            final int pointCount;
+            synchronized (mPoints) {
+                pointCount = mPoints.size();
+                copyRetainedCoords(pointCount);
+                retained.pointCount = pointCount;
+                retained.setGeneration = mSetGeneration;
+                retained.levels = (mLevels != null
+                        && mLevels.getSetGeneration() == mSetGeneration) ? mLevels : null;
+            }
+            mRetainedChunks.update(mRetainedCoords, pointCount);
+            mRetainedBuilder.begin(scale, -originX, -originY,
+                    request.clipped ? mRetainedClip : null);
+            mRetainedBuilder.addLine(mRetainedCoords, pointCount, mRetainedChunks,
+                    retained.levels, request.zoom, 0);
+            mRetainedBuilder.build(retained.path);
+            mRetained = retained;
+            invalidateLayer();
+            final MapView mapView = PathOverlay.this.mapView;
+            if (mapView != null) {
+                mapView.postInvalidate();
+            }
+        }
+    };
+
+    /**
+     * Bring the copy of the points up to date, only copying appended points while the points
+     * aren't replaced. Called in the background with the points locked.
+     */
+    private void copyRetainedCoords(final int pointCount) {
+        if (mRetainedCoordsGeneration != mSetGeneration) {
+            mRetainedCoordsGeneration = mSetGeneration;
+            mRetainedCoordsCount = 0;
+            mRetainedChunks.clear();
+        }
+        if (mRetainedCoords.length < pointCount * 2) {
+            mRetainedCoords = Arrays.copyOf(mRetainedCoords,
+                    Math.max(pointCount * 2, mRetainedCoords.length * 2));
+        }
+        System.arraycopy(mPoints.getCoordinates(), mRetainedCoordsCount * 2, mRetainedCoords,
+                mRetainedCoordsCount * 2, (pointCount - mRetainedCoordsCount) * 2);
+        mRetainedCoordsCount = pointCount;
+    }
 
-    // bounding rectangle for the current line segment.
-    private final RectF mLineBounds = new RectF();
+    // clipping rectangle, relative to the scroll position
+    private final RectF mClipBounds = new RectF();
 
     public PathOverlay() {
         super();
@@ -71,93 +206,105 @@ public class PathOverlay extends Overlay {
 
     public PathOverlay setPaint(final Paint pPaint) {
         mPaint = pPaint;
+        invalidateLayer();
         return this;
     }
 
     public void clearPath() {
         synchronized (this.mPoints) {
-//            this.mPointsPrecomputed = 0;
-            this.mSize = 0;
-            this.mPoints = new ArrayList<PointF>();
+            this.mPoints.clear();
+            mChunks.clear();
+            mSetGeneration++;
         }
+        mLevels = null;
+        mRetained = null;
+        invalidateLayer();
     }
 
-    public void setPoints(final LatLng... aPoints) {
-        //first we prepare the new Path as might be long 
-        ArrayList<PointF>  newPoints = new ArrayList<PointF>();
-        PointF lastpoint = null;
-        for (final LatLng point : aPoints) {
-            PointF newpoint = Projection.toMapPixelsProjected(point.getLatitude(), point.getLongitude(), null);
-            if (newpoint == null || 
-                    (lastpoint != null && (newpoint.x == lastpoint.x && newpoint.y == lastpoint.y))) {
-                continue;
-            }
-            lastpoint = newpoint;
-            newPoints.add(newpoint);
-        }
-        //now we can go!
-        synchronized (this.mPoints) {
-            this.mSize = newPoints.size();
-            this.mPoints = newPoints;
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    /**
+     * Points added after the levels were built are drawn unsimplified, so a growing track is
+     * only simplified again once its new part is long enough to matter.
+     */
+    private void onPointsAdded() {
+        invalidateLayer();
+        final PathLevels levels = mLevels;
+        final int size = mPoints.size();
+        if (levels == null || size - levels.getPointCount()
+                > Math.max(MIN_UNSIMPLIFIED_POINTS, levels.getPointCount() / 8)) {
+            scheduleLevels();
         }
     }
-    
-    public void setPoints(final List<LatLng> aPoints) {
-        //first we prepare the new Path as might be long 
-        ArrayList<PointF>  newPoints = new ArrayList<PointF>();
-        PointF lastpoint = null;
-        for (final LatLng point : aPoints) {
-            PointF newpoint = Projection.toMapPixelsProjected(point.getLatitude(), point.getLongitude(), null);
-            if (newpoint == null || 
-                    (lastpoint != null && (newpoint.x == lastpoint.x && newpoint.y == lastpoint.y))) {
-                continue;
-            }
-            lastpoint = newpoint;
-            newPoints.add(newpoint);
+
+    /**
+     * Simplify the points again in the background, coalescing changes made meanwhile.
+     */
+    private void scheduleLevels() {
+        if (mLevelsPending.compareAndSet(false, true)) {
+            sExecutor.execute(mBuildLevels);
         }
-        //now we can go!
+    }
+
+    public void setPoints(final LatLng... aPoints) {
         synchronized (this.mPoints) {
-            this.mSize = newPoints.size();
-            this.mPoints = newPoints;
+            this.mPoints.clear();
+            mChunks.clear();
+            for (final LatLng point : aPoints) {
+                this.mPoints.add(point);
+            }
+            mSetGeneration++;
         }
+        invalidateLayer();
+        scheduleLevels();
     }
 
-    public void addPoint(final LatLng aPoint) {
+    public void setPoints(final List<LatLng> aPoints) {
         synchronized (this.mPoints) {
-            addPointInternal(aPoint.getLatitude(), aPoint.getLongitude());
+            this.mPoints.clear();
+            mChunks.clear();
+            for (final LatLng point : aPoints) {
+                this.mPoints.add(point);
+            }
+            mSetGeneration++;
         }
+        invalidateLayer();
+        scheduleLevels();
     }
 
-    private void addPointInternal(final double aLatitude, final double aLongitude) {
-        PointF lastpoint = (mSize > 0)?mPoints.get(0):null;
-        PointF newpoint = Projection.toMapPixelsProjected(aLatitude, aLongitude, null);
-        if (lastpoint != null && (newpoint.x == lastpoint.x && newpoint.y == lastpoint.y)) {
-            return;
+    public void addPoint(final LatLng aPoint) {
+        synchronized (this.mPoints) {
+            this.mPoints.add(aPoint);
         }
-        mPoints.add(Projection.toMapPixelsProjected(aLatitude, aLatitude, null));
-        mSize += 1;
+        onPointsAdded();
     }
 
     public void addPoint(final double aLatitude, final double aLongitude) {
         synchronized (this.mPoints) {
-               addPointInternal(aLatitude, aLongitude);
+            this.mPoints.add(aLatitude, aLongitude);
         }
+        onPointsAdded();
     }
 
     public void addPoints(final LatLng... aPoints) {
         synchronized (this.mPoints) {
             for (final LatLng point : aPoints) {
-                addPointInternal(point.getLatitude(), point.getLongitude());
+                this.mPoints.add(point);
             }
         }
+        onPointsAdded();
     }
 
     public void addPoints(final List<LatLng> aPoints) {
         synchronized (this.mPoints) {
             for (final LatLng point : aPoints) {
-                addPointInternal(point.getLatitude(), point.getLongitude());
+                this.mPoints.add(point);
             }
         }
+        onPointsAdded();
     }
 
     public void removeAllPoints() {
@@ -165,107 +312,142 @@ public class PathOverlay extends Overlay {
     }
 
     public int getNumberOfPoints() {
-        return mSize;
+        return mPoints.size();
     }
 
     /**
      * This method draws the line. Note - highly optimized to handle long paths,
-     * proceed with care. Should be fine up to 10K points.
+     * proceed with care.
+     * <p/>
+     * The visible part of the line is kept as a path for an integer zoom level, built in the
+     * background around the screen, and drawn with the canvas moved and scaled to the current
+     * position and zoom. Only points added since, or a line not built yet, are projected here.
      */
     @Override
     protected void draw(final Canvas canvas, final MapView mapView) {
 
-        // nothing to paint
-        if (mSize < 2) {
-            return;
-        }
-        
-        if (mapView !=  this.mapView) {
-            
-        }
-
         final Projection pj = mapView.getProjection();
-        boolean needsDrawing = false;
+        // map pixels grow past float precision at high zoom levels, so the path is built
+        // relative to the scroll position and the canvas moved there instead
+        final int originX = pj.getCenterX();
+        final int originY = pj.getCenterY();
+        this.mapView = mapView;
+
+        final float strokeWidth = this.mPaint.getStrokeWidth() / mapView.getScale();
+        // keep the caps and joins of clipped segments off screen
+        final float margin = strokeWidth * Math.max(this.mPaint.getStrokeMiter(), 1) + 1;
+        mClipBounds.set(pj.getTransformScreenRect());
+        mClipBounds.offset(-originX, -originY);
+        mClipBounds.inset(-margin, -margin);
+        final int zoom = (int) pj.getZoomLevel();
+
+        RetainedPath retained;
         synchronized (this.mPoints) {
+            final int pointCount = this.mPoints.size();
+            // nothing to paint
+            if (pointCount < 2) {
+                return;
+            }
+            final double[] coords = this.mPoints.getCoordinates();
+            mChunks.update(coords, pointCount);
+            final PathLevels levels = (mLevels != null
+                    && mLevels.getSetGeneration() == mSetGeneration) ? mLevels : null;
+            mBuilder.begin(pj.getWorldScale(), pj.getWorldOffset() - originX,
+                    pj.getWorldOffset() - originY, mOptimizePath ? mClipBounds : null);
+
+            retained = mRetained;
+            if (retained != null && (retained.setGeneration != mSetGeneration
+                    || retained.clipped != mOptimizePath)) {
+                retained = null;
+            }
+            final boolean covered = retained != null && (!retained.clipped
+                    || mBuilder.isClipInside(retained.minX, retained.minY, retained.maxX,
+                    retained.maxY));
+            if (!covered || retained.zoom != zoom || retained.levels != levels
+                    || pointCount - retained.pointCount > MIN_UNSIMPLIFIED_POINTS) {
+                requestRetainedPath(zoom);
+            }
+            if (!covered) {
+                // draw it all here until the background catches up
+                retained = null;
+                mBuilder.addLine(coords, pointCount, mChunks, levels, zoom, 0);
+            } else {
+                // the points added since the path was built
+                mBuilder.addLine(coords, pointCount, mChunks, null, zoom,
+                        retained.pointCount - 1);
+            }
+        }
 
-            PointF screenPoint0 = null; // points on screen
-            PointF screenPoint1;
-            PointF projectedPoint0; // points from the points list
-            PointF projectedPoint1;
-
-            // clipping rectangle in the intermediate projection, to avoid
-            // performing projection.
-            // final Rect clipBounds =
-            // pj.fromPixelsToProjected(pj.getScreenRect());
-            final RectF clipBounds = pj.fromPixelsToProjected(pj
-                    .getTransformScreenRect());
-
-            mPath.rewind();
-            needsDrawing = !mOptimizePath;
-            projectedPoint0 = this.mPoints.get(mSize - 1);
-            mLineBounds.set((int) projectedPoint0.x, (int) projectedPoint0.y,
-                    (int) projectedPoint0.x, (int) projectedPoint0.y);
-
-            for (int i = mSize - 2; i >= 0; i--) {
-                // compute next points
-                projectedPoint1 = this.mPoints.get(i);
-
-                // mLineBounds needs to be computed
-                mLineBounds.union((int) projectedPoint1.x,
-                        (int) projectedPoint1.y);
-
-                if (mOptimizePath && !RectF.intersects(clipBounds, mLineBounds)) {
-                    // skip this line, move to next point
-                    projectedPoint0 = projectedPoint1;
-                    mLineBounds.set((int) projectedPoint0.x,
-                            (int) projectedPoint0.y, (int) projectedPoint0.x,
-                            (int) projectedPoint0.y);
-                    screenPoint0 = null;
-                    continue;
-                }
-
-                // the starting point may be not calculated, because previous
-                // segment was out of clip
-                // bounds
-                if (screenPoint0 == null) {
-                    // GeometryUtils.getIntersectionPoint(projectedPoint0,
-                    // projectedPoint1, clipBounds, this.mTempPoint1);
-                    // projectedPoint0 = this.mTempPoint1;
-                    screenPoint0 = pj.toMapPixelsTranslated(projectedPoint0,
-                            this.mTempPoint1);
-                    mPath.moveTo(screenPoint0.x, screenPoint0.y);
-                }
-                screenPoint1 = pj.toMapPixelsTranslated(projectedPoint1,
-                        this.mTempPoint2);
+        mPath.rewind();
+        final boolean needsDrawing = mBuilder.build(mPath)
+                && (mOptimizePath || RectF.intersects(mClipBounds, mBuilder.getLineBounds()));
 
-                // skip this point, too close to previous point
-                if (Math.abs(screenPoint1.x - screenPoint0.x)
-                        + Math.abs(screenPoint1.y - screenPoint0.y) <= 1) {
-                    continue;
-                }
+        if (retained == null && !needsDrawing) {
+            return;
+        }
+        mScaledPaint.set(this.mPaint);
+        canvas.save();
+        canvas.translate(originX, originY);
+        if (needsDrawing) {
+            mScaledPaint.setStrokeWidth(strokeWidth);
+            canvas.drawPath(mPath, mScaledPaint);
+        }
+        if (retained != null) {
+            // from the pixels of the zoom the path was built for to the current ones
+            final double scale = pj.getWorldScale() / retained.scale;
+            canvas.translate((float) (retained.originX * scale + pj.getWorldOffset() - originX),
+                    (float) (retained.originY * scale + pj.getWorldOffset() - originY));
+            canvas.scale((float) scale, (float) scale);
+            mScaledPaint.setStrokeWidth((float) (strokeWidth / scale));
+            canvas.drawPath(retained.path, mScaledPaint);
+        }
+        canvas.restore();
+    }
 
-                mPath.lineTo(screenPoint1.x, screenPoint1.y);
-                // update starting point to next position
-                projectedPoint0 = projectedPoint1;
-                screenPoint0.x = screenPoint1.x;
-                screenPoint0.y = screenPoint1.y;
-                if (mOptimizePath) {
-                    needsDrawing = true;
-                    mLineBounds.set((int) projectedPoint0.x,
-                            (int) projectedPoint0.y, (int) projectedPoint0.x,
-                            (int) projectedPoint0.y);
-                }
-            }
-            if (!mOptimizePath) {
-                needsDrawing = RectF.intersects(clipBounds, mLineBounds);
+    @Override
+    public boolean drawTile(final Canvas canvas, final int zoom, final double scale,
+            final double offsetX, final double offsetY, final RectF bounds) {
+        final Paint paint = this.mPaint;
+        // keep the caps and joins of clipped segments out of the tile
+        final float margin = paint.getStrokeWidth() * Math.max(paint.getStrokeMiter(), 1) + 1;
+        final RectF clip = new RectF(bounds);
+        clip.inset(-margin, -margin);
+        final PathBuilder builder = new PathBuilder();
+        synchronized (this.mPoints) {
+            final int pointCount = this.mPoints.size();
+            if (pointCount < 2) {
+                return false;
             }
+            mChunks.update(this.mPoints.getCoordinates(), pointCount);
+            final PathLevels levels = (mLevels != null
+                    && mLevels.getSetGeneration() == mSetGeneration) ? mLevels : null;
+            builder.begin(scale, offsetX, offsetY, clip);
+            builder.addLine(this.mPoints.getCoordinates(), pointCount, mChunks, levels, zoom, 0);
         }
+        final Path path = new Path();
+        if (!builder.build(path)) {
+            return false;
+        }
+        canvas.drawPath(path, paint);
+        return true;
+    }
 
-        if (needsDrawing) {
-            final float realWidth = this.mPaint.getStrokeWidth();
-            this.mPaint.setStrokeWidth(realWidth / mapView.getScale());
-            canvas.drawPath(mPath, this.mPaint);
-            this.mPaint.setStrokeWidth(realWidth);
+    /**
+     * Build the path again in the background, for a zoom level and around the current clip.
+     */
+    private void requestRetainedPath(final int zoom) {
+        if (mOptimizePath) {
+            // a screen of margin on every side, so small pans keep the path
+            final double width = mBuilder.getClipMaxX() - mBuilder.getClipMinX();
+            final double height = mBuilder.getClipMaxY() - mBuilder.getClipMinY();
+            mRetainedRequest = new RetainedPath(null, zoom, true,
+                    mBuilder.getClipMinX() - width, mBuilder.getClipMinY() - height,
+                    mBuilder.getClipMaxX() + width, mBuilder.getClipMaxY() + height);
+        } else {
+            mRetainedRequest = new RetainedPath(null, zoom, false, 0, 0, 1, 1);
+        }
+        if (mRetainedPending.compareAndSet(false, true)) {
+            sExecutor.execute(mBuildRetainedPath);
         }
     }
 
@@ -276,4 +458,36 @@ public class PathOverlay extends Overlay {
     public void setOptimizePath(final boolean value) {
         mOptimizePath = value;
     }
-}
\ No newline at end of file
+
+    /**
+     * A path of the line in pixels of an integer zoom, minus an origin, and what it was built
+     * from.
+     */
+    private static final class RetainedPath {
+        final Path path;
+        final int zoom;
+        final boolean clipped;
+        // the part of the world the path covers
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        double scale;
+        double originX;
+        double originY;
+        int pointCount;
+        int setGeneration;
+        PathLevels levels;
+
+        RetainedPath(final Path path, final int zoom, final boolean clipped, final double minX,
+                final double minY, final double maxX, final double maxY) {
+            this.path = path;
+            this.zoom = zoom;
+            this.clipped = clipped;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+    }
+}
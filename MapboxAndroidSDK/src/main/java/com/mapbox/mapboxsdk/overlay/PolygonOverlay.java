@@ -0,0 +1,613 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.os.Process;
+
+import com.mapbox.mapboxsdk.api.ILatLng;
+import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws filled polygons with holes, many to one overlay.
+ * <p/>
+ * Every polygon is a list of rings, the first one the outline and the others holes. Rings are
+ * rewound when added, outlines clockwise and holes the other way, so holes stay empty with
+ * the default {@link Path.FillType#WINDING} fill while overlapping polygons still add up.
+ * <p/>
+ * Polygons are drawn batched by color, one path per color, in the order each color was first
+ * used. The paths are built in the background for an integer zoom level from the polygons around
+ * the screen, with vertices less than a pixel apart merged, and are moved and scaled by the
+ * canvas until the zoom level changes or the screen leaves the area they cover. The last paths
+ * built are drawn until the next ones are done.
+ */
+public class PolygonOverlay extends Overlay implements TileRasterizable {
+
+    private static final String TAG = "PolygonOverlay";
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(runnable, TAG);
+                }
+            });
+
+    private final ArrayList<Polygon> mPolygons = new ArrayList<Polygon>();
+    /**
+     * The polygons as of the current generation, built from mPolygons when needed, so batches
+     * are built without holding the lock drawing takes. Polygons don't change once added.
+     */
+    private Polygon[] mSnapshot = null;
+    private double mMinX = Double.POSITIVE_INFINITY;
+    private double mMinY = Double.POSITIVE_INFINITY;
+    private double mMaxX = Double.NEGATIVE_INFINITY;
+    private double mMaxY = Double.NEGATIVE_INFINITY;
+
+    protected Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    protected Paint mStrokePaint = null;
+    private Path.FillType mFillType = Path.FillType.WINDING;
+    /**
+     * The paints with the colors and stroke width drawing needs, so mFillPaint and mStrokePaint
+     * stay as set while tiles are drawn with them in the background.
+     */
+    private final Paint mDrawFillPaint = new Paint();
+    private final Paint mDrawStrokePaint = new Paint();
+
+    /**
+     * Counts changes to the polygons or how they are batched.
+     */
+    private int mGeneration = 0;
+    private volatile MapView mMapView = null;
+
+    /**
+     * The batches around the screen for an integer zoom level, built in the background, and
+     * what to build next.
+     */
+    private volatile RetainedBatches mRetained;
+    private volatile RetainedBatches mRetainedRequest;
+    private final AtomicBoolean mRetainedPending = new AtomicBoolean();
+    private final Runnable mBuildRetainedBatches = new Runnable() {
+        @Override
+        public void run() {
+            mRetainedPending.set(false);
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            final RetainedBatches request = mRetainedRequest;
+            final RetainedBatches retained = new RetainedBatches(request.zoom, request.minX,
+                    request.minY, request.maxX, request.maxY);
+            retained.scale = Projection.mapSize(request.zoom);
+            // path coordinates stay small around the middle of the area
+            retained.originX = Math.floor((request.minX + request.maxX) / 2 * retained.scale);
+            retained.originY = Math.floor((request.minY + request.maxY) / 2 * retained.scale);
+            final Polygon[] polygons;
+            final Path.FillType fillType;
+            synchronized (mPolygons) {
+                retained.generation = mGeneration;
+                polygons = getSnapshot();
+                fillType = mFillType;
+            }
+            collectBatches(polygons, fillType, retained.batches, retained.scale,
+                    -retained.originX, -retained.originY, request.minX, request.minY,
+                    request.maxX, request.maxY);
+            mRetained = retained;
+            invalidateLayer();
+            final MapView mapView = mMapView;
+            if (mapView != null) {
+                mapView.postInvalidate();
+            }
+        }
+    };
+    private final RectF mClipBounds = new RectF();
+
+    public PolygonOverlay() {
+        this(Color.BLUE);
+    }
+
+    public PolygonOverlay(final int fillColor) {
+        super();
+        mFillPaint.setColor(fillColor);
+        mFillPaint.setStyle(Paint.Style.FILL);
+        setOverlayIndex(PATHOVERLAY_INDEX);
+    }
+
+    public Paint getFillPaint() {
+        return mFillPaint;
+    }
+
+    /**
+     * The paint to fill polygons with. Its color is the one of polygons added without a color.
+     */
+    public PolygonOverlay setFillPaint(final Paint paint) {
+        mFillPaint = paint;
+        invalidateLayer();
+        return this;
+    }
+
+    public Paint getStrokePaint() {
+        return mStrokePaint;
+    }
+
+    /**
+     * @param paint the paint to outline polygons and holes with, or null to only fill them
+     */
+    public PolygonOverlay setStrokePaint(final Paint paint) {
+        mStrokePaint = paint;
+        invalidateLayer();
+        return this;
+    }
+
+    public Path.FillType getFillType() {
+        return mFillType;
+    }
+
+    /**
+     * With {@link Path.FillType#EVEN_ODD} overlapping polygons of the same color leave their
+     * overlap empty, as they share a path.
+     */
+    public PolygonOverlay setFillType(final Path.FillType fillType) {
+        synchronized (mPolygons) {
+            mFillType = fillType;
+            mGeneration++;
+        }
+        invalidateLayer();
+        return this;
+    }
+
+    /**
+     * Add a polygon in the fill paint's color.
+     *
+     * @param rings the outline, then any holes. Rings may or may not repeat their first point
+     * at the end.
+     * @return the index of the polygon
+     */
+    public int addPolygon(final List<? extends List<? extends ILatLng>> rings) {
+        return addPolygon(rings, mFillPaint.getColor());
+    }
+
+    /**
+     * Add a polygon in its own color, as for a choropleth.
+     *
+     * @param rings the outline, then any holes
+     * @return the index of the polygon
+     */
+    public int addPolygon(final List<? extends List<? extends ILatLng>> rings, final int color) {
+        if (rings.isEmpty()) {
+            throw new IllegalArgumentException("A polygon needs an outline");
+        }
+        final Polygon polygon = new Polygon(color);
+        final double[] world = new double[2];
+        for (int r = 0; r < rings.size(); r++) {
+            final List<? extends ILatLng> ring = rings.get(r);
+            final int start = polygon.size;
+            final int ringSize = ring.size();
+            for (int i = 0; i < ringSize; i++) {
+                final ILatLng point = ring.get(i);
+                // the closing point is implied
+                if (i == ringSize - 1 && i > 0 && point.getLatitude() == ring.get(0).getLatitude()
+                        && point.getLongitude() == ring.get(0).getLongitude()) {
+                    break;
+                }
+                Projection.latLongToWorldXY(point.getLatitude(), point.getLongitude(), world);
+                polygon.addPoint(world[0], world[1]);
+            }
+            polygon.endRing(start, r == 0);
+        }
+        return add(polygon);
+    }
+
+    /**
+     * Add a polygon from primitive arrays, as read by
+     * {@link com.mapbox.mapboxsdk.util.GeoJSONStreamReader}.
+     *
+     * @param coordinates interleaved longitude, latitude pairs, in GeoJSON order
+     * @param ringEnds the index of the coordinate after the last one of every ring
+     * @param firstRing the outline, followed by holes up to ringCount rings
+     * @return the index of the polygon
+     */
+    public int addPolygon(final double[] coordinates, final int[] ringEnds, final int firstRing,
+            final int ringCount, final int color) {
+        if (ringCount < 1) {
+            throw new IllegalArgumentException("A polygon needs an outline");
+        }
+        final Polygon polygon = new Polygon(color);
+        final double[] world = new double[2];
+        for (int r = firstRing; r < firstRing + ringCount; r++) {
+            final int first = r > 0 ? ringEnds[r - 1] : 0;
+            int end = ringEnds[r];
+            // the closing point is implied
+            if (end - first > 1 && coordinates[first * 2] == coordinates[end * 2 - 2]
+                    && coordinates[first * 2 + 1] == coordinates[end * 2 - 1]) {
+                end--;
+            }
+            final int start = polygon.size;
+            for (int i = first; i < end; i++) {
+                Projection.latLongToWorldXY(coordinates[i * 2 + 1], coordinates[i * 2], world);
+                polygon.addPoint(world[0], world[1]);
+            }
+            polygon.endRing(start, r == firstRing);
+        }
+        return add(polygon);
+    }
+
+    private int add(final Polygon polygon) {
+        synchronized (mPolygons) {
+            mPolygons.add(polygon);
+            mMinX = Math.min(mMinX, polygon.minX);
+            mMinY = Math.min(mMinY, polygon.minY);
+            mMaxX = Math.max(mMaxX, polygon.maxX);
+            mMaxY = Math.max(mMaxY, polygon.maxY);
+            mSnapshot = null;
+            mGeneration++;
+            invalidateLayer();
+            return mPolygons.size() - 1;
+        }
+    }
+
+    public void setPolygonColor(final int index, final int color) {
+        synchronized (mPolygons) {
+            // snapshots keep the polygon as it was
+            mPolygons.set(index, new Polygon(mPolygons.get(index), color));
+            mSnapshot = null;
+            mGeneration++;
+        }
+        invalidateLayer();
+    }
+
+    public int getPolygonColor(final int index) {
+        synchronized (mPolygons) {
+            return mPolygons.get(index).color;
+        }
+    }
+
+    public int getPolygonCount() {
+        synchronized (mPolygons) {
+            return mPolygons.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (mPolygons) {
+            mPolygons.clear();
+            mMinX = Double.POSITIVE_INFINITY;
+            mMinY = Double.POSITIVE_INFINITY;
+            mMaxX = Double.NEGATIVE_INFINITY;
+            mMaxY = Double.NEGATIVE_INFINITY;
+            mSnapshot = null;
+            mGeneration++;
+        }
+        mRetained = null;
+        invalidateLayer();
+    }
+
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    @Override
+    protected void draw(final Canvas canvas, final MapView mapView) {
+        final Projection pj = mapView.getProjection();
+        final int originX = pj.getCenterX();
+        final int originY = pj.getCenterY();
+        final int zoom = (int) pj.getZoomLevel();
+        final double worldScale = pj.getWorldScale();
+        final double worldOffset = pj.getWorldOffset();
+        mMapView = mapView;
+
+        // the screen in world coordinates, with room for outlines
+        final float margin = mStrokePaint != null
+                ? mStrokePaint.getStrokeWidth() / mapView.getScale() + 1 : 1;
+        mClipBounds.set(pj.getTransformScreenRect());
+        mClipBounds.inset(-margin, -margin);
+        final double minX = (mClipBounds.left - worldOffset) / worldScale;
+        final double minY = (mClipBounds.top - worldOffset) / worldScale;
+        final double maxX = (mClipBounds.right - worldOffset) / worldScale;
+        final double maxY = (mClipBounds.bottom - worldOffset) / worldScale;
+
+        final int generation;
+        synchronized (mPolygons) {
+            if (mPolygons.isEmpty() || mMinX > maxX || mMaxX < minX || mMinY > maxY
+                    || mMaxY < minY) {
+                return;
+            }
+            generation = mGeneration;
+        }
+        final RetainedBatches retained = mRetained;
+        if (retained == null || retained.generation != generation || retained.zoom != zoom
+                || minX < retained.minX || minY < retained.minY || maxX > retained.maxX
+                || maxY > retained.maxY) {
+            requestBatches(zoom, minX, minY, maxX, maxY);
+        }
+        if (retained == null) {
+            return;
+        }
+
+        // from the pixels of the zoom the batches were built for to the current ones
+        final double scale = worldScale / retained.scale;
+        canvas.save();
+        // map pixels grow past float precision at high zoom levels, so the canvas is moved to
+        // the scroll position first
+        canvas.translate(originX, originY);
+        canvas.translate((float) (retained.originX * scale + worldOffset - originX),
+                (float) (retained.originY * scale + worldOffset - originY));
+        canvas.scale((float) scale, (float) scale);
+        mDrawFillPaint.set(mFillPaint);
+        for (Batch batch : retained.batches) {
+            mDrawFillPaint.setColor(batch.color);
+            canvas.drawPath(batch.path, mDrawFillPaint);
+        }
+        final Paint strokePaint = mStrokePaint;
+        if (strokePaint != null) {
+            mDrawStrokePaint.set(strokePaint);
+            mDrawStrokePaint.setStrokeWidth(
+                    (float) (strokePaint.getStrokeWidth() / mapView.getScale() / scale));
+            for (Batch batch : retained.batches) {
+                canvas.drawPath(batch.path, mDrawStrokePaint);
+            }
+        }
+        canvas.restore();
+    }
+
+    /**
+     * Build the batches again in the background, for a zoom level and around part of the
+     * world, coalescing requests made meanwhile.
+     */
+    private void requestBatches(final int zoom, final double minX, final double minY,
+            final double maxX, final double maxY) {
+        // a screen of margin on every side, so small pans keep the batches
+        final double width = maxX - minX;
+        final double height = maxY - minY;
+        mRetainedRequest = new RetainedBatches(zoom, minX - width, minY - height, maxX + width,
+                maxY + height);
+        if (mRetainedPending.compareAndSet(false, true)) {
+            sExecutor.execute(mBuildRetainedBatches);
+        }
+    }
+
+    /**
+     * The polygons as of the current generation. Called with the polygons locked.
+     */
+    private Polygon[] getSnapshot() {
+        if (mSnapshot == null) {
+            mSnapshot = mPolygons.toArray(new Polygon[mPolygons.size()]);
+        }
+        return mSnapshot;
+    }
+
+    /**
+     * Put the polygons that intersect a part of the world in one path per color, as
+     * x * scale + offsetX, y * scale + offsetY.
+     *
+     * @return true if any polygon was added
+     */
+    private static boolean collectBatches(final Polygon[] polygons,
+            final Path.FillType fillType, final List<Batch> batches, final double scale,
+            final double offsetX, final double offsetY, final double minX, final double minY,
+            final double maxX, final double maxY) {
+        for (Polygon polygon : polygons) {
+            if (polygon.minX > maxX || polygon.maxX < minX || polygon.minY > maxY
+                    || polygon.maxY < minY) {
+                continue;
+            }
+            // smaller than a pixel
+            if ((polygon.maxX - polygon.minX) * scale < 1
+                    && (polygon.maxY - polygon.minY) * scale < 1) {
+                continue;
+            }
+            Batch batch = null;
+            for (int i = 0; i < batches.size(); i++) {
+                if (batches.get(i).color == polygon.color) {
+                    batch = batches.get(i);
+                    break;
+                }
+            }
+            if (batch == null) {
+                batch = new Batch(polygon.color);
+                batch.path.setFillType(fillType);
+                batches.add(batch);
+            }
+            polygon.addTo(batch.path, scale, offsetX, offsetY);
+        }
+        return !batches.isEmpty();
+    }
+
+    @Override
+    public boolean drawTile(final Canvas canvas, final int zoom, final double scale,
+            final double offsetX, final double offsetY, final RectF bounds) {
+        final Paint fillPaint = new Paint(mFillPaint);
+        final Paint strokePaint = mStrokePaint != null ? new Paint(mStrokePaint) : null;
+        // room for outlines
+        final float margin = strokePaint != null ? strokePaint.getStrokeWidth() + 1 : 1;
+        final double minX = (bounds.left - margin - offsetX) / scale;
+        final double minY = (bounds.top - margin - offsetY) / scale;
+        final double maxX = (bounds.right + margin - offsetX) / scale;
+        final double maxY = (bounds.bottom + margin - offsetY) / scale;
+        final Polygon[] polygons;
+        final Path.FillType fillType;
+        synchronized (mPolygons) {
+            if (mPolygons.isEmpty() || mMinX > maxX || mMaxX < minX || mMinY > maxY
+                    || mMaxY < minY) {
+                return false;
+            }
+            polygons = getSnapshot();
+            fillType = mFillType;
+        }
+        final ArrayList<Batch> batches = new ArrayList<Batch>();
+        if (!collectBatches(polygons, fillType, batches, scale, offsetX, offsetY, minX, minY,
+                maxX, maxY)) {
+            return false;
+        }
+        for (Batch batch : batches) {
+            fillPaint.setColor(batch.color);
+            canvas.drawPath(batch.path, fillPaint);
+        }
+        if (strokePaint != null) {
+            for (Batch batch : batches) {
+                canvas.drawPath(batch.path, strokePaint);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A path of all polygons of one color.
+     */
+    private static final class Batch {
+        final Path path = new Path();
+        final int color;
+
+        Batch(final int color) {
+            this.color = color;
+        }
+    }
+
+    /**
+     * Batches in pixels of an integer zoom, minus an origin, and what they were built from.
+     */
+    private static final class RetainedBatches {
+        final ArrayList<Batch> batches = new ArrayList<Batch>();
+        final int zoom;
+        // the part of the world the batches cover
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        double scale;
+        double originX;
+        double originY;
+        int generation;
+
+        RetainedBatches(final int zoom, final double minX, final double minY, final double maxX,
+                final double maxY) {
+            this.zoom = zoom;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+    }
+
+    /**
+     * Rings in world coordinates, with their bounds. Not changed once added to the overlay.
+     */
+    private static final class Polygon {
+        // interleaved x, y; rings may touch, so repeated points are kept
+        double[] coords = new double[16];
+        int size = 0;
+        int[] ringEnds = new int[1];
+        int ringCount = 0;
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        final int color;
+
+        Polygon(final int color) {
+            this.color = color;
+        }
+
+        /**
+         * The same rings in another color, sharing the points.
+         */
+        Polygon(final Polygon polygon, final int color) {
+            this.color = color;
+            coords = polygon.coords;
+            size = polygon.size;
+            ringEnds = polygon.ringEnds;
+            ringCount = polygon.ringCount;
+            minX = polygon.minX;
+            minY = polygon.minY;
+            maxX = polygon.maxX;
+            maxY = polygon.maxY;
+        }
+
+        void addPoint(final double x, final double y) {
+            if (size * 2 == coords.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+            }
+            coords[size * 2] = x;
+            coords[size * 2 + 1] = y;
+            size++;
+        }
+
+        /**
+         * Finish the ring of the points added since start, winding it as an outline or a hole.
+         */
+        void endRing(final int start, final boolean outline) {
+            // rings of less than three points are kept, but not drawn
+            final int end = size;
+            // twice the signed area, positive for clockwise with y pointing down, relative to the
+            // first point to keep the precision for small rings
+            double area = 0;
+            for (int i = start; i < end; i++) {
+                final int next = i + 1 < end ? i + 1 : start;
+                area += (coords[i * 2] - coords[start * 2])
+                        * (coords[next * 2 + 1] - coords[start * 2 + 1])
+                        - (coords[next * 2] - coords[start * 2])
+                        * (coords[i * 2 + 1] - coords[start * 2 + 1]);
+            }
+            if ((area > 0) != outline) {
+                for (int i = start, j = end - 1; i < j; i++, j--) {
+                    final double x = coords[i * 2];
+                    final double y = coords[i * 2 + 1];
+                    coords[i * 2] = coords[j * 2];
+                    coords[i * 2 + 1] = coords[j * 2 + 1];
+                    coords[j * 2] = x;
+                    coords[j * 2 + 1] = y;
+                }
+            }
+            for (int i = start; i < end; i++) {
+                minX = Math.min(minX, coords[i * 2]);
+                minY = Math.min(minY, coords[i * 2 + 1]);
+                maxX = Math.max(maxX, coords[i * 2]);
+                maxY = Math.max(maxY, coords[i * 2 + 1]);
+            }
+            if (ringCount == ringEnds.length) {
+                final int[] grown = new int[ringCount * 2];
+                System.arraycopy(ringEnds, 0, grown, 0, ringCount);
+                ringEnds = grown;
+            }
+            ringEnds[ringCount++] = end;
+        }
+
+        /**
+         * Add the rings to a path as x * scale + offsetX, y * scale + offsetY, merging vertices
+         * less than a pixel apart.
+         */
+        void addTo(final Path path, final double scale, final double offsetX,
+                final double offsetY) {
+            int start = 0;
+            for (int r = 0; r < ringCount; r++) {
+                final int end = ringEnds[r];
+                if (end - start >= 3) {
+                    float lastX = (float) (coords[start * 2] * scale + offsetX);
+                    float lastY = (float) (coords[start * 2 + 1] * scale + offsetY);
+                    path.moveTo(lastX, lastY);
+                    for (int i = start + 1; i < end; i++) {
+                        final float x = (float) (coords[i * 2] * scale + offsetX);
+                        final float y = (float) (coords[i * 2 + 1] * scale + offsetY);
+                        if (Math.abs(x - lastX) + Math.abs(y - lastY) < 1) {
+                            continue;
+                        }
+                        path.lineTo(x, y);
+                        lastX = x;
+                        lastY = y;
+                    }
+                    path.close();
+                }
+                start = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.os.Process;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileCache;
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+import com.mapbox.mapboxsdk.tileprovider.modules.ConfigurablePriorityThreadFactory;
+import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
+
+/**
+ * Draws static overlays as map tiles. The overlays are drawn into tiles on background threads,
+ * which are kept in the memory tile cache with the tiles of the map, so however many lines and
+ * polygons they hold, drawing them costs as much as a tile layer and panning never builds their
+ * paths again.
+ * <p/>
+ * Tiles are drawn for integer zoom levels and scaled in between, strokes included. While some
+ * tiles around the screen aren't drawn yet, the overlays are drawn as they are instead. A change
+ * to any of the overlays draws all tiles again. The tiles in view are reported to the memory
+ * cache's size controller like those of a tile layer.
+ * <p/>
+ * The overlays are drawn by this one, so don't add them to the map as well.
+ */
+public class RasterizedOverlay extends Overlay implements TileLayerConstants {
+
+    private static final String TAG = "RasterizedOverlay";
+
+    private static final int RASTERIZER_THREADS = 2;
+    /**
+     * How many tiles known to be empty are remembered.
+     */
+    private static final int MAX_EMPTY_TILES = 4096;
+
+    private static final AtomicInteger sNextId = new AtomicInteger();
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(
+            RASTERIZER_THREADS, new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, TAG));
+    private static final Paint sTilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private final Overlay[] mOverlays;
+    private final String mKeyPrefix;
+    private final int[] mStamps;
+    private int mGeneration = 0;
+    private volatile String mCacheKey;
+    private volatile MapTileCache mTileCache;
+    private volatile MapView mMapView;
+
+    /**
+     * Keys of the tiles being drawn and of tiles with nothing in them, guarded by mPending.
+     */
+    private final HashSet<String> mPending = new HashSet<String>();
+    private final HashSet<String> mEmpty = new HashSet<String>();
+
+    private ArrayList<CacheableBitmapDrawable> mDrawn = new ArrayList<CacheableBitmapDrawable>();
+    private ArrayList<CacheableBitmapDrawable> mDrawnBefore =
+            new ArrayList<CacheableBitmapDrawable>();
+    private int[] mDrawnTiles = new int[64];
+    private final RectF mTileRect = new RectF();
+    private int mLastDemand = -1;
+    private int mLastDemandSize = -1;
+
+    /**
+     * @param overlays the overlays to draw as tiles, all of them {@link TileRasterizable}
+     */
+    public RasterizedOverlay(final Overlay... overlays) {
+        super();
+        for (Overlay overlay : overlays) {
+            if (!(overlay instanceof TileRasterizable)) {
+                throw new IllegalArgumentException(overlay + " can't be drawn as tiles");
+            }
+        }
+        mOverlays = overlays.clone();
+        mStamps = new int[overlays.length];
+        mKeyPrefix = "rasterized-" + sNextId.incrementAndGet() + "-";
+        setOverlayIndex(PATHOVERLAY_INDEX);
+    }
+
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    @Override
+    int getLayerGeneration() {
+        int generation = super.getLayerGeneration();
+        for (Overlay overlay : mOverlays) {
+            generation = generation * 31 + stamp(overlay);
+        }
+        return generation;
+    }
+
+    private static int stamp(final Overlay overlay) {
+        return overlay.getLayerGeneration() << 1 | (overlay.isEnabled() ? 1 : 0);
+    }
+
+    /**
+     * Tiles are cached under a key that changes with the overlays, so tiles of what they were
+     * before are left for the cache to evict.
+     */
+    String updateCacheKey() {
+        boolean changed = mCacheKey == null;
+        for (int i = 0; i < mOverlays.length; i++) {
+            final int stamp = stamp(mOverlays[i]);
+            if (mStamps[i] != stamp) {
+                mStamps[i] = stamp;
+                changed = true;
+            }
+        }
+        if (changed) {
+            mCacheKey = mKeyPrefix + (mGeneration++);
+            synchronized (mPending) {
+                mEmpty.clear();
+            }
+        }
+        return mCacheKey;
+    }
+
+    @Override
+    protected void draw(final Canvas canvas, final MapView mapView) {
+        mMapView = mapView;
+        if (mTileCache == null) {
+            mTileCache = new MapTileCache(mapView.getContext(), null);
+        }
+        final String cacheKey = updateCacheKey();
+
+        final Projection pj = mapView.getProjection();
+        final int zoom = Math.max(MINIMUM_ZOOMLEVEL,
+                Math.min(MAXIMUM_ZOOMLEVEL, (int) pj.getZoomLevel()));
+        final int tiles = 1 << zoom;
+        final double worldScale = pj.getWorldScale();
+        final double worldOffset = pj.getWorldOffset();
+        final RectF screen = pj.getTransformScreenRect();
+        final int minX = toTile((screen.left - worldOffset) / worldScale, tiles);
+        final int minY = toTile((screen.top - worldOffset) / worldScale, tiles);
+        final int maxX = toTile((screen.right - worldOffset) / worldScale, tiles);
+        final int maxY = toTile((screen.bottom - worldOffset) / worldScale, tiles);
+        updateMemoryCacheDemand((maxX - minX + 1) * (maxY - minY + 1));
+
+        // the tiles in view, unless some aren't drawn yet
+        boolean complete = true;
+        int drawnCount = 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                final MapTile tile = new MapTile(cacheKey, zoom, x, y);
+                if (isEmptyTile(tile)) {
+                    continue;
+                }
+                final CacheableBitmapDrawable drawable = mTileCache.getMapTileFromMemory(tile);
+                if (drawable == null || !drawable.isBitmapValid()) {
+                    complete = false;
+                    rasterize(tile);
+                    continue;
+                }
+                drawable.setBeingUsed(true);
+                mDrawn.add(drawable);
+                if (drawnCount * 2 == mDrawnTiles.length) {
+                    final int[] grown = new int[mDrawnTiles.length * 2];
+                    System.arraycopy(mDrawnTiles, 0, grown, 0, mDrawnTiles.length);
+                    mDrawnTiles = grown;
+                }
+                mDrawnTiles[drawnCount * 2] = x;
+                mDrawnTiles[drawnCount * 2 + 1] = y;
+                drawnCount++;
+            }
+        }
+
+        if (complete) {
+            // map pixels grow past float precision at high zoom levels, so the canvas is moved
+            // to the scroll position first
+            final int originX = pj.getCenterX();
+            final int originY = pj.getCenterY();
+            final double tileScale = worldScale / tiles;
+            canvas.save();
+            canvas.translate(originX, originY);
+            for (int i = 0; i < drawnCount; i++) {
+                final double left = mDrawnTiles[i * 2] * tileScale + worldOffset - originX;
+                final double top = mDrawnTiles[i * 2 + 1] * tileScale + worldOffset - originY;
+                mTileRect.set((float) left, (float) top, (float) (left + tileScale),
+                        (float) (top + tileScale));
+                canvas.drawBitmap(mDrawn.get(i).getBitmap(), null, mTileRect, sTilePaint);
+            }
+            canvas.restore();
+        } else {
+            for (Overlay overlay : mOverlays) {
+                if (overlay.isEnabled()) {
+                    overlay.draw(canvas, mapView);
+                }
+            }
+        }
+
+        // the tiles of the frame before are done being drawn
+        releaseDrawn(mDrawnBefore);
+        final ArrayList<CacheableBitmapDrawable> drawn = mDrawnBefore;
+        mDrawnBefore = mDrawn;
+        mDrawn = drawn;
+    }
+
+    /**
+     * Report the tiles in view, drawn as ARGB_8888, so the memory cache makes room for them.
+     */
+    private void updateMemoryCacheDemand(final int tiles) {
+        final int tileSize = Projection.getTileSize();
+        if (tiles == mLastDemand && tileSize == mLastDemandSize) {
+            return;
+        }
+        mLastDemand = tiles;
+        mLastDemandSize = tileSize;
+        mTileCache.setViewportTileDemand(this, tiles, tileSize, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Whether a tile was drawn and had nothing in it, since the overlays last changed.
+     */
+    boolean isEmptyTile(final MapTile tile) {
+        synchronized (mPending) {
+            return mEmpty.contains(tile.getCacheKey());
+        }
+    }
+
+    private static int toTile(final double world, final int tiles) {
+        return Math.max(0, Math.min(tiles - 1, (int) Math.floor(world * tiles)));
+    }
+
+    private static void releaseDrawn(final ArrayList<CacheableBitmapDrawable> drawn) {
+        for (CacheableBitmapDrawable drawable : drawn) {
+            drawable.setBeingUsed(false);
+        }
+        drawn.clear();
+    }
+
+    private void rasterize(final MapTile tile) {
+        synchronized (mPending) {
+            if (!mPending.add(tile.getCacheKey())) {
+                return;
+            }
+        }
+        try {
+            sExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    rasterizeTile(tile);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            Log.w(TAG, "RejectedExecutionException", e);
+            synchronized (mPending) {
+                mPending.remove(tile.getCacheKey());
+            }
+        }
+    }
+
+    /**
+     * Draw a tile and put it in the memory cache, or remember it as empty.
+     */
+    void rasterizeTile(final MapTile tile) {
+        final String key = tile.getCacheKey();
+        final int tileSize = Projection.getTileSize();
+        final double scale = tileSize * (double) (1 << tile.getZ());
+        boolean drawn = false;
+        boolean failed = false;
+        try {
+            final Bitmap bitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+            final Canvas canvas = new Canvas(bitmap);
+            final RectF bounds = new RectF(0, 0, tileSize, tileSize);
+            for (Overlay overlay : mOverlays) {
+                if (overlay.isEnabled()) {
+                    drawn |= ((TileRasterizable) overlay).drawTile(canvas, tile.getZ(), scale,
+                            -(double) tile.getX() * tileSize, -(double) tile.getY() * tileSize,
+                            bounds);
+                }
+            }
+            if (drawn) {
+                mTileCache.putTileInMemoryCache(tile, bitmap);
+            } else {
+                bitmap.recycle();
+            }
+        } catch (final OutOfMemoryError e) {
+            Log.e(TAG, "Not enough memory to draw " + tile, e);
+            failed = true;
+        } finally {
+            synchronized (mPending) {
+                mPending.remove(key);
+                if (!drawn && !failed) {
+                    if (mEmpty.size() >= MAX_EMPTY_TILES) {
+                        mEmpty.clear();
+                    }
+                    mEmpty.add(key);
+                }
+            }
+        }
+        final MapView mapView = mMapView;
+        if (mapView != null && !failed) {
+            mapView.postInvalidate();
+        }
+    }
+
+    @Override
+    public void onDetach(final MapView mapView) {
+        releaseDrawn(mDrawn);
+        releaseDrawn(mDrawnBefore);
+        if (mTileCache != null) {
+            mTileCache.removeViewportTileDemand(this);
+        }
+        mLastDemand = -1;
+        mLastDemandSize = -1;
+        for (Overlay overlay : mOverlays) {
+            overlay.onDetach(mapView);
+        }
+        mMapView = null;
+    }
+}
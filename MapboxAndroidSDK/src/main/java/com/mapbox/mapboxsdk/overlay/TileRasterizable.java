@@ -0,0 +1,26 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Canvas;
+import android.graphics.RectF;
+
+/**
+ * An overlay that can draw its part of a map tile off the UI thread, so a
+ * {@link RasterizedOverlay} can keep it in the tile cache like the tiles of a tile layer.
+ */
+public interface TileRasterizable {
+
+    /**
+     * Draw the part of the overlay in a tile. Called on background threads, for several tiles
+     * at once, while the overlay may be changed or drawn on the UI thread.
+     *
+     * @param canvas a canvas the size of the tile
+     * @param zoom the zoom level of the tile
+     * @param scale tile pixels per world unit at that zoom level
+     * @param offsetX added to world coordinates times scale to get tile pixels
+     * @param offsetY added to world coordinates times scale to get tile pixels
+     * @param bounds the tile, in tile pixels
+     * @return true if anything was drawn
+     */
+    boolean drawTile(Canvas canvas, int zoom, double scale, double offsetX, double offsetY,
+            RectF bounds);
+}
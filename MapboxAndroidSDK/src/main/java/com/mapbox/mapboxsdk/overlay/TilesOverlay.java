@@ -11,6 +11,7 @@ import android.graphics.Shader;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
@@ -39,6 +40,9 @@ public class TilesOverlay extends SafeDrawOverlay {
 
     public static final int MENU_OFFLINE = getSafeMenuId();
     private int mNuberOfTiles;
+    private int mMissingTiles;
+    private final long mCreatedAt = SystemClock.elapsedRealtime();
+    private long mTimeToFirstFullFrame = -1;
 
     /**
      * Current tile source
@@ -97,6 +101,21 @@ public class TilesOverlay extends SafeDrawOverlay {
         this.mTileProvider.detach();
     }
 
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    /**
+     * Time from the creation of this overlay to the first frame in which every visible
+     * tile was drawn, in milliseconds.
+     *
+     * @return the time, or -1 if no frame has been complete yet
+     */
+    public long getTimeToFirstFullFrame() {
+        return mTimeToFirstFullFrame;
+    }
+
     public float getMinimumZoomLevel() {
         return mTileProvider.getMinimumZoomLevel();
     }
@@ -144,6 +163,8 @@ public class TilesOverlay extends SafeDrawOverlay {
                 drawLoadingTile(c.getSafeCanvas(), mapView, zoomLevel, mClipRect);
             }
             drawTiles(c.getSafeCanvas(), zoomLevel, tileSize, mViewPort, mClipRect);
+            mTileProvider.updateMemoryCacheDemand(mNuberOfTiles, mapView.getWidth(),
+                    mapView.getHeight());
         }
 
         if (UtilConstants.DEBUGMODE && mapView.getScrollableAreaLimit() != null) {
@@ -187,7 +208,12 @@ public class TilesOverlay extends SafeDrawOverlay {
     public void drawTiles(final Canvas c, final float zoomLevel, final int tileSizePx,
                           final Rect viewPort, final Rect pClipRect) {
 
+        mMissingTiles = 0;
         mNuberOfTiles = mTileLooper.loop(c, mTileProvider.getCacheKey(), zoomLevel, tileSizePx, viewPort, pClipRect);
+        if (mTimeToFirstFullFrame < 0 && mMissingTiles == 0 && mNuberOfTiles > 0) {
+            mTimeToFirstFullFrame = SystemClock.elapsedRealtime() - mCreatedAt;
+            Log.i(TAG, "first full frame after " + mTimeToFirstFullFrame + "ms");
+        }
 
         // draw a cross at center in debug mode
         if (UtilConstants.DEBUGMODE) {
@@ -236,7 +262,7 @@ public class TilesOverlay extends SafeDrawOverlay {
                 drawable.setBounds(mTileRect);
                 drawable.draw(pCanvas);
             } else {
-                mTileProvider.memoryCacheNeedsMoreMemory(mNuberOfTiles);
+                mMissingTiles++;
                 //Log.w(TAG, "tile should have been drawn to canvas, but it was null.  tile = '" + pTile + "'");
             }
 
@@ -285,6 +311,7 @@ public class TilesOverlay extends SafeDrawOverlay {
      */
     public void setDrawLoadingTile(final boolean pDrawLoadingTile) {
         this.mDrawLoadingTile = pDrawLoadingTile;
+        invalidateLayer();
     }
 
     /**
@@ -296,8 +323,10 @@ public class TilesOverlay extends SafeDrawOverlay {
                 final int tileSize =
                         mTileProvider.getTileSource() != null ? mTileProvider.getTileSource()
                                 .getTileSizePixels() : 256;
-                mLoadingTileBitmap =
-                        Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+                // an opaque background doesn't need an alpha channel
+                mLoadingTileBitmap = Bitmap.createBitmap(tileSize, tileSize,
+                        Color.alpha(mLoadingBackgroundColor) == 255 ? Bitmap.Config.RGB_565
+                                : Bitmap.Config.ARGB_8888);
                 final Canvas canvas = new Canvas(mLoadingTileBitmap);
                 canvas.drawColor(mLoadingBackgroundColor);
                 final int lineSize = tileSize / 16;
@@ -317,6 +346,7 @@ public class TilesOverlay extends SafeDrawOverlay {
 
     private void clearLoadingTile() {
         mLoadingTilePaint = null;
+        invalidateLayer();
         // Only recycle if we are running on a project less than 2.3.3 Gingerbread.
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.GINGERBREAD) {
             if (mLoadingTileBitmap != null) {
@@ -459,11 +489,14 @@ public class TilesOverlay extends SafeDrawOverlay {
                     mSrcRect.set(xx, yy, xx + mTileSize_2, yy + mTileSize_2);
                     mDestRect.set(0, 0, pTileSizePx, pTileSizePx);
 
+                    // the scaled tile keeps the config of the tile it comes from
+                    final Bitmap.Config config = oldBitmap.getConfig() != null ? oldBitmap.getConfig()
+                            : mTileProvider.getBitmapConfig();
                     // Try to get a bitmap from the pool, otherwise allocate a new one
-                    Bitmap bitmap = mTileProvider.getBitmapFromRemoved(pTileSizePx, pTileSizePx);
+                    Bitmap bitmap = mTileProvider.getBitmapFromRemoved(pTileSizePx, pTileSizePx, config);
 
                     if (bitmap == null) {
-                        bitmap = Bitmap.createBitmap(pTileSizePx, pTileSizePx, Bitmap.Config.ARGB_8888);
+                        bitmap = Bitmap.createBitmap(pTileSizePx, pTileSizePx, config);
                     }
                     if (bitmap != null) {
                         final Canvas canvas = new Canvas(bitmap);
@@ -515,12 +548,17 @@ public class TilesOverlay extends SafeDrawOverlay {
                         final Bitmap oldBitmap = ((BitmapDrawable) oldDrawable).getBitmap();
                         if (oldBitmap != null) {
                             if (bitmap == null) {
+                                final Bitmap.Config config = mTileProvider.getBitmapConfig();
                                 // Try to get a bitmap from the pool, otherwise allocate a new one
                                 bitmap = mTileProvider.getBitmapFromRemoved(pTileSizePx,
-                                        pTileSizePx);
+                                        pTileSizePx, config);
                                 if (bitmap == null) {
                                     bitmap = Bitmap.createBitmap(pTileSizePx, pTileSizePx,
-                                            Bitmap.Config.ARGB_8888);
+                                            config);
+                                }
+                                if (config == Bitmap.Config.RGB_565) {
+                                    // no alpha to show through: paint missing tiles as loading
+                                    bitmap.eraseColor(mLoadingBackgroundColor);
                                 }
                                 canvas = new Canvas(bitmap);
                             }
@@ -0,0 +1,180 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.Canvas;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.view.MotionEvent;
+
+import com.mapbox.mapboxsdk.api.ILatLng;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileProviderCallback;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.modules.UTFGridProvider;
+import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import org.json.JSONObject;
+
+import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
+
+/**
+ * Makes the features of a map's <a href='https://github.com/mapbox/utfgrid-spec'>UTFGrid</a>
+ * tappable. The grids of the tiles in view are loaded as the map moves, so a tap is answered
+ * from memory; a tap on a grid that isn't loaded yet is answered once it is.
+ */
+public class UTFGridOverlay extends Overlay implements IMapTileProviderCallback {
+
+    /**
+     * Interface definition for a callback when a feature of the grid is tapped.
+     */
+    public interface OnFeatureTapListener {
+        /**
+         * @param point where the map was tapped
+         * @param key the key of the feature, or null if there's no feature there
+         * @param data the data of the feature, or null if it has none
+         */
+        void onFeatureTap(ILatLng point, String key, JSONObject data);
+    }
+
+    private final UTFGridProvider mProvider;
+    private OnFeatureTapListener mListener;
+    private MapView mMapView;
+
+    /**
+     * The tap waiting for its grid, if any, only touched on the UI thread.
+     */
+    private ILatLng mPendingPoint;
+    private float mPendingZoom;
+    private volatile MapTile mPendingTile;
+
+    public UTFGridOverlay(final UTFGridProvider provider) {
+        super();
+        if (provider == null) {
+            throw new IllegalArgumentException("A UTFGrid overlay needs a provider");
+        }
+        mProvider = provider;
+        setOverlayIndex(MAPEVENTSOVERLAY_INDEX);
+    }
+
+    public UTFGridProvider getProvider() {
+        return mProvider;
+    }
+
+    public UTFGridOverlay setOnFeatureTapListener(final OnFeatureTapListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    /**
+     * Nothing is drawn, but the grids of the tiles in view are loaded.
+     */
+    @Override
+    protected void draw(final Canvas canvas, final MapView mapView) {
+        mMapView = mapView;
+        final Projection pj = mapView.getProjection();
+        if (pj.getZoomLevel() < mProvider.getMinimumZoomLevel()) {
+            return;
+        }
+        final int zoom = mProvider.getGridZoom(pj.getZoomLevel());
+        final int tiles = 1 << zoom;
+        final double worldScale = pj.getWorldScale();
+        final double worldOffset = pj.getWorldOffset();
+        final RectF screen = pj.getTransformScreenRect();
+        final int minX = toTile((screen.left - worldOffset) / worldScale, tiles);
+        final int minY = toTile((screen.top - worldOffset) / worldScale, tiles);
+        final int maxX = toTile((screen.right - worldOffset) / worldScale, tiles);
+        final int maxY = toTile((screen.bottom - worldOffset) / worldScale, tiles);
+        final String cacheKey = mProvider.getCacheKey();
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                mProvider.requestGrid(new MapTile(cacheKey, zoom, x, y), this);
+            }
+        }
+    }
+
+    private static int toTile(final double world, final int tiles) {
+        return Math.max(0, Math.min(tiles - 1, (int) Math.floor(world * tiles)));
+    }
+
+    @Override
+    public boolean onSingleTapConfirmed(final MotionEvent e, final MapView mapView) {
+        if (mListener == null) {
+            return false;
+        }
+        mMapView = mapView;
+        final ILatLng point = mapView.getProjection().fromPixels(e.getX(), e.getY());
+        final float zoom = mapView.getZoomLevel();
+        final MapTile tile = mProvider.getTile(point, zoom);
+        if (mProvider.getGrid(tile) != null || !mProvider.requestGrid(tile, this)) {
+            mPendingTile = null;
+            dispatchTap(point, zoom);
+        } else {
+            mPendingPoint = point;
+            mPendingZoom = zoom;
+            mPendingTile = tile;
+        }
+        // the tap still goes through to the map and the other overlays
+        return false;
+    }
+
+    private void dispatchTap(final ILatLng point, final float zoom) {
+        final OnFeatureTapListener listener = mListener;
+        if (listener != null) {
+            listener.onFeatureTap(point, mProvider.getKey(point, zoom),
+                    mProvider.getData(point, zoom));
+        }
+    }
+
+    /**
+     * Called on a worker thread once a grid is done loading, whether it loaded or not.
+     */
+    private void gridLoaded(final MapTile tile) {
+        final MapView mapView = mMapView;
+        if (mapView == null || !tile.equals(mPendingTile)) {
+            return;
+        }
+        mapView.post(new Runnable() {
+            @Override
+            public void run() {
+                if (tile.equals(mPendingTile)) {
+                    mPendingTile = null;
+                    dispatchTap(mPendingPoint, mPendingZoom);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void mapTileRequestCompleted(final MapTileRequestState aState,
+            final Drawable aDrawable) {
+        gridLoaded(aState.getMapTile());
+    }
+
+    @Override
+    public void mapTileRequestFailed(final MapTileRequestState aState) {
+        gridLoaded(aState.getMapTile());
+    }
+
+    @Override
+    public void mapTileRequestExpiredTile(final MapTileRequestState aState,
+            final CacheableBitmapDrawable aDrawable) {
+        gridLoaded(aState.getMapTile());
+    }
+
+    @Override
+    public boolean useDataConnection() {
+        return true;
+    }
+
+    @Override
+    public void onDetach(final MapView mapView) {
+        mProvider.detach();
+        mPendingTile = null;
+        mMapView = null;
+    }
+}
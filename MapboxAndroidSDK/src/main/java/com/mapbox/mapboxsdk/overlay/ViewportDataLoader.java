@@ -0,0 +1,430 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.events.CameraEvent;
+import com.mapbox.mapboxsdk.events.CameraListener;
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.modules.ConfigurablePriorityThreadFactory;
+import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Shows the markers of a {@link ViewportDataSource} for the part of the map in view. Once the
+ * camera has been still for a moment, the view is split into regions, the map tiles of its zoom
+ * level, and each region not in the cache is loaded on a background thread. Loads of regions
+ * that went out of view are cancelled. The markers of regions coming into view are added to an
+ * {@link ItemizedIconOverlay}, and those of regions going out of view removed, in one batch;
+ * regions going out of view stay until the regions replacing them are loaded, so the map isn't
+ * left empty in between.
+ */
+public class ViewportDataLoader implements CameraListener {
+
+    private static final String TAG = "ViewportDataLoader";
+
+    /**
+     * How long the camera has to be still before regions are loaded, in milliseconds.
+     */
+    public static final long DEFAULT_DELAY = 250;
+    /**
+     * How many regions are cached.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+    public static final int DEFAULT_MAX_REGION_ZOOM = 16;
+
+    private static final int LOADER_THREADS = 2;
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(
+            LOADER_THREADS, new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, TAG));
+
+    private final MapView mMapView;
+    private final ViewportDataSource mSource;
+    private final ItemizedIconOverlay mOverlay;
+    private final ExecutorService mExecutor;
+    private final LruCache<MapTile, List<Marker>> mCache;
+
+    /**
+     * The state of the regions, only used on the UI thread.
+     */
+    private final HashMap<MapTile, RegionRequest> mLoading = new HashMap<MapTile, RegionRequest>();
+    private final HashMap<MapTile, List<Marker>> mShown = new HashMap<MapTile, List<Marker>>();
+    private List<MapTile> mWanted = new ArrayList<MapTile>();
+
+    private long mDelay = DEFAULT_DELAY;
+    private float mMinZoom = 0;
+    private int mMaxRegionZoom = DEFAULT_MAX_REGION_ZOOM;
+    private boolean mStarted;
+
+    private BoundingBox mBoundingBox;
+    private float mZoomLevel;
+    private long mLastChangeTime;
+    private boolean mUpdatePosted;
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            final long wait = mLastChangeTime + mDelay - SystemClock.uptimeMillis();
+            if (wait > 0) {
+                mMapView.postDelayed(this, wait);
+                return;
+            }
+            mUpdatePosted = false;
+            update(mBoundingBox, mZoomLevel);
+        }
+    };
+
+    /**
+     * @param overlay the overlay the markers are shown in, or null for a new one
+     */
+    public ViewportDataLoader(final MapView mapView, final ViewportDataSource source,
+            final ItemizedIconOverlay overlay) {
+        this(mapView, source, overlay, sExecutor, DEFAULT_CACHE_SIZE);
+    }
+
+    public ViewportDataLoader(final MapView mapView, final ViewportDataSource source) {
+        this(mapView, source, null);
+    }
+
+    ViewportDataLoader(final MapView mapView, final ViewportDataSource source,
+            final ItemizedIconOverlay overlay, final ExecutorService executor,
+            final int cacheSize) {
+        if (source == null) {
+            throw new IllegalArgumentException("A viewport data loader needs a data source");
+        }
+        mMapView = mapView;
+        mSource = source;
+        mOverlay = overlay != null ? overlay
+                : new ItemizedIconOverlay(mapView.getContext(), new ArrayList<Marker>(), null);
+        mExecutor = executor;
+        mCache = new LruCache<MapTile, List<Marker>>(cacheSize);
+    }
+
+    public ItemizedIconOverlay getOverlay() {
+        return mOverlay;
+    }
+
+    /**
+     * Set how long the camera has to be still before regions are loaded.
+     */
+    public ViewportDataLoader setDelay(final long delayMs) {
+        if (delayMs < 0) {
+            throw new IllegalArgumentException("The delay can't be negative");
+        }
+        mDelay = delayMs;
+        return this;
+    }
+
+    /**
+     * Set the lowest zoom level markers are loaded at; below it, none are shown.
+     */
+    public ViewportDataLoader setMinZoom(final float minZoom) {
+        mMinZoom = minZoom;
+        return this;
+    }
+
+    /**
+     * Set the highest zoom level of the regions. Zoomed in further, the regions of this level
+     * are loaded, and reused while zooming.
+     */
+    public ViewportDataLoader setMaxRegionZoom(final int maxRegionZoom) {
+        if (maxRegionZoom < 0) {
+            throw new IllegalArgumentException("The region zoom level can't be negative");
+        }
+        mMaxRegionZoom = maxRegionZoom;
+        return this;
+    }
+
+    /**
+     * Add the overlay to the map, and load the markers of the view and of every view after it.
+     */
+    public ViewportDataLoader start() {
+        if (mStarted) {
+            return this;
+        }
+        mStarted = true;
+        mMapView.addItemizedOverlay(mOverlay);
+        mMapView.addCameraListener(this);
+        cameraChanged(mMapView.getBoundingBox(), mMapView.getZoomLevel(false));
+        return this;
+    }
+
+    /**
+     * Cancel the loads, and take the overlay off the map. The cache is kept for a restart.
+     */
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        mMapView.removeCameraListener(this);
+        mMapView.removeCallbacks(mUpdate);
+        mUpdatePosted = false;
+        for (RegionRequest request : mLoading.values()) {
+            request.cancel();
+        }
+        mLoading.clear();
+        mWanted = new ArrayList<MapTile>();
+        removeShown();
+        mMapView.removeOverlay(mOverlay);
+    }
+
+    /**
+     * Forget the cached regions, and load those in view again.
+     */
+    public void reload() {
+        mCache.evictAll();
+        for (RegionRequest request : mLoading.values()) {
+            request.cancel();
+        }
+        mLoading.clear();
+        removeShown();
+        if (mStarted) {
+            cameraChanged(mMapView.getBoundingBox(), mMapView.getZoomLevel(false));
+        }
+    }
+
+    @Override
+    public void onCameraChange(final CameraEvent event) {
+        cameraChanged(event.getBoundingBox(), event.getZoomLevel());
+    }
+
+    private void cameraChanged(final BoundingBox boundingBox, final float zoomLevel) {
+        if (boundingBox == null) {
+            // not laid out yet, the first camera event brings the box
+            return;
+        }
+        mBoundingBox = boundingBox;
+        mZoomLevel = zoomLevel;
+        mLastChangeTime = SystemClock.uptimeMillis();
+        if (!mUpdatePosted) {
+            mUpdatePosted = true;
+            mMapView.postDelayed(mUpdate, mDelay);
+        }
+    }
+
+    /**
+     * Load the regions of a view that aren't cached, cancel those that aren't in it anymore
+     * and show what's loaded, on the UI thread.
+     */
+    void update(final BoundingBox boundingBox, final float zoomLevel) {
+        final List<MapTile> wanted;
+        if (zoomLevel < mMinZoom) {
+            wanted = new ArrayList<MapTile>();
+        } else {
+            wanted = getRegions(boundingBox,
+                    Math.min(Math.max((int) zoomLevel, 0), mMaxRegionZoom));
+        }
+        final HashSet<MapTile> wantedSet = new HashSet<MapTile>(wanted);
+        final Iterator<Map.Entry<MapTile, RegionRequest>> loading =
+                mLoading.entrySet().iterator();
+        while (loading.hasNext()) {
+            final Map.Entry<MapTile, RegionRequest> entry = loading.next();
+            if (!wantedSet.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                loading.remove();
+            }
+        }
+        mWanted = wanted;
+        for (MapTile region : wanted) {
+            if (!mShown.containsKey(region) && mCache.get(region) == null
+                    && !mLoading.containsKey(region)) {
+                load(region);
+            }
+        }
+        apply();
+    }
+
+    private void load(final MapTile region) {
+        final RegionRequest request = new RegionRequest(region);
+        mLoading.put(region, request);
+        try {
+            request.mFuture = mExecutor.submit(request);
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "Couldn't load region " + region, e);
+            mLoading.remove(region);
+        }
+    }
+
+    /**
+     * Take the markers of a region loaded on a background thread, on the UI thread.
+     *
+     * @param markers the markers, or null if the load failed
+     */
+    void loaded(final RegionRequest request, final List<Marker> markers) {
+        if (mLoading.get(request.mRegion) != request) {
+            // cancelled while the result was on its way
+            return;
+        }
+        mLoading.remove(request.mRegion);
+        if (markers != null) {
+            mCache.put(request.mRegion, markers);
+        }
+        apply();
+    }
+
+    /**
+     * Add the markers of the regions in view that are loaded, and once none is loading, remove
+     * those of the regions out of view, in one batch.
+     */
+    private void apply() {
+        ItemizedIconOverlay.Transaction transaction = null;
+        for (MapTile region : mWanted) {
+            if (mShown.containsKey(region)) {
+                continue;
+            }
+            final List<Marker> markers = mCache.get(region);
+            if (markers == null) {
+                continue;
+            }
+            if (transaction == null) {
+                transaction = mOverlay.beginTransaction();
+            }
+            for (Marker marker : markers) {
+                show(marker);
+                transaction.add(marker);
+            }
+            mShown.put(region, markers);
+        }
+        if (mLoading.isEmpty() && mShown.size() > 0) {
+            final HashSet<MapTile> wanted = new HashSet<MapTile>(mWanted);
+            final Iterator<Map.Entry<MapTile, List<Marker>>> shown = mShown.entrySet().iterator();
+            while (shown.hasNext()) {
+                final Map.Entry<MapTile, List<Marker>> entry = shown.next();
+                if (wanted.contains(entry.getKey())) {
+                    continue;
+                }
+                if (transaction == null) {
+                    transaction = mOverlay.beginTransaction();
+                }
+                for (Marker marker : entry.getValue()) {
+                    transaction.remove(marker);
+                }
+                shown.remove();
+            }
+        }
+        if (transaction != null) {
+            transaction.commit();
+        }
+    }
+
+    /**
+     * Remove the markers this loader added, and leave any others of the overlay.
+     */
+    private void removeShown() {
+        if (mShown.isEmpty()) {
+            return;
+        }
+        final ItemizedIconOverlay.Transaction transaction = mOverlay.beginTransaction();
+        for (List<Marker> markers : mShown.values()) {
+            for (Marker marker : markers) {
+                transaction.remove(marker);
+            }
+        }
+        mShown.clear();
+        transaction.commit();
+    }
+
+    /**
+     * Get a marker ready to be drawn on the map.
+     */
+    void show(final Marker marker) {
+        marker.addTo(mMapView);
+    }
+
+    /**
+     * Run a task on the UI thread.
+     */
+    void post(final Runnable task) {
+        mMapView.post(task);
+    }
+
+    /**
+     * @return the regions at a zoom level the box covers, west to east and north to south
+     */
+    static List<MapTile> getRegions(final BoundingBox box, final int zoom) {
+        final int tiles = 1 << zoom;
+        final double[] northWest = Projection.latLongToWorldXY(box.getLatNorth(),
+                box.getLonWest(), null);
+        final double[] southEast = Projection.latLongToWorldXY(box.getLatSouth(),
+                box.getLonEast(), null);
+        final int minX = Math.min((int) (northWest[0] * tiles), tiles - 1);
+        int maxX = Math.min((int) (southEast[0] * tiles), tiles - 1);
+        final int minY = Math.min((int) (northWest[1] * tiles), tiles - 1);
+        final int maxY = Math.min((int) (southEast[1] * tiles), tiles - 1);
+        if (maxX < minX) {
+            // across the date line
+            maxX += tiles;
+        }
+        final ArrayList<MapTile> regions = new ArrayList<MapTile>();
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                regions.add(new MapTile(zoom, x % tiles, y));
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * The load of a region, run on a background thread.
+     */
+    final class RegionRequest implements Runnable, ViewportDataSource.Request {
+        final MapTile mRegion;
+        private volatile boolean mCancelled;
+        Future<?> mFuture;
+
+        RegionRequest(final MapTile region) {
+            mRegion = region;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        void cancel() {
+            mCancelled = true;
+            if (mFuture != null) {
+                mFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            List<Marker> markers = null;
+            try {
+                markers = mSource.loadMarkers(mRegion.getTileLatLonBounds(), mRegion.getZ(),
+                        this);
+            } catch (Exception e) {
+                if (!mCancelled) {
+                    Log.e(TAG, "Error loading region " + mRegion + ": " + e.toString());
+                }
+            }
+            if (mCancelled) {
+                return;
+            }
+            final List<Marker> result = markers;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    loaded(RegionRequest.this, result);
+                }
+            });
+        }
+    }
+}
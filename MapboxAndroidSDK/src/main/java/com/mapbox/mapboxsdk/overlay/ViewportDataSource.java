@@ -0,0 +1,34 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+
+import java.util.List;
+
+/**
+ * A source of markers for the part of the map in view, such as a server that answers bounding
+ * box queries. A {@link ViewportDataLoader} asks it for the markers of each tile-aligned region
+ * the map shows, so a data set of any size is loaded a screen at a time.
+ */
+public interface ViewportDataSource {
+
+    /**
+     * A load of a region, which can be cancelled once the region is out of view.
+     */
+    interface Request {
+        /**
+         * @return true if the markers aren't needed anymore; the thread is interrupted too
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * Load the markers in a region, on a background thread. A region is asked for again only
+     * after its markers were evicted from the loader's cache, or the load failed.
+     *
+     * @param box the area of the region, a map tile
+     * @param zoom the zoom level of the region's tile, which is at most the zoom level of the map
+     * @param request whether the load is still wanted, for long loads to check and give up early
+     * @return the markers in the box; they're added to the map as they are
+     */
+    List<Marker> loadMarkers(BoundingBox box, int zoom, Request request) throws Exception;
+}
@@ -26,6 +26,7 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
     private final int z;
     private final String path;
     private final String cacheKey;
+    private final String layerCacheKey;
     private final int code;
     private Rect mTileRect = new Rect();
 
@@ -44,6 +45,7 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
         this.y = ay;
         this.path = String.format(MAPBOX_LOCALE, "%d/%d/%d", z, x, y);
         this.cacheKey = aCacheKey + "/" + path;
+        this.layerCacheKey = aCacheKey;
         this.code = ((17 * (37 + z)) * (37 * x)) * (37 + y);
     }
 
@@ -67,6 +69,13 @@ public class MapTile implements GeoConstants, MapboxConstants, TileLayerConstant
         return cacheKey;
     }
 
+    /**
+     * @return the cache key of the layer this tile belongs to
+     */
+    public String getLayerCacheKey() {
+        return layerCacheKey;
+    }
+
     @Override
     public String toString() {
         return path;
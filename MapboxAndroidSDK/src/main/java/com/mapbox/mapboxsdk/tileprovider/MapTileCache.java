@@ -15,6 +15,11 @@ import com.mapbox.mapboxsdk.util.NetworkUtils;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import uk.co.senab.bitmapcache.BitmapLruCache;
 import uk.co.senab.bitmapcache.BitmapLruCache.OnDiskCacheSetListener;
@@ -23,10 +28,27 @@ import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 /**
  * A wrapper around a BitmapLruCache that stores tiles on disk in order
  * to improve performance and provide offline content.
+ * Layers given a {@link TileCachePolicy} get a partition of their own, with
+ * its own quotas; all other layers share one cache.
  */
 public class MapTileCache implements TileLayerConstants {
 
     protected static BitmapLruCache sCachedTiles = null;
+    protected static MemoryCacheSizeController sSizeController = null;
+    protected static TileExpirationStore sExpirationStore = null;
+    protected static boolean sWorkingSetRestored = false;
+    protected static final Map<String, TileCachePolicy> sPolicies =
+            new HashMap<String, TileCachePolicy>();
+    protected static final Map<String, BitmapLruCache> sPartitions =
+            new HashMap<String, BitmapLruCache>();
+    /**
+     * Copies of the policies and partitions, replaced on every change, so tile lookups
+     * don't take the lock.
+     */
+    private static volatile Map<String, TileCachePolicy> sPolicySnapshot =
+            Collections.emptyMap();
+    private static volatile Map<String, BitmapLruCache> sPartitionSnapshot =
+            Collections.emptyMap();
     private Context context;
     static final String TAG = "MapTileCache";
 
@@ -66,15 +88,320 @@ public class MapTileCache implements TileLayerConstants {
             sCachedTiles = (new BitmapLruCache.Builder(context)).setMemoryCacheEnabled(true)
                     .setMemoryCacheMaxSize(BitmapUtils.calculateMemoryCacheSize(context))
                     .setDiskCacheEnabled(mDiskCacheEnabled)
-                    .setDiskCacheMaxSize(mMaximumCacheSize)
+                    .setDiskCacheMaxSize(getSharedDiskCacheSize())
                     .setDiskCacheLocation(cacheDir)
                     .build();
             sCachedTiles.setDiskCacheListener(mDiskCacheListener);
+            getSizeController().setCache(sCachedTiles);
             Log.i(TAG, "Disk Cache Enabled: '" + sCachedTiles.isDiskCacheEnabled() + "'; Memory Cache Enabled: '" + sCachedTiles.isMemoryCacheEnabled() + "'");
         }
         return sCachedTiles;
     }
 
+    /**
+     * Get the BitmapLruCache a tile is stored in: the partition of its layer if the
+     * layer has a cache policy, the shared cache otherwise.
+     *
+     * @param aTile the tile
+     * @return BitmapLruCache the cache
+     */
+    protected BitmapLruCache getCache(final MapTile aTile) {
+        final String layerKey = aTile.getLayerCacheKey();
+        final BitmapLruCache partition = sPartitionSnapshot.get(layerKey);
+        if (partition != null) {
+            return partition;
+        }
+        if (!sPolicySnapshot.containsKey(layerKey)) {
+            return getCache();
+        }
+        synchronized (sPartitions) {
+            final TileCachePolicy policy = sPolicies.get(layerKey);
+            if (policy == null) {
+                return getCache();
+            }
+            BitmapLruCache created = sPartitions.get(layerKey);
+            if (created == null) {
+                created = createPartition(layerKey, policy);
+                sPartitions.put(layerKey, created);
+                publishPartitions();
+            }
+            return created;
+        }
+    }
+
+    /**
+     * Replace the snapshots read by {@link #getCache(MapTile)}, holding the lock.
+     */
+    private static void publishPartitions() {
+        sPolicySnapshot = new HashMap<String, TileCachePolicy>(sPolicies);
+        sPartitionSnapshot = new HashMap<String, BitmapLruCache>(sPartitions);
+    }
+
+    private BitmapLruCache createPartition(final String layerKey, final TileCachePolicy policy) {
+        File cacheDir = NetworkUtils.getDiskCacheDir(context, NetworkUtils.DISK_TILES_CACHE_SUBDIR
+                + "-" + layerKey.replaceAll("[^a-zA-Z0-9._-]", "_"));
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.e(TAG, "can't create partition cacheDir " + cacheDir);
+        }
+        BitmapLruCache partition = (new BitmapLruCache.Builder(context))
+                .setMemoryCacheEnabled(policy.getMemoryQuota() > 0)
+                .setMemoryCacheMaxSize(Math.max(policy.getMemoryQuota(), 1))
+                .setDiskCacheEnabled(mDiskCacheEnabled && policy.getDiskQuota() > 0)
+                .setDiskCacheMaxSize(Math.max(policy.getDiskQuota(), 1))
+                .setDiskCacheLocation(cacheDir)
+                .build();
+        if (!policy.isPinned()) {
+            getSizeController().addTrimmableCache(partition);
+        }
+        Log.i(TAG, "created cache partition for layer '" + layerKey + "'");
+        return partition;
+    }
+
+    /**
+     * Give a layer its own cache partition, or move it back to the shared cache.
+     * Partition quotas are taken out of the shared cache's budget, so all tile caches
+     * together stay within the global memory and disk ceilings. As the memory ceiling
+     * depends on the device, quotas above what is left are lowered to fit.
+     *
+     * @param layerKey the layer's {@link com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer#getCacheKey()}
+     * @param policy the partition policy, or null to use the shared cache
+     */
+    public void setCachePolicy(final String layerKey, TileCachePolicy policy) {
+        synchronized (sPartitions) {
+            sPolicies.remove(layerKey);
+            if (policy != null) {
+                final TileCachePolicy requested = policy;
+                policy = policy.clamp(
+                        Math.max(getSizeController().getMaximumSize()
+                                - getSizeController().getOwnerReservedSize()
+                                - getReservedMemorySize(), 0),
+                        Math.max(mMaximumCacheSize - getReservedDiskSize(), 0));
+                if (policy != requested) {
+                    Log.w(TAG, "Cache quotas for '" + layerKey + "' lowered to "
+                            + policy.getMemoryQuota() + " bytes of memory and "
+                            + policy.getDiskQuota() + " bytes of disk to fit the tile cache");
+                }
+                sPolicies.put(layerKey, policy);
+            }
+
+            final BitmapLruCache partition = sPartitions.get(layerKey);
+            if (partition != null) {
+                if (policy == null || policy.isPinned()) {
+                    getSizeController().removeTrimmableCache(partition);
+                } else {
+                    getSizeController().addTrimmableCache(partition);
+                }
+                if (policy == null) {
+                    partition.purgeMemoryCache();
+                    sPartitions.remove(layerKey);
+                } else {
+                    partition.resizeMemoryCache(Math.max(policy.getMemoryQuota(), 1));
+                    partition.setDiskCacheMaxSize(Math.max(policy.getDiskQuota(), 1));
+                }
+            }
+            publishPartitions();
+
+            getSizeController().setReservedSize(getReservedMemorySize());
+            if (sCachedTiles != null) {
+                sCachedTiles.setDiskCacheMaxSize(getSharedDiskCacheSize());
+            }
+        }
+    }
+
+    public TileCachePolicy getCachePolicy(final String layerKey) {
+        return sPolicySnapshot.get(layerKey);
+    }
+
+    private int getReservedMemorySize() {
+        long reserved = 0;
+        for (TileCachePolicy policy : sPolicies.values()) {
+            reserved += policy.getMemoryQuota();
+        }
+        return (int) Math.min(reserved, Integer.MAX_VALUE);
+    }
+
+    private long getReservedDiskSize() {
+        long reserved = 0;
+        for (TileCachePolicy policy : sPolicies.values()) {
+            reserved += policy.getDiskQuota();
+        }
+        return reserved;
+    }
+
+    private long getSharedDiskCacheSize() {
+        synchronized (sPartitions) {
+            return Math.max(mMaximumCacheSize - getReservedDiskSize(), 1);
+        }
+    }
+
+    private List<BitmapLruCache> getAllCaches() {
+        final List<BitmapLruCache> caches = new ArrayList<BitmapLruCache>();
+        caches.add(getCache());
+        synchronized (sPartitions) {
+            caches.addAll(sPartitions.values());
+        }
+        return caches;
+    }
+
+    /**
+     * Mark a tile as expired once it is past the expiry the server gave it, or has outlived
+     * the time to live of its layer's policy.
+     */
+    private CacheableBitmapDrawable checkFreshness(final MapTile aTile,
+                                                   final CacheableBitmapDrawable drawable) {
+        if (drawable != null) {
+            long expiresAt = drawable.getExpiresAt();
+            if (expiresAt == 0) {
+                final TileCachePolicy policy = getCachePolicy(aTile.getLayerCacheKey());
+                if (policy != null && policy.getTimeToLive() > 0) {
+                    expiresAt = drawable.getTimestamp() + policy.getTimeToLive();
+                    drawable.setExpiresAt(expiresAt);
+                }
+            }
+            if (expiresAt > 0 && System.currentTimeMillis() > expiresAt) {
+                BitmapUtils.setCacheDrawableExpired(drawable);
+            }
+        }
+        return drawable;
+    }
+
+    private long limitToTimeToLive(final MapTile aTile, final long expiresAt, final long cachedAt) {
+        final TileCachePolicy policy = getCachePolicy(aTile.getLayerCacheKey());
+        if (policy == null || policy.getTimeToLive() == 0) {
+            return expiresAt;
+        }
+        final long ttlExpiry = cachedAt + policy.getTimeToLive();
+        return (expiresAt > 0) ? Math.min(expiresAt, ttlExpiry) : ttlExpiry;
+    }
+
+    protected TileExpirationStore getExpirationStore() {
+        if (sExpirationStore == null) {
+            sExpirationStore = new TileExpirationStore(NetworkUtils.getDiskCacheDir(context,
+                    NetworkUtils.DISK_TILES_EXPIRATION_SUBDIR), CACHE_EXPIRATIONDISKSIZE_DEFAULT);
+        }
+        return sExpirationStore;
+    }
+
+    /**
+     * Get the HTTP freshness recorded for a tile. Reads from disk, so don't call it on the
+     * main thread.
+     *
+     * @return the expiration, or null if none was recorded
+     */
+    public TileExpiration getTileExpiration(final MapTile aTile) {
+        return getExpirationStore().get(getCacheKey(aTile));
+    }
+
+    /**
+     * Record the HTTP freshness of a downloaded tile and apply it to its cached drawable.
+     * Reads from disk, so don't call it on the main thread.
+     *
+     * @param drawable the cached drawable of the tile, may be null
+     */
+    public void putTileExpiration(final MapTile aTile, final CacheableBitmapDrawable drawable,
+                                  final TileExpiration expiration) {
+        getExpirationStore().put(getCacheKey(aTile), expiration);
+        if (drawable != null) {
+            drawable.setExpiresAt(limitToTimeToLive(aTile, expiration.getExpiresAt(),
+                    System.currentTimeMillis()));
+            BitmapUtils.clearCacheDrawableExpired(drawable);
+        }
+    }
+
+    /**
+     * Keep serving a stale tile without trying to refresh it for a while, e.g. after
+     * its source couldn't be reached.
+     *
+     * @param delay how long to wait before the next refresh, in milliseconds
+     */
+    public void deferTileRefresh(final CacheableBitmapDrawable drawable, final long delay) {
+        if (drawable != null) {
+            drawable.setExpiresAt(System.currentTimeMillis() + delay);
+            BitmapUtils.clearCacheDrawableExpired(drawable);
+        }
+    }
+
+    private CacheableBitmapDrawable readFromDisk(final MapTile aTile, final BitmapLruCache cache,
+                                                 final BitmapFactory.Options decodeOpts) {
+        final CacheableBitmapDrawable result = cache.getFromDiskCache(getCacheKey(aTile), decodeOpts);
+        if (result != null) {
+            final TileExpiration expiration = getTileExpiration(aTile);
+            if (expiration != null) {
+                result.setExpiresAt(limitToTimeToLive(aTile, expiration.getExpiresAt(),
+                        result.getTimestamp()));
+            }
+        }
+        return checkFreshness(aTile, result);
+    }
+
+    protected TileWorkingSet getWorkingSet() {
+        return new TileWorkingSet(new File(NetworkUtils.getDiskCacheDir(context,
+                NetworkUtils.DISK_TILES_CACHE_SUBDIR).getParentFile(), WORKING_SET_FILE_NAME));
+    }
+
+    /**
+     * Remember the most recently used tiles, so {@link #restoreWorkingSet} can decode them
+     * early on the next start. The file is written on a background thread.
+     */
+    public void saveWorkingSet() {
+        final int visibleTiles = getSizeController().getVisibleTileCount();
+        final int count = Math.min(Math.max(visibleTiles * 2, CACHE_MAPTILECOUNT_DEFAULT),
+                TileWorkingSet.MAXIMUM_TILES);
+        final List<TileWorkingSet.Entry> entries = new ArrayList<TileWorkingSet.Entry>(count);
+        for (BitmapLruCache cache : getAllCaches()) {
+            final List<CacheableBitmapDrawable> recent = cache.getMostRecentlyUsed(count);
+            for (CacheableBitmapDrawable drawable : recent) {
+                final Bitmap bitmap = drawable.getBitmap();
+                entries.add(new TileWorkingSet.Entry(drawable.getUrl(),
+                        bitmap != null ? bitmap.getConfig() : null));
+            }
+        }
+        if (!entries.isEmpty()) {
+            getWorkingSet().save(entries);
+        }
+    }
+
+    /**
+     * Decode the tiles saved by {@link #saveWorkingSet()} into memory in parallel. This only
+     * runs once per process, as later maps find the memory cache warm already.
+     */
+    public void restoreWorkingSet(final TileWorkingSet.OnTileRestoredListener listener) {
+        synchronized (MapTileCache.class) {
+            if (sWorkingSetRestored) {
+                return;
+            }
+            sWorkingSetRestored = true;
+        }
+        getCache();
+        getWorkingSet().restore(this, listener);
+    }
+
+    /**
+     * Get the controller sizing the shared memory cache, creating it first if needed.
+     *
+     * @return MemoryCacheSizeController the controller
+     */
+    public MemoryCacheSizeController getSizeController() {
+        if (sSizeController == null) {
+            sSizeController = new MemoryCacheSizeController(context);
+        }
+        return sSizeController;
+    }
+
+    /**
+     * Report how many tiles a client needs to fill its viewport, so the memory
+     * cache can be sized for it.
+     */
+    public void setViewportTileDemand(final Object client, final int numberOfTiles,
+                                      final int tileSizePx, final Bitmap.Config config) {
+        getCache();
+        getSizeController().setDemand(client, numberOfTiles, tileSizePx, config);
+    }
+
+    public void removeViewportTileDemand(final Object client) {
+        getSizeController().removeDemand(client);
+    }
+
     /**
      * Computes a prefixed key for a tile.
      *
@@ -87,43 +414,49 @@ public class MapTileCache implements TileLayerConstants {
 
     public CacheableBitmapDrawable getMapTile(final MapTile aTile) {
         String key = getCacheKey(aTile);
-        CacheableBitmapDrawable result = getCache().getFromMemoryCache(key);
+        BitmapLruCache cache = getCache(aTile);
+        CacheableBitmapDrawable result = cache.getFromMemoryCache(key);
         if (result == null) {
-            result = getCache().getFromDiskCache(key, null);
+            return readFromDisk(aTile, cache, null);
         }
-        return result;
+        return checkFreshness(aTile, result);
     }
 
     public CacheableBitmapDrawable getMapTileFromMemory(final MapTile aTile) {
-        return getCache().getFromMemoryCache(getCacheKey(aTile));
+        return checkFreshness(aTile, getCache(aTile).getFromMemoryCache(getCacheKey(aTile)));
     }
 
     public CacheableBitmapDrawable getMapTileFromDisk(final MapTile aTile) {
-        return getCache().getFromDiskCache(getCacheKey(aTile), null);
+        return readFromDisk(aTile, getCache(aTile), null);
+    }
+
+    public CacheableBitmapDrawable getMapTileFromDisk(final MapTile aTile,
+                                                      final BitmapFactory.Options decodeOpts) {
+        return readFromDisk(aTile, getCache(aTile), decodeOpts);
     }
 
     public CacheableBitmapDrawable putTileStream(final MapTile aTile, final InputStream inputStream,
                                                  final BitmapFactory.Options decodeOpts) {
-        return getCache().put(getCacheKey(aTile), inputStream, decodeOpts);
+        return getCache(aTile).put(getCacheKey(aTile), inputStream, decodeOpts);
     }
 
     public CacheableBitmapDrawable putTileBitmap(final MapTile aTile, final Bitmap bitmap) {
-        return getCache().put(getCacheKey(aTile), bitmap);
+        return getCache(aTile).put(getCacheKey(aTile), bitmap);
     }
 
     public CacheableBitmapDrawable putTile(final MapTile aTile, final Drawable aDrawable) {
         if (aDrawable != null && aDrawable instanceof BitmapDrawable) {
             String key = getCacheKey(aTile);
             CacheableBitmapDrawable drawable = null;
-            if (!getCache().containsInMemoryCache(key)) {
-                drawable = getCache().putInMemoryCache(getCacheKey(aTile),
+            if (!getCache(aTile).containsInMemoryCache(key)) {
+                drawable = getCache(aTile).putInMemoryCache(getCacheKey(aTile),
                         ((BitmapDrawable) aDrawable).getBitmap());
             }
-            if (getCache().isDiskCacheEnabled() && !getCache().containsInDiskCache(key)) {
+            if (getCache(aTile).isDiskCacheEnabled() && !getCache(aTile).containsInDiskCache(key)) {
                 if (drawable != null) {
-                    getCache().putInDiskCache(getCacheKey(aTile), drawable);
+                    getCache(aTile).putInDiskCache(getCacheKey(aTile), drawable);
                 } else {
-                    getCache().putInDiskCache(getCacheKey(aTile),
+                    getCache(aTile).putInDiskCache(getCacheKey(aTile),
                             ((BitmapDrawable) aDrawable).getBitmap());
                 }
             }
@@ -134,7 +467,7 @@ public class MapTileCache implements TileLayerConstants {
 
     public CacheableBitmapDrawable putTileInMemoryCache(final MapTile aTile, final Bitmap aBitmap) {
         if (aBitmap != null) {
-            return getCache().putInMemoryCache(getCacheKey(aTile), aBitmap);
+            return getCache(aTile).putInMemoryCache(getCacheKey(aTile), aBitmap);
         }
         return null;
     }
@@ -144,9 +477,9 @@ public class MapTileCache implements TileLayerConstants {
         if (aDrawable != null && aDrawable instanceof BitmapDrawable) {
             String key = getCacheKey(aTile);
             if (aDrawable instanceof CacheableBitmapDrawable) {
-                return getCache().putInMemoryCache(key, ((CacheableBitmapDrawable) aDrawable));
+                return getCache(aTile).putInMemoryCache(key, ((CacheableBitmapDrawable) aDrawable));
             } else {
-                return getCache().putInMemoryCache(key, ((BitmapDrawable) aDrawable).getBitmap());
+                return getCache(aTile).putInMemoryCache(key, ((BitmapDrawable) aDrawable).getBitmap());
             }
         }
         return null;
@@ -156,8 +489,8 @@ public class MapTileCache implements TileLayerConstants {
                                                       final Drawable aDrawable) {
         if (aDrawable != null && aDrawable instanceof BitmapDrawable) {
             String key = getCacheKey(aTile);
-            if (getCache().isDiskCacheEnabled() && !getCache().containsInDiskCache(key)) {
-                return getCache().putInDiskCache(getCacheKey(aTile),
+            if (getCache(aTile).isDiskCacheEnabled() && !getCache(aTile).containsInDiskCache(key)) {
+                return getCache(aTile).putInDiskCache(getCacheKey(aTile),
                         ((BitmapDrawable) aDrawable).getBitmap());
             }
         }
@@ -165,33 +498,45 @@ public class MapTileCache implements TileLayerConstants {
     }
 
     public boolean containsTile(final MapTile aTile) {
-        return getCache().contains(getCacheKey(aTile));
+        return getCache(aTile).contains(getCacheKey(aTile));
     }
 
     public boolean containsTileInDiskCache(final MapTile aTile) {
-        return getCache().isDiskCacheEnabled() && getCache().containsInDiskCache(getCacheKey(aTile));
+        return getCache(aTile).isDiskCacheEnabled() && getCache(aTile).containsInDiskCache(getCacheKey(aTile));
     }
 
     public void removeTile(final MapTile aTile) {
-        getCache().remove(getCacheKey(aTile));
+        getCache(aTile).remove(getCacheKey(aTile));
     }
 
     public void removeTileFromMemory(final MapTile aTile) {
         String key = getCacheKey(aTile);
-        getCache().removeFromMemoryCache(key);
+        getCache(aTile).removeFromMemoryCache(key);
     }
 
     public void purgeMemoryCache() {
-        getCache().purgeMemoryCache();
+        for (BitmapLruCache cache : getAllCaches()) {
+            cache.purgeMemoryCache();
+        }
     }
 
     public void purgeDiskCache() {
-        getCache().purgeDiskCache();
+        for (BitmapLruCache cache : getAllCaches()) {
+            cache.purgeDiskCache();
+        }
         sCachedTiles = null;
+        synchronized (sPartitions) {
+            for (BitmapLruCache partition : sPartitions.values()) {
+                getSizeController().removeTrimmableCache(partition);
+            }
+            sPartitions.clear();
+            publishPartitions();
+        }
+        getExpirationStore().clear();
     }
 
     public CacheableBitmapDrawable createCacheableBitmapDrawable(Bitmap bitmap, MapTile aTile) {
-        return getCache().createCacheableBitmapDrawable(bitmap, getCacheKey(aTile),
+        return getCache(aTile).createCacheableBitmapDrawable(bitmap, getCacheKey(aTile),
                 CacheableBitmapDrawable.SOURCE_UNKNOWN);
     }
 
@@ -199,6 +544,10 @@ public class MapTileCache implements TileLayerConstants {
         return getCache().getBitmapFromRemoved(width, height);
     }
 
+    public Bitmap getBitmapFromRemoved(final int width, final int height, final Bitmap.Config config) {
+        return getCache().getBitmapFromRemoved(width, height, config);
+    }
+
     public Bitmap decodeBitmap(final byte[] data, final BitmapFactory.Options opts) {
         return getCache().decodeBitmap(new BitmapLruCache.ByteArrayInputStreamProvider(data), opts);
     }
@@ -208,11 +557,18 @@ public class MapTileCache implements TileLayerConstants {
         return getCache().decodeBitmap(ip, opts);
     }
 
-    
+
     public void setDiskCacheEnabled(final boolean enabled) {
         if (mDiskCacheEnabled != enabled) {
             mDiskCacheEnabled = enabled;
             sCachedTiles = null;
+            synchronized (sPartitions) {
+                for (BitmapLruCache partition : sPartitions.values()) {
+                    getSizeController().removeTrimmableCache(partition);
+                }
+                sPartitions.clear();
+                publishPartitions();
+            }
         }
     }
 
@@ -1,20 +1,28 @@
 package com.mapbox.mapboxsdk.tileprovider;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.Process;
+import android.util.Log;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.tileprovider.modules.ConfigurablePriorityThreadFactory;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileModuleLayerBase;
 import com.mapbox.mapboxsdk.tileprovider.modules.NetworkAvailabilityCheck;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.MapMetrics;
 import com.mapbox.mapboxsdk.views.MapView;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
@@ -31,6 +39,10 @@ import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
  * providers in the chain, then the failure result is passed to the base class. The
  * {@link MapTileLayerArray} provides a mechanism so that only one unique tile-request can be in
  * the map tile request chain at a time.
+ * <p/>
+ * With {@link #setCompositeTileSources(boolean)} the providers are a stack instead: every one of
+ * them loads its tile, and the tiles are drawn over each other into one bitmap on a worker
+ * thread, which is what the map draws.
  *
  * @author Marc Kurtz
  */
@@ -42,6 +54,9 @@ public class MapTileLayerArray extends MapTileLayerBase {
 
     protected final NetworkAvailabilityCheck mNetworkAvailabilityCheck;
 
+    private volatile boolean mCompositeSources = false;
+    private ExecutorService mCompositeExecutor;
+
     /**
      * Creates an {@link MapTileLayerArray} with no tile providers.
      *
@@ -89,6 +104,14 @@ public class MapTileLayerArray extends MapTileLayerBase {
         synchronized (mWorking) {
             mWorking.clear();
         }
+        synchronized (this) {
+            if (mCompositeExecutor != null) {
+                mCompositeExecutor.shutdown();
+                mCompositeExecutor = null;
+            }
+        }
+        mTileCache.saveWorkingSet();
+        clearMemoryCacheDemand();
     }
 
     private boolean networkAvailable() {
@@ -101,9 +124,16 @@ public class MapTileLayerArray extends MapTileLayerBase {
         CacheableBitmapDrawable tileDrawable = mTileCache.getMapTileFromMemory(pTile);
 
         if (tileDrawable != null && tileDrawable.isBitmapValid() && !BitmapUtils.isCacheDrawableExpired(tileDrawable)) {
+            MapMetrics.increment(MapMetrics.Counter.MEMORY_HIT);
             tileDrawable.setBeingUsed(true);
             return tileDrawable;
-        } else if (allowRemote) {
+        }
+        MapMetrics.increment(MapMetrics.Counter.MEMORY_MISS);
+        if (allowRemote && mCompositeSources) {
+            requestComposite(pTile);
+            return tileDrawable;
+        }
+        if (allowRemote) {
             boolean alreadyInProgress = false;
             synchronized (mWorking) {
                 alreadyInProgress = mWorking.containsKey(pTile);
@@ -216,6 +246,16 @@ public class MapTileLayerArray extends MapTileLayerBase {
         return provider;
     }
 
+    /**
+     * Whether the provider can load tiles of a zoom level, now.
+     */
+    private boolean canLoad(final MapTileModuleLayerBase provider, final int zoomLevel) {
+        return getProviderExists(provider)
+                && (useDataConnection() || !provider.getUsesDataConnection())
+                && zoomLevel <= provider.getMaximumZoomLevel()
+                && zoomLevel >= provider.getMinimumZoomLevel();
+    }
+
     public boolean getProviderExists(final MapTileModuleLayerBase provider) {
         synchronized (mTileProviderList) {
             return mTileProviderList.contains(provider);
@@ -253,6 +293,244 @@ public class MapTileLayerArray extends MapTileLayerBase {
         addTileSource(aTileSource);
     }
 
+    public boolean isCompositingTileSources() {
+        return mCompositeSources;
+    }
+
+    /**
+     * Draw the tile sources over each other, the first one at the bottom, instead of using the
+     * tile of the first source that has one. Every tile is composited once, on a worker thread,
+     * so a stack costs as much to draw as a single source. Off by default.
+     * <p/>
+     * Composited tiles are kept in the memory cache, under a cache key made of those of the
+     * sources, and expire with the first of their source tiles to expire.
+     */
+    public void setCompositeTileSources(final boolean composite) {
+        mCompositeSources = composite;
+        updateCacheKey();
+        synchronized (mWorking) {
+            mWorking.clear();
+        }
+    }
+
+    /**
+     * Composited tiles are kept apart from those of their sources, and of other stacks.
+     */
+    private void updateCacheKey() {
+        synchronized (mTileProviderList) {
+            if (mTileProviderList.isEmpty()) {
+                return;
+            }
+            if (!mCompositeSources) {
+                mCacheKey = mTileProviderList.get(0).getCacheKey();
+                return;
+            }
+            final StringBuilder key = new StringBuilder();
+            for (final MapTileModuleLayerBase provider : mTileProviderList) {
+                if (key.length() > 0) {
+                    key.append('+');
+                }
+                key.append(provider.getCacheKey());
+            }
+            mCacheKey = key.toString();
+        }
+    }
+
+    private void requestComposite(final MapTile pTile) {
+        final MapTileRequestState state = new MapTileRequestState(pTile, null, this);
+        synchronized (mWorking) {
+            if (mWorking.containsKey(pTile)) {
+                return;
+            }
+            mWorking.put(pTile, state);
+        }
+        try {
+            getCompositeExecutor().execute(new CompositeRequest(state, getProviders()));
+        } catch (final RejectedExecutionException e) {
+            Log.w(TAG, "RejectedExecutionException", e);
+            synchronized (mWorking) {
+                mWorking.remove(pTile);
+            }
+        }
+    }
+
+    private MapTileModuleLayerBase[] getProviders() {
+        synchronized (mTileProviderList) {
+            return mTileProviderList.toArray(
+                    new MapTileModuleLayerBase[mTileProviderList.size()]);
+        }
+    }
+
+    private synchronized ExecutorService getCompositeExecutor() {
+        if (mCompositeExecutor == null) {
+            mCompositeExecutor = Executors.newFixedThreadPool(NUMBER_OF_TILE_COMPOSITE_THREADS,
+                    new ConfigurablePriorityThreadFactory(Thread.NORM_PRIORITY, "composite"));
+        }
+        return mCompositeExecutor;
+    }
+
+    private void compositeCompleted(final MapTileRequestState pState, final Drawable pDrawable) {
+        synchronized (mWorking) {
+            mWorking.remove(pState.getMapTile());
+        }
+        super.mapTileRequestCompleted(pState, pDrawable);
+    }
+
+    private void compositeFailed(final MapTileRequestState pState) {
+        synchronized (mWorking) {
+            mWorking.remove(pState.getMapTile());
+        }
+        super.mapTileRequestFailed(pState);
+    }
+
+    /**
+     * Loads the tile of every source, and draws them over each other once the last one is in.
+     * Tiles in the memory cache are used as they are, the others are requested from their
+     * providers, whose threads report back here.
+     */
+    private final class CompositeRequest implements Runnable {
+        private final MapTileRequestState mState;
+        private final MapTileModuleLayerBase[] mProviders;
+        private final CacheableBitmapDrawable[] mLayers;
+        private int mRemaining;
+        // a source had no tile for now, so the composite is retried later
+        private boolean mPartial;
+
+        CompositeRequest(final MapTileRequestState state,
+                final MapTileModuleLayerBase[] providers) {
+            mState = state;
+            mProviders = providers;
+            mLayers = new CacheableBitmapDrawable[providers.length];
+            mRemaining = providers.length;
+        }
+
+        @Override
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            if (mProviders.length == 0) {
+                compositeFailed(mState);
+                return;
+            }
+            final MapTile tile = mState.getMapTile();
+            for (int i = 0; i < mProviders.length; i++) {
+                final MapTileModuleLayerBase provider = mProviders[i];
+                if (!canLoad(provider, tile.getZ())) {
+                    // sources that can't be reached now are tried again later, zoom levels
+                    // out of range never have tiles
+                    layerLoaded(i, null, getProviderExists(provider)
+                            && tile.getZ() <= provider.getMaximumZoomLevel()
+                            && tile.getZ() >= provider.getMinimumZoomLevel());
+                    continue;
+                }
+                final MapTile sourceTile =
+                        new MapTile(provider.getCacheKey(), tile.getZ(), tile.getX(), tile.getY());
+                final CacheableBitmapDrawable cached = mTileCache.getMapTileFromMemory(sourceTile);
+                if (cached != null && cached.isBitmapValid()
+                        && !BitmapUtils.isCacheDrawableExpired(cached)) {
+                    layerLoaded(i, cached, false);
+                } else {
+                    provider.loadMapTileAsync(new MapTileRequestState(sourceTile,
+                            new MapTileModuleLayerBase[] { provider }, new LayerCallback(i)));
+                }
+            }
+        }
+
+        void layerLoaded(final int index, final Drawable drawable, final boolean partial) {
+            synchronized (this) {
+                if (drawable instanceof CacheableBitmapDrawable) {
+                    mLayers[index] = (CacheableBitmapDrawable) drawable;
+                    mLayers[index].setBeingUsed(true);
+                }
+                mPartial |= partial;
+                if (--mRemaining > 0) {
+                    return;
+                }
+            }
+            composite();
+        }
+
+        private void composite() {
+            final List<Bitmap> bitmaps = new ArrayList<Bitmap>(mLayers.length);
+            long expiresAt = 0;
+            Bitmap result = null;
+            try {
+                for (final CacheableBitmapDrawable layer : mLayers) {
+                    if (layer == null) {
+                        continue;
+                    }
+                    if (!layer.isBitmapValid()) {
+                        mPartial = true;
+                        continue;
+                    }
+                    bitmaps.add(layer.getBitmap());
+                    if (layer.getExpiresAt() > 0
+                            && (expiresAt == 0 || layer.getExpiresAt() < expiresAt)) {
+                        expiresAt = layer.getExpiresAt();
+                    }
+                }
+                if (!bitmaps.isEmpty()) {
+                    final Bitmap bottom = bitmaps.get(0);
+                    result = BitmapUtils.compositeBitmaps(Bitmap.createBitmap(bottom.getWidth(),
+                            bottom.getHeight(), BitmapUtils.getCompositeConfig(bottom)), bitmaps);
+                }
+            } catch (final OutOfMemoryError e) {
+                Log.e(TAG, "Not enough memory to composite " + mState.getMapTile(), e);
+            } finally {
+                for (final CacheableBitmapDrawable layer : mLayers) {
+                    if (layer != null) {
+                        layer.setBeingUsed(false);
+                    }
+                }
+            }
+            if (result == null) {
+                compositeFailed(mState);
+                return;
+            }
+
+            final CacheableBitmapDrawable drawable =
+                    mTileCache.putTileInMemoryCache(mState.getMapTile(), result);
+            if (mPartial) {
+                mTileCache.deferTileRefresh(drawable, TILE_REFRESH_RETRY_DELAY);
+            } else if (drawable != null && expiresAt > 0) {
+                drawable.setExpiresAt(expiresAt);
+            }
+            compositeCompleted(mState, drawable);
+        }
+
+        /**
+         * Reports the tile of one source.
+         */
+        private final class LayerCallback implements IMapTileProviderCallback {
+            private final int mIndex;
+
+            LayerCallback(final int index) {
+                mIndex = index;
+            }
+
+            @Override
+            public void mapTileRequestCompleted(final MapTileRequestState aState,
+                    final Drawable aDrawable) {
+                layerLoaded(mIndex, aDrawable, false);
+            }
+
+            @Override
+            public void mapTileRequestFailed(final MapTileRequestState aState) {
+                layerLoaded(mIndex, null, true);
+            }
+
+            @Override
+            public void mapTileRequestExpiredTile(final MapTileRequestState aState,
+                    final CacheableBitmapDrawable aDrawable) {
+                layerLoaded(mIndex, aDrawable, true);
+            }
+
+            @Override
+            public boolean useDataConnection() {
+                return MapTileLayerArray.this.useDataConnection();
+            }
+        }
+    }
+
     public void setTileSources(final ITileLayer[] aTileSources) {
         super.setTileSource(null);
         synchronized (mTileProviderList) {
@@ -276,6 +554,9 @@ public class MapTileLayerArray extends MapTileLayerBase {
         }
 
         handleAddTileSource(pTileSource, index);
+        if (mCompositeSources) {
+            updateCacheKey();
+        }
     }
 
     public void removeTileSource(final int index) {
@@ -284,6 +565,9 @@ public class MapTileLayerArray extends MapTileLayerBase {
                 mTileProviderList.remove(index);
             }
         }
+        if (mCompositeSources) {
+            updateCacheKey();
+        }
     }
 
     public void removeTileSource(final ITileLayer pTileSource) {
@@ -291,10 +575,13 @@ public class MapTileLayerArray extends MapTileLayerBase {
             for (MapTileModuleLayerBase provider : mTileProviderList) {
                 if (provider.getTileSource() == pTileSource) {
                     mTileProviderList.remove(provider);
-                    return;
+                    break;
                 }
             }
         }
+        if (mCompositeSources) {
+            updateCacheKey();
+        }
     }
 
     @Override
@@ -360,6 +647,45 @@ public class MapTileLayerArray extends MapTileLayerBase {
         return (getMaximumZoomLevel() + getMinimumZoomLevel()) / 2;
     }
 
+    /**
+     * Tiles can come from any provider in the chain, so we only go for an opaque
+     * config if all of them are opaque. Composites of an opaque bottom layer are RGB_565, but
+     * the sources over it usually aren't, so a stack asks for ARGB_8888 all the same.
+     */
+    @Override
+    public Bitmap.Config getBitmapConfig() {
+        if (mCompositeSources) {
+            return Bitmap.Config.ARGB_8888;
+        }
+        Bitmap.Config result = null;
+        synchronized (mTileProviderList) {
+            for (final MapTileModuleLayerBase tileProvider : mTileProviderList) {
+                final ITileLayer source = tileProvider.getTileSource();
+                if (source == null || !source.isOpaque()) {
+                    return Bitmap.Config.ARGB_8888;
+                }
+                if (result == null) {
+                    result = source.getBitmapConfig();
+                }
+            }
+        }
+        return (result != null) ? result : Bitmap.Config.ARGB_8888;
+    }
+
+    /**
+     * A stack of sources keeps the tile of every source in the memory cache, as well as their
+     * composite.
+     */
+    @Override
+    protected int getCachedTilesPerPosition() {
+        if (!mCompositeSources) {
+            return 1;
+        }
+        synchronized (mTileProviderList) {
+            return mTileProviderList.size() + 1;
+        }
+    }
+
     @Override
     public int getTileSizePixels() {
         int result = 0;
@@ -42,6 +42,8 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
 
     private ITileLayer mTileSource;
     protected String mCacheKey = "";
+    private int mLastTileDemand = -1;
+    private int mLastTileDemandSize = -1;
 
     /**
      * Attempts to get a Drawable that represents a {@link MapTile}. If the tile is not immediately
@@ -83,6 +85,15 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         return mTileSource.getTileSizePixels();
     }
 
+    /**
+     * Get the Bitmap.Config tiles of this provider are decoded into.
+     *
+     * @return the bitmap config
+     */
+    public Bitmap.Config getBitmapConfig() {
+        return (mTileSource != null) ? mTileSource.getBitmapConfig() : Bitmap.Config.ARGB_8888;
+    }
+
     /**
      * Get the tile provider bounding box.
      *
@@ -275,8 +286,80 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         mTileCache.purgeMemoryCache();
     }
 
+    /**
+     * @deprecated the memory cache is sized by {@link #updateMemoryCacheDemand(int, int, int)}
+     */
+    @Deprecated
     public void memoryCacheNeedsMoreMemory(int numberOfTiles) {
-        mTileCache.getCache().resizeMemoryForTiles(numberOfTiles);
+        updateMemoryCacheDemand(numberOfTiles, 0, 0);
+    }
+
+    /**
+     * Report the tiles needed for the current viewport so the shared memory cache can grow or
+     * shrink to fit. The viewport diagonal is used as a rotation margin, so the demand doesn't
+     * change while the map rotates.
+     * <p/>
+     * The demand is multiplied by {@link #getCachedTilesPerPosition()}.
+     *
+     * @param numberOfTiles the tiles looped over for the last frame
+     * @param viewportWidth the unrotated viewport width in pixels
+     * @param viewportHeight the unrotated viewport height in pixels
+     */
+    public void updateMemoryCacheDemand(int numberOfTiles, int viewportWidth, int viewportHeight) {
+        final int tileSize = getTileSizePixels();
+        int tiles = numberOfTiles;
+        if (tileSize > 0 && viewportWidth > 0 && viewportHeight > 0) {
+            final double diagonal = Math.sqrt((double) viewportWidth * viewportWidth
+                    + (double) viewportHeight * viewportHeight);
+            final int tilesPerSide = (int) Math.ceil(diagonal / tileSize) + 2;
+            tiles = Math.max(tiles, tilesPerSide * tilesPerSide);
+        }
+        tiles = (int) Math.min((long) tiles * getCachedTilesPerPosition(), Integer.MAX_VALUE);
+        if (tiles == mLastTileDemand && tileSize == mLastTileDemandSize) {
+            return;
+        }
+        mLastTileDemand = tiles;
+        mLastTileDemandSize = tileSize;
+        mTileCache.setViewportTileDemand(this, tiles, tileSize, getBitmapConfig());
+    }
+
+    /**
+     * How many tiles the memory cache holds for every tile position on screen.
+     */
+    protected int getCachedTilesPerPosition() {
+        return 1;
+    }
+
+    /**
+     * Start decoding the tiles that were visible when the last map was detached, asking for
+     * a redraw as each one lands in the memory cache.
+     */
+    protected void restoreWorkingSet() {
+        mTileCache.restoreWorkingSet(new TileWorkingSet.OnTileRestoredListener() {
+            @Override
+            public void onTileRestored(final MapTile tile) {
+                if (mTileRequestCompleteHandler != null) {
+                    mTileRequestCompleteHandler.sendEmptyMessage(MapTile.MAPTILE_SUCCESS_ID);
+                }
+            }
+
+            @Override
+            public void onWorkingSetRestored(final int restoredTiles, final long elapsedMillis) {
+            }
+        });
+    }
+
+    /**
+     * Withdraw this provider's tile demand, e.g. when it is detached from the map.
+     */
+    protected void clearMemoryCacheDemand() {
+        mLastTileDemand = -1;
+        mLastTileDemandSize = -1;
+        mTileCache.removeViewportTileDemand(this);
+    }
+
+    public MemoryCacheSizeController getMemoryCacheSizeController() {
+        return mTileCache.getSizeController();
     }
 
     public void clearTileDiskCache() {
@@ -322,6 +405,10 @@ public abstract class MapTileLayerBase implements IMapTileProviderCallback, Tile
         return (mTileCache != null) ? mTileCache.getBitmapFromRemoved(width, height) : null;
     }
 
+    public Bitmap getBitmapFromRemoved(final int width, final int height, final Bitmap.Config config) {
+        return (mTileCache != null) ? mTileCache.getBitmapFromRemoved(width, height, config) : null;
+    }
+
     /**
      * If a given MapTile is present in this cache, remove it from memory.
      * @param aTile
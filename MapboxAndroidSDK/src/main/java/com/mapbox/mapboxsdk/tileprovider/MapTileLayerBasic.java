@@ -33,6 +33,7 @@ public class MapTileLayerBasic extends MapTileLayerArray implements IMapTileProv
             }
         }
         addTileSource(pTileSource);
+        restoreWorkingSet();
     }
 
     @Override
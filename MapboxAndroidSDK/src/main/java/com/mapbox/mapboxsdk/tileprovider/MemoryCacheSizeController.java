@@ -0,0 +1,425 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.constants.UtilConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import uk.co.senab.bitmapcache.BitmapLruCache;
+
+/**
+ * Sizes the shared tile memory cache from what is actually on screen. Every tile provider
+ * reports how many tiles its viewport needs, and the cache is sized to hold all of them
+ * plus some headroom for panning and zoom rescaling, bounded by a share of the heap.
+ * The cache shrinks back when the system signals memory pressure through
+ * {@link ComponentCallbacks2#onTrimMemory(int)}.
+ */
+public class MemoryCacheSizeController implements TileLayerConstants {
+
+    private static final String TAG = "MemoryCacheSizeController";
+
+    /**
+     * Extra room on top of the visible tiles, used by parent/child tiles while zooming
+     * and by the ring of tiles that scrolls into view next.
+     */
+    public static final float DEFAULT_HEADROOM = 1.5f;
+
+    /**
+     * The cache only shrinks for a smaller viewport once the new target drops below
+     * this fraction of the current size, so rotating or resizing doesn't thrash it.
+     */
+    private static final float SHRINK_THRESHOLD = 0.5f;
+
+    /**
+     * How long the cache stays capped at the visible tiles after a running trim signal.
+     */
+    private static final long PRESSURE_HOLD_MS = 10000;
+
+    public enum Reason {
+        VIEWPORT_GROW,
+        VIEWPORT_SHRINK,
+        TRIM_MEMORY
+    }
+
+    /**
+     * Notified whenever the controller changes the memory cache size.
+     */
+    public interface OnCacheResizeListener {
+        void onMemoryCacheResized(int previousMaxSize, int newMaxSize, int visibleTiles,
+                Reason reason);
+    }
+
+    /**
+     * Notified of trim signals, to free memory held outside the tile caches.
+     */
+    public interface OnTrimMemoryListener {
+        /**
+         * @param level the level from {@link ComponentCallbacks2#onTrimMemory(int)}
+         */
+        void onTrimMemory(int level);
+    }
+
+    private static final class Demand {
+        int tiles;
+        int bytesPerTile;
+    }
+
+    private final Map<Object, Demand> mDemands = new WeakHashMap<Object, Demand>();
+    private final Map<Object, Integer> mOwnerReservations = new WeakHashMap<Object, Integer>();
+    private final List<BitmapLruCache> mTrimmableCaches = new ArrayList<BitmapLruCache>();
+    private final List<OnTrimMemoryListener> mTrimMemoryListeners =
+            new ArrayList<OnTrimMemoryListener>();
+    private final int mInitialSize;
+    private final int mMaximumSize;
+    private BitmapLruCache mCache;
+    private OnCacheResizeListener mListener;
+    private float mHeadroom = DEFAULT_HEADROOM;
+
+    private int mVisibleTiles;
+    private int mTargetSize;
+    private int mGrowCount;
+    private int mShrinkCount;
+    private int mLastTrimLevel;
+    private long mPressureUntil;
+    private int mReservedSize;
+
+    public MemoryCacheSizeController(final Context context) {
+        mInitialSize = BitmapUtils.calculateMemoryCacheSize(context);
+        mMaximumSize = Math.max(mInitialSize, BitmapUtils.calculateMaximumMemoryCacheSize(context));
+        mTargetSize = mInitialSize;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            TrimMemoryCallbacks.register(context, this);
+        }
+    }
+
+    /**
+     * A controller with the given bounds, not registered for trim signals.
+     */
+    MemoryCacheSizeController(final int initialSize, final int maximumSize) {
+        mInitialSize = initialSize;
+        mMaximumSize = Math.max(initialSize, maximumSize);
+        mTargetSize = mInitialSize;
+    }
+
+    /**
+     * Attach the cache this controller sizes, replacing any previous one.
+     */
+    public synchronized void setCache(final BitmapLruCache cache) {
+        mCache = cache;
+        update();
+    }
+
+    /**
+     * Reserve part of the maximum size for caches sized elsewhere, such as per-layer
+     * partitions, so all tile caches together stay below the same ceiling.
+     *
+     * @param reservedSize the reserved size in bytes
+     */
+    public synchronized void setReservedSize(final int reservedSize) {
+        mReservedSize = Math.max(reservedSize, 0);
+        update();
+    }
+
+    /**
+     * Reserve part of the maximum size for bitmaps held outside the tile caches, such as the
+     * map's cached overlay layer, so the tile caches leave room for them.
+     *
+     * @param owner the owner of the bitmaps, held weakly
+     * @param reservedSize the reserved size in bytes, or 0 to drop the reservation
+     */
+    public synchronized void setReservedSize(final Object owner, final int reservedSize) {
+        final Integer previous = reservedSize > 0 ? mOwnerReservations.put(owner, reservedSize)
+                : mOwnerReservations.remove(owner);
+        if (previous == null ? reservedSize > 0 : previous != reservedSize) {
+            update();
+        }
+    }
+
+    /**
+     * The bytes reserved by owners of bitmaps outside the tile caches.
+     */
+    public synchronized int getOwnerReservedSize() {
+        long bytes = 0;
+        for (Integer size : mOwnerReservations.values()) {
+            bytes += size;
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Add a cache that is trimmed along with the shared one on memory pressure.
+     */
+    public synchronized void addTrimmableCache(final BitmapLruCache cache) {
+        if (!mTrimmableCaches.contains(cache)) {
+            mTrimmableCaches.add(cache);
+        }
+    }
+
+    public synchronized void removeTrimmableCache(final BitmapLruCache cache) {
+        mTrimmableCaches.remove(cache);
+    }
+
+    public synchronized void addOnTrimMemoryListener(final OnTrimMemoryListener listener) {
+        if (!mTrimMemoryListeners.contains(listener)) {
+            mTrimMemoryListeners.add(listener);
+        }
+    }
+
+    public synchronized void removeOnTrimMemoryListener(final OnTrimMemoryListener listener) {
+        mTrimMemoryListeners.remove(listener);
+    }
+
+    public synchronized void setOnCacheResizeListener(final OnCacheResizeListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Set the share of extra cache space kept on top of the visible tiles.
+     *
+     * @param headroom a factor of at least 1
+     */
+    public synchronized void setHeadroom(final float headroom) {
+        mHeadroom = Math.max(1f, headroom);
+    }
+
+    /**
+     * Report the tile demand of one client, usually a tile provider drawing a viewport.
+     *
+     * @param client the reporting client, held weakly
+     * @param numberOfTiles the number of tiles the viewport needs, margins included
+     * @param tileSizePx the tile edge in pixels
+     * @param config the config tiles are decoded with
+     */
+    public synchronized void setDemand(final Object client, final int numberOfTiles,
+            final int tileSizePx, final Bitmap.Config config) {
+        Demand demand = mDemands.get(client);
+        if (demand == null) {
+            demand = new Demand();
+            mDemands.put(client, demand);
+        }
+        demand.tiles = Math.max(numberOfTiles, 0);
+        demand.bytesPerTile = tileSizePx * tileSizePx * bytesPerPixel(config);
+        update();
+    }
+
+    /**
+     * Forget the demand of a client, e.g. once its tile provider is detached.
+     */
+    public synchronized void removeDemand(final Object client) {
+        if (mDemands.remove(client) != null) {
+            update();
+        }
+    }
+
+    /**
+     * React to a trim level from {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public synchronized void onTrimMemory(final int level) {
+        mLastTrimLevel = level;
+        // listeners may remove themselves
+        for (OnTrimMemoryListener listener : mTrimMemoryListeners.toArray(
+                new OnTrimMemoryListener[mTrimMemoryListeners.size()])) {
+            listener.onTrimMemory(level);
+        }
+        for (BitmapLruCache cache : mTrimmableCaches) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                cache.purgeMemoryCache();
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                cache.trimMemory();
+            }
+        }
+        if (mCache == null) {
+            return;
+        }
+        final int visibleBytes = computeVisibleBytes();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mCache.purgeMemoryCache();
+            applySize(computeMinimumSize(), Reason.TRIM_MEMORY);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            mCache.trimMemory();
+            applySize(computeMinimumSize(), Reason.TRIM_MEMORY);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                mCache.trimMemory();
+            }
+            mPressureUntil = SystemClock.elapsedRealtime() + PRESSURE_HOLD_MS;
+            applySize(Math.min(mCache.getMemoryCacheMaxSize(),
+                    Math.max(visibleBytes, computeMinimumSize())), Reason.TRIM_MEMORY);
+        }
+    }
+
+    public synchronized void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    private void update() {
+        final int visibleBytes = computeVisibleBytes();
+        int target = visibleBytes > 0 ? (int) Math.min((long) (visibleBytes * mHeadroom),
+                Integer.MAX_VALUE) : mInitialSize;
+        if (SystemClock.elapsedRealtime() < mPressureUntil) {
+            target = Math.max(visibleBytes, computeMinimumSize());
+        }
+        target = Math.max(computeMinimumSize(), Math.min(target, getAvailableSize()));
+        mTargetSize = target;
+        if (mCache == null) {
+            return;
+        }
+        final int current = mCache.getMemoryCacheMaxSize();
+        if (target > current) {
+            applySize(target, Reason.VIEWPORT_GROW);
+        } else if (current > getAvailableSize() || target < current * SHRINK_THRESHOLD) {
+            // the threshold only holds back shrinking for a smaller demand, never past the
+            // room the reservations leave
+            applySize(target, Reason.VIEWPORT_SHRINK);
+        }
+    }
+
+    private void applySize(final int size, final Reason reason) {
+        if (mCache == null || !mCache.isMemoryCacheEnabled()) {
+            return;
+        }
+        final int previous = mCache.getMemoryCacheMaxSize();
+        if (size <= 0 || size == previous) {
+            return;
+        }
+        mCache.resizeMemoryCache(size);
+        if (size > previous) {
+            mGrowCount++;
+        } else {
+            mShrinkCount++;
+        }
+        if (UtilConstants.DEBUGMODE) {
+            Log.d(TAG, reason + ": " + previous / 1024 + "KB -> " + size / 1024 + "KB for "
+                    + mVisibleTiles + " tiles");
+        }
+        if (mListener != null) {
+            mListener.onMemoryCacheResized(previous, size, mVisibleTiles, reason);
+        }
+    }
+
+    private int computeVisibleBytes() {
+        long bytes = 0;
+        int tiles = 0;
+        for (Demand demand : mDemands.values()) {
+            tiles += demand.tiles;
+            bytes += (long) demand.tiles * demand.bytesPerTile;
+        }
+        mVisibleTiles = tiles;
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private int computeMinimumSize() {
+        int bytesPerTile = 0;
+        for (Demand demand : mDemands.values()) {
+            bytesPerTile = Math.max(bytesPerTile, demand.bytesPerTile);
+        }
+        if (bytesPerTile == 0) {
+            bytesPerTile = DEFAULT_TILE_SIZE * DEFAULT_TILE_SIZE * 4;
+        }
+        return Math.min(CACHE_MAPTILECOUNT_DEFAULT * bytesPerTile, mInitialSize);
+    }
+
+    private static int bytesPerPixel(final Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    /**
+     * The number of tiles currently reported as visible across all clients.
+     */
+    public synchronized int getVisibleTileCount() {
+        return mVisibleTiles;
+    }
+
+    /**
+     * The size in bytes the controller last aimed for.
+     */
+    public synchronized int getTargetSize() {
+        return mTargetSize;
+    }
+
+    /**
+     * The upper bound in bytes the cache may grow to.
+     */
+    public int getMaximumSize() {
+        return mMaximumSize;
+    }
+
+    /**
+     * The upper bound in bytes the shared cache may grow to once reservations are subtracted.
+     */
+    public synchronized int getAvailableSize() {
+        return Math.max(mMaximumSize - mReservedSize - getOwnerReservedSize(), 0);
+    }
+
+    /**
+     * The current maximum size in bytes of the memory cache.
+     */
+    public synchronized int getCurrentMaxSize() {
+        return mCache != null ? mCache.getMemoryCacheMaxSize() : 0;
+    }
+
+    /**
+     * The bytes currently held by the memory cache.
+     */
+    public synchronized int getCurrentSize() {
+        return mCache != null ? mCache.getMemoryCacheSize() : 0;
+    }
+
+    public synchronized int getGrowCount() {
+        return mGrowCount;
+    }
+
+    public synchronized int getShrinkCount() {
+        return mShrinkCount;
+    }
+
+    public synchronized int getLastTrimLevel() {
+        return mLastTrimLevel;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private static class TrimMemoryCallbacks implements ComponentCallbacks2 {
+        private final MemoryCacheSizeController mController;
+
+        private TrimMemoryCallbacks(final MemoryCacheSizeController controller) {
+            mController = controller;
+        }
+
+        static void register(final Context context, final MemoryCacheSizeController controller) {
+            context.getApplicationContext()
+                    .registerComponentCallbacks(new TrimMemoryCallbacks(controller));
+        }
+
+        @Override
+        public void onTrimMemory(final int level) {
+            mController.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            mController.onLowMemory();
+        }
+
+        @Override
+        public void onConfigurationChanged(final Configuration newConfig) {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+/**
+ * Describes the cache partition a tile layer gets in {@link MapTileCache}. A layer with a
+ * policy has its own memory and disk quota, so a busy layer can't evict another layer's tiles.
+ * Within a partition tiles are evicted least recently used first.
+ */
+public class TileCachePolicy {
+
+    private final int mMemoryQuota;
+    private final long mDiskQuota;
+    private boolean mPinned = false;
+    private long mTimeToLive = 0;
+
+    /**
+     * @param memoryQuota the memory cache size of the partition in bytes, 0 to disable it
+     * @param diskQuota the disk cache size of the partition in bytes, 0 to disable it
+     */
+    public TileCachePolicy(final int memoryQuota, final long diskQuota) {
+        mMemoryQuota = Math.max(memoryQuota, 0);
+        mDiskQuota = Math.max(diskQuota, 0);
+    }
+
+    /**
+     * Pinned partitions keep their memory cache when the system asks the app to trim memory.
+     */
+    public TileCachePolicy setPinned(final boolean pinned) {
+        mPinned = pinned;
+        return this;
+    }
+
+    /**
+     * Set how long a cached tile stays fresh. Older tiles are still shown, but are
+     * reloaded from their source when it can be reached.
+     *
+     * @param timeToLive the lifetime in milliseconds, 0 to keep tiles fresh forever
+     */
+    public TileCachePolicy setTimeToLive(final long timeToLive) {
+        mTimeToLive = Math.max(timeToLive, 0);
+        return this;
+    }
+
+    public int getMemoryQuota() {
+        return mMemoryQuota;
+    }
+
+    public long getDiskQuota() {
+        return mDiskQuota;
+    }
+
+    public boolean isPinned() {
+        return mPinned;
+    }
+
+    public long getTimeToLive() {
+        return mTimeToLive;
+    }
+
+    /**
+     * Get a policy with quotas no larger than the given ones, and the same other settings.
+     *
+     * @return this policy if it fits already, a copy with smaller quotas otherwise
+     */
+    public TileCachePolicy clamp(final int maxMemoryQuota, final long maxDiskQuota) {
+        if (mMemoryQuota <= maxMemoryQuota && mDiskQuota <= maxDiskQuota) {
+            return this;
+        }
+        return new TileCachePolicy(Math.min(mMemoryQuota, maxMemoryQuota),
+                Math.min(mDiskQuota, maxDiskQuota))
+                .setPinned(mPinned)
+                .setTimeToLive(mTimeToLive);
+    }
+
+    /**
+     * Whether a tile cached at the given time has outlived this policy's time to live.
+     *
+     * @param timestamp the time the tile was cached, in milliseconds since the epoch
+     */
+    public boolean isExpired(final long timestamp) {
+        return mTimeToLive > 0 && timestamp > 0
+                && System.currentTimeMillis() - timestamp > mTimeToLive;
+    }
+}
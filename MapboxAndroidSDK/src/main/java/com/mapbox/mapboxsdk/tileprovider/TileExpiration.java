@@ -0,0 +1,150 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.text.TextUtils;
+
+import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
+import com.squareup.okhttp.CacheControl;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+
+import java.util.Date;
+
+/**
+ * The HTTP freshness of a downloaded tile: when it expires according to the server's
+ * Cache-Control or Expires headers, and the validators used to revalidate it with a
+ * conditional request.
+ * <p/>
+ * A tile is fresh for at least {@link #MINIMUM_FRESHNESS}, even if the server asks for it to be
+ * revalidated on every use, and each 304 Not Modified in a row doubles that, up to
+ * {@link #MAXIMUM_BACKOFF}; otherwise every tile in view would be requested again and again.
+ */
+public class TileExpiration {
+
+    /**
+     * The shortest time a downloaded or revalidated tile is fresh for, in milliseconds.
+     */
+    public static final long MINIMUM_FRESHNESS = TileLayerConstants.TILE_REFRESH_RETRY_DELAY;
+    /**
+     * The longest time repeated 304 responses stretch the freshness of a tile to.
+     */
+    public static final long MAXIMUM_BACKOFF = 60 * 60 * 1000;
+
+    private final long mExpiresAt;
+    private final String mETag;
+    private final String mLastModified;
+    private final int mNotModifiedCount;
+
+    /**
+     * @param expiresAt when the tile expires in milliseconds since the epoch, 0 if never
+     * @param eTag the ETag header of the tile, may be null
+     * @param lastModified the Last-Modified header of the tile, may be null
+     */
+    public TileExpiration(final long expiresAt, final String eTag, final String lastModified) {
+        this(expiresAt, eTag, lastModified, 0);
+    }
+
+    /**
+     * @param notModifiedCount how many times in a row the tile was revalidated unchanged
+     */
+    public TileExpiration(final long expiresAt, final String eTag, final String lastModified,
+            final int notModifiedCount) {
+        mExpiresAt = expiresAt;
+        mETag = eTag;
+        mLastModified = lastModified;
+        mNotModifiedCount = notModifiedCount;
+    }
+
+    /**
+     * Read the freshness of a tile from the headers of a response.
+     *
+     * @param response a 200 or 304 response for the tile
+     * @return the tile expiration
+     */
+    public static TileExpiration fromResponse(final Response response) {
+        return fromResponse(response, System.currentTimeMillis());
+    }
+
+    static TileExpiration fromResponse(final Response response, final long now) {
+        final CacheControl cacheControl = response.cacheControl();
+        // how long the tile is fresh for, -1 if forever
+        long lifetime = -1;
+        if (cacheControl.noCache() || cacheControl.noStore()) {
+            lifetime = 0;
+        } else if (cacheControl.maxAgeSeconds() >= 0) {
+            lifetime = cacheControl.maxAgeSeconds() * 1000L;
+        } else {
+            final Date expires = response.headers().getDate("Expires");
+            if (expires != null) {
+                // Expires is relative to the server's clock, so measure it against its Date.
+                final Date served = response.headers().getDate("Date");
+                final long servedAt = (served != null) ? served.getTime() : now;
+                lifetime = Math.max(expires.getTime() - servedAt, 0);
+            }
+        }
+        final long expiresAt = (lifetime < 0) ? 0 : now + Math.max(lifetime, MINIMUM_FRESHNESS);
+        return new TileExpiration(expiresAt, response.header("ETag"),
+                response.header("Last-Modified"));
+    }
+
+    /**
+     * Combine the headers of a 304 Not Modified response with this expiration. The server
+     * may omit validators on a 304, in which case the known ones are kept. The tile stays
+     * fresh for longer with each 304 in a row.
+     */
+    public TileExpiration revalidated(final TileExpiration notModified) {
+        return revalidated(notModified, System.currentTimeMillis());
+    }
+
+    TileExpiration revalidated(final TileExpiration notModified, final long now) {
+        final int notModifiedCount = mNotModifiedCount + 1;
+        long expiresAt = notModified.mExpiresAt;
+        if (expiresAt > 0) {
+            final long backoff = Math.min(MINIMUM_FRESHNESS << Math.min(notModifiedCount, 16),
+                    MAXIMUM_BACKOFF);
+            expiresAt = Math.max(expiresAt, now + backoff);
+        }
+        return new TileExpiration(expiresAt,
+                (notModified.mETag != null) ? notModified.mETag : mETag,
+                (notModified.mLastModified != null) ? notModified.mLastModified : mLastModified,
+                notModifiedCount);
+    }
+
+    /**
+     * Whether the tile can be revalidated with a conditional request.
+     */
+    public boolean hasValidators() {
+        return !TextUtils.isEmpty(mETag) || !TextUtils.isEmpty(mLastModified);
+    }
+
+    /**
+     * Add If-None-Match and If-Modified-Since headers for the validators of this tile.
+     */
+    public Request.Builder addConditionalHeaders(final Request.Builder builder) {
+        if (!TextUtils.isEmpty(mETag)) {
+            builder.header("If-None-Match", mETag);
+        }
+        if (!TextUtils.isEmpty(mLastModified)) {
+            builder.header("If-Modified-Since", mLastModified);
+        }
+        return builder;
+    }
+
+    public long getExpiresAt() {
+        return mExpiresAt;
+    }
+
+    public String getETag() {
+        return mETag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * @return how many times in a row the tile was revalidated unchanged
+     */
+    public int getNotModifiedCount() {
+        return mNotModifiedCount;
+    }
+}
@@ -0,0 +1,146 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.util.Log;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Persists the {@link TileExpiration} of downloaded tiles next to the tile cache, so
+ * freshness and validators survive restarts. Entries are small and evicted least
+ * recently used first. All methods do disk I/O and must not be called on the main thread.
+ */
+public class TileExpirationStore {
+
+    private static final String TAG = "TileExpirationStore";
+    private static final int APP_VERSION = 2;
+    private static final int EXPIRES_AT = 0;
+    private static final int ETAG = 1;
+    private static final int LAST_MODIFIED = 2;
+    private static final int NOT_MODIFIED_COUNT = 3;
+    private static final int VALUE_COUNT = 4;
+    /**
+     * How many entries are written before the journal is flushed.
+     */
+    private static final int FLUSH_INTERVAL = 64;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    private DiskLruCache mCache;
+    private int mUnflushed;
+
+    public TileExpirationStore(final File directory, final long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    private synchronized DiskLruCache getCache() throws IOException {
+        if (mCache == null || mCache.isClosed()) {
+            mCache = DiskLruCache.open(mDirectory, APP_VERSION, VALUE_COUNT, mMaxSize);
+        }
+        return mCache;
+    }
+
+    public TileExpiration get(final String tileKey) {
+        DiskLruCache.Snapshot snapshot = null;
+        try {
+            snapshot = getCache().get(transformKey(tileKey));
+            if (snapshot == null) {
+                return null;
+            }
+            return new TileExpiration(Long.parseLong(snapshot.getString(EXPIRES_AT)),
+                    emptyToNull(snapshot.getString(ETAG)),
+                    emptyToNull(snapshot.getString(LAST_MODIFIED)),
+                    Integer.parseInt(snapshot.getString(NOT_MODIFIED_COUNT)));
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading expiration of " + tileKey, e);
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "Corrupt expiration for " + tileKey, e);
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+        return null;
+    }
+
+    public void put(final String tileKey, final TileExpiration expiration) {
+        try {
+            final DiskLruCache cache = getCache();
+            final DiskLruCache.Editor editor = cache.edit(transformKey(tileKey));
+            if (editor == null) {
+                // Another thread is writing this entry already.
+                return;
+            }
+            editor.set(EXPIRES_AT, String.valueOf(expiration.getExpiresAt()));
+            editor.set(ETAG, nullToEmpty(expiration.getETag()));
+            editor.set(LAST_MODIFIED, nullToEmpty(expiration.getLastModified()));
+            editor.set(NOT_MODIFIED_COUNT, String.valueOf(expiration.getNotModifiedCount()));
+            editor.commit();
+            // The entry is on disk already, only its journal line waits for the next flush;
+            // losing it just means the tile is revalidated early.
+            if (countUnflushed()) {
+                cache.flush();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing expiration of " + tileKey, e);
+        }
+    }
+
+    private synchronized boolean countUnflushed() {
+        if (++mUnflushed < FLUSH_INTERVAL) {
+            return false;
+        }
+        mUnflushed = 0;
+        return true;
+    }
+
+    public void remove(final String tileKey) {
+        try {
+            getCache().remove(transformKey(tileKey));
+        } catch (IOException e) {
+            Log.e(TAG, "Error removing expiration of " + tileKey, e);
+        }
+    }
+
+    public synchronized void clear() {
+        try {
+            getCache().delete();
+        } catch (IOException e) {
+            Log.e(TAG, "Error clearing tile expirations", e);
+        }
+        mCache = null;
+    }
+
+    private static String emptyToNull(final String value) {
+        return (value == null || value.length() == 0) ? null : value;
+    }
+
+    private static String nullToEmpty(final String value) {
+        return (value == null) ? "" : value.replace('\n', ' ');
+    }
+
+    /**
+     * DiskLruCache keys are limited to [a-z0-9_-]{1,64}, so tile keys are hashed.
+     */
+    private static String transformKey(final String tileKey) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            final byte[] hash = digest.digest(tileKey.getBytes("UTF-8"));
+            final StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
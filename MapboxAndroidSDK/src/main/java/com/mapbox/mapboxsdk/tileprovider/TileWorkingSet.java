@@ -0,0 +1,238 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The tiles a user was looking at when the map went away. The keys of the most recently used
+ * tiles are written to a file when the map is detached, and on the next start the tiles are
+ * decoded from the disk cache in parallel so the first frames don't wait on them.
+ */
+public class TileWorkingSet {
+
+    private static final String TAG = "TileWorkingSet";
+
+    /**
+     * Upper bound of tiles kept in the working set.
+     */
+    public static final int MAXIMUM_TILES = 128;
+
+    public interface OnTileRestoredListener {
+        void onTileRestored(MapTile tile);
+
+        void onWorkingSetRestored(int restoredTiles, long elapsedMillis);
+    }
+
+    /**
+     * A tile key and the config its bitmap was decoded with.
+     */
+    public static final class Entry {
+        public final String key;
+        public final Bitmap.Config config;
+
+        public Entry(final String key, final Bitmap.Config config) {
+            this.key = key;
+            this.config = config;
+        }
+    }
+
+    private static final ExecutorService sWriter = Executors.newSingleThreadExecutor(
+            new BackgroundThreadFactory("TileWorkingSetWriter"));
+
+    private final File mFile;
+
+    public TileWorkingSet(final File file) {
+        mFile = file;
+    }
+
+    /**
+     * Write the given entries, most recently used first, on a background thread.
+     */
+    public void save(final List<Entry> entries) {
+        final List<Entry> copy = new ArrayList<Entry>(
+                entries.subList(0, Math.min(entries.size(), MAXIMUM_TILES)));
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(copy);
+            }
+        });
+    }
+
+    private synchronized void write(final List<Entry> entries) {
+        final File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.e(TAG, "can't create working set directory " + parent);
+            return;
+        }
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(mFile));
+            for (Entry entry : entries) {
+                writer.write(entry.config != null ? entry.config.name() : "");
+                writer.write('\t');
+                writer.write(entry.key);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing tile working set", e);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Read the entries saved by the last {@link #save(List)}, most recently used first.
+     * Does disk I/O, so don't call it on the main thread.
+     */
+    public synchronized List<Entry> read() {
+        final List<Entry> entries = new ArrayList<Entry>();
+        if (!mFile.exists()) {
+            return entries;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(mFile));
+            String line;
+            while ((line = reader.readLine()) != null && entries.size() < MAXIMUM_TILES) {
+                final int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                final String config = line.substring(0, tab);
+                Bitmap.Config bitmapConfig = null;
+                if (!TextUtils.isEmpty(config)) {
+                    try {
+                        bitmapConfig = Bitmap.Config.valueOf(config);
+                    } catch (IllegalArgumentException e) {
+                        bitmapConfig = null;
+                    }
+                }
+                entries.add(new Entry(line.substring(tab + 1), bitmapConfig));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading tile working set", e);
+        } finally {
+            closeQuietly(reader);
+        }
+        return entries;
+    }
+
+    /**
+     * Decode the saved tiles into the memory cache of the given tile cache, using a thread
+     * per core, without blocking the caller.
+     */
+    public void restore(final MapTileCache cache, final OnTileRestoredListener listener) {
+        final long start = SystemClock.elapsedRealtime();
+        final int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService decoders = Executors.newFixedThreadPool(threads,
+                new BackgroundThreadFactory("TileWorkingSetDecoder"));
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Entry> entries = read();
+                if (entries.isEmpty()) {
+                    decoders.shutdown();
+                    return;
+                }
+                final AtomicInteger remaining = new AtomicInteger(entries.size());
+                final AtomicInteger restored = new AtomicInteger(0);
+                for (final Entry entry : entries) {
+                    decoders.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            final MapTile tile = parseKey(entry.key);
+                            if (tile != null && cache.getMapTileFromMemory(tile) == null
+                                    && cache.containsTileInDiskCache(tile)
+                                    && cache.getMapTileFromDisk(tile,
+                                            BitmapUtils.getBitmapOptions(entry.config)) != null) {
+                                restored.incrementAndGet();
+                                if (listener != null) {
+                                    listener.onTileRestored(tile);
+                                }
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                final long elapsed = SystemClock.elapsedRealtime() - start;
+                                Log.i(TAG, "restored " + restored.get() + " of " + entries.size()
+                                        + " tiles in " + elapsed + "ms");
+                                if (listener != null) {
+                                    listener.onWorkingSetRestored(restored.get(), elapsed);
+                                }
+                            }
+                        }
+                    });
+                }
+                decoders.shutdown();
+            }
+        });
+    }
+
+    /**
+     * Turn a tile cache key of the form layer/z/x/y back into a tile.
+     */
+    static MapTile parseKey(final String key) {
+        final int yIndex = key.lastIndexOf('/');
+        final int xIndex = (yIndex > 0) ? key.lastIndexOf('/', yIndex - 1) : -1;
+        final int zIndex = (xIndex > 0) ? key.lastIndexOf('/', xIndex - 1) : -1;
+        if (zIndex < 0) {
+            return null;
+        }
+        try {
+            return new MapTile(key.substring(0, zIndex),
+                    Integer.parseInt(key.substring(zIndex + 1, xIndex)),
+                    Integer.parseInt(key.substring(xIndex + 1, yIndex)),
+                    Integer.parseInt(key.substring(yIndex + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        BackgroundThreadFactory(final String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, mName + "-" + mCount.getAndIncrement());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.mapbox.mapboxsdk.tileprovider;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A decoded <a href='https://github.com/mapbox/utfgrid-spec'>UTFGrid</a> tile. The grid
+ * characters are decoded once into key indices, so finding the feature under a point is an
+ * array lookup.
+ */
+public final class UTFGrid {
+
+    /**
+     * Returned by {@link #getKeyIndex} where there's no feature.
+     */
+    public static final int NO_FEATURE = -1;
+
+    private final int mDimension;
+    private final int[] mGrid;
+    private final String[] mKeys;
+    private final JSONObject[] mData;
+    private final int mByteSize;
+
+    private UTFGrid(final int dimension, final int[] grid, final String[] keys,
+            final JSONObject[] data, final int byteSize) {
+        mDimension = dimension;
+        mGrid = grid;
+        mKeys = keys;
+        mData = data;
+        mByteSize = byteSize;
+    }
+
+    /**
+     * Decode the JSON of a grid tile.
+     *
+     * @throws JSONException if the grid is malformed
+     */
+    public static UTFGrid parse(final String json) throws JSONException {
+        final JSONObject object = new JSONObject(json);
+        final JSONArray rows = object.getJSONArray("grid");
+        final JSONArray keyArray = object.getJSONArray("keys");
+        final JSONObject dataObject = object.optJSONObject("data");
+
+        final int keyCount = keyArray.length();
+        final String[] keys = new String[keyCount];
+        final JSONObject[] data = new JSONObject[keyCount];
+        int keyChars = 0;
+        boolean hasFeatures = false;
+        for (int i = 0; i < keyCount; i++) {
+            // the same features turn up in the grids around them and at every zoom level
+            final String key = keyArray.getString(i).intern();
+            keys[i] = key;
+            keyChars += key.length();
+            if (key.length() > 0) {
+                hasFeatures = true;
+                if (dataObject != null) {
+                    data[i] = dataObject.optJSONObject(key);
+                }
+            }
+        }
+
+        final int dimension = rows.length();
+        int[] grid = null;
+        if (hasFeatures) {
+            grid = new int[dimension * dimension];
+            for (int y = 0; y < dimension; y++) {
+                final String row = rows.getString(y);
+                if (row.length() != dimension) {
+                    throw new JSONException("Grid row " + y + " isn't " + dimension + " long");
+                }
+                for (int x = 0; x < dimension; x++) {
+                    final int index = decode(row.charAt(x));
+                    if (index < 0) {
+                        throw new JSONException("Grid row " + y + " has a control character");
+                    }
+                    grid[y * dimension + x] = (index < keyCount && keys[index].length() > 0)
+                            ? index : NO_FEATURE;
+                }
+            }
+        }
+
+        // the data is what's left of the text once the grid and the keys are taken out, and
+        // takes about twice as much memory parsed as it did as characters
+        final int dataChars = dataObject == null ? 0
+                : Math.max(0, json.length() - dimension * (dimension + 3) - keyChars);
+        final int byteSize = 64 + (grid == null ? 0 : grid.length * 4) + keyCount * 48
+                + keyChars * 2 + dataChars * 4;
+        return new UTFGrid(dimension, grid, keys, data, byteSize);
+    }
+
+    /**
+     * The key index of a grid character, which skips the quote and backslash characters.
+     */
+    static int decode(int c) {
+        if (c >= 93) {
+            c--;
+        }
+        if (c >= 35) {
+            c--;
+        }
+        return c - 32;
+    }
+
+    /**
+     * @return the number of cells along each side of the grid
+     */
+    public int getDimension() {
+        return mDimension;
+    }
+
+    /**
+     * @return true if no feature is in the grid
+     */
+    public boolean isEmpty() {
+        return mGrid == null;
+    }
+
+    /**
+     * Find the feature at a point of the tile.
+     *
+     * @param u the x of the point, from 0 to 1 across the tile
+     * @param v the y of the point, from 0 to 1 down the tile
+     * @return the index of the feature's key, or {@link #NO_FEATURE}
+     */
+    public int getKeyIndex(final double u, final double v) {
+        if (mGrid == null || !(u >= 0 && u < 1 && v >= 0 && v < 1)) {
+            return NO_FEATURE;
+        }
+        final int x = (int) (u * mDimension);
+        final int y = (int) (v * mDimension);
+        return mGrid[y * mDimension + x];
+    }
+
+    /**
+     * @return the key of the feature at an index from {@link #getKeyIndex}, or null
+     */
+    public String getKey(final int index) {
+        return index == NO_FEATURE ? null : mKeys[index];
+    }
+
+    /**
+     * @return the data of the feature at an index from {@link #getKeyIndex}, or null if it has
+     * none
+     */
+    public JSONObject getData(final int index) {
+        return index == NO_FEATURE ? null : mData[index];
+    }
+
+    /**
+     * @return roughly how much memory the decoded grid takes
+     */
+    public int getByteSize() {
+        return mByteSize;
+    }
+}
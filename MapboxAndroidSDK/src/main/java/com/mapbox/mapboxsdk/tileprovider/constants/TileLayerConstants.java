@@ -34,6 +34,21 @@ public interface TileLayerConstants {
     public static final int CACHE_MAPTILECOUNT_DEFAULT = 9;
 
     public static final int CACHE_MAPTILEDISKSIZE_DEFAULT = 100 * 1024 * 1024;
+
+    /**
+     * Disk size of the store holding the HTTP expiration and validators of cached tiles.
+     */
+    public static final int CACHE_EXPIRATIONDISKSIZE_DEFAULT = 2 * 1024 * 1024;
+
+    /**
+     * File the keys of the most recently used tiles are saved to between launches.
+     */
+    public static final String WORKING_SET_FILE_NAME = "mapbox_tiles_working_set";
+
+    /**
+     * How long a stale tile is served as is after refreshing it failed.
+     */
+    public static final long TILE_REFRESH_RETRY_DELAY = 60 * 1000;
     /**
      * number of tile download threads, conforming to OSM policy:
      * http://wiki.openstreetmap.org/wiki/Tile_usage_policy
@@ -41,4 +56,19 @@ public interface TileLayerConstants {
     public static final int NUMBER_OF_TILE_DOWNLOAD_THREADS = 8;
 
     public static final int TILE_DOWNLOAD_MAXIMUM_QUEUE_SIZE = 40;
+
+    /**
+     * Number of threads compositing the tiles of stacked tile sources.
+     */
+    public static final int NUMBER_OF_TILE_COMPOSITE_THREADS = 2;
+
+    /**
+     * Number of threads downloading UTFGrid tiles.
+     */
+    public static final int NUMBER_OF_UTFGRID_DOWNLOAD_THREADS = 2;
+
+    /**
+     * Default memory, in bytes, for decoded UTFGrid tiles.
+     */
+    public static final int CACHE_UTFGRID_SIZE_DEFAULT = 4 * 1024 * 1024;
 }
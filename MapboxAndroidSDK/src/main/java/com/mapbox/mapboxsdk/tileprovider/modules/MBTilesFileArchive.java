@@ -121,6 +121,18 @@ public class MBTilesFileArchive implements IArchiveFile {
         return getStringValue("version");
     }
 
+    public String getFormat() {
+        return getStringValue("format");
+    }
+
+    /**
+     * @return true if the tiles are stored in a format without alpha channel
+     */
+    public boolean isOpaqueFormat() {
+        final String format = getFormat();
+        return "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+    }
+
     public String getDescription() {
         return getStringValue("description");
     }
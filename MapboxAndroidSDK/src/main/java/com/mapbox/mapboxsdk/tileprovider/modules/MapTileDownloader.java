@@ -13,6 +13,8 @@ import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.MBTilesLayer;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.TileLayer;
 import com.mapbox.mapboxsdk.util.AppUtils;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.MapMetrics;
 import com.mapbox.mapboxsdk.views.MapView;
 import com.mapbox.mapboxsdk.views.util.TileLoadedListener;
 import com.mapbox.mapboxsdk.views.util.TilesLoadedListener;
@@ -137,6 +139,9 @@ public class MapTileDownloader extends MapTileModuleLayerBase {
         // We are only interested in TileLayer tile sources
         if (tileSource instanceof TileLayer) {
             mTileSource.set((TileLayer) tileSource);
+            if (tileSource.getCachePolicy() != null && getCache() != null) {
+                getCache().setCachePolicy(tileSource.getCacheKey(), tileSource.getCachePolicy());
+            }
         } else {
             // Otherwise shut down the tile downloader
             mTileSource.set(null);
@@ -155,11 +160,32 @@ public class MapTileDownloader extends MapTileModuleLayerBase {
         public Drawable loadTile(final MapTileRequestState aState) throws CantContinueException {
             final MapTile tile = aState.getMapTile();
 //            Log.d(TAG, "loadTile() with tile = '" + tile + "'");
+            TileLayer tileLayer = mTileSource.get();
             if (mTileCache != null && mTileCache.get().containsTileInDiskCache(tile)) {
 //                Log.d(TAG, "tile found in Disk Cache, so returning it. tile = '" + tile + "'");
-                return mTileCache.get().getMapTileFromDisk(tile);
+                final CacheableBitmapDrawable cached = mTileCache.get().getMapTileFromDisk(tile,
+                        (tileLayer != null)
+                                ? BitmapUtils.getBitmapOptions(tileLayer.getBitmapConfig()) : null);
+                MapMetrics.increment(cached != null
+                        ? MapMetrics.Counter.DISK_HIT : MapMetrics.Counter.DISK_MISS);
+                // Expired tiles are refreshed when the source can be reached, and served
+                // stale otherwise.
+                if (cached == null || !BitmapUtils.isCacheDrawableExpired(cached)
+                        || tileLayer == null || (getUsesDataConnection() && !isNetworkAvailable())) {
+                    return cached;
+                }
+                // Reading the tile put it in the memory cache, where it is drawn stale while
+                // it is revalidated. The tile stays in progress, so it isn't requested again.
+                mMapView.postInvalidate();
+                final Drawable fresh = tileLayer.getDrawableFromTile(MapTileDownloader.this, tile, hdpi);
+                if (fresh == null) {
+                    // Don't ask for the tile again on every frame while its source fails.
+                    mTileCache.get().deferTileRefresh(cached, TILE_REFRESH_RETRY_DELAY);
+                    return cached;
+                }
+                return fresh;
             }
-            TileLayer tileLayer = mTileSource.get();
+            MapMetrics.increment(MapMetrics.Counter.DISK_MISS);
             Drawable result =
                     (tileLayer != null) ? tileLayer.getDrawableFromTile(MapTileDownloader.this,
                             tile, hdpi) : null;
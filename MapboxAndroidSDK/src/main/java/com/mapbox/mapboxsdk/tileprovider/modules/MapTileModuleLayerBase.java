@@ -10,6 +10,7 @@ import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
 import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
 import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.MapMetrics;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -172,6 +173,7 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
             // this will put the tile in the queue, or move it to the front of
             // the queue if it's already present
             mPending.put(pState.getMapTile(), pState);
+            MapMetrics.record(MapMetrics.Measure.PENDING_QUEUE_DEPTH, mPending.size());
         }
 
         try {
@@ -249,6 +251,7 @@ public abstract class MapTileModuleLayerBase implements TileLayerConstants {
                 MapTileRequestState state = popFirstPending();
                 if (state != null) {
                     mWorking.put(state.getMapTile(), state);
+                    MapMetrics.record(MapMetrics.Measure.WORKING_QUEUE_DEPTH, mWorking.size());
                     if (DEBUG_TILE_PROVIDERS) {
                         Log.d(TAG, "TileLoader.nextTile() on provider: "
                                 + getName()
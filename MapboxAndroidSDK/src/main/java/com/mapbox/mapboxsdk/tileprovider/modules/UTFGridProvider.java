@@ -0,0 +1,369 @@
+package com.mapbox.mapboxsdk.tileprovider.modules;
+
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.mapbox.mapboxsdk.api.ILatLng;
+import com.mapbox.mapboxsdk.geometry.BoundingBox;
+import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.tileprovider.IMapTileProviderCallback;
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.MapTileRequestState;
+import com.mapbox.mapboxsdk.tileprovider.UTFGrid;
+import com.mapbox.mapboxsdk.tileprovider.tilesource.ITileLayer;
+import com.mapbox.mapboxsdk.util.NetworkUtils;
+import com.mapbox.mapboxsdk.views.util.Projection;
+import com.squareup.okhttp.Response;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Loads the <a href='https://github.com/mapbox/utfgrid-spec'>UTFGrid</a> tiles of a map on
+ * worker threads, like the tiles of a tile layer, and keeps them decoded in memory, so looking
+ * up the feature under a point needs no download and no JSON.
+ */
+public class UTFGridProvider extends MapTileModuleLayerBase {
+
+    private static final String TAG = "UTFGridProvider";
+
+    /**
+     * How many grids that couldn't be loaded are remembered, so they aren't asked for again on
+     * every frame.
+     */
+    private static final int MAX_FAILED_GRIDS = 256;
+
+    /**
+     * How long a grid that couldn't be loaded isn't asked for again.
+     */
+    static final long FAILED_GRID_RETRY_DELAY = TILE_REFRESH_RETRY_DELAY;
+
+    private final String mUrl;
+    private final float mMinimumZoomLevel;
+    private final float mMaximumZoomLevel;
+    private final LruCache<String, UTFGrid> mGrids;
+    /**
+     * When each grid that couldn't be loaded may be tried again, in elapsed realtime.
+     */
+    private final HashMap<String, Long> mFailed = new HashMap<String, Long>();
+
+    /**
+     * @param url the URL of the grids, with {z}, {x} and {y} in it
+     */
+    public UTFGridProvider(final String url) {
+        this(url, MINIMUM_ZOOMLEVEL, MAXIMUM_ZOOMLEVEL, CACHE_UTFGRID_SIZE_DEFAULT);
+    }
+
+    /**
+     * @param url the URL of the grids, with {z}, {x} and {y} in it
+     * @param minimumZoomLevel the lowest zoom level with grids
+     * @param maximumZoomLevel the highest zoom level with grids, which is also used above it
+     * @param cacheSize the memory, in bytes, for decoded grids
+     */
+    public UTFGridProvider(final String url, final float minimumZoomLevel,
+            final float maximumZoomLevel, final int cacheSize) {
+        super(NUMBER_OF_UTFGRID_DOWNLOAD_THREADS, TILE_DOWNLOAD_MAXIMUM_QUEUE_SIZE);
+        if (url == null) {
+            throw new IllegalArgumentException("A UTFGrid provider needs a URL");
+        }
+        mUrl = url;
+        mMinimumZoomLevel = minimumZoomLevel;
+        mMaximumZoomLevel = maximumZoomLevel;
+        mGrids = new LruCache<String, UTFGrid>(cacheSize) {
+            @Override
+            protected int sizeOf(final String key, final UTFGrid grid) {
+                return grid.getByteSize();
+            }
+        };
+    }
+
+    /**
+     * The provider of the grids a <a href='https://github.com/mapbox/tilejson-spec'>TileJSON</a>
+     * lists, if it lists any.
+     *
+     * @return the provider, or null if there are no grids
+     */
+    public static UTFGridProvider fromTileJSON(final JSONObject tileJSON) {
+        final JSONArray grids = tileJSON.optJSONArray("grids");
+        if (grids == null || grids.length() == 0) {
+            return null;
+        }
+        return new UTFGridProvider(grids.optString(0),
+                (float) tileJSON.optDouble("minzoom", MINIMUM_ZOOMLEVEL),
+                (float) tileJSON.optDouble("maxzoom", MAXIMUM_ZOOMLEVEL),
+                CACHE_UTFGRID_SIZE_DEFAULT);
+    }
+
+    /**
+     * The zoom level of the grids used at a zoom level of the map.
+     */
+    public int getGridZoom(final float zoom) {
+        return (int) Math.max(mMinimumZoomLevel, Math.min(mMaximumZoomLevel, Math.floor(zoom)));
+    }
+
+    /**
+     * @return the decoded grid of a tile, or null if it isn't loaded
+     */
+    public UTFGrid getGrid(final MapTile tile) {
+        return mGrids.get(tile.getCacheKey());
+    }
+
+    /**
+     * Load the grid of a tile, unless it's loaded, being loaded, or couldn't be loaded lately.
+     *
+     * @param callback told when the grid is done loading, with a failure in any case as grids
+     * aren't drawables; check {@link #getGrid} then
+     * @return true if the grid is being loaded
+     */
+    public boolean requestGrid(final MapTile tile, final IMapTileProviderCallback callback) {
+        if (mGrids.get(tile.getCacheKey()) != null) {
+            return false;
+        }
+        if (hasFailed(tile.getCacheKey(), SystemClock.elapsedRealtime())) {
+            return false;
+        }
+        synchronized (mQueueLockObject) {
+            if (mWorking.containsKey(tile) || mPending.containsKey(tile)) {
+                return true;
+            }
+        }
+        loadMapTileAsync(new MapTileRequestState(tile, new MapTileModuleLayerBase[] { this },
+                callback));
+        return true;
+    }
+
+    /**
+     * The grid tile under a point, at a zoom level of the map.
+     */
+    public MapTile getTile(final ILatLng point, final float zoom) {
+        final double[] world = Projection.latLongToWorldXY(point.getLatitude(),
+                point.getLongitude(), null);
+        final int gridZoom = getGridZoom(zoom);
+        final int tiles = 1 << gridZoom;
+        return new MapTile(getCacheKey(), gridZoom, toTile(world[0], tiles),
+                toTile(world[1], tiles));
+    }
+
+    /**
+     * The key of the feature under a point, at a zoom level of the map.
+     *
+     * @return the key, or null if there's no feature or the grid isn't loaded
+     */
+    public String getKey(final ILatLng point, final float zoom) {
+        final int[] index = new int[1];
+        final UTFGrid grid = findGrid(point, zoom, index);
+        return grid == null ? null : grid.getKey(index[0]);
+    }
+
+    /**
+     * The data of the feature under a point, at a zoom level of the map.
+     *
+     * @return the data, or null if there's no feature, it has no data or the grid isn't loaded
+     */
+    public JSONObject getData(final ILatLng point, final float zoom) {
+        final int[] index = new int[1];
+        final UTFGrid grid = findGrid(point, zoom, index);
+        return grid == null ? null : grid.getData(index[0]);
+    }
+
+    /**
+     * Find the grid under a point and the key index of the point in it.
+     *
+     * @param index receives the key index
+     */
+    private UTFGrid findGrid(final ILatLng point, final float zoom, final int[] index) {
+        final double[] world = Projection.latLongToWorldXY(point.getLatitude(),
+                point.getLongitude(), null);
+        final int gridZoom = getGridZoom(zoom);
+        final int tiles = 1 << gridZoom;
+        final int x = toTile(world[0], tiles);
+        final int y = toTile(world[1], tiles);
+        final UTFGrid grid = getGrid(new MapTile(getCacheKey(), gridZoom, x, y));
+        if (grid == null) {
+            return null;
+        }
+        index[0] = grid.getKeyIndex(world[0] * tiles - x, world[1] * tiles - y);
+        return grid;
+    }
+
+    private static int toTile(final double world, final int tiles) {
+        return Math.max(0, Math.min(tiles - 1, (int) Math.floor(world * tiles)));
+    }
+
+    /**
+     * Whether a grid couldn't be loaded, recently enough not to try again yet.
+     */
+    boolean hasFailed(final String key, final long now) {
+        synchronized (mFailed) {
+            final Long retryAt = mFailed.get(key);
+            if (retryAt == null) {
+                return false;
+            }
+            if (now < retryAt) {
+                return true;
+            }
+            mFailed.remove(key);
+            return false;
+        }
+    }
+
+    /**
+     * Remember that a grid couldn't be loaded, so it isn't asked for again for a while.
+     */
+    void addFailed(final String key, final long now) {
+        synchronized (mFailed) {
+            if (mFailed.size() >= MAX_FAILED_GRIDS) {
+                final Iterator<Long> retryAt = mFailed.values().iterator();
+                while (retryAt.hasNext()) {
+                    if (retryAt.next() <= now) {
+                        retryAt.remove();
+                    }
+                }
+                if (mFailed.size() >= MAX_FAILED_GRIDS) {
+                    mFailed.clear();
+                }
+            }
+            mFailed.put(key, now + FAILED_GRID_RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Forget the grids that couldn't be loaded, so they're tried again now.
+     */
+    public void retryFailed() {
+        synchronized (mFailed) {
+            mFailed.clear();
+        }
+    }
+
+    @Override
+    public void detach() {
+        super.detach();
+        mGrids.evictAll();
+    }
+
+    @Override
+    protected String getName() {
+        return "UTFGrid Provider";
+    }
+
+    @Override
+    protected String getThreadGroupName() {
+        return "utfgrid";
+    }
+
+    @Override
+    protected Runnable getTileLoader() {
+        return new TileLoader();
+    }
+
+    @Override
+    public boolean getUsesDataConnection() {
+        return true;
+    }
+
+    @Override
+    public float getMinimumZoomLevel() {
+        return mMinimumZoomLevel;
+    }
+
+    @Override
+    public float getMaximumZoomLevel() {
+        return mMaximumZoomLevel;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return WORLD_BOUNDING_BOX;
+    }
+
+    @Override
+    public LatLng getCenterCoordinate() {
+        return null;
+    }
+
+    @Override
+    public float getCenterZoom() {
+        return (mMinimumZoomLevel + mMaximumZoomLevel) / 2;
+    }
+
+    @Override
+    public int getTileSizePixels() {
+        return Projection.getTileSize();
+    }
+
+    @Override
+    public void setTileSource(final ITileLayer tileSource) {
+        // grids come from their own URL
+    }
+
+    @Override
+    public ITileLayer getTileSource() {
+        return null;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return mUrl;
+    }
+
+    protected String getGridUrl(final MapTile tile) {
+        return mUrl.replace("{z}", String.valueOf(tile.getZ()))
+                .replace("{x}", String.valueOf(tile.getX()))
+                .replace("{y}", String.valueOf(tile.getY()));
+    }
+
+    protected class TileLoader extends MapTileModuleLayerBase.TileLoader {
+
+        /**
+         * Decodes the grid into the cache, and returns null as grids aren't drawables.
+         */
+        @Override
+        protected Drawable loadTile(final MapTileRequestState aState) {
+            final MapTile tile = aState.getMapTile();
+            final String key = tile.getCacheKey();
+            if (mGrids.get(key) != null) {
+                return null;
+            }
+            boolean loaded = false;
+            try {
+                final Response response = NetworkUtils.getOkHttpClient()
+                        .newCall(NetworkUtils.getHttpRequest(getGridUrl(tile))).execute();
+                if (response.isSuccessful()) {
+                    mGrids.put(key, UTFGrid.parse(stripCallback(response.body().string())));
+                    loaded = true;
+                } else {
+                    response.body().close();
+                    Log.w(TAG, "No grid for " + tile + ": " + response.code());
+                }
+            } catch (final IOException e) {
+                Log.e(TAG, "Couldn't download the grid for " + tile, e);
+            } catch (final JSONException e) {
+                Log.e(TAG, "Couldn't decode the grid for " + tile, e);
+            }
+            if (!loaded) {
+                addFailed(key, SystemClock.elapsedRealtime());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Grids may be served as JSONP, as in grid({...});
+     */
+    static String stripCallback(final String json) {
+        final int start = json.indexOf('{');
+        final int end = json.lastIndexOf('}');
+        if (start <= 0 || end < start) {
+            return json;
+        }
+        return json.substring(start, end + 1);
+    }
+}
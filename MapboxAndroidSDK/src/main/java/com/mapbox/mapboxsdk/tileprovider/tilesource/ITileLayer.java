@@ -1,9 +1,11 @@
 package com.mapbox.mapboxsdk.tileprovider.tilesource;
 
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.TileCachePolicy;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
 
 public interface ITileLayer {
@@ -104,4 +106,26 @@ public interface ITileLayer {
      * @return the cache key
      */
     public String getCacheKey();
+
+    /**
+     * Whether the tiles of this layer are fully opaque, in which case they
+     * can be decoded without an alpha channel.
+     *
+     * @return true if the layer has no transparent pixels
+     */
+    public boolean isOpaque();
+
+    /**
+     * Get the preferred Bitmap.Config used to decode the tiles of this layer.
+     *
+     * @return the bitmap config
+     */
+    public Bitmap.Config getBitmapConfig();
+
+    /**
+     * Get the cache partition policy of this layer.
+     *
+     * @return the policy, or null if the layer uses the shared tile cache
+     */
+    public TileCachePolicy getCachePolicy();
 }
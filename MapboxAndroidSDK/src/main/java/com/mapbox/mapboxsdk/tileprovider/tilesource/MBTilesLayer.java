@@ -10,6 +10,7 @@ import com.mapbox.mapboxsdk.constants.MapboxConstants;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.tileprovider.modules.MBTilesFileArchive;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
 import com.mapbox.mapboxsdk.views.util.constants.MapViewConstants;
 
 import java.io.File;
@@ -124,6 +125,8 @@ public class MBTilesLayer extends TileLayer implements MapViewConstants, MapboxC
             mAttribution = mbTilesFileArchive.getAttribution();
             mBoundingBox = mbTilesFileArchive.getBounds();
             mCenter = mbTilesFileArchive.getCenter();
+            // jpeg tiles have no alpha channel, no need to waste memory on it
+            setOpaque(mbTilesFileArchive.isOpaqueFormat());
         }
     }
 
@@ -143,6 +146,8 @@ public class MBTilesLayer extends TileLayer implements MapViewConstants, MapboxC
             mAttribution = mbTilesFileArchive.getAttribution();
             mBoundingBox = mbTilesFileArchive.getBounds();
             mCenter = mbTilesFileArchive.getCenter();
+            // jpeg tiles have no alpha channel, no need to waste memory on it
+            setOpaque(mbTilesFileArchive.isOpaqueFormat());
         }
     }
 
@@ -196,7 +201,8 @@ public class MBTilesLayer extends TileLayer implements MapViewConstants, MapboxC
             InputStream stream = mbTilesFileArchive.getInputStream(this, aTile);
             if (stream != null) {
                 CacheableBitmapDrawable result =
-                        downloader.getCache().putTileStream(aTile, stream, null);
+                        downloader.getCache().putTileStream(aTile, stream,
+                                BitmapUtils.getBitmapOptions(getBitmapConfig()));
                 if (result == null) {
                     Log.d(TAG, "error reading stream from mbtiles");
                 }
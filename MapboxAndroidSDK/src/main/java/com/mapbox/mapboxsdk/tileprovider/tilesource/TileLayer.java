@@ -1,9 +1,11 @@
 package com.mapbox.mapboxsdk.tileprovider.tilesource;
 
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.tileprovider.TileCachePolicy;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
 import com.mapbox.mapboxsdk.views.util.constants.MapViewConstants;
@@ -22,6 +24,9 @@ public class TileLayer implements ITileLayer, TileLayerConstants, MapViewConstan
     protected BoundingBox mBoundingBox = TileLayerConstants.WORLD_BOUNDING_BOX;
     protected LatLng mCenter = new LatLng(0, 0);
     private final int mTileSizePixels = DEFAULT_TILE_SIZE;
+    protected boolean mOpaque = false;
+    protected Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
+    protected TileCachePolicy mCachePolicy = null;
 
     public TileLayer(final String pId, final String aUrl) {
         mUrl = aUrl;
@@ -76,6 +81,32 @@ public class TileLayer implements ITileLayer, TileLayerConstants, MapViewConstan
         return this;
     }
 
+    /**
+     * Sets whether the layer's tiles are fully opaque (satellite imagery, jpeg tiles...).
+     * Opaque layers are decoded as RGB_565, which halves their memory footprint.
+     */
+    public TileLayer setOpaque(final boolean aOpaque) {
+        this.mOpaque = aOpaque;
+        this.mBitmapConfig = aOpaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        return this;
+    }
+
+    /**
+     * Sets the layer's preferred Bitmap.Config, overriding the one chosen by {@link #setOpaque}.
+     */
+    public TileLayer setBitmapConfig(final Bitmap.Config aConfig) {
+        this.mBitmapConfig = aConfig;
+        return this;
+    }
+
+    /**
+     * Gives the layer its own cache partition. Set it before the layer is added to a map.
+     */
+    public TileLayer setCachePolicy(final TileCachePolicy aPolicy) {
+        this.mCachePolicy = aPolicy;
+        return this;
+    }
+
     public Drawable getDrawableFromTile(final MapTileDownloader downloader, final MapTile aTile,
             boolean hdpi) {
         return null;
@@ -143,4 +174,19 @@ public class TileLayer implements ITileLayer, TileLayerConstants, MapViewConstan
     public String getLegend() {
         return mLegend;
     }
+
+    @Override
+    public boolean isOpaque() {
+        return mOpaque;
+    }
+
+    @Override
+    public TileCachePolicy getCachePolicy() {
+        return mCachePolicy;
+    }
+
+    @Override
+    public Bitmap.Config getBitmapConfig() {
+        return mBitmapConfig;
+    }
 }
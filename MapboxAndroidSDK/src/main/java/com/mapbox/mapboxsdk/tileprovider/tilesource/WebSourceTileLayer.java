@@ -2,15 +2,16 @@ package com.mapbox.mapboxsdk.tileprovider.tilesource;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
 import com.mapbox.mapboxsdk.tileprovider.MapTile;
 import com.mapbox.mapboxsdk.tileprovider.MapTileCache;
+import com.mapbox.mapboxsdk.tileprovider.TileExpiration;
 import com.mapbox.mapboxsdk.tileprovider.modules.MapTileDownloader;
+import com.mapbox.mapboxsdk.util.BitmapUtils;
+import com.mapbox.mapboxsdk.util.MapMetrics;
 import com.mapbox.mapboxsdk.util.NetworkUtils;
 import com.mapbox.mapboxsdk.views.util.TileLoadedListener;
 import com.mapbox.mapboxsdk.views.util.TilesLoadedListener;
@@ -19,6 +20,9 @@ import com.squareup.okhttp.Request;
 import com.squareup.okhttp.Response;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
@@ -105,11 +109,32 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
                 .replace("{2x}", hdpi ? "@2x" : "");
     }
 
-    private static final Paint compositePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
-
-    private Bitmap compositeBitmaps(final Bitmap source, Bitmap dest) {
-        Canvas canvas = new Canvas(dest);
-        canvas.drawBitmap(source, 0, 0, compositePaint);
+    /**
+     * Draw the tiles of every URL over the first one, with one Canvas for all of them. Decoded
+     * tiles are immutable, so the first one is copied unless it is the only one, as RGB_565 if
+     * it is opaque.
+     */
+    private static Bitmap compositeBitmaps(final List<Bitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return null;
+        }
+        final Bitmap first = bitmaps.get(0);
+        if (bitmaps.size() == 1) {
+            return first;
+        }
+        Bitmap dest = first;
+        if (!first.isMutable()) {
+            dest = first.copy(BitmapUtils.getCompositeConfig(first), true);
+            if (dest == null) {
+                return first;
+            }
+            first.recycle();
+        }
+        final List<Bitmap> layers = bitmaps.subList(1, bitmaps.size());
+        BitmapUtils.compositeBitmaps(dest, layers);
+        for (final Bitmap layer : layers) {
+            layer.recycle();
+        }
         return dest;
     }
 
@@ -121,26 +146,44 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
 
             String[] urls = getTileURLs(aTile, hdpi);
             CacheableBitmapDrawable result = null;
-            Bitmap resultBitmap = null;
             if (urls != null) {
+                final List<Bitmap> bitmaps = new ArrayList<Bitmap>(urls.length);
                 MapTileCache cache = downloader.getCache();
                 if (listener != null) {
                     listener.onTilesLoadStarted();
                 }
+                // A single source tile that is already cached can be revalidated instead of
+                // downloaded again.
+                TileExpiration previous = (urls.length == 1) ? cache.getTileExpiration(aTile) : null;
+                TileExpiration expiration = null;
                 for (final String url : urls) {
-                    Bitmap bitmap = getBitmapFromURL(aTile, url, cache);
-                    if (bitmap == null) {
+                    Download download = download(url, previous);
+                    if (download == null) {
                         continue;
                     }
-                    if (resultBitmap == null) {
-                        resultBitmap = bitmap;
-                    } else {
-                        resultBitmap = compositeBitmaps(bitmap, resultBitmap);
+                    if (download.notModified) {
+                        result = cache.getMapTile(aTile);
+                        if (result != null) {
+                            cache.putTileExpiration(aTile, result,
+                                    previous.revalidated(download.expiration));
+                            break;
+                        }
+                        // The tile was evicted meanwhile, so fetch it in full.
+                        download = download(url, null);
+                        if (download == null) {
+                            continue;
+                        }
                     }
+                    expiration = earliest(expiration, download.expiration);
+                    bitmaps.add(download.bitmap);
                 }
+                final Bitmap resultBitmap = compositeBitmaps(bitmaps);
                 if (resultBitmap != null) {
                     //get drawable by putting it into cache (memory and disk)
                     result = cache.putTileBitmap(aTile, resultBitmap);
+                    if (expiration != null) {
+                        cache.putTileExpiration(aTile, result, expiration);
+                    }
                 }
                 if (checkThreadControl()) {
                     if (listener != null) {
@@ -159,6 +202,13 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
         return null;
     }
 
+    private static TileExpiration earliest(final TileExpiration a, final TileExpiration b) {
+        if (a == null || a.getExpiresAt() == 0) {
+            return b;
+        }
+        return (b.getExpiresAt() > 0 && b.getExpiresAt() < a.getExpiresAt()) ? b : a;
+    }
+
     /**
      * Requests and returns a bitmap object from a given URL, using aCache to decode it.
      *
@@ -169,6 +219,31 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
      * @return the tile if valid, otherwise null
      */
     public Bitmap getBitmapFromURL(MapTile mapTile, final String url, final MapTileCache aCache) {
+        final Download download = download(url, null);
+        if (download == null) {
+            return null;
+        }
+        aCache.putTileInMemoryCache(mapTile, download.bitmap);
+        return download.bitmap;
+    }
+
+    /**
+     * The outcome of a tile request: a bitmap, or a 304 Not Modified for a conditional request.
+     */
+    private static final class Download {
+        Bitmap bitmap;
+        boolean notModified;
+        TileExpiration expiration;
+    }
+
+    /**
+     * Downloads and decodes a tile, recording the freshness headers of the response.
+     *
+     * @param url the map tile url
+     * @param validators if not null, the request is made conditional on these validators
+     * @return the download, or null if it failed
+     */
+    private Download download(final String url, final TileExpiration validators) {
         // We track the active threads here, every exit point should decrement this value.
         activeThreads.incrementAndGet();
 
@@ -179,7 +254,6 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
 
         try {
             OkHttpClient httpClient = NetworkUtils.getOkHttpClient();
-            Request request = NetworkUtils.getHttpRequest(url);
             if (mUserAgent != null) {
                 httpClient = httpClient.clone();
                 httpClient.interceptors().add(new com.squareup.okhttp.Interceptor() {
@@ -190,14 +264,37 @@ public class WebSourceTileLayer extends TileLayer implements MapboxConstants {
                     }
                   });
             }
-            Response response = httpClient.newCall(NetworkUtils.getHttpRequest(url)).execute();
+            Request request = NetworkUtils.getHttpRequest(url);
+            if (validators != null && validators.hasValidators()) {
+                request = validators.addConditionalHeaders(request.newBuilder()).build();
+            }
+            final long requestStart = MapMetrics.start();
+            Response response = httpClient.newCall(request).execute();
+            MapMetrics.increment(MapMetrics.Counter.DOWNLOADS);
+            final Download download = new Download();
+            download.expiration = TileExpiration.fromResponse(response);
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED
+                    && validators != null && validators.hasValidators()) {
+                response.body().close();
+                MapMetrics.stop(MapMetrics.Measure.DOWNLOAD_LATENCY, requestStart);
+                download.notModified = true;
+                return download;
+            }
             if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
-            Bitmap bitmap = BitmapFactory.decodeStream(response.body().byteStream());
-            if (bitmap != null) {
-                aCache.putTileInMemoryCache(mapTile, bitmap);
+            // the body is read before decoding, so the network doesn't count as decode time
+            final byte[] data = response.body().bytes();
+            MapMetrics.stop(MapMetrics.Measure.DOWNLOAD_LATENCY, requestStart);
+            MapMetrics.add(MapMetrics.Counter.BYTES_FETCHED, data.length);
+            final long decodeStart = MapMetrics.start();
+            download.bitmap = BitmapFactory.decodeByteArray(data, 0, data.length,
+                    BitmapUtils.getBitmapOptions(getBitmapConfig()));
+            MapMetrics.stop(MapMetrics.Measure.DECODE_LATENCY, decodeStart);
+            if (download.bitmap != null) {
+                return download;
             }
-            return bitmap;
+            MapMetrics.increment(MapMetrics.Counter.DOWNLOAD_FAILURES);
         } catch (final Throwable e) {
+            MapMetrics.increment(MapMetrics.Counter.DOWNLOAD_FAILURES);
             Log.e(TAG, "Error downloading MapTile: " + url + ":" + e);
         } finally {
             activeThreads.decrementAndGet();
@@ -9,17 +9,26 @@ import android.annotation.TargetApi;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.StateSet;
+import java.util.List;
+
 import uk.co.senab.bitmapcache.CacheableBitmapDrawable;
 
 public class BitmapUtils {
     private static final String TAG = "BitmapUtils";
     public static final int[] EXPIRED = new int[] { -1 };
 
+    private static final Paint COMPOSITE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+
     public static BitmapFactory.Options getBitmapOptions(DisplayMetrics mDisplayMetrics) {
         final BitmapFactory.Options options = new BitmapFactory.Options();
         options.inDensity = DisplayMetrics.DENSITY_DEFAULT;
@@ -27,6 +36,49 @@ public class BitmapUtils {
         return options;
     }
 
+    /**
+     * Get decoding options for a tile that should be decoded with the given config.
+     * A new instance is returned on each call as decoding mutates the options.
+     *
+     * @param config the preferred config, ARGB_8888 if null
+     * @return the decoding options
+     */
+    public static BitmapFactory.Options getBitmapOptions(final Bitmap.Config config) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = (config != null) ? config : Bitmap.Config.ARGB_8888;
+        options.inDither = false;
+        return options;
+    }
+
+    /**
+     * The config to composite tile layers in: RGB_565 when the bottom layer has no alpha, as
+     * nothing drawn over it can make the result translucent, ARGB_8888 otherwise.
+     */
+    public static Bitmap.Config getCompositeConfig(final Bitmap bottom) {
+        return bottom.hasAlpha() ? Bitmap.Config.ARGB_8888 : Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * Draw tile layers over each other, in order, with a single Canvas. Layers of another size,
+     * such as retina tiles over regular ones, are scaled to the size of dest.
+     *
+     * @param dest a mutable bitmap, which may already hold the bottom layer
+     * @param layers the layers to draw over it
+     * @return dest
+     */
+    public static Bitmap compositeBitmaps(final Bitmap dest, final List<Bitmap> layers) {
+        final Canvas canvas = new Canvas(dest);
+        final Rect bounds = new Rect(0, 0, dest.getWidth(), dest.getHeight());
+        for (final Bitmap layer : layers) {
+            if (layer.getWidth() == bounds.width() && layer.getHeight() == bounds.height()) {
+                canvas.drawBitmap(layer, 0, 0, COMPOSITE_PAINT);
+            } else {
+                canvas.drawBitmap(layer, null, bounds, COMPOSITE_PAINT);
+            }
+        }
+        return dest;
+    }
+
     public static boolean isCacheDrawableExpired(Drawable drawable) {
         return (drawable != null && drawable.getState() == EXPIRED);
     }
@@ -37,6 +89,12 @@ public class BitmapUtils {
         }
     }
 
+    public static void clearCacheDrawableExpired(CacheableBitmapDrawable drawable) {
+        if (drawable != null && drawable.getState() == EXPIRED) {
+            drawable.setState(StateSet.WILD_CARD);
+        }
+    }
+
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
     private static class ActivityManagerHoneycomb {
         static int getLargeMemoryClass(ActivityManager activityManager) {
@@ -44,6 +102,10 @@ public class BitmapUtils {
         }
     }
 
+    /**
+     * Computes the memory cache size in bytes. As the cache is sized in bytes and not in tiles,
+     * layers decoded as RGB_565 fit roughly twice as many tiles in the same budget.
+     */
     public static int calculateMemoryCacheSize(Context context) {
         ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
         boolean largeHeap =
@@ -61,4 +123,20 @@ public class BitmapUtils {
         Log.d(TAG, "Available Memory = '" + memoryInfo.availMem + "'");
         return heapRes;
     }
+
+    /**
+     * Computes the upper bound in bytes the memory cache may grow to when the viewport
+     * needs more tiles than {@link #calculateMemoryCacheSize(Context)} holds.
+     */
+    public static int calculateMaximumMemoryCacheSize(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean largeHeap =
+                (context.getApplicationInfo().flags & ApplicationInfo.FLAG_LARGE_HEAP) != 0;
+        int memoryClass = am.getMemoryClass();
+        if (largeHeap && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            memoryClass = ActivityManagerHoneycomb.getLargeMemoryClass(am);
+        }
+        // Never let tiles take more than a quarter of the heap.
+        return 1024 * 1024 * memoryClass / 4;
+    }
 }
@@ -1,13 +1,15 @@
 package com.mapbox.mapboxsdk.util;
 
 import android.content.Context;
-import android.graphics.Paint;
+import android.graphics.Color;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.cocoahero.android.geojson.Feature;
 import com.cocoahero.android.geojson.FeatureCollection;
 import com.cocoahero.android.geojson.GeoJSON;
+import com.cocoahero.android.geojson.GeoJSONObject;
 import com.cocoahero.android.geojson.LineString;
 import com.cocoahero.android.geojson.MultiLineString;
 import com.cocoahero.android.geojson.MultiPoint;
@@ -18,11 +20,13 @@ import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.overlay.Icon;
 import com.mapbox.mapboxsdk.overlay.Marker;
 import com.mapbox.mapboxsdk.overlay.PathOverlay;
+import com.mapbox.mapboxsdk.overlay.PolygonOverlay;
 import com.mapbox.mapboxsdk.util.constants.UtilConstants;
 import com.squareup.okhttp.Response;
 
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -107,6 +111,8 @@ public class DataLoadingUtils {
      */
     public static ArrayList<Object> createUIObjectsFromGeoJSONObjects(final FeatureCollection featureCollection, final Icon markerIcon) throws JSONException {
         ArrayList<Object> uiObjects = new ArrayList<Object>();
+        // all polygons share one overlay, which draws them batched by color
+        PolygonOverlay polygons = null;
 
         for (Feature f : featureCollection.getFeatures()) {
             // Parse Into UI Objections
@@ -159,69 +165,20 @@ public class DataLoadingUtils {
                     uiObjects.add(path);
                 }
             } else if (f.getGeometry() instanceof Polygon) {
-                PathOverlay path = new PathOverlay();
-                path.getPaint().setStyle(Paint.Style.FILL);
-                JSONArray points = (JSONArray) f.getGeometry().toJSON().get("coordinates");
-
-                for (int r = 0; r < points.length(); r++) {
-                    JSONArray ring = (JSONArray) points.get(r);
-                    JSONArray coordinates;
-
-                    // we re-wind inner rings of GeoJSON polygons in order
-                    // to render them as transparent in the canvas layer.
-
-                    // first ring should have windingOrder = true,
-                    // all others should have winding order == false
-                    if ((r == 0 && !windingOrder(ring)) || (r != 0 && windingOrder(ring))) {
-                        for (j = 0; j < ring.length(); j++) {
-                            coordinates = (JSONArray) ring.get(j);
-                            double lon = (Double) coordinates.get(0);
-                            double lat = (Double) coordinates.get(1);
-                            path.addPoint(new LatLng(lat, lon));
-                        }
-                    } else {
-                        for (j = ring.length() - 1; j >= 0; j--) {
-                            coordinates = (JSONArray) ring.get(j);
-                            double lon = (Double) coordinates.get(0);
-                            double lat = (Double) coordinates.get(1);
-                            path.addPoint(new LatLng(lat, lon));
-                        }
-                    }
-                    uiObjects.add(path);
+                if (polygons == null) {
+                    polygons = new PolygonOverlay();
+                    uiObjects.add(polygons);
                 }
+                JSONArray rings = (JSONArray) f.getGeometry().toJSON().get("coordinates");
+                polygons.addPolygon(toRings(rings), getFillColor(f.getProperties(), polygons));
             } else if (f.getGeometry() instanceof MultiPolygon) {
-                PathOverlay path = new PathOverlay();
-                path.getPaint().setStyle(Paint.Style.FILL);
-                JSONArray polygons = (JSONArray) f.getGeometry().toJSON().get("coordinates");
-
-                for (int p = 0; p < polygons.length(); p++) {
-                    JSONArray points = (JSONArray) polygons.get(p);
-                    for (int r = 0; r < points.length(); r++) {
-                        JSONArray ring = (JSONArray) points.get(r);
-                        JSONArray coordinates;
-
-                        // we re-wind inner rings of GeoJSON polygons in order
-                        // to render them as transparent in the canvas layer.
-
-                        // first ring should have windingOrder = true,
-                        // all others should have winding order == false
-                        if ((r == 0 && !windingOrder(ring)) || (r != 0 && windingOrder(ring))) {
-                            for (j = 0; j < ring.length(); j++) {
-                                coordinates = (JSONArray) ring.get(j);
-                                double lon = (Double) coordinates.get(0);
-                                double lat = (Double) coordinates.get(1);
-                                path.addPoint(new LatLng(lat, lon));
-                            }
-                        } else {
-                            for (j = ring.length() - 1; j >= 0; j--) {
-                                coordinates = (JSONArray) ring.get(j);
-                                double lon = (Double) coordinates.get(0);
-                                double lat = (Double) coordinates.get(1);
-                                path.addPoint(new LatLng(lat, lon));
-                            }
-                        }
-                        uiObjects.add(path);
-                    }
+                if (polygons == null) {
+                    polygons = new PolygonOverlay();
+                    uiObjects.add(polygons);
+                }
+                JSONArray parts = (JSONArray) f.getGeometry().toJSON().get("coordinates");
+                for (int p = 0; p < parts.length(); p++) {
+                    polygons.addPolygon(toRings((JSONArray) parts.get(p)), getFillColor(f.getProperties(), polygons));
                 }
             }
         }
@@ -229,22 +186,152 @@ public class DataLoadingUtils {
         return uiObjects;
     }
 
-    private static boolean windingOrder(JSONArray ring) throws JSONException {
-        float area = 0;
+    /**
+     * Load GeoJSON from URL (in synchronous manner) straight into Mapbox SDK UI Objects, one
+     * feature at a time, without holding the whole document in memory
+     * @param url URL of GeoJSON data
+     * @param markerIcon Optional Icon to use for markers
+     * @return Collection of Mapbox SDK UI Objects
+     * @throws IOException
+     * @throws JSONException
+     */
+    public static ArrayList<Object> loadUIObjectsFromGeoJSONUrl(final String url, final Icon markerIcon) throws IOException, JSONException {
+        if (TextUtils.isEmpty(url)) {
+            throw new NullPointerException("No GeoJSON URL passed in.");
+        }
+
+        if (UtilConstants.DEBUGMODE) {
+            Log.d(DataLoadingUtils.class.getCanonicalName(), "Mapbox SDK streaming GeoJSON URL: " + url);
+        }
+        Response response = NetworkUtils.getOkHttpClient().newCall(NetworkUtils.getHttpRequest(url)).execute();
+        if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
+
+        InputStream is = response.body().byteStream();
+        try {
+            return createUIObjectsFromGeoJSONStream(is, markerIcon);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Converts a stream of GeoJSON into Mapbox SDK UI Objects, one feature at a time. Before
+     * Honeycomb, which has no streaming JSON reader, the GeoJSON is parsed whole.
+     * @param is GeoJSON in UTF-8, not closed
+     * @param markerIcon Optional Icon to use for markers
+     * @return Collection of Mapbox SDK UI Objects
+     * @throws IOException
+     * @throws JSONException
+     */
+    public static ArrayList<Object> createUIObjectsFromGeoJSONStream(final InputStream is, final Icon markerIcon) throws IOException, JSONException {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
+            GeoJSONObject parsed = GeoJSON.parse(readAll(rd));
+            if (!(parsed instanceof FeatureCollection)) {
+                throw new JSONException("Expected a FeatureCollection");
+            }
+            return createUIObjectsFromGeoJSONObjects((FeatureCollection) parsed, markerIcon);
+        }
+        UIObjectBuilder builder = new UIObjectBuilder(markerIcon);
+        new GeoJSONStreamReader().read(is, builder);
+        if (UtilConstants.DEBUGMODE) {
+            Log.d(DataLoadingUtils.class.getCanonicalName(), "Streamed GeoJSON with " + builder.featureCount + " features.");
+        }
+        return builder.uiObjects;
+    }
+
+    /**
+     * Builds UI Objects from streamed features, the way createUIObjectsFromGeoJSONObjects does
+     * from parsed ones.
+     */
+    private static class UIObjectBuilder implements GeoJSONStreamReader.FeatureListener {
+        final ArrayList<Object> uiObjects = new ArrayList<Object>();
+        final Icon markerIcon;
+        PolygonOverlay polygons = null;
+        int featureCount = 0;
+
+        UIObjectBuilder(final Icon markerIcon) {
+            this.markerIcon = markerIcon;
+        }
 
-        if (ring.length() > 2) {
-            for (int i = 0; i < ring.length() - 1; i++) {
-                JSONArray p1 = (JSONArray) ring.get(i);
-                JSONArray p2 = (JSONArray) ring.get(i + 1);
-                area += rad((Double) p2.get(0) - (Double) p1.get(0)) * (2 + Math.sin(
-                        rad((Double) p1.get(1))) + Math.sin(rad((Double) p2.get(1))));
+        @Override
+        public void onFeature(final GeoJSONStreamReader.StreamedFeature f) throws JSONException {
+            featureCount++;
+            String type = f.getGeometryType();
+            JSONObject properties = f.getProperties();
+            if ("Point".equals(type) || "MultiPoint".equals(type)) {
+                for (int i = 0; i < f.getCoordinateCount(); i++) {
+                    Marker marker = new Marker(properties.optString("title"), properties.optString("description"), new LatLng(f.getLatitude(i), f.getLongitude(i)));
+                    if (markerIcon != null) {
+                        marker.setIcon(markerIcon);
+                    }
+                    uiObjects.add(marker);
+                }
+            } else if ("LineString".equals(type) || "MultiLineString".equals(type)) {
+                int start = 0;
+                for (int l = 0; l < f.getLineCount(); l++) {
+                    PathOverlay path = new PathOverlay();
+                    for (int i = start; i < f.getLineEnd(l); i++) {
+                        path.addPoint(f.getLatitude(i), f.getLongitude(i));
+                    }
+                    start = f.getLineEnd(l);
+                    uiObjects.add(path);
+                }
+            } else if ("Polygon".equals(type) || "MultiPolygon".equals(type)) {
+                if (polygons == null) {
+                    polygons = new PolygonOverlay();
+                    uiObjects.add(polygons);
+                }
+                int color = getFillColor(properties, polygons);
+                int firstRing = 0;
+                for (int g = 0; g < f.getGroupCount(); g++) {
+                    if (f.getGroupEnd(g) > firstRing) {
+                        polygons.addPolygon(f.getCoordinates(), f.getLineEnds(), firstRing, f.getGroupEnd(g) - firstRing, color);
+                    }
+                    firstRing = f.getGroupEnd(g);
+                }
             }
         }
+    }
 
-        return area > 0;
+    private static ArrayList<ArrayList<LatLng>> toRings(final JSONArray rings) throws JSONException {
+        ArrayList<ArrayList<LatLng>> result = new ArrayList<ArrayList<LatLng>>(rings.length());
+        for (int r = 0; r < rings.length(); r++) {
+            JSONArray ring = (JSONArray) rings.get(r);
+            ArrayList<LatLng> points = new ArrayList<LatLng>(ring.length());
+            for (int j = 0; j < ring.length(); j++) {
+                JSONArray coordinates = (JSONArray) ring.get(j);
+                double lon = coordinates.getDouble(0);
+                double lat = coordinates.getDouble(1);
+                points.add(new LatLng(lat, lon));
+            }
+            result.add(points);
+        }
+        return result;
     }
 
-    private static double rad(double _) {
-        return _ * Math.PI / 180f;
+    /**
+     * The fill color of a feature from its simplestyle "fill" and "fill-opacity" properties, so
+     * styled polygons can be drawn as a choropleth.
+     */
+    private static int getFillColor(final JSONObject properties, final PolygonOverlay overlay) {
+        int color = overlay.getFillPaint().getColor();
+        if (properties == null) {
+            return color;
+        }
+        String fill = properties.optString("fill");
+        if (!TextUtils.isEmpty(fill)) {
+            try {
+                color = Color.parseColor(fill);
+            } catch (IllegalArgumentException e) {
+                Log.e(DataLoadingUtils.class.getCanonicalName(), "Invalid fill color: " + fill);
+            }
+        }
+        if (properties.has("fill-opacity")) {
+            double opacity = properties.optDouble("fill-opacity", 1);
+            color = Color.argb((int) Math.round(Math.max(0, Math.min(1, opacity)) * 255),
+                    Color.red(color), Color.green(color), Color.blue(color));
+        }
+        return color;
     }
 }
@@ -0,0 +1,314 @@
+package com.mapbox.mapboxsdk.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * Reads GeoJSON one feature at a time, straight from a stream, with the coordinates of each
+ * feature in primitive arrays. Memory stays bounded by the largest feature, however large the
+ * FeatureCollection.
+ * <p/>
+ * Accepts a FeatureCollection, a single Feature or a bare geometry. GeometryCollections are
+ * skipped.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class GeoJSONStreamReader {
+
+    private static final String TAG = "GeoJSONStreamReader";
+
+    /**
+     * Receives the features as they are read.
+     */
+    public interface FeatureListener {
+        /**
+         * @param feature the feature just read, reused for the next one
+         */
+        void onFeature(StreamedFeature feature) throws JSONException;
+    }
+
+    /**
+     * A feature as read from the stream. Coordinates are kept as interleaved longitude,
+     * latitude pairs, in GeoJSON order, and grouped by how they were nested:
+     * <ul>
+     * <li>lines are the innermost arrays of positions: the rings of polygons, the line
+     * strings, or all the points of a MultiPoint,</li>
+     * <li>groups are arrays of lines: a Polygon or a MultiLineString is one group, a
+     * MultiPolygon has a group per polygon.</li>
+     * </ul>
+     */
+    public static final class StreamedFeature {
+        private String mType;
+        private JSONObject mProperties;
+        private double[] mCoordinates = new double[64];
+        private int mCoordinateCount;
+        private int[] mLineEnds = new int[8];
+        private int mLineCount;
+        private int[] mGroupEnds = new int[4];
+        private int mGroupCount;
+
+        void reset() {
+            mType = null;
+            mProperties = null;
+            mCoordinateCount = 0;
+            mLineCount = 0;
+            mGroupCount = 0;
+        }
+
+        /**
+         * @return the geometry type, such as "Point" or "MultiPolygon", or null if the feature
+         * has no geometry
+         */
+        public String getGeometryType() {
+            return mType;
+        }
+
+        /**
+         * @return the properties, empty if there are none
+         */
+        public JSONObject getProperties() {
+            return mProperties;
+        }
+
+        public int getCoordinateCount() {
+            return mCoordinateCount;
+        }
+
+        public double getLongitude(final int index) {
+            return mCoordinates[index * 2];
+        }
+
+        public double getLatitude(final int index) {
+            return mCoordinates[index * 2 + 1];
+        }
+
+        /**
+         * The interleaved longitude, latitude pairs; only the first getCoordinateCount() * 2
+         * values are coordinates.
+         */
+        public double[] getCoordinates() {
+            return mCoordinates;
+        }
+
+        public int getLineCount() {
+            return mLineCount;
+        }
+
+        /**
+         * @return the index of the coordinate after the last one of a line
+         */
+        public int getLineEnd(final int line) {
+            return mLineEnds[line];
+        }
+
+        /**
+         * The ends of all lines; only the first getLineCount() values are lines.
+         */
+        public int[] getLineEnds() {
+            return mLineEnds;
+        }
+
+        public int getGroupCount() {
+            return mGroupCount;
+        }
+
+        /**
+         * @return the index of the line after the last one of a group
+         */
+        public int getGroupEnd(final int group) {
+            return mGroupEnds[group];
+        }
+
+        private void addCoordinate(final double longitude, final double latitude) {
+            if (mCoordinates.length == mCoordinateCount * 2) {
+                mCoordinates = Arrays.copyOf(mCoordinates, mCoordinates.length * 2);
+            }
+            mCoordinates[mCoordinateCount * 2] = longitude;
+            mCoordinates[mCoordinateCount * 2 + 1] = latitude;
+            mCoordinateCount++;
+        }
+
+        private void endLine() {
+            if (mLineEnds.length == mLineCount) {
+                mLineEnds = Arrays.copyOf(mLineEnds, mLineEnds.length * 2);
+            }
+            mLineEnds[mLineCount++] = mCoordinateCount;
+        }
+
+        private void endGroup() {
+            if (mGroupEnds.length == mGroupCount) {
+                mGroupEnds = Arrays.copyOf(mGroupEnds, mGroupEnds.length * 2);
+            }
+            mGroupEnds[mGroupCount++] = mLineCount;
+        }
+    }
+
+    private final StreamedFeature mFeature = new StreamedFeature();
+
+    /**
+     * Read GeoJSON from a stream, in UTF-8, handing each feature to a listener. The stream is
+     * not closed.
+     */
+    public void read(final InputStream in, final FeatureListener listener)
+            throws IOException, JSONException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        reader.setLenient(true);
+        readObject(reader, listener);
+    }
+
+    /**
+     * Read a FeatureCollection, Feature or geometry object. Keys may come in any order, so the
+     * object is handled once it ends.
+     */
+    private void readObject(final JsonReader reader, final FeatureListener listener)
+            throws IOException, JSONException {
+        mFeature.reset();
+        String type = null;
+        boolean hasGeometry = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("type".equals(name)) {
+                type = reader.nextString();
+            } else if ("features".equals(name)) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readObject(reader, listener);
+                }
+                reader.endArray();
+            } else if ("geometry".equals(name)) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else {
+                    readGeometry(reader);
+                    hasGeometry = true;
+                }
+            } else if ("properties".equals(name)) {
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else {
+                    // anything but an object counts as no properties
+                    final Object properties = readValue(reader);
+                    if (properties instanceof JSONObject) {
+                        mFeature.mProperties = (JSONObject) properties;
+                    }
+                }
+            } else if ("coordinates".equals(name)) {
+                // a bare geometry
+                readCoordinates(reader);
+                hasGeometry = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if ("Feature".equals(type) || (type != null && !"FeatureCollection".equals(type)
+                && hasGeometry)) {
+            if (!"Feature".equals(type)) {
+                mFeature.mType = type;
+            }
+            if (mFeature.mProperties == null) {
+                mFeature.mProperties = new JSONObject();
+            }
+            listener.onFeature(mFeature);
+        } else if ("GeometryCollection".equals(type)) {
+            Log.w(TAG, "Skipping a GeometryCollection");
+        }
+    }
+
+    private void readGeometry(final JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if ("type".equals(name)) {
+                mFeature.mType = reader.nextString();
+            } else if ("coordinates".equals(name)) {
+                readCoordinates(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read nested coordinate arrays of any depth.
+     *
+     * @return what the array held: 0 for a position, 1 for positions, 2 for lines and so on
+     */
+    private int readCoordinates(final JsonReader reader) throws IOException {
+        reader.beginArray();
+        if (reader.peek() == JsonToken.NUMBER) {
+            final double longitude = reader.nextDouble();
+            final double latitude = reader.nextDouble();
+            // altitude
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endArray();
+            mFeature.addCoordinate(longitude, latitude);
+            return 0;
+        }
+        int depth = 0;
+        while (reader.hasNext()) {
+            depth = readCoordinates(reader) + 1;
+        }
+        reader.endArray();
+        if (depth == 1) {
+            mFeature.endLine();
+        } else if (depth == 2) {
+            mFeature.endGroup();
+        }
+        return depth;
+    }
+
+    /**
+     * Read any value as org.json would hold it, for the small parts kept as they are.
+     */
+    private static Object readValue(final JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                final JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                final JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case NUMBER:
+                final String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                return reader.nextString();
+        }
+    }
+}
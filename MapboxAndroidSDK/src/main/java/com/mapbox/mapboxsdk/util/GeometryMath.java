@@ -106,6 +106,70 @@ public class GeometryMath {
         return out;
     }
 
+    /**
+     * Clip a line segment to a rectangle (Liang-Barsky).
+     *
+     * @param out receives the clipped segment as x0, y0, x1, y1
+     * @return false if no part of the segment is inside the rectangle
+     */
+    public static boolean clipSegment(final float x0, final float y0, final float x1,
+            final float y1, final RectF rect, final float[] out) {
+        final float dx = x1 - x0;
+        final float dy = y1 - y0;
+        float t0 = 0;
+        float t1 = 1;
+        // each edge as p * t <= q
+        for (int edge = 0; edge < 4; edge++) {
+            final float p;
+            final float q;
+            switch (edge) {
+                case 0:
+                    p = -dx;
+                    q = x0 - rect.left;
+                    break;
+                case 1:
+                    p = dx;
+                    q = rect.right - x0;
+                    break;
+                case 2:
+                    p = -dy;
+                    q = y0 - rect.top;
+                    break;
+                default:
+                    p = dy;
+                    q = rect.bottom - y0;
+                    break;
+            }
+            if (p == 0) {
+                if (q < 0) {
+                    return false;
+                }
+            } else {
+                final float t = q / p;
+                if (p < 0) {
+                    if (t > t1) {
+                        return false;
+                    }
+                    if (t > t0) {
+                        t0 = t;
+                    }
+                } else {
+                    if (t < t0) {
+                        return false;
+                    }
+                    if (t < t1) {
+                        t1 = t;
+                    }
+                }
+            }
+        }
+        out[0] = t0 > 0 ? x0 + t0 * dx : x0;
+        out[1] = t0 > 0 ? y0 + t0 * dy : y0;
+        out[2] = t1 < 1 ? x0 + t1 * dx : x1;
+        out[3] = t1 < 1 ? y0 + t1 * dy : y1;
+        return true;
+    }
+
     /**
      * fast minimum of four numbers
      * @param a
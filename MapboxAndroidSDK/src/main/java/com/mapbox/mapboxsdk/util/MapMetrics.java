@@ -0,0 +1,476 @@
+package com.mapbox.mapboxsdk.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and histograms for frame drawing, the tile pipeline and camera events, shared by all
+ * map views.
+ * <p/>
+ * Everything is off by default; while disabled, every recording call returns after reading
+ * a single flag. The numbers can be pulled with {@link #getSnapshot()}, or pushed to a
+ * {@link MetricsListener} after a frame, at most once per reporting interval.
+ */
+public final class MapMetrics {
+
+    private MapMetrics() {
+    }
+
+    /**
+     * Events that are counted.
+     */
+    public enum Counter {
+        /** A tile was drawn from the memory cache. */
+        MEMORY_HIT,
+        /** A tile to draw was not in the memory cache, or was expired there. */
+        MEMORY_MISS,
+        /** A tile was read from the disk cache. */
+        DISK_HIT,
+        /** A tile was not in the disk cache, or could not be read from it. */
+        DISK_MISS,
+        /** Tile responses received. */
+        DOWNLOADS,
+        /** Tile requests that failed or could not be decoded. */
+        DOWNLOAD_FAILURES,
+        /** Bytes of tile responses read from the network. */
+        BYTES_FETCHED,
+        /** Camera events sent to listeners. */
+        CAMERA_EVENTS,
+        /** Camera changes folded into the event of a later change in the same frame. */
+        CAMERA_CHANGES_COALESCED
+    }
+
+    /**
+     * Measured values. Durations are in microseconds.
+     */
+    public enum Measure {
+        /** Time to draw all the overlays of a frame. */
+        FRAME_TIME,
+        /** Time from sending a tile request to receiving its whole response. */
+        DOWNLOAD_LATENCY,
+        /** Time to decode a downloaded tile. */
+        DECODE_LATENCY,
+        /** Tiles waiting in a provider's queue, each time one is queued. */
+        PENDING_QUEUE_DEPTH,
+        /** Tiles being loaded by a provider, each time one is started. */
+        WORKING_QUEUE_DEPTH,
+        /** Time all the listeners on the UI thread took for one camera event. */
+        CAMERA_DISPATCH_TIME
+    }
+
+    /**
+     * Receives the metrics while they are enabled.
+     */
+    public interface MetricsListener {
+        /**
+         * Called on the drawing thread, after a frame.
+         *
+         * @param snapshot the totals since the metrics were enabled or reset
+         */
+        void onMetrics(Snapshot snapshot);
+    }
+
+    public static final long DEFAULT_REPORTING_INTERVAL = 1000;
+
+    private static volatile boolean sEnabled = false;
+    private static volatile MetricsListener sListener;
+    private static volatile long sReportingIntervalNanos = DEFAULT_REPORTING_INTERVAL * 1000000L;
+    private static volatile long sLastReportNanos;
+
+    private static final AtomicLong[] sCounters = new AtomicLong[Counter.values().length];
+    private static final Histogram[] sMeasures = new Histogram[Measure.values().length];
+    private static final ConcurrentHashMap<Class<?>, Histogram> sOverlayTimes =
+            new ConcurrentHashMap<Class<?>, Histogram>();
+    private static final ConcurrentHashMap<Class<?>, Histogram> sListenerTimes =
+            new ConcurrentHashMap<Class<?>, Histogram>();
+
+    static {
+        for (int i = 0; i < sCounters.length; i++) {
+            sCounters[i] = new AtomicLong();
+        }
+        for (int i = 0; i < sMeasures.length; i++) {
+            sMeasures[i] = new Histogram();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Start or stop recording. What was recorded is kept until {@link #reset()}.
+     */
+    public static void setEnabled(final boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Set a listener to be given a snapshot after a frame, every reporting interval.
+     *
+     * @param listener the listener, or null to stop reporting
+     * @param intervalMs the least time between two reports, in milliseconds
+     */
+    public static void setListener(final MetricsListener listener, final long intervalMs) {
+        if (intervalMs < 0) {
+            throw new IllegalArgumentException("The reporting interval can't be negative");
+        }
+        sReportingIntervalNanos = intervalMs * 1000000L;
+        sLastReportNanos = 0;
+        sListener = listener;
+    }
+
+    public static void setListener(final MetricsListener listener) {
+        setListener(listener, DEFAULT_REPORTING_INTERVAL);
+    }
+
+    /**
+     * Clear all counters and histograms.
+     */
+    public static void reset() {
+        for (AtomicLong counter : sCounters) {
+            counter.set(0);
+        }
+        for (Histogram histogram : sMeasures) {
+            histogram.clear();
+        }
+        sOverlayTimes.clear();
+        sListenerTimes.clear();
+    }
+
+    /**
+     * @return a time to measure from, or 0 when disabled
+     */
+    public static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time since {@link #start()}.
+     *
+     * @param startNanos what start() returned; nothing is recorded if it was 0
+     */
+    public static void stop(final Measure measure, final long startNanos) {
+        if (startNanos != 0) {
+            sMeasures[measure.ordinal()].add((System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    public static void record(final Measure measure, final long value) {
+        if (sEnabled) {
+            sMeasures[measure.ordinal()].add(value);
+        }
+    }
+
+    public static void increment(final Counter counter) {
+        if (sEnabled) {
+            sCounters[counter.ordinal()].incrementAndGet();
+        }
+    }
+
+    public static void add(final Counter counter, final long delta) {
+        if (sEnabled) {
+            sCounters[counter.ordinal()].addAndGet(delta);
+        }
+    }
+
+    /**
+     * Record the time an overlay took to draw, since {@link #start()}.
+     */
+    public static void stopOverlay(final Object overlay, final long startNanos) {
+        stop(sOverlayTimes, overlay, startNanos);
+    }
+
+    /**
+     * Record the time a listener took for an event, since {@link #start()}, on whichever thread
+     * it ran.
+     */
+    public static void stopListener(final Object listener, final long startNanos) {
+        stop(sListenerTimes, listener, startNanos);
+    }
+
+    private static void stop(final ConcurrentHashMap<Class<?>, Histogram> times,
+            final Object source, final long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        final long micros = (System.nanoTime() - startNanos) / 1000;
+        Histogram histogram = times.get(source.getClass());
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = times.putIfAbsent(source.getClass(), created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.add(micros);
+    }
+
+    /**
+     * Record a frame drawn since {@link #start()}, and report to the listener if it is time.
+     */
+    public static void frameDrawn(final long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        final long now = System.nanoTime();
+        sMeasures[Measure.FRAME_TIME.ordinal()].add((now - startNanos) / 1000);
+        final MetricsListener listener = sListener;
+        if (listener != null && now - sLastReportNanos >= sReportingIntervalNanos) {
+            sLastReportNanos = now;
+            listener.onMetrics(getSnapshot());
+        }
+    }
+
+    /**
+     * Wrap a stream so the bytes read from it are counted as {@link Counter#BYTES_FETCHED}.
+     *
+     * @return the stream itself when disabled
+     */
+    public static InputStream countBytes(final InputStream in) {
+        if (!sEnabled) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    add(Counter.BYTES_FETCHED, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int count)
+                    throws IOException {
+                final int read = super.read(buffer, offset, count);
+                if (read > 0) {
+                    add(Counter.BYTES_FETCHED, read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of everything recorded so far
+     */
+    public static Snapshot getSnapshot() {
+        final long[] counters = new long[sCounters.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = sCounters[i].get();
+        }
+        final HistogramSnapshot[] measures = new HistogramSnapshot[sMeasures.length];
+        for (int i = 0; i < measures.length; i++) {
+            measures[i] = sMeasures[i].snapshot();
+        }
+        return new Snapshot(counters, measures, snapshot(sOverlayTimes),
+                snapshot(sListenerTimes));
+    }
+
+    private static Map<String, HistogramSnapshot> snapshot(
+            final ConcurrentHashMap<Class<?>, Histogram> times) {
+        final HashMap<String, HistogramSnapshot> snapshots =
+                new HashMap<String, HistogramSnapshot>();
+        for (Map.Entry<Class<?>, Histogram> entry : times.entrySet()) {
+            snapshots.put(entry.getKey().getName(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Counts of values in buckets of powers of two: bucket 0 holds 0, bucket n holds the
+     * values from 2^(n-1) to 2^n - 1.
+     */
+    static final class Histogram {
+        static final int BUCKETS = 64;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void add(final long value) {
+            final long v = Math.max(value, 0);
+            mBuckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+            mCount.incrementAndGet();
+            mSum.addAndGet(v);
+            long max = mMax.get();
+            while (v > max && !mMax.compareAndSet(max, v)) {
+                max = mMax.get();
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        HistogramSnapshot snapshot() {
+            final long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = mBuckets.get(i);
+            }
+            return new HistogramSnapshot(buckets, mCount.get(), mSum.get(), mMax.get());
+        }
+    }
+
+    /**
+     * The values of a histogram at one time.
+     */
+    public static final class HistogramSnapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        HistogramSnapshot(final long[] buckets, final long count, final long sum,
+                final long max) {
+            mBuckets = buckets;
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * @param bucket from 0 to 63
+         * @return how many values were from 2^(bucket-1) to 2^bucket - 1, or 0 for bucket 0
+         */
+        public long getBucketCount(final int bucket) {
+            return mBuckets[bucket];
+        }
+
+        /**
+         * Estimate a percentile, as the upper bound of the bucket it falls in, so within a
+         * factor of two.
+         *
+         * @param percentile from 0 to 100
+         */
+        public long getPercentile(final double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            final long rank = Math.max((long) Math.ceil(
+                    mCount * Math.min(Math.max(percentile, 0), 100) / 100), 1);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, mMax);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount + " mean=" + (long) getMean() + " p50=" + getPercentile(50)
+                    + " p95=" + getPercentile(95) + " max=" + mMax;
+        }
+    }
+
+    /**
+     * All the metrics at one time.
+     */
+    public static final class Snapshot {
+        private final long[] mCounters;
+        private final HistogramSnapshot[] mMeasures;
+        private final Map<String, HistogramSnapshot> mOverlayTimes;
+        private final Map<String, HistogramSnapshot> mListenerTimes;
+
+        Snapshot(final long[] counters, final HistogramSnapshot[] measures,
+                final Map<String, HistogramSnapshot> overlayTimes,
+                final Map<String, HistogramSnapshot> listenerTimes) {
+            mCounters = counters;
+            mMeasures = measures;
+            mOverlayTimes = Collections.unmodifiableMap(overlayTimes);
+            mListenerTimes = Collections.unmodifiableMap(listenerTimes);
+        }
+
+        public long getCount(final Counter counter) {
+            return mCounters[counter.ordinal()];
+        }
+
+        public HistogramSnapshot getMeasure(final Measure measure) {
+            return mMeasures[measure.ordinal()];
+        }
+
+        /**
+         * @return the draw times in microseconds, by overlay class name
+         */
+        public Map<String, HistogramSnapshot> getOverlayDrawTimes() {
+            return mOverlayTimes;
+        }
+
+        /**
+         * @return the times camera listeners took for an event in microseconds, by listener
+         * class name
+         */
+        public Map<String, HistogramSnapshot> getListenerTimes() {
+            return mListenerTimes;
+        }
+
+        /**
+         * @return the share of tiles drawn from memory, from 0 to 1
+         */
+        public double getMemoryHitRate() {
+            return rate(getCount(Counter.MEMORY_HIT), getCount(Counter.MEMORY_MISS));
+        }
+
+        /**
+         * @return the share of tiles loaded from disk rather than downloaded, from 0 to 1
+         */
+        public double getDiskHitRate() {
+            return rate(getCount(Counter.DISK_HIT), getCount(Counter.DISK_MISS));
+        }
+
+        private static double rate(final long hits, final long misses) {
+            return (hits + misses) == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder();
+            for (Counter counter : Counter.values()) {
+                builder.append(counter).append('=').append(getCount(counter)).append('\n');
+            }
+            for (Measure measure : Measure.values()) {
+                builder.append(measure).append(": ").append(getMeasure(measure)).append('\n');
+            }
+            for (Map.Entry<String, HistogramSnapshot> entry : mOverlayTimes.entrySet()) {
+                builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+            for (Map.Entry<String, HistogramSnapshot> entry : mListenerTimes.entrySet()) {
+                builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -21,6 +21,7 @@ public class NetworkUtils {
     static final String TAG = "MapTileCache";
     public static final String DISK_TILES_CACHE_SUBDIR = "mapbox_tiles_cache";
     public static final String DISK_HTTP_CACHE_SUBDIR = "mapbox_http_cache";
+    public static final String DISK_TILES_EXPIRATION_SUBDIR = "mapbox_tiles_expiration";
     /**
      * Creates a unique subdirectory of the designated app cache directory. Tries to use external
      * but if not mounted, falls back on internal storage.
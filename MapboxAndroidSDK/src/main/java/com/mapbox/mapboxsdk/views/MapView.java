@@ -27,9 +27,10 @@ import com.cocoahero.android.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.R;
 import com.mapbox.mapboxsdk.api.ILatLng;
 import com.mapbox.mapboxsdk.constants.MapboxConstants;
+import com.mapbox.mapboxsdk.events.CameraEvent;
+import com.mapbox.mapboxsdk.events.CameraEventDispatcher;
+import com.mapbox.mapboxsdk.events.CameraListener;
 import com.mapbox.mapboxsdk.events.MapListener;
-import com.mapbox.mapboxsdk.events.ScrollEvent;
-import com.mapbox.mapboxsdk.events.ZoomEvent;
 import com.mapbox.mapboxsdk.geometry.BoundingBox;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.overlay.GeoJSONPainter;
@@ -43,6 +44,8 @@ import com.mapbox.mapboxsdk.overlay.Overlay;
 import com.mapbox.mapboxsdk.overlay.OverlayManager;
 import com.mapbox.mapboxsdk.overlay.TilesOverlay;
 import com.mapbox.mapboxsdk.overlay.UserLocationOverlay;
+import com.mapbox.mapboxsdk.overlay.ViewportDataLoader;
+import com.mapbox.mapboxsdk.overlay.ViewportDataSource;
 import com.mapbox.mapboxsdk.tileprovider.MapTileLayerBase;
 import com.mapbox.mapboxsdk.tileprovider.MapTileLayerBasic;
 import com.mapbox.mapboxsdk.tileprovider.constants.TileLayerConstants;
@@ -68,6 +71,7 @@ import org.json.JSONException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -78,10 +82,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class MapView extends FrameLayout implements MapViewConstants,
         MapEventsReceiver, MapboxConstants {
 
-    private OnCameraChangeListener mOnCameraChangeListener;
-
+    /**
+     * Set a listener called on the UI thread when the map was zoomed, or came to rest after
+     * being moved.
+     */
     public void setOnCameraChangeListener(OnCameraChangeListener listener) {
-        mOnCameraChangeListener = listener;
+        mCameraEvents.setOnCameraChangeListener(listener);
     }
 
     public static interface OnCameraChangeListener {
@@ -254,6 +260,7 @@ public class MapView extends FrameLayout implements MapViewConstants,
 
 
     protected List<MapListener> mListeners = new ArrayList<MapListener>();
+    private final CameraEventDispatcher mCameraEvents = new CameraEventDispatcher(this, mListeners);
 
     private final Rect mInvalidateRect = new Rect();
 
@@ -396,6 +403,27 @@ public class MapView extends FrameLayout implements MapViewConstants,
         }
     }
 
+    /**
+     * Add a listener given a {@link CameraEvent} on the UI thread, at most once a frame.
+     */
+    public void addCameraListener(final CameraListener listener) {
+        mCameraEvents.addCameraListener(listener, null);
+    }
+
+    /**
+     * Add a listener given a {@link CameraEvent} on an executor, at most once a frame. A listener
+     * that falls behind is given the latest event only.
+     *
+     * @param executor where the listener is called, or null for the UI thread
+     */
+    public void addCameraListener(final CameraListener listener, final Executor executor) {
+        mCameraEvents.addCameraListener(listener, executor);
+    }
+
+    public void removeCameraListener(final CameraListener listener) {
+        mCameraEvents.removeCameraListener(listener);
+    }
+
     /**
      * Add an overlay to this map. If the overlay is already included, does
      * nothing. After adding the overlay, invalidates the map to redraw it.
@@ -515,6 +543,17 @@ public class MapView extends FrameLayout implements MapViewConstants,
         }
     }
 
+    /**
+     * Draw the tile sources over each other into one tile per position, instead of showing the
+     * first one that has a tile. See {@link MapTileLayerBasic#setCompositeTileSources(boolean)}.
+     */
+    public void setCompositeTileSources(final boolean composite) {
+        if (mTileProvider instanceof MapTileLayerBasic) {
+            ((MapTileLayerBasic) mTileProvider).setCompositeTileSources(composite);
+            invalidate();
+        }
+    }
+
     @Override
     protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
         boolean result;
@@ -775,6 +814,16 @@ public class MapView extends FrameLayout implements MapViewConstants,
         }
     }
 
+    /**
+     * Show the markers of a data source for the part of the map in view, loaded a region at a
+     * time as the map moves, rather than all of them up front.
+     *
+     * @return the started loader, to stop or configure
+     */
+    public ViewportDataLoader loadFromViewportDataSource(final ViewportDataSource source) {
+        return new ViewportDataLoader(this, source).start();
+    }
+
     /**
      * Parse a GeoJSON file at a given URL
      * 
@@ -1146,17 +1195,7 @@ public class MapView extends FrameLayout implements MapViewConstants,
         // do callback on listener
 
         if (newZoomLevel != curZoomLevel) {
-            if (mOnCameraChangeListener != null) {
-                mOnCameraChangeListener.onCameraChange(getBoundingBox(),
-                        mZoomLevel);
-            }
-            if (mListeners.size() > 0) {
-                final ZoomEvent event = new ZoomEvent(this, newZoomLevel,
-                        mController.currentlyInUserAction());
-                for (MapListener listener : mListeners) {
-                    listener.onZoom(event);
-                }
-            }
+            mCameraEvents.onCameraChange(CameraEvent.ZOOM, mController.currentlyInUserAction());
         }
 
         // Allows any views fixed to a Location in the MapView to adjust
@@ -1487,6 +1526,7 @@ public class MapView extends FrameLayout implements MapViewConstants,
         if (mOnMapOrientationChangeListener != null) {
             mOnMapOrientationChangeListener.onMapOrientationChange(mProjection.getMapOrientation());
         }
+        mCameraEvents.onCameraChange(CameraEvent.ROTATE, mController.currentlyInUserAction());
         this.invalidate();
     }
 
@@ -1743,6 +1783,17 @@ public class MapView extends FrameLayout implements MapViewConstants,
         return mLayedOut;
     }
 
+    /**
+     * Redraw the whole map, including the overlays kept in the cached map layer.
+     */
+    @Override
+    public void invalidate() {
+        if (mOverlayManager != null) {
+            mOverlayManager.invalidateLayer();
+        }
+        super.invalidate();
+    }
+
     public void invalidateMapCoordinates(final Rect dirty) {
         synchronized (mInvalidateRect) {
             mInvalidateRect.set(dirty);
@@ -1762,7 +1813,6 @@ public class MapView extends FrameLayout implements MapViewConstants,
 //            }
             mInvalidateRect.offset(-width_2, -height_2);
 
-            Log.d("DEBUG", "invalidating:" + dirty);
             super.invalidate(mInvalidateRect);
         }
     }
@@ -1919,10 +1969,7 @@ public class MapView extends FrameLayout implements MapViewConstants,
 
             int newPosition = getScrollY();
             if (mScrollTaskInitialPosition - newPosition == 0) {// has stopped
-                if (mOnCameraChangeListener != null) {
-                    mOnCameraChangeListener.onCameraChange(getBoundingBox(),
-                            mZoomLevel);
-                }
+                mCameraEvents.onCameraChange(CameraEvent.IDLE, false);
             } else {
                 mScrollTaskInitialPosition = getScrollY();
                 MapView.this.postDelayed(mScrollerTask, SCROLL_TASK_INTERVAL);
@@ -2047,16 +2094,8 @@ public class MapView extends FrameLayout implements MapViewConstants,
 
         super.scrollTo(intX, intY);
 
-        // do callback on listener
-//        if (mOnCameraChangeListener != null) {
-//            mOnCameraChangeListener.onCameraChange(getBoundingBox(), mZoomLevel);
-//        }
-        if (mListeners.size() > 0) {
-            final ScrollEvent event = new ScrollEvent(this, intX, intY, mController.currentlyInUserAction());
-            for (MapListener listener : mListeners) {
-                listener.onScroll(event);
-            }
-        }
+        // do callback on listener, once this frame's changes are all in
+        mCameraEvents.onCameraChange(CameraEvent.SCROLL, mController.currentlyInUserAction());
     }
 
     @Override
@@ -0,0 +1,87 @@
+package com.mapbox.mapboxsdk.views.util;
+
+import com.mapbox.mapboxsdk.api.ILatLng;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of points in world coordinates (see {@link Projection#latLongToWorldXY}),
+ * projected once when added and kept as interleaved x, y doubles. Doubles keep sub-pixel
+ * precision at every zoom level, and a whole list is brought to the screen with one
+ * {@link Projection#worldToMapPixels} call.
+ */
+public class ProjectedPoints {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] mCoords;
+    private int mSize = 0;
+    private final double[] mTemp = new double[2];
+
+    public ProjectedPoints() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ProjectedPoints(final int capacity) {
+        mCoords = new double[Math.max(capacity, 1) * 2];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    public double getX(final int index) {
+        return mCoords[index * 2];
+    }
+
+    public double getY(final int index) {
+        return mCoords[index * 2 + 1];
+    }
+
+    /**
+     * The interleaved coordinates; only the first {@link #size()} * 2 values are points.
+     */
+    public double[] getCoordinates() {
+        return mCoords;
+    }
+
+    /**
+     * Project and append a point, unless it is the same as the last one.
+     *
+     * @return true if the point was added
+     */
+    public boolean add(final double latitude, final double longitude) {
+        Projection.latLongToWorldXY(latitude, longitude, mTemp);
+        return addWorld(mTemp[0], mTemp[1]);
+    }
+
+    public boolean add(final ILatLng point) {
+        return add(point.getLatitude(), point.getLongitude());
+    }
+
+    /**
+     * Append a point already in world coordinates, unless it is the same as the last one.
+     *
+     * @return true if the point was added
+     */
+    public boolean addWorld(final double x, final double y) {
+        if (mSize > 0 && mCoords[mSize * 2 - 2] == x && mCoords[mSize * 2 - 1] == y) {
+            return false;
+        }
+        if (mSize * 2 == mCoords.length) {
+            mCoords = Arrays.copyOf(mCoords, mCoords.length * 2);
+        }
+        mCoords[mSize * 2] = x;
+        mCoords[mSize * 2 + 1] = y;
+        mSize++;
+        return true;
+    }
+}
@@ -51,6 +51,11 @@ public class Projection implements GeoConstants {
     private int offsetY;
     private int centerX;
     private int centerY;
+    /**
+     * World coordinates to map pixels: x * mWorldScale + mWorldOffset, the same for y.
+     */
+    private double mWorldScale;
+    private double mWorldOffset;
     private BoundingBox mBoundingBoxProjection;
     private float mZoomLevelProjection;
     private RectF mScreenRectProjection = new RectF();
@@ -117,6 +122,8 @@ public class Projection implements GeoConstants {
 
         offsetX = -worldSize2;
         offsetY = -worldSize2;
+        mWorldScale = worldSize2 * 2.0;
+        mWorldOffset = -worldSize2;
 
         centerX = mapView.getScrollX();
         centerY = mapView.getScrollY();
@@ -321,6 +328,15 @@ public class Projection implements GeoConstants {
      * to the toMapPixelsProjected.
      */
     public PointF toMapPixelsTranslated(final PointF in, final PointF reuse) {
+        return toMapPixelsTranslated(in, getZoomLevel(), offsetX, offsetY, reuse);
+    }
+
+    /**
+     * The second part of the projection for a given zoom level and offset, as
+     * {@link #toMapPixelsTranslated(PointF, PointF)} does for the current ones.
+     */
+    public static PointF toMapPixelsTranslated(final PointF in, final float zoomLevel,
+            final int offsetX, final int offsetY, final PointF reuse) {
         final PointF out;
         if (reuse != null) {
             out = reuse;
@@ -328,12 +344,74 @@ public class Projection implements GeoConstants {
             out = new PointF();
         }
 
-        final float zoomDifference = TileLayerConstants.MAXIMUM_ZOOMLEVEL - getZoomLevel();
+        final float zoomDifference = TileLayerConstants.MAXIMUM_ZOOMLEVEL - zoomLevel;
         out.set((int) (GeometryMath.rightShift(in.x, zoomDifference) + offsetX),
                 (int) (GeometryMath.rightShift(in.y, zoomDifference) + offsetY));
         return out;
     }
 
+    /**
+     * Converts a point in world coordinates, see {@link #latLongToWorldXY}, to <I>map
+     * coordinates</I> for the current zoom.
+     */
+    public PointF worldToMapPixels(final double x, final double y, final PointF reuse) {
+        final PointF out = GeometryMath.reusable(reuse);
+        out.set((float) (x * mWorldScale + mWorldOffset), (float) (y * mWorldScale + mWorldOffset));
+        return out;
+    }
+
+    /**
+     * Converts points in world coordinates to <I>map coordinates</I> for the current zoom, minus
+     * an origin. The transform is worked out once per projection update, and the subtraction
+     * happens in double precision, so points near the origin keep sub-pixel precision at any
+     * zoom level. Draw them with the canvas translated to the origin.
+     *
+     * @param in interleaved x, y world coordinates
+     * @param out receives interleaved x, y map pixels relative to the origin
+     * @param count the number of points
+     */
+    public void worldToMapPixels(final double[] in, final int inOffset, final float[] out,
+            final int outOffset, final int count, final double originX, final double originY) {
+        worldToPixels(in, inOffset, out, outOffset, count, mWorldScale, mWorldOffset - originX,
+                mWorldOffset - originY);
+    }
+
+    /**
+     * Converts points in world coordinates to pixels of any scale, as x * scale + offsetX and
+     * y * scale + offsetY. Unlike the projection itself, this is safe off the main thread.
+     */
+    public static void worldToPixels(final double[] in, final int inOffset, final float[] out,
+            final int outOffset, final int count, final double scale, final double offsetX,
+            final double offsetY) {
+        final int end = inOffset + count * 2;
+        for (int i = inOffset, j = outOffset; i < end; i += 2, j += 2) {
+            out[j] = (float) (in[i] * scale + offsetX);
+            out[j + 1] = (float) (in[i + 1] * scale + offsetY);
+        }
+    }
+
+    /**
+     * The size of the world in map pixels at the current zoom, which is what world coordinates
+     * are multiplied by to get map pixels.
+     */
+    public double getWorldScale() {
+        return mWorldScale;
+    }
+
+    /**
+     * What is added to scaled world coordinates to get map pixels.
+     */
+    public double getWorldOffset() {
+        return mWorldOffset;
+    }
+
+    /**
+     * Converts map pixels back to world coordinates, for the current zoom.
+     */
+    public double mapPixelsToWorld(final double mapPixels) {
+        return (mapPixels - mWorldOffset) / mWorldScale;
+    }
+
     public double[] toMapPixelsTranslated(final double[] in, final double[] out) {
         final float zoomDifference = TileLayerConstants.MAXIMUM_ZOOMLEVEL - getZoomLevel();
         out[0] = GeometryMath.rightShift(in[0], zoomDifference) + offsetX;
@@ -491,6 +569,29 @@ public class Projection implements GeoConstants {
         return out;
     }
 
+    /**
+     * Converts a point from latitude/longitude WGS-84 coordinates (in degrees) into world
+     * coordinates, the spherical mercator position scaled to [0, 1] on both axes. World
+     * coordinates don't depend on the zoom level or the tile size.
+     *
+     * @param reuse An optional array of two to be recycled, or null to create a new one
+     * @return the x and y world coordinates of the point
+     */
+    public static double[] latLongToWorldXY(double latitude, double longitude,
+            final double[] reuse) {
+        latitude = wrap(latitude, -90, 90, 180);
+        longitude = wrap(longitude, -180, 180, 360);
+
+        latitude = clip(latitude, MIN_LATITUDE, MAX_LATITUDE);
+        longitude = clip(longitude, MIN_LONGITUDE, MAX_LONGITUDE);
+
+        final double sinLatitude = Math.sin(latitude * Math.PI / 180);
+        final double[] out = (reuse == null ? new double[2] : reuse);
+        out[0] = clip((longitude + 180) / 360, 0, 1);
+        out[1] = clip(0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI), 0, 1);
+        return out;
+    }
+
     /**
      * Converts a pixel from pixel XY coordinates at a specified level of detail into
      * latitude/longitude WGS-84 coordinates (in degrees).
@@ -714,6 +815,20 @@ public class Projection implements GeoConstants {
                 getScreenRect().centerY());
     }
 
+    /**
+     * The transformation {@link #transformCanvas(Canvas)} applies, as a matrix.
+     *
+     * @param reuse a matrix to set, or null to create one
+     */
+    public Matrix getCanvasMatrix(final Matrix reuse) {
+        final Matrix out = reuse != null ? reuse : new Matrix();
+        out.setTranslate(viewWidth2, viewHeight2);
+        out.preScale(mMultiTouchScale, mMultiTouchScale, mMultiTouchScalePoint.x,
+                mMultiTouchScalePoint.y);
+        out.preRotate(mMapOrientation, getScreenRect().centerX(), getScreenRect().centerY());
+        return out;
+    }
+
     public final void setScalePoint(final PointF point) {
         setScalePoint(point.x, point.y);
     }
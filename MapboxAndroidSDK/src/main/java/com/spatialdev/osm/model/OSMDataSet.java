@@ -0,0 +1,119 @@
+package com.spatialdev.osm.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The nodes, ways and relations of an OSM XML document, by id, in the order they were read.
+ * Once read, {@link #link()} connects ways and relations to their members, and the data set can
+ * be indexed for drawing with {@link #getSpatialIndex()}.
+ */
+public class OSMDataSet {
+
+    private final OSMElementMap<OSMNode> mNodes = new OSMElementMap<OSMNode>(256);
+    private final OSMElementMap<OSMWay> mWays = new OSMElementMap<OSMWay>(64);
+    private final OSMElementMap<OSMRelation> mRelations = new OSMElementMap<OSMRelation>();
+
+    private final ArrayList<OSMNode> mStandaloneNodes = new ArrayList<OSMNode>();
+    private int mClosedWaysCount;
+    private OSMSpatialIndex mSpatialIndex;
+
+    public void addNode(final OSMNode node) {
+        mNodes.put(node);
+    }
+
+    public void addWay(final OSMWay way) {
+        mWays.put(way);
+    }
+
+    public void addRelation(final OSMRelation relation) {
+        mRelations.put(relation);
+    }
+
+    /**
+     * Connect ways and relations to the members they have in the data set. Done by
+     * {@link OSMXmlParser} once a document is read, and again by anyone adding elements.
+     */
+    public void link() {
+        mClosedWaysCount = 0;
+        mStandaloneNodes.clear();
+        for (OSMNode node : mNodes.values()) {
+            node.unlink();
+        }
+        for (OSMWay way : mWays.values()) {
+            way.unlink();
+        }
+        for (OSMRelation relation : mRelations.values()) {
+            relation.unlink();
+        }
+        for (OSMWay way : mWays.values()) {
+            way.link(mNodes);
+            if (way.isClosed()) {
+                mClosedWaysCount++;
+            }
+        }
+        for (OSMRelation relation : mRelations.values()) {
+            relation.link(mNodes, mWays, mRelations);
+        }
+        for (OSMNode node : mNodes.values()) {
+            if (node.isStandalone()) {
+                mStandaloneNodes.add(node);
+            }
+        }
+        mSpatialIndex = null;
+    }
+
+    public Map<Long, OSMNode> getNodes() {
+        return mNodes;
+    }
+
+    public Map<Long, OSMWay> getWays() {
+        return mWays;
+    }
+
+    public Map<Long, OSMRelation> getRelations() {
+        return mRelations;
+    }
+
+    public int getNodeCount() {
+        return mNodes.size();
+    }
+
+    public int getWayCount() {
+        return mWays.size();
+    }
+
+    public int getRelationCount() {
+        return mRelations.size();
+    }
+
+    /**
+     * @return the nodes no way goes through, which are features of their own
+     */
+    public List<OSMNode> getStandaloneNodes() {
+        return mStandaloneNodes;
+    }
+
+    public int getStandaloneNodesCount() {
+        return mStandaloneNodes.size();
+    }
+
+    public int getClosedWaysCount() {
+        return mClosedWaysCount;
+    }
+
+    public int getOpenWaysCount() {
+        return mWays.size() - mClosedWaysCount;
+    }
+
+    /**
+     * @return the index of the ways and standalone nodes, built on first use
+     */
+    public synchronized OSMSpatialIndex getSpatialIndex() {
+        if (mSpatialIndex == null) {
+            mSpatialIndex = new OSMSpatialIndex(this);
+        }
+        return mSpatialIndex;
+    }
+}
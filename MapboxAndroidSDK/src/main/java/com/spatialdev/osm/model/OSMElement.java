@@ -0,0 +1,174 @@
+package com.spatialdev.osm.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What nodes, ways and relations have in common: an id, the version they were read at, and
+ * tags. Tags can be edited, which marks the element as modified for the changeset it's written
+ * to by {@link OSMXmlWriter}.
+ */
+public abstract class OSMElement {
+
+    protected final long mId;
+    protected final long mVersion;
+    protected final long mChangeset;
+    protected final String mTimestamp;
+
+    /**
+     * In the order they were read or added, null while there are none.
+     */
+    private LinkedHashMap<String, String> mTags;
+    private ArrayList<OSMRelation> mRelations;
+    private boolean mModified;
+
+    protected OSMElement(final long id, final long version, final long changeset,
+            final String timestamp) {
+        mId = id;
+        mVersion = version;
+        mChangeset = changeset;
+        mTimestamp = timestamp;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    /**
+     * @return the version, or -1 if it wasn't given
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return the changeset, or -1 if it wasn't given
+     */
+    public long getChangeset() {
+        return mChangeset;
+    }
+
+    /**
+     * @return the timestamp, or null if it wasn't given
+     */
+    public String getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * @return the tags, in the order they were read or added
+     */
+    public Map<String, String> getTags() {
+        if (mTags == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(mTags);
+    }
+
+    public int getTagCount() {
+        return mTags == null ? 0 : mTags.size();
+    }
+
+    /**
+     * Set a tag, as it was read.
+     */
+    void putTag(final String key, final String value) {
+        if (mTags == null) {
+            mTags = new LinkedHashMap<String, String>(4);
+        }
+        mTags.put(key, value);
+    }
+
+    /**
+     * Set a tag, marking the element as modified.
+     */
+    public void addOrEditTag(final String key, final String value) {
+        putTag(key, value);
+        mModified = true;
+    }
+
+    /**
+     * Remove a tag, marking the element as modified.
+     */
+    public void deleteTag(final String key) {
+        if (mTags != null) {
+            mTags.remove(key);
+        }
+        mModified = true;
+    }
+
+    /**
+     * @return true if tags have been edited since the element was read
+     */
+    public boolean isModified() {
+        return mModified;
+    }
+
+    /**
+     * @return the relations of the data set this element is a member of
+     */
+    public List<OSMRelation> getRelations() {
+        if (mRelations == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(mRelations);
+    }
+
+    /**
+     * Forget the links to the rest of the data set, before they're made again.
+     */
+    void unlink() {
+        mRelations = null;
+    }
+
+    void addRelation(final OSMRelation relation) {
+        if (mRelations == null) {
+            mRelations = new ArrayList<OSMRelation>(1);
+        }
+        mRelations.add(relation);
+    }
+
+    /**
+     * Write the element, as it is in an OSM XML document.
+     */
+    abstract void xml(OSMXmlWriter xml) throws IOException;
+
+    /**
+     * Write the attributes every element has. The action is written both before and after the
+     * id, which is how changesets have always been written by {@link OSMXmlWriter}.
+     */
+    protected void setXmlAttributes(final OSMXmlWriter xml) throws IOException {
+        if (mModified) {
+            xml.attribute("action", "modify");
+        }
+        xml.attribute("id", mId);
+        if (mModified) {
+            xml.attribute("action", "modify");
+        }
+        if (mVersion >= 0) {
+            xml.attribute("version", mVersion);
+        }
+        if (mChangeset >= 0) {
+            xml.attribute("changeset", mChangeset);
+        }
+        if (mTimestamp != null) {
+            xml.attribute("timestamp", mTimestamp);
+        }
+    }
+
+    protected void setXmlTags(final OSMXmlWriter xml) throws IOException {
+        if (mTags == null) {
+            return;
+        }
+        for (Map.Entry<String, String> tag : mTags.entrySet()) {
+            xml.startTag("tag");
+            xml.attribute("k", tag.getKey());
+            xml.attribute("v", tag.getValue());
+            xml.endTag("tag");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.spatialdev.osm.model;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Elements by id, in the order they were added. Ids are kept in a long[] with an open
+ * addressing table of int slots, so a data set of a million nodes doesn't hold a million boxed
+ * Longs and map entries.
+ */
+final class OSMElementMap<T extends OSMElement> extends AbstractMap<Long, T> {
+
+    private static final int EMPTY = -1;
+
+    private long[] mIds;
+    private OSMElement[] mElements;
+    private int mSlotCount;
+    private int mSize;
+
+    /**
+     * Slots by hash of their id, EMPTY where there's none. Slots of removed elements stay in
+     * the table, so adding the id again puts it back where it was.
+     */
+    private int[] mTable;
+
+    OSMElementMap() {
+        this(16);
+    }
+
+    OSMElementMap(final int capacity) {
+        final int size = Math.max(4, capacity);
+        mIds = new long[size];
+        mElements = new OSMElement[size];
+        mTable = newTable(size);
+    }
+
+    private static int[] newTable(final int capacity) {
+        int length = 8;
+        while (length < capacity * 2) {
+            length <<= 1;
+        }
+        final int[] table = new int[length];
+        for (int i = 0; i < length; i++) {
+            table[i] = EMPTY;
+        }
+        return table;
+    }
+
+    private static int hash(final long id) {
+        final int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the table index of the id, or of the empty entry where it would go
+     */
+    private int find(final long id) {
+        final int mask = mTable.length - 1;
+        int i = hash(id) & mask;
+        while (mTable[i] != EMPTY && mIds[mTable[i]] != id) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    T getById(final long id) {
+        final int slot = mTable[find(id)];
+        return slot == EMPTY ? null : (T) mElements[slot];
+    }
+
+    @SuppressWarnings("unchecked")
+    T put(final T element) {
+        final long id = element.getId();
+        final int i = find(id);
+        final int slot = mTable[i];
+        if (slot != EMPTY) {
+            final T previous = (T) mElements[slot];
+            mElements[slot] = element;
+            if (previous == null) {
+                mSize++;
+            }
+            return previous;
+        }
+        if (mSlotCount == mIds.length) {
+            grow();
+            return put(element);
+        }
+        mIds[mSlotCount] = id;
+        mElements[mSlotCount] = element;
+        mTable[i] = mSlotCount++;
+        mSize++;
+        return null;
+    }
+
+    private void grow() {
+        final int capacity = mIds.length * 2;
+        final long[] ids = new long[capacity];
+        final OSMElement[] elements = new OSMElement[capacity];
+        System.arraycopy(mIds, 0, ids, 0, mSlotCount);
+        System.arraycopy(mElements, 0, elements, 0, mSlotCount);
+        mIds = ids;
+        mElements = elements;
+        mTable = newTable(capacity);
+        final int mask = mTable.length - 1;
+        for (int slot = 0; slot < mSlotCount; slot++) {
+            int i = hash(mIds[slot]) & mask;
+            while (mTable[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            mTable[i] = slot;
+        }
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public T get(final Object key) {
+        return key instanceof Long ? getById((Long) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public T put(final Long key, final T value) {
+        if (value.getId() != key) {
+            throw new IllegalArgumentException(value + " isn't " + key);
+        }
+        return put(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(final Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        final int slot = mTable[find((Long) key)];
+        if (slot == EMPTY || mElements[slot] == null) {
+            return null;
+        }
+        final T previous = (T) mElements[slot];
+        mElements[slot] = null;
+        mSize--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < mSlotCount; i++) {
+            mElements[i] = null;
+        }
+        for (int i = 0; i < mTable.length; i++) {
+            mTable[i] = EMPTY;
+        }
+        mSlotCount = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Iterates over the slots of elements still in the map.
+     */
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private int mNext = advance(0);
+        private int mLast = -1;
+
+        private int advance(int slot) {
+            while (slot < mSlotCount && mElements[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext < mSlotCount;
+        }
+
+        @Override
+        public E next() {
+            if (mNext >= mSlotCount) {
+                throw new NoSuchElementException();
+            }
+            mLast = mNext;
+            mNext = advance(mNext + 1);
+            return get(mLast);
+        }
+
+        @Override
+        public void remove() {
+            if (mLast < 0 || mElements[mLast] == null) {
+                throw new IllegalStateException();
+            }
+            mElements[mLast] = null;
+            mSize--;
+        }
+
+        abstract E get(int slot);
+    }
+
+    @Override
+    public Collection<T> values() {
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new SlotIterator<T>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    T get(final int slot) {
+                        return (T) mElements[slot];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<Long, T>> entrySet() {
+        return new AbstractSet<Map.Entry<Long, T>>() {
+            @Override
+            public Iterator<Map.Entry<Long, T>> iterator() {
+                return new SlotIterator<Map.Entry<Long, T>>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Map.Entry<Long, T> get(final int slot) {
+                        return new SimpleImmutableEntry<Long, T>(mIds[slot],
+                                (T) mElements[slot]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.spatialdev.osm.model;
+
+import com.mapbox.mapboxsdk.geometry.LatLng;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * A point of the data set, either a vertex of ways or a feature of its own.
+ */
+public class OSMNode extends OSMElement {
+
+    private final double mLat;
+    private final double mLng;
+
+    /**
+     * How many ways of the data set have this node as a vertex.
+     */
+    private int mWayCount;
+
+    public OSMNode(final long id, final double lat, final double lng, final long version,
+            final long changeset, final String timestamp) {
+        super(id, version, changeset, timestamp);
+        mLat = lat;
+        mLng = lng;
+    }
+
+    public double getLat() {
+        return mLat;
+    }
+
+    public double getLng() {
+        return mLng;
+    }
+
+    public LatLng getLatLng() {
+        return new LatLng(mLat, mLng);
+    }
+
+    /**
+     * @return true if no way of the data set has this node as a vertex
+     */
+    public boolean isStandalone() {
+        return mWayCount == 0;
+    }
+
+    @Override
+    void unlink() {
+        super.unlink();
+        mWayCount = 0;
+    }
+
+    void linkToWay() {
+        mWayCount++;
+    }
+
+    @Override
+    void xml(final OSMXmlWriter xml) throws IOException {
+        xml.startTag("node");
+        setXmlAttributes(xml);
+        xml.attribute("lat", formatCoordinate(mLat));
+        xml.attribute("lon", formatCoordinate(mLng));
+        setXmlTags(xml);
+        xml.endTag("node");
+    }
+
+    /**
+     * Coordinates as they're written in OSM XML, never in scientific notation.
+     */
+    static String formatCoordinate(final double value) {
+        final String text = Double.toString(value);
+        if (text.indexOf('E') < 0) {
+            return text;
+        }
+        return new BigDecimal(text).toPlainString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.spatialdev.osm.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of nodes, ways and other relations. Members are kept in parallel arrays, nodes first,
+ * then ways, then relations, each in the order they were read.
+ */
+public class OSMRelation extends OSMElement {
+
+    public static final byte NODE = 0;
+    public static final byte WAY = 1;
+    public static final byte RELATION = 2;
+
+    private static final String[] TYPE_NAMES = {"node", "way", "relation"};
+
+    private final byte[] mMemberTypes;
+    private final long[] mMemberRefs;
+    private final String[] mMemberRoles;
+
+    /**
+     * The members that are in the data set, in the order of the arrays, null where they aren't.
+     */
+    private OSMElement[] mMembers;
+    private int mLinkedCount;
+
+    /**
+     * @param memberTypes {@link #NODE}, {@link #WAY} or {@link #RELATION} for each member
+     */
+    public OSMRelation(final long id, final byte[] memberTypes, final long[] memberRefs,
+            final String[] memberRoles, final long version, final long changeset,
+            final String timestamp) {
+        super(id, version, changeset, timestamp);
+        if (memberTypes.length != memberRefs.length || memberRefs.length != memberRoles.length) {
+            throw new IllegalArgumentException("Every member needs a type, a ref and a role");
+        }
+        // a stable grouping by type
+        final int count = memberTypes.length;
+        mMemberTypes = new byte[count];
+        mMemberRefs = new long[count];
+        mMemberRoles = new String[count];
+        int j = 0;
+        for (byte type = NODE; type <= RELATION; type++) {
+            for (int i = 0; i < count; i++) {
+                if (memberTypes[i] == type) {
+                    mMemberTypes[j] = type;
+                    mMemberRefs[j] = memberRefs[i];
+                    mMemberRoles[j] = memberRoles[i];
+                    j++;
+                }
+            }
+        }
+        if (j != count) {
+            throw new IllegalArgumentException("Unknown member type");
+        }
+    }
+
+    /**
+     * @return the type of a member name, or -1 if it isn't one
+     */
+    public static byte getMemberType(final String name) {
+        for (byte type = NODE; type <= RELATION; type++) {
+            if (TYPE_NAMES[type].equals(name)) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    public int getMemberCount() {
+        return mMemberRefs.length;
+    }
+
+    public byte getMemberType(final int index) {
+        return mMemberTypes[index];
+    }
+
+    public long getMemberRef(final int index) {
+        return mMemberRefs[index];
+    }
+
+    public String getMemberRole(final int index) {
+        return mMemberRoles[index];
+    }
+
+    /**
+     * @return the members that are in the data set
+     */
+    public List<OSMElement> getMembers() {
+        final ArrayList<OSMElement> members = new ArrayList<OSMElement>(mLinkedCount);
+        if (mMembers != null) {
+            for (OSMElement member : mMembers) {
+                if (member != null) {
+                    members.add(member);
+                }
+            }
+        }
+        return members;
+    }
+
+    public int getLinkedMemberCount() {
+        return mLinkedCount;
+    }
+
+    public int getUnlinkedMemberCount() {
+        return mMemberRefs.length - mLinkedCount;
+    }
+
+    /**
+     * Find the members of the relation in the data set.
+     */
+    void link(final OSMElementMap<OSMNode> nodes, final OSMElementMap<OSMWay> ways,
+            final OSMElementMap<OSMRelation> relations) {
+        mMembers = new OSMElement[mMemberRefs.length];
+        mLinkedCount = 0;
+        for (int i = 0; i < mMemberRefs.length; i++) {
+            final OSMElement member;
+            switch (mMemberTypes[i]) {
+                case NODE:
+                    member = nodes.getById(mMemberRefs[i]);
+                    break;
+                case WAY:
+                    member = ways.getById(mMemberRefs[i]);
+                    break;
+                default:
+                    member = relations.getById(mMemberRefs[i]);
+                    break;
+            }
+            if (member != null) {
+                mMembers[i] = member;
+                mLinkedCount++;
+                member.addRelation(this);
+            }
+        }
+    }
+
+    @Override
+    void xml(final OSMXmlWriter xml) throws IOException {
+        xml.startTag("relation");
+        setXmlAttributes(xml);
+        for (int i = 0; i < mMemberRefs.length; i++) {
+            xml.startTag("member");
+            xml.attribute("type", TYPE_NAMES[mMemberTypes[i]]);
+            xml.attribute("ref", mMemberRefs[i]);
+            xml.attribute("role", mMemberRoles[i]);
+            xml.endTag("member");
+        }
+        setXmlTags(xml);
+        xml.endTag("relation");
+    }
+}
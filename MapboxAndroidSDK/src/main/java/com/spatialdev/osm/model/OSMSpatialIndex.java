@@ -0,0 +1,168 @@
+package com.spatialdev.osm.model;
+
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A packed R-tree of the ways and standalone nodes of a data set, over their world coordinates
+ * (see {@link Projection#latLongToWorldXY(double, double, double[])}). Data sets are read once
+ * and only their tags are edited, so the tree is built once, sort-tile-recursive, with every
+ * node full, and kept in flat arrays. Finding the elements in a viewport costs O(log n + k).
+ */
+public class OSMSpatialIndex {
+
+    /**
+     * Children of each node of the tree.
+     */
+    private static final int NODE_CAPACITY = 16;
+
+    private final OSMElement[] mElements;
+    private final double[] mBounds;
+
+    /**
+     * The bounds of the nodes of each level above the elements, leaves first, four doubles to
+     * a node. Node i of a level covers nodes i * NODE_CAPACITY to (i + 1) * NODE_CAPACITY - 1
+     * of the level below.
+     */
+    private final double[][] mLevels;
+
+    public OSMSpatialIndex(final OSMDataSet dataSet) {
+        final int count = dataSet.getWayCount() + dataSet.getStandaloneNodesCount();
+        final OSMElement[] elements = new OSMElement[count];
+        final double[] bounds = new double[count * 4];
+        final double[] worldXY = new double[2];
+        int n = 0;
+        for (OSMWay way : dataSet.getWays().values()) {
+            if (way.getLinkedNodesCount() == 0) {
+                continue;
+            }
+            elements[n] = way;
+            bounds[n * 4] = way.getMinX();
+            bounds[n * 4 + 1] = way.getMinY();
+            bounds[n * 4 + 2] = way.getMaxX();
+            bounds[n * 4 + 3] = way.getMaxY();
+            n++;
+        }
+        for (OSMNode node : dataSet.getStandaloneNodes()) {
+            Projection.latLongToWorldXY(node.getLat(), node.getLng(), worldXY);
+            elements[n] = node;
+            bounds[n * 4] = bounds[n * 4 + 2] = worldXY[0];
+            bounds[n * 4 + 1] = bounds[n * 4 + 3] = worldXY[1];
+            n++;
+        }
+
+        // sort-tile-recursive: the elements are sorted into vertical slices by x, and each
+        // slice by y, so runs of NODE_CAPACITY elements are close together
+        final Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new CenterComparator(bounds, 0));
+        final int leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        final int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_CAPACITY;
+        final CenterComparator byY = new CenterComparator(bounds, 1);
+        for (int start = 0; start < n; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(n, start + sliceSize), byY);
+        }
+
+        mElements = new OSMElement[n];
+        mBounds = new double[n * 4];
+        for (int i = 0; i < n; i++) {
+            mElements[i] = elements[order[i]];
+            System.arraycopy(bounds, order[i] * 4, mBounds, i * 4, 4);
+        }
+
+        int levelCount = 0;
+        for (int size = n; size > 1 || levelCount == 0; size = divide(size)) {
+            levelCount++;
+        }
+        mLevels = new double[levelCount][];
+        double[] below = mBounds;
+        int belowCount = n;
+        for (int level = 0; level < levelCount; level++) {
+            final int nodeCount = divide(belowCount);
+            final double[] nodes = new double[nodeCount * 4];
+            for (int i = 0; i < nodeCount; i++) {
+                nodes[i * 4] = nodes[i * 4 + 1] = Double.MAX_VALUE;
+                nodes[i * 4 + 2] = nodes[i * 4 + 3] = -Double.MAX_VALUE;
+                final int end = Math.min(belowCount, (i + 1) * NODE_CAPACITY);
+                for (int j = i * NODE_CAPACITY; j < end; j++) {
+                    nodes[i * 4] = Math.min(nodes[i * 4], below[j * 4]);
+                    nodes[i * 4 + 1] = Math.min(nodes[i * 4 + 1], below[j * 4 + 1]);
+                    nodes[i * 4 + 2] = Math.max(nodes[i * 4 + 2], below[j * 4 + 2]);
+                    nodes[i * 4 + 3] = Math.max(nodes[i * 4 + 3], below[j * 4 + 3]);
+                }
+            }
+            mLevels[level] = nodes;
+            below = nodes;
+            belowCount = nodeCount;
+        }
+    }
+
+    private static int divide(final int count) {
+        return Math.max(1, (count + NODE_CAPACITY - 1) / NODE_CAPACITY);
+    }
+
+    private static final class CenterComparator implements Comparator<Integer> {
+        private final double[] mBounds;
+        private final int mAxis;
+
+        CenterComparator(final double[] bounds, final int axis) {
+            mBounds = bounds;
+            mAxis = axis;
+        }
+
+        @Override
+        public int compare(final Integer lhs, final Integer rhs) {
+            return Double.compare(mBounds[lhs * 4 + mAxis] + mBounds[lhs * 4 + mAxis + 2],
+                    mBounds[rhs * 4 + mAxis] + mBounds[rhs * 4 + mAxis + 2]);
+        }
+    }
+
+    public int size() {
+        return mElements.length;
+    }
+
+    /**
+     * Collect the elements whose bounds intersect a rectangle of world coordinates.
+     *
+     * @param result receives the elements, in no particular order
+     */
+    public void query(final double minX, final double minY, final double maxX, final double maxY,
+            final List<OSMElement> result) {
+        if (mElements.length > 0) {
+            query(mLevels.length - 1, 0, minX, minY, maxX, maxY, result);
+        }
+    }
+
+    private void query(final int level, final int index, final double minX, final double minY,
+            final double maxX, final double maxY, final List<OSMElement> result) {
+        final double[] nodes = mLevels[level];
+        if (!intersects(nodes, index, minX, minY, maxX, maxY)) {
+            return;
+        }
+        final int start = index * NODE_CAPACITY;
+        if (level == 0) {
+            final int end = Math.min(mElements.length, start + NODE_CAPACITY);
+            for (int i = start; i < end; i++) {
+                if (intersects(mBounds, i, minX, minY, maxX, maxY)) {
+                    result.add(mElements[i]);
+                }
+            }
+        } else {
+            final int end = Math.min(mLevels[level - 1].length / 4, start + NODE_CAPACITY);
+            for (int i = start; i < end; i++) {
+                query(level - 1, i, minX, minY, maxX, maxY, result);
+            }
+        }
+    }
+
+    private static boolean intersects(final double[] bounds, final int index, final double minX,
+            final double minY, final double maxX, final double maxY) {
+        return bounds[index * 4] <= maxX && bounds[index * 4 + 2] >= minX
+                && bounds[index * 4 + 1] <= maxY && bounds[index * 4 + 3] >= minY;
+    }
+}
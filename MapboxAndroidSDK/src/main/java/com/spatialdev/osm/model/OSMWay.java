@@ -0,0 +1,154 @@
+package com.spatialdev.osm.model;
+
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A line or, when its first and last nodes are the same, an area. The node ids are kept in a
+ * long[], and once the data set is read the nodes it has are linked and their world coordinates
+ * (see {@link Projection#latLongToWorldXY(double, double, double[])}) worked out for drawing.
+ */
+public class OSMWay extends OSMElement {
+
+    private final long[] mNodeRefs;
+
+    /**
+     * The nodes of the data set, in the order of mNodeRefs, null where a node isn't in it.
+     */
+    private OSMNode[] mNodes;
+    private int mLinkedCount;
+
+    /**
+     * Interleaved x, y world coordinates of the linked nodes, and their bounds.
+     */
+    private double[] mWorldCoords;
+    private double mMinX;
+    private double mMinY;
+    private double mMaxX;
+    private double mMaxY;
+
+    public OSMWay(final long id, final long[] nodeRefs, final long version, final long changeset,
+            final String timestamp) {
+        super(id, version, changeset, timestamp);
+        mNodeRefs = nodeRefs;
+    }
+
+    public int getNodeRefCount() {
+        return mNodeRefs.length;
+    }
+
+    public long getNodeRef(final int index) {
+        return mNodeRefs[index];
+    }
+
+    /**
+     * @return true if the way ends where it starts, which makes it an area
+     */
+    public boolean isClosed() {
+        return mNodeRefs.length > 2 && mNodeRefs[0] == mNodeRefs[mNodeRefs.length - 1];
+    }
+
+    /**
+     * @return the nodes of the data set the way goes through, in order
+     */
+    public List<OSMNode> getNodes() {
+        final ArrayList<OSMNode> nodes = new ArrayList<OSMNode>(mLinkedCount);
+        if (mNodes != null) {
+            for (OSMNode node : mNodes) {
+                if (node != null) {
+                    nodes.add(node);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * @return how many of the node ids of the way are in the data set
+     */
+    public int getLinkedNodesCount() {
+        return mLinkedCount;
+    }
+
+    /**
+     * @return how many of the node ids of the way aren't in the data set
+     */
+    public int getUnlinkedNodesCount() {
+        return mNodeRefs.length - mLinkedCount;
+    }
+
+    /**
+     * Find the nodes of the way in the data set.
+     */
+    void link(final OSMElementMap<OSMNode> nodes) {
+        mNodes = new OSMNode[mNodeRefs.length];
+        mLinkedCount = 0;
+        for (int i = 0; i < mNodeRefs.length; i++) {
+            final OSMNode node = nodes.getById(mNodeRefs[i]);
+            if (node != null) {
+                mNodes[i] = node;
+                mLinkedCount++;
+                node.linkToWay();
+            }
+        }
+
+        final double[] worldXY = new double[2];
+        mWorldCoords = new double[mLinkedCount * 2];
+        mMinX = mMinY = Double.MAX_VALUE;
+        mMaxX = mMaxY = -Double.MAX_VALUE;
+        int j = 0;
+        for (OSMNode node : mNodes) {
+            if (node == null) {
+                continue;
+            }
+            Projection.latLongToWorldXY(node.getLat(), node.getLng(), worldXY);
+            mWorldCoords[j++] = worldXY[0];
+            mWorldCoords[j++] = worldXY[1];
+            mMinX = Math.min(mMinX, worldXY[0]);
+            mMinY = Math.min(mMinY, worldXY[1]);
+            mMaxX = Math.max(mMaxX, worldXY[0]);
+            mMaxY = Math.max(mMaxY, worldXY[1]);
+        }
+    }
+
+    /**
+     * @return interleaved x, y world coordinates of the linked nodes, not to be changed
+     */
+    public double[] getWorldCoords() {
+        return mWorldCoords;
+    }
+
+    public double getMinX() {
+        return mMinX;
+    }
+
+    public double getMinY() {
+        return mMinY;
+    }
+
+    public double getMaxX() {
+        return mMaxX;
+    }
+
+    public double getMaxY() {
+        return mMaxY;
+    }
+
+    @Override
+    void xml(final OSMXmlWriter xml) throws IOException {
+        xml.startTag("way");
+        setXmlAttributes(xml);
+        // the nodes are written last to first, which is how changesets have always been
+        // written by OSMXmlWriter
+        for (int i = mNodeRefs.length - 1; i >= 0; i--) {
+            xml.startTag("nd");
+            xml.attribute("ref", mNodeRefs[i]);
+            xml.endTag("nd");
+        }
+        setXmlTags(xml);
+        xml.endTag("way");
+    }
+}
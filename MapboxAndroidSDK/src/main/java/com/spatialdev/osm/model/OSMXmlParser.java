@@ -0,0 +1,219 @@
+package com.spatialdev.osm.model;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+/**
+ * Reads an OSM XML document into an {@link OSMDataSet}, one element at a time from a pull
+ * parser, so the document is never held in memory. Node ids of ways and members of relations
+ * are gathered in reused primitive buffers, and the many repeats of tag keys, values, roles
+ * and timestamps share one String each.
+ */
+public class OSMXmlParser {
+
+    private final XmlPullParser mParser;
+    private final OSMDataSet mDataSet;
+    private final HashMap<String, String> mStrings = new HashMap<String, String>();
+
+    /**
+     * The element being read, or null between elements.
+     */
+    private String mElementName;
+    private long mId;
+    private long mVersion;
+    private long mChangeset;
+    private String mTimestamp;
+    private double mLat;
+    private double mLng;
+
+    private long[] mRefs = new long[64];
+    private byte[] mTypes = new byte[16];
+    private String[] mRoles = new String[16];
+    private int mRefCount;
+
+    private String[] mTagKeys = new String[16];
+    private String[] mTagValues = new String[16];
+    private int mTagCount;
+
+    private OSMXmlParser(final InputStream in, final OSMDataSet dataSet)
+            throws XmlPullParserException {
+        mParser = Xml.newPullParser();
+        mParser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+        mParser.setInput(in, null);
+        mDataSet = dataSet;
+    }
+
+    /**
+     * Read a document into a new data set, and link its elements.
+     */
+    public static OSMDataSet parseFromInputStream(final InputStream in)
+            throws XmlPullParserException, IOException {
+        final OSMDataSet dataSet = new OSMDataSet();
+        parseFromInputStream(in, dataSet);
+        return dataSet;
+    }
+
+    /**
+     * Read a document into a data set, along with what it has already, and link its elements.
+     */
+    public static void parseFromInputStream(final InputStream in, final OSMDataSet dataSet)
+            throws XmlPullParserException, IOException {
+        try {
+            new OSMXmlParser(in, dataSet).parse();
+        } finally {
+            in.close();
+        }
+        dataSet.link();
+    }
+
+    private void parse() throws XmlPullParserException, IOException {
+        for (int event = mParser.getEventType(); event != XmlPullParser.END_DOCUMENT;
+                event = mParser.next()) {
+            if (event == XmlPullParser.START_TAG) {
+                startTag(mParser.getName());
+            } else if (event == XmlPullParser.END_TAG) {
+                endTag(mParser.getName());
+            }
+        }
+    }
+
+    private void startTag(final String name) throws XmlPullParserException {
+        if ("nd".equals(name)) {
+            addRef(OSMRelation.WAY, parseLong(mParser.getAttributeValue(null, "ref")), null);
+        } else if ("tag".equals(name)) {
+            if (mElementName != null) {
+                addTag(share(mParser.getAttributeValue(null, "k")),
+                        share(mParser.getAttributeValue(null, "v")));
+            }
+        } else if ("member".equals(name)) {
+            final byte type = OSMRelation.getMemberType(mParser.getAttributeValue(null, "type"));
+            if (type < 0) {
+                throw new XmlPullParserException("Unknown member type", mParser, null);
+            }
+            final String role = mParser.getAttributeValue(null, "role");
+            addRef(type, parseLong(mParser.getAttributeValue(null, "ref")),
+                    share(role == null ? "" : role));
+        } else if ("node".equals(name) || "way".equals(name) || "relation".equals(name)) {
+            readAttributes();
+            mElementName = name;
+            mRefCount = 0;
+            mTagCount = 0;
+        }
+    }
+
+    private void endTag(final String name) {
+        if (mElementName == null || !mElementName.equals(name)) {
+            return;
+        }
+        final OSMElement element;
+        if ("node".equals(name)) {
+            final OSMNode node = new OSMNode(mId, mLat, mLng, mVersion, mChangeset, mTimestamp);
+            mDataSet.addNode(node);
+            element = node;
+        } else if ("way".equals(name)) {
+            final long[] refs = new long[mRefCount];
+            System.arraycopy(mRefs, 0, refs, 0, mRefCount);
+            final OSMWay way = new OSMWay(mId, refs, mVersion, mChangeset, mTimestamp);
+            mDataSet.addWay(way);
+            element = way;
+        } else {
+            final long[] refs = new long[mRefCount];
+            final byte[] types = new byte[mRefCount];
+            final String[] roles = new String[mRefCount];
+            System.arraycopy(mRefs, 0, refs, 0, mRefCount);
+            System.arraycopy(mTypes, 0, types, 0, mRefCount);
+            System.arraycopy(mRoles, 0, roles, 0, mRefCount);
+            final OSMRelation relation = new OSMRelation(mId, types, refs, roles, mVersion,
+                    mChangeset, mTimestamp);
+            mDataSet.addRelation(relation);
+            element = relation;
+        }
+        for (int i = 0; i < mTagCount; i++) {
+            element.putTag(mTagKeys[i], mTagValues[i]);
+        }
+        mElementName = null;
+    }
+
+    private void readAttributes() {
+        mId = 0;
+        mVersion = -1;
+        mChangeset = -1;
+        mTimestamp = null;
+        mLat = 0;
+        mLng = 0;
+        for (int i = 0, count = mParser.getAttributeCount(); i < count; i++) {
+            final String attribute = mParser.getAttributeName(i);
+            if ("id".equals(attribute)) {
+                mId = parseLong(mParser.getAttributeValue(i));
+            } else if ("lat".equals(attribute)) {
+                mLat = Double.parseDouble(mParser.getAttributeValue(i));
+            } else if ("lon".equals(attribute)) {
+                mLng = Double.parseDouble(mParser.getAttributeValue(i));
+            } else if ("version".equals(attribute)) {
+                mVersion = parseLong(mParser.getAttributeValue(i));
+            } else if ("changeset".equals(attribute)) {
+                mChangeset = parseLong(mParser.getAttributeValue(i));
+            } else if ("timestamp".equals(attribute)) {
+                mTimestamp = share(mParser.getAttributeValue(i));
+            }
+        }
+    }
+
+    private void addTag(final String key, final String value) {
+        if (mTagCount == mTagKeys.length) {
+            final String[] keys = new String[mTagCount * 2];
+            final String[] values = new String[mTagCount * 2];
+            System.arraycopy(mTagKeys, 0, keys, 0, mTagCount);
+            System.arraycopy(mTagValues, 0, values, 0, mTagCount);
+            mTagKeys = keys;
+            mTagValues = values;
+        }
+        mTagKeys[mTagCount] = key;
+        mTagValues[mTagCount] = value;
+        mTagCount++;
+    }
+
+    private void addRef(final byte type, final long ref, final String role) {
+        if (mRefCount == mRefs.length) {
+            final long[] refs = new long[mRefCount * 2];
+            System.arraycopy(mRefs, 0, refs, 0, mRefCount);
+            mRefs = refs;
+        }
+        if (role != null && mRefCount >= mTypes.length) {
+            final byte[] types = new byte[mRefs.length];
+            final String[] roles = new String[mRefs.length];
+            System.arraycopy(mTypes, 0, types, 0, mTypes.length);
+            System.arraycopy(mRoles, 0, roles, 0, mRoles.length);
+            mTypes = types;
+            mRoles = roles;
+        }
+        mRefs[mRefCount] = ref;
+        if (role != null) {
+            mTypes[mRefCount] = type;
+            mRoles[mRefCount] = role;
+        }
+        mRefCount++;
+    }
+
+    private static long parseLong(final String value) {
+        return value == null ? -1 : Long.parseLong(value);
+    }
+
+    private String share(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String shared = mStrings.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        mStrings.put(value, value);
+        return value;
+    }
+}
@@ -0,0 +1,219 @@
+package com.spatialdev.osm.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes elements as an OSM XML changeset document, streamed to a Writer or an OutputStream
+ * through a char buffer. Names, numbers and escaped values go straight into the buffer, so
+ * writing thousands of elements builds no Strings and holds no more than the buffer.
+ */
+public class OSMXmlWriter {
+
+    private static final String OSM_VERSION = "0.6";
+    private static final String GENERATOR = "OpenMapKit 0.1";
+    private static final String CHARSET = "UTF-8";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer mOut;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private final char[] mDigits = new char[20];
+    private int mCount;
+
+    /**
+     * True while the start tag last written can still be closed as an empty element.
+     */
+    private boolean mTagOpen;
+
+    private OSMXmlWriter(final Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * @param elements the elements, or null for an empty document
+     * @param user the user the changeset is from
+     */
+    public static String elementsToString(final Collection<? extends OSMElement> elements,
+            final String user) throws IOException {
+        final StringWriter writer = new StringWriter();
+        writeElements(elements, user, writer);
+        return writer.toString();
+    }
+
+    public static String elementToString(final OSMElement element, final String user)
+            throws IOException {
+        return elementsToString(Collections.singletonList(element), user);
+    }
+
+    /**
+     * Write a changeset document to a Writer, which is flushed but not closed.
+     *
+     * @param elements the elements, or null for an empty document
+     * @param user the user the changeset is from
+     */
+    public static void writeElements(final Collection<? extends OSMElement> elements,
+            final String user, final Writer writer) throws IOException {
+        final OSMXmlWriter xml = new OSMXmlWriter(writer);
+        xml.write("<?xml version='1.0' encoding='" + CHARSET + "' ?>");
+        xml.startTag("osm");
+        xml.attribute("version", OSM_VERSION);
+        xml.attribute("generator", GENERATOR);
+        xml.attribute("user", user);
+        if (elements != null) {
+            for (OSMElement element : elements) {
+                element.xml(xml);
+            }
+        }
+        xml.endTag("osm");
+        xml.flush();
+    }
+
+    /**
+     * Write a changeset document to an OutputStream in UTF-8, which is flushed but not closed.
+     *
+     * @param elements the elements, or null for an empty document
+     * @param user the user the changeset is from
+     * @param gzip true to compress the document with gzip
+     */
+    public static void writeElements(final Collection<? extends OSMElement> elements,
+            final String user, final OutputStream out, final boolean gzip) throws IOException {
+        final GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        final Writer writer = new OutputStreamWriter(gzip ? compressed : out, CHARSET);
+        writeElements(elements, user, writer);
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+    }
+
+    void startTag(final String name) throws IOException {
+        closeStartTag();
+        write('<');
+        write(name);
+        mTagOpen = true;
+    }
+
+    void endTag(final String name) throws IOException {
+        if (mTagOpen) {
+            write(" />");
+            mTagOpen = false;
+        } else {
+            write("</");
+            write(name);
+            write('>');
+        }
+    }
+
+    void attribute(final String name, final String value) throws IOException {
+        write(' ');
+        write(name);
+        write("=\"");
+        writeEscaped(value);
+        write('"');
+    }
+
+    void attribute(final String name, final long value) throws IOException {
+        write(' ');
+        write(name);
+        write("=\"");
+        writeLong(value);
+        write('"');
+    }
+
+    private void closeStartTag() throws IOException {
+        if (mTagOpen) {
+            write('>');
+            mTagOpen = false;
+        }
+    }
+
+    private void writeEscaped(final String value) throws IOException {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    write("&amp;");
+                    break;
+                case '<':
+                    write("&lt;");
+                    break;
+                case '>':
+                    write("&gt;");
+                    break;
+                case '"':
+                    write("&quot;");
+                    break;
+                case '\t':
+                case '\n':
+                case '\r':
+                    // line breaks and tabs would be read back as spaces
+                    write("&#");
+                    writeLong(c);
+                    write(';');
+                    break;
+                default:
+                    // other control characters aren't allowed in XML 1.0, not even as
+                    // references, so they are dropped
+                    if (c >= ' ' && c != '\uFFFE' && c != '\uFFFF') {
+                        write(c);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int start = mDigits.length;
+        do {
+            mDigits[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start; i < mDigits.length; i++) {
+            write(mDigits[i]);
+        }
+    }
+
+    private void write(final char c) throws IOException {
+        if (mCount == mBuffer.length) {
+            flushBuffer();
+        }
+        mBuffer[mCount++] = c;
+    }
+
+    private void write(final String text) throws IOException {
+        final int length = text.length();
+        if (length > mBuffer.length - mCount) {
+            flushBuffer();
+            if (length > mBuffer.length) {
+                mOut.write(text);
+                return;
+            }
+        }
+        text.getChars(0, length, mBuffer, mCount);
+        mCount += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        mOut.write(mBuffer, 0, mCount);
+        mCount = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBuffer();
+        mOut.flush();
+    }
+}
@@ -0,0 +1,312 @@
+package com.spatialdev.osm.renderer;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+
+import com.mapbox.mapboxsdk.api.ILatLng;
+import com.mapbox.mapboxsdk.overlay.Overlay;
+import com.mapbox.mapboxsdk.views.MapView;
+import com.mapbox.mapboxsdk.views.util.Projection;
+import com.spatialdev.osm.model.OSMDataSet;
+import com.spatialdev.osm.model.OSMElement;
+import com.spatialdev.osm.model.OSMNode;
+import com.spatialdev.osm.model.OSMWay;
+
+import java.util.ArrayList;
+
+/**
+ * Draws the ways and standalone nodes of an {@link OSMDataSet}: open ways as lines, closed
+ * ways as areas and nodes as dots. Only the elements the spatial index finds in the viewport
+ * are drawn or tested for taps, and ways smaller than a pixel are left out, so a data set of
+ * any size costs what's in view.
+ */
+public class OSMOverlay extends Overlay {
+
+    /**
+     * Below this zoom level, whole cities would be drawn element by element.
+     */
+    private static final float DEFAULT_MIN_ZOOM = 14;
+    private static final float NODE_RADIUS_DP = 4;
+    private static final float TAP_TOLERANCE_DP = 12;
+
+    /**
+     * Interface definition for a callback when an element is tapped.
+     */
+    public interface OnElementTapListener {
+        /**
+         * @return true if the tap was handled
+         */
+        boolean onElementTap(OSMElement element);
+    }
+
+    private final OSMDataSet mDataSet;
+    private final Paint mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mAreaPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mAreaStrokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mNodePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mScaledPaint = new Paint();
+    private float mMinZoom = DEFAULT_MIN_ZOOM;
+    private OnElementTapListener mListener;
+
+    private final ArrayList<OSMElement> mVisible = new ArrayList<OSMElement>();
+    private final Path mLinePath = new Path();
+    private final Path mAreaPath = new Path();
+    private float[] mPixels = new float[256];
+    private final double[] mWorldXY = new double[2];
+
+    public OSMOverlay(final Context context, final OSMDataSet dataSet) {
+        super(context);
+        if (dataSet == null) {
+            throw new IllegalArgumentException("An OSM overlay needs a data set");
+        }
+        mDataSet = dataSet;
+
+        mLinePaint.setStyle(Paint.Style.STROKE);
+        mLinePaint.setStrokeCap(Paint.Cap.ROUND);
+        mLinePaint.setStrokeJoin(Paint.Join.ROUND);
+        mLinePaint.setColor(Color.rgb(0x33, 0x66, 0xcc));
+        mLinePaint.setStrokeWidth(3 * mScale);
+        mAreaPaint.setStyle(Paint.Style.FILL);
+        mAreaPaint.setColor(Color.argb(0x40, 0xcc, 0x66, 0x33));
+        mAreaStrokePaint.setStyle(Paint.Style.STROKE);
+        mAreaStrokePaint.setColor(Color.rgb(0xcc, 0x66, 0x33));
+        mAreaStrokePaint.setStrokeWidth(mScale);
+        mNodePaint.setStyle(Paint.Style.FILL);
+        mNodePaint.setColor(Color.rgb(0xcc, 0x33, 0x33));
+
+        // indexing a large data set takes a while, so it's done before the first frame
+        dataSet.getSpatialIndex();
+        setOverlayIndex(PATHOVERLAY_INDEX);
+    }
+
+    public OSMDataSet getDataSet() {
+        return mDataSet;
+    }
+
+    public Paint getLinePaint() {
+        return mLinePaint;
+    }
+
+    public Paint getAreaPaint() {
+        return mAreaPaint;
+    }
+
+    public Paint getAreaStrokePaint() {
+        return mAreaStrokePaint;
+    }
+
+    public Paint getNodePaint() {
+        return mNodePaint;
+    }
+
+    /**
+     * Set the lowest zoom level the data set is drawn at.
+     */
+    public OSMOverlay setMinZoom(final float minZoom) {
+        mMinZoom = minZoom;
+        invalidateLayer();
+        return this;
+    }
+
+    public OSMOverlay setOnElementTapListener(final OnElementTapListener listener) {
+        mListener = listener;
+        return this;
+    }
+
+    /**
+     * Call after changing the paints or the tags of elements, to draw them again.
+     */
+    public void invalidate() {
+        invalidateLayer();
+    }
+
+    @Override
+    public boolean isLayerCacheable() {
+        return true;
+    }
+
+    @Override
+    protected void draw(final Canvas canvas, final MapView mapView) {
+        final Projection pj = mapView.getProjection();
+        if (pj.getZoomLevel() < mMinZoom) {
+            return;
+        }
+        final double scale = pj.getWorldScale();
+        final double worldOffset = pj.getWorldOffset();
+        final RectF screen = pj.getTransformScreenRect();
+        mVisible.clear();
+        mDataSet.getSpatialIndex().query((screen.left - worldOffset) / scale,
+                (screen.top - worldOffset) / scale, (screen.right - worldOffset) / scale,
+                (screen.bottom - worldOffset) / scale, mVisible);
+
+        // map pixels grow past float precision at high zoom levels, so the canvas is moved
+        // to the scroll position first
+        final int originX = pj.getCenterX();
+        final int originY = pj.getCenterY();
+        final double offsetX = worldOffset - originX;
+        final double offsetY = worldOffset - originY;
+        final double minSize = 1 / scale;
+        mLinePath.rewind();
+        mAreaPath.rewind();
+        int nodeCount = 0;
+        for (OSMElement element : mVisible) {
+            if (!(element instanceof OSMWay)) {
+                mVisible.set(nodeCount++, element);
+                continue;
+            }
+            final OSMWay way = (OSMWay) element;
+            if (way.getMaxX() - way.getMinX() < minSize
+                    && way.getMaxY() - way.getMinY() < minSize) {
+                continue;
+            }
+            final double[] coords = way.getWorldCoords();
+            final int count = coords.length / 2;
+            if (count < 2) {
+                continue;
+            }
+            if (mPixels.length < count * 2) {
+                mPixels = new float[count * 4];
+            }
+            Projection.worldToPixels(coords, 0, mPixels, 0, count, scale, offsetX, offsetY);
+            final Path path = way.isClosed() ? mAreaPath : mLinePath;
+            path.moveTo(mPixels[0], mPixels[1]);
+            for (int i = 1; i < count; i++) {
+                path.lineTo(mPixels[i * 2], mPixels[i * 2 + 1]);
+            }
+            if (way.isClosed()) {
+                path.close();
+            }
+        }
+
+        // strokes keep their width while the canvas is scaled by a pinch
+        final float mapScale = mapView.getScale();
+        canvas.save();
+        canvas.translate(originX, originY);
+        canvas.drawPath(mAreaPath, mAreaPaint);
+        mScaledPaint.set(mAreaStrokePaint);
+        mScaledPaint.setStrokeWidth(mAreaStrokePaint.getStrokeWidth() / mapScale);
+        canvas.drawPath(mAreaPath, mScaledPaint);
+        mScaledPaint.set(mLinePaint);
+        mScaledPaint.setStrokeWidth(mLinePaint.getStrokeWidth() / mapScale);
+        canvas.drawPath(mLinePath, mScaledPaint);
+        final float radius = NODE_RADIUS_DP * mScale / mapScale;
+        for (int i = 0; i < nodeCount; i++) {
+            final OSMNode node = (OSMNode) mVisible.get(i);
+            Projection.latLongToWorldXY(node.getLat(), node.getLng(), mWorldXY);
+            canvas.drawCircle((float) (mWorldXY[0] * scale + offsetX),
+                    (float) (mWorldXY[1] * scale + offsetY), radius, mNodePaint);
+        }
+        canvas.restore();
+        mVisible.clear();
+    }
+
+    @Override
+    public boolean onSingleTapConfirmed(final MotionEvent e, final MapView mapView) {
+        if (mListener == null) {
+            return false;
+        }
+        final OSMElement element = getElementAt(mapView, e.getX(), e.getY());
+        return element != null && mListener.onElementTap(element);
+    }
+
+    /**
+     * Find the element drawn at a point of the view: the closest node or line within a finger's
+     * width, or else the smallest area around the point.
+     *
+     * @return the element, or null if there's none
+     */
+    public OSMElement getElementAt(final MapView mapView, final float x, final float y) {
+        final Projection pj = mapView.getProjection();
+        if (pj.getZoomLevel() < mMinZoom) {
+            return null;
+        }
+        final ILatLng point = pj.fromPixels(x, y);
+        final double[] world = Projection.latLongToWorldXY(point.getLatitude(),
+                point.getLongitude(), null);
+        final double px = world[0];
+        final double py = world[1];
+        final double tolerance = TAP_TOLERANCE_DP * mScale / mapView.getScale()
+                / pj.getWorldScale();
+
+        final ArrayList<OSMElement> candidates = new ArrayList<OSMElement>();
+        mDataSet.getSpatialIndex().query(px - tolerance, py - tolerance, px + tolerance,
+                py + tolerance, candidates);
+        OSMElement closest = null;
+        double closestDistance = tolerance * tolerance;
+        OSMWay smallestArea = null;
+        double smallestSize = Double.MAX_VALUE;
+        for (OSMElement element : candidates) {
+            if (element instanceof OSMNode) {
+                final OSMNode node = (OSMNode) element;
+                Projection.latLongToWorldXY(node.getLat(), node.getLng(), world);
+                final double dx = world[0] - px;
+                final double dy = world[1] - py;
+                final double distance = dx * dx + dy * dy;
+                if (distance <= closestDistance) {
+                    closest = node;
+                    closestDistance = distance;
+                }
+                continue;
+            }
+            final OSMWay way = (OSMWay) element;
+            final double[] coords = way.getWorldCoords();
+            if (way.isClosed() && contains(coords, px, py)) {
+                final double size = (way.getMaxX() - way.getMinX())
+                        * (way.getMaxY() - way.getMinY());
+                if (size < smallestSize) {
+                    smallestArea = way;
+                    smallestSize = size;
+                }
+            } else if (!way.isClosed()) {
+                final double distance = distanceSquared(coords, px, py);
+                if (distance <= closestDistance) {
+                    closest = way;
+                    closestDistance = distance;
+                }
+            }
+        }
+        return closest != null ? closest : smallestArea;
+    }
+
+    /**
+     * The squared distance from a point to the closest segment of a line.
+     */
+    static double distanceSquared(final double[] coords, final double px, final double py) {
+        double closest = Double.MAX_VALUE;
+        for (int i = 2; i < coords.length; i += 2) {
+            final double ax = coords[i - 2];
+            final double ay = coords[i - 1];
+            final double dx = coords[i] - ax;
+            final double dy = coords[i + 1] - ay;
+            final double length = dx * dx + dy * dy;
+            double t = length == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / length;
+            t = Math.max(0, Math.min(1, t));
+            final double ex = ax + t * dx - px;
+            final double ey = ay + t * dy - py;
+            closest = Math.min(closest, ex * ex + ey * ey);
+        }
+        return closest;
+    }
+
+    /**
+     * Whether a ring contains a point, by the even-odd rule.
+     */
+    static boolean contains(final double[] coords, final double px, final double py) {
+        boolean inside = false;
+        for (int i = 0, j = coords.length - 2; i < coords.length; j = i, i += 2) {
+            final double xi = coords[i];
+            final double yi = coords[i + 1];
+            final double xj = coords[j];
+            final double yj = coords[j + 1];
+            if ((yi > py) != (yj > py) && px < (xj - xi) * (py - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -35,7 +35,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -277,6 +279,10 @@ public class BitmapLruCache {
                 result = decodeBitmapToDrawable(new SnapshotInputStreamProvider(key), url, decodeOpts);
 
                 if (null != result) {
+                    final long timestamp = getDiskCacheEntryTime(key);
+                    if (timestamp > 0) {
+                        result.setTimestamp(timestamp);
+                    }
                     if (null != mMemoryCache) {
                         mMemoryCache.put(result);
                     }
@@ -323,9 +329,13 @@ public class BitmapLruCache {
 
 
     public Bitmap getBitmapFromRemoved(final int width, final int height) {
+        return getBitmapFromRemoved(width, height, null);
+    }
+
+    public Bitmap getBitmapFromRemoved(final int width, final int height, final Bitmap.Config config) {
         if (null != mMemoryCache) {
             synchronized (mMemoryCache) {
-                return mMemoryCache.getBitmapFromRemoved(width, height);
+                return mMemoryCache.getBitmapFromRemoved(width, height, config);
             }
         }
         return null;
@@ -650,6 +660,60 @@ public class BitmapLruCache {
         mMemoryCache.resizeMemoryForTiles(numberOfTiles);
     }
 
+    /**
+     * Sets the maximum size of the disk cache in bytes. Has no effect until the disk cache has
+     * been opened.
+     */
+    public void setDiskCacheMaxSize(long maxSize) {
+        if (null != mDiskCache) {
+            mDiskCache.setMaxSize(maxSize);
+        }
+    }
+
+    /**
+     * Returns the time the disk cache entry for a transformed key was last written.
+     */
+    private long getDiskCacheEntryTime(String key) {
+        return new File(mDiskCache.getDirectory(), key + ".0").lastModified();
+    }
+
+    /**
+     * Sets the maximum size of the memory cache in bytes, evicting entries if it shrinks.
+     */
+    public void resizeMemoryCache(int maxSize) {
+        if (null != mMemoryCache) {
+            synchronized (mMemoryCache) {
+                mMemoryCache.resize(maxSize);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code count} entries of the memory cache, most recently used first.
+     */
+    public List<CacheableBitmapDrawable> getMostRecentlyUsed(int count) {
+        final ArrayList<CacheableBitmapDrawable> result = new ArrayList<CacheableBitmapDrawable>();
+        if (null != mMemoryCache && count > 0) {
+            final ArrayList<CacheableBitmapDrawable> entries;
+            synchronized (mMemoryCache) {
+                // The snapshot is ordered from least to most recently used
+                entries = new ArrayList<CacheableBitmapDrawable>(mMemoryCache.snapshot().values());
+            }
+            for (int i = entries.size() - 1; i >= 0 && result.size() < count; i--) {
+                result.add(entries.get(i));
+            }
+        }
+        return result;
+    }
+
+    public int getMemoryCacheMaxSize() {
+        return null != mMemoryCache ? mMemoryCache.maxSize() : 0;
+    }
+
+    public int getMemoryCacheSize() {
+        return null != mMemoryCache ? mMemoryCache.size() : 0;
+    }
+
     /**
      * This method iterates through the memory cache (if enabled) and removes any entries which are
      * not currently being displayed. A good place to call this would be from {@link
@@ -803,7 +867,9 @@ public class BitmapLruCache {
 
         // Try and find Bitmap to use for inBitmap
         synchronized (mMemoryCache) {
-            Bitmap reusableBm = mMemoryCache.getBitmapFromRemoved(opts.outWidth, opts.outHeight);
+            // the reused bitmap must match the config we were asked to decode into
+            Bitmap reusableBm = mMemoryCache.getBitmapFromRemoved(opts.outWidth, opts.outHeight,
+                    opts.inPreferredConfig != null ? opts.inPreferredConfig : Bitmap.Config.ARGB_8888);
             if (reusableBm != null) {
                 if (Constants.DEBUG) {
                     Log.i(Constants.LOG_TAG, "Using inBitmap");
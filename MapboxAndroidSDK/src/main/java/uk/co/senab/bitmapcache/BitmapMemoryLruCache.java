@@ -88,6 +88,15 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
     }
 
     public Bitmap getBitmapFromRemoved(final int width, final int height) {
+        return getBitmapFromRemoved(width, height, null);
+    }
+
+    /**
+     * Get a removed bitmap of the given size and config that can be reused.
+     *
+     * @param config the required config, or null to accept any config
+     */
+    public Bitmap getBitmapFromRemoved(final int width, final int height, final Bitmap.Config config) {
         if (mRemovedEntries == null) {
             return null;
         }
@@ -101,9 +110,10 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
                 CacheableBitmapDrawable value = it.next().get();
 
                 if (canUseForInBitmap(value)) {
-                    if (canUseForInBitmapForSize(value, width, height) && !value.isBeingDisplayed() && !value.isReferencedByCache()) {
+                    if (canUseForInBitmapForSize(value, width, height) && canUseForInBitmapForConfig(value, config)
+                            && !value.isBeingDisplayed() && !value.isReferencedByCache()) {
                         result = value.getBitmap();
-                        SDK12.setHasAlpha(result, true);
+                        SDK12.setHasAlpha(result, result.getConfig() != Bitmap.Config.RGB_565);
                         result.eraseColor(Color.TRANSPARENT);
                         value.setReused();
                         it.remove();
@@ -132,6 +142,11 @@ final class BitmapMemoryLruCache extends LruCache<String, CacheableBitmapDrawabl
                 candidate.getIntrinsicHeight() == height;
     }
 
+    private static boolean canUseForInBitmapForConfig(
+            CacheableBitmapDrawable candidate, Bitmap.Config config) {
+        return config == null || candidate.getBitmap().getConfig() == config;
+    }
+
     void trimMemory() {
         final Set<Entry<String, CacheableBitmapDrawable>> values = snapshot().entrySet();
 
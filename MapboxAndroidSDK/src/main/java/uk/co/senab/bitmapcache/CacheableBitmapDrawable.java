@@ -61,6 +61,12 @@ public class CacheableBitmapDrawable extends BitmapDrawable {
 
     private boolean mReused;
 
+    // Time this bitmap's content was cached, in milliseconds since the epoch
+    private long mTimestamp;
+
+    // Time this bitmap's content expires, in milliseconds since the epoch, 0 if unknown
+    private long mExpiresAt;
+
     public CacheableBitmapDrawable(String url, Resources resources, Bitmap bitmap,
             BitmapLruCache.RecyclePolicy recyclePolicy, int source) {
         super(resources, bitmap);
@@ -73,6 +79,7 @@ public class CacheableBitmapDrawable extends BitmapDrawable {
         mCacheCount = 0;
         mSource = source;
         mReused = false;
+        mTimestamp = System.currentTimeMillis();
     }
 
     @Override
@@ -109,6 +116,29 @@ public class CacheableBitmapDrawable extends BitmapDrawable {
         return mUrl;
     }
 
+    /**
+     * @return the time the bitmap's content was cached, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    void setTimestamp(long timestamp) {
+        mTimestamp = timestamp;
+    }
+
+    /**
+     * @return the time the bitmap's content expires, in milliseconds since the epoch, or 0
+     * if it doesn't expire
+     */
+    public long getExpiresAt() {
+        return mExpiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        mExpiresAt = expiresAt;
+    }
+
     /**
      * @return One of {@link #SOURCE_NEW}, {@link #SOURCE_INBITMAP} or {@link #SOURCE_UNKNOWN}
      * depending on how this Bitmap was created.
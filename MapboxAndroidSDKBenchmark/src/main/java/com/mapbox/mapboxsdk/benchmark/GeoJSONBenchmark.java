@@ -0,0 +1,116 @@
+package com.mapbox.mapboxsdk.benchmark;
+
+import com.cocoahero.android.geojson.FeatureCollection;
+import com.cocoahero.android.geojson.GeoJSON;
+import com.mapbox.mapboxsdk.util.DataLoadingUtils;
+import com.mapbox.mapboxsdk.util.GeoJSONStreamReader;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and parsing a FeatureCollection the way DataLoadingUtils loads GeoJSON files, whole
+ * or streamed, with points, 50 point lines and 20 point polygons in equal parts.
+ * <p/>
+ * Building overlays from the features is left out, as overlays need native Paints.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeoJSONBenchmark {
+
+    @Param({"100", "1000"})
+    public int features;
+
+    private byte[] mGeoJSON;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(42);
+        final StringBuilder json = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < features; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":\"Feature\",\"properties\":{\"title\":\"Feature ").append(i)
+                    .append("\",\"stroke\":\"#ff0000\"},\"geometry\":");
+            switch (i % 3) {
+                case 0:
+                    json.append("{\"type\":\"Point\",\"coordinates\":");
+                    appendPosition(json, random);
+                    break;
+                case 1:
+                    json.append("{\"type\":\"LineString\",\"coordinates\":");
+                    appendPositions(json, random, 50);
+                    break;
+                default:
+                    json.append("{\"type\":\"Polygon\",\"coordinates\":[");
+                    appendPositions(json, random, 20);
+                    json.append(']');
+                    break;
+            }
+            json.append("}}");
+        }
+        json.append("]}");
+        mGeoJSON = json.toString().getBytes("UTF-8");
+    }
+
+    private static void appendPosition(final StringBuilder json, final Random random) {
+        json.append(String.format(Locale.US, "[%.6f,%.6f]", -74 + random.nextDouble(),
+                40 + random.nextDouble()));
+    }
+
+    private static void appendPositions(final StringBuilder json, final Random random,
+            final int count) {
+        json.append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendPosition(json, random);
+        }
+        json.append(']');
+    }
+
+    @Benchmark
+    public int readAndParse() throws IOException, JSONException {
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(mGeoJSON), "UTF-8"));
+        final String text = DataLoadingUtils.readAll(reader);
+        return ((FeatureCollection) GeoJSON.parse(text)).getFeatures().size();
+    }
+
+    @Benchmark
+    public int stream() throws IOException, JSONException {
+        final int[] count = new int[1];
+        new GeoJSONStreamReader().read(new ByteArrayInputStream(mGeoJSON),
+                new GeoJSONStreamReader.FeatureListener() {
+                    @Override
+                    public void onFeature(final GeoJSONStreamReader.StreamedFeature feature) {
+                        count[0] += feature.getCoordinateCount();
+                    }
+                });
+        return count[0];
+    }
+}
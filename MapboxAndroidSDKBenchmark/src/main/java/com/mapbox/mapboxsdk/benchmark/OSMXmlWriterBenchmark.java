@@ -0,0 +1,95 @@
+package com.mapbox.mapboxsdk.benchmark;
+
+import com.spatialdev.osm.model.OSMElement;
+import com.spatialdev.osm.model.OSMNode;
+import com.spatialdev.osm.model.OSMWay;
+import com.spatialdev.osm.model.OSMXmlWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing an edited changeset of nodes and ways, a way for every four nodes, each with a few
+ * tags: streamed to an OutputStream that throws the bytes away, with and without gzip, and built
+ * as a String the way changesets used to be.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OSMXmlWriterBenchmark {
+
+    private static final String USER = "benchmark";
+    private static final String TIMESTAMP = "2015-01-16T12:00:00Z";
+
+    @Param({"10000", "100000"})
+    public int elements;
+
+    private ArrayList<OSMElement> mElements;
+
+    private final OutputStream mNull = new OutputStream() {
+        @Override
+        public void write(final int b) {
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        mElements = new ArrayList<OSMElement>(elements);
+        long id = 1;
+        while (mElements.size() < elements) {
+            final long[] refs = new long[4];
+            for (int i = 0; i < refs.length && mElements.size() < elements; i++) {
+                final OSMNode node = new OSMNode(id, 23.7 + random.nextDouble() * 0.1,
+                        90.4 + random.nextDouble() * 0.1, 3, 27000000 + id, TIMESTAMP);
+                node.addOrEditTag("name", "Node & \"" + id + "\"");
+                refs[i] = id++;
+                mElements.add(node);
+            }
+            if (mElements.size() < elements) {
+                final OSMWay way = new OSMWay(id++, refs, 5, 27000000 + id, TIMESTAMP);
+                way.addOrEditTag("highway", "residential");
+                way.addOrEditTag("name", "Road <" + id + ">");
+                way.addOrEditTag("surface", "paved");
+                mElements.add(way);
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeStream() throws IOException {
+        OSMXmlWriter.writeElements(mElements, USER, mNull, false);
+    }
+
+    @Benchmark
+    public void writeGzipStream() throws IOException {
+        OSMXmlWriter.writeElements(mElements, USER, mNull, true);
+    }
+
+    @Benchmark
+    public int writeString() throws IOException {
+        return OSMXmlWriter.elementsToString(mElements, USER).length();
+    }
+}
@@ -0,0 +1,91 @@
+package com.mapbox.mapboxsdk.benchmark;
+
+import android.graphics.PointF;
+
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projecting markers and overlay points: latitude, longitude to pixels, in one step or in the
+ * projected and translated halves overlays use. Each call projects {@link #POINTS} points.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectionBenchmark {
+
+    static final int POINTS = 1000;
+
+    private final double[] mLatitudes = new double[POINTS];
+    private final double[] mLongitudes = new double[POINTS];
+    private final PointF[] mProjected = new PointF[POINTS];
+    private final double[] mWorld = new double[2];
+    private final PointF mReuse = new PointF();
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            mLatitudes[i] = 40 + random.nextDouble();
+            mLongitudes[i] = -74 + random.nextDouble();
+            mProjected[i] = Projection.toMapPixelsProjected(mLatitudes[i], mLongitudes[i], null);
+        }
+    }
+
+    @Benchmark
+    public float latLongToPixelXY() {
+        float sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Projection.latLongToPixelXY(mLatitudes[i], mLongitudes[i], 15.5f, mReuse).x;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double latLongToWorldXY() {
+        double sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Projection.latLongToWorldXY(mLatitudes[i], mLongitudes[i], mWorld)[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float toMapPixelsProjected() {
+        float sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Projection.toMapPixelsProjected(mLatitudes[i], mLongitudes[i], mReuse).x;
+        }
+        return sum;
+    }
+
+    /**
+     * The per frame half, for points already projected.
+     */
+    @Benchmark
+    public float toMapPixelsTranslated() {
+        final int offset = -Projection.mapSize(15.5f) / 2;
+        float sum = 0;
+        for (int i = 0; i < POINTS; i++) {
+            sum += Projection.toMapPixelsTranslated(mProjected[i], 15.5f, offset, offset,
+                    mReuse).x;
+        }
+        return sum;
+    }
+}
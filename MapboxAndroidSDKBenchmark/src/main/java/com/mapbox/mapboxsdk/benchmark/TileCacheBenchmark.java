@@ -0,0 +1,121 @@
+package com.mapbox.mapboxsdk.benchmark;
+
+import android.support.v4.util.LruCache;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import uk.co.senab.bitmapcache.BitmapLruCache;
+
+/**
+ * The memory tile cache, looked up for every tile of every frame.
+ * <p/>
+ * A BitmapLruCache can be built off-device, but not the drawables it holds, which need native
+ * bitmaps and a main Looper. So the real cache is measured on misses, and hits, puts and
+ * evictions are measured on the LruCache it is built on, holding stand-ins sized like 256px
+ * ARGB tiles and keyed the same way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TileCacheBenchmark {
+
+    private static final String CACHE_KEY = "mapbox.streets";
+    private static final int TILE_BYTES = 256 * 256 * 4;
+    /**
+     * Tiles of a phone screen and the ring around it.
+     */
+    private static final int CACHED_TILES = 48;
+
+    /**
+     * Stands in for a tile drawable, with its size in bytes.
+     */
+    private static final class CachedTile {
+        final String key;
+        final int bytes;
+
+        CachedTile(final String key, final int bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+
+    private BitmapLruCache mBitmapCache;
+    private LruCache<String, CachedTile> mMemoryCache;
+    private MapTile[] mCachedTiles;
+    private MapTile[] mNewTiles;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mBitmapCache = new BitmapLruCache.Builder()
+                .setMemoryCacheMaxSize(CACHED_TILES * TILE_BYTES)
+                .setRecyclePolicy(BitmapLruCache.RecyclePolicy.ALWAYS)
+                .build();
+        mMemoryCache = new LruCache<String, CachedTile>(CACHED_TILES * TILE_BYTES) {
+            @Override
+            protected int sizeOf(final String key, final CachedTile value) {
+                return value.bytes;
+            }
+        };
+        mCachedTiles = new MapTile[CACHED_TILES];
+        for (int i = 0; i < CACHED_TILES; i++) {
+            mCachedTiles[i] = new MapTile(CACHE_KEY, 15, 9650 + i % 8, 12320 + i / 8);
+            mMemoryCache.put(mCachedTiles[i].getCacheKey(),
+                    new CachedTile(mCachedTiles[i].getCacheKey(), TILE_BYTES));
+        }
+        // tiles scrolling into view, each evicting the least recently used one
+        mNewTiles = new MapTile[1024];
+        for (int i = 0; i < mNewTiles.length; i++) {
+            mNewTiles[i] = new MapTile(CACHE_KEY, 15, 9000 + i % 32, 13000 + i / 32);
+        }
+    }
+
+    @Benchmark
+    public int bitmapLruCacheMiss() {
+        int found = 0;
+        for (MapTile tile : mCachedTiles) {
+            if (mBitmapCache.getFromMemoryCache(tile.getCacheKey()) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int memoryCacheHit() {
+        int found = 0;
+        for (MapTile tile : mCachedTiles) {
+            synchronized (mMemoryCache) {
+                if (mMemoryCache.get(tile.getCacheKey()) != null) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Object memoryCachePutEvict() {
+        final String key = mNewTiles[mNext].getCacheKey();
+        mNext = (mNext + 1) % mNewTiles.length;
+        synchronized (mMemoryCache) {
+            return mMemoryCache.put(key, new CachedTile(key, TILE_BYTES));
+        }
+    }
+}
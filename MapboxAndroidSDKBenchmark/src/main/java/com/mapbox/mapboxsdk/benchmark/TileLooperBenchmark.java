@@ -0,0 +1,119 @@
+package com.mapbox.mapboxsdk.benchmark;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import com.mapbox.mapboxsdk.tileprovider.MapTile;
+import com.mapbox.mapboxsdk.util.TileLooper;
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking the tiles of a 1080x1920 viewport, as TilesOverlay does every frame, and the MapTile
+ * keys it creates and looks up on the way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TileLooperBenchmark {
+
+    private static final String CACHE_KEY = "mapbox.streets";
+    private static final int ZOOM = 15;
+
+    /**
+     * Looks every tile up, as drawing does with the tile cache. The real looper posts to a
+     * Handler when it is done, which needs a running Looper, so that part is left out.
+     */
+    private static class LookupLooper extends TileLooper {
+        HashMap<MapTile, Integer> tiles;
+        int found;
+
+        @Override
+        public void initializeLoop(final float pZoomLevel, final int pTileSizePx) {
+            found = 0;
+        }
+
+        @Override
+        public void handleTile(final Canvas pCanvas, final String pCacheKey,
+                final int pTileSizePx, final MapTile pTile, final int pX, final int pY,
+                final Rect pClipRect) {
+            if (tiles.containsKey(pTile)) {
+                found++;
+            }
+        }
+
+        @Override
+        public void finalizeLoop() {
+        }
+    }
+
+    private final LookupLooper mLooper = new LookupLooper();
+    private final Rect mViewPort = new Rect();
+    private final Rect mClip = new Rect(0, 0, 1080, 1920);
+    private MapTile[] mTiles;
+
+    @Setup
+    public void setUp() {
+        final int center = Projection.mapSize(ZOOM) / 2;
+        mViewPort.set(center - 540, center - 960, center + 540, center + 960);
+
+        // the viewport's tiles and a ring around them, as the cache would hold
+        final HashMap<MapTile, Integer> tiles = new HashMap<MapTile, Integer>();
+        final int first = center / 256 - 8;
+        for (int y = first; y < first + 16; y++) {
+            for (int x = first; x < first + 16; x++) {
+                tiles.put(new MapTile(CACHE_KEY, ZOOM, x, y), x);
+            }
+        }
+        mLooper.tiles = tiles;
+        mTiles = tiles.keySet().toArray(new MapTile[tiles.size()]);
+    }
+
+    @Benchmark
+    public int loop() {
+        mLooper.loop(null, CACHE_KEY, ZOOM, 256, mViewPort, mClip);
+        return mLooper.found;
+    }
+
+    @Benchmark
+    public MapTile createMapTile() {
+        return new MapTile(CACHE_KEY, ZOOM, 9650, 12320);
+    }
+
+    @Benchmark
+    public int hashMapTiles() {
+        int hash = 0;
+        for (MapTile tile : mTiles) {
+            hash += tile.hashCode();
+        }
+        return hash;
+    }
+
+    @Benchmark
+    public int lookUpMapTiles() {
+        int found = 0;
+        final HashMap<MapTile, Integer> tiles = mLooper.tiles;
+        for (MapTile tile : mTiles) {
+            if (tiles.get(new MapTile(CACHE_KEY, tile.getZ(), tile.getX(), tile.getY())) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mapbox.mapboxsdk.overlay;
+
+import android.graphics.RectF;
+
+import com.mapbox.mapboxsdk.views.util.Projection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point transforms PathOverlay runs before handing points to a Path: projecting a whole
+ * line, and collecting what a 1080x1920 view shows of it at zoom 17, with and without the
+ * simplified levels. The Path itself is native, so building it is left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathTransformBenchmark {
+
+    private static final int ZOOM = 17;
+
+    @Param({"10000", "100000"})
+    public int points;
+
+    private double[] mCoords;
+    private float[] mPixels;
+    private PathChunks mChunks;
+    private PathLevels mLevels;
+    private final PathBuilder mBuilder = new PathBuilder();
+    private double mScale;
+    private double mOffsetX;
+    private double mOffsetY;
+    private final RectF mClip = new RectF(-540, -960, 540, 960);
+
+    @Setup
+    public void setUp() {
+        // a GPS track wandering around the middle of the world
+        final Random random = new Random(42);
+        mCoords = new double[points * 2];
+        double x = 0.5;
+        double y = 0.5;
+        for (int i = 0; i < points; i++) {
+            x += (random.nextDouble() - 0.5) * 2e-6;
+            y += (random.nextDouble() - 0.5) * 2e-6;
+            mCoords[i * 2] = x;
+            mCoords[i * 2 + 1] = y;
+        }
+        mPixels = new float[points * 2];
+        mChunks = PathChunks.build(mCoords, points);
+        mLevels = PathLevels.build(mCoords, points, Projection.getTileSize(), 0);
+
+        // the view is centered on the middle of the track
+        mScale = Projection.mapSize(ZOOM);
+        mOffsetX = -Math.floor(mCoords[points] * mScale);
+        mOffsetY = -Math.floor(mCoords[points + 1] * mScale);
+    }
+
+    @Benchmark
+    public float worldToPixels() {
+        Projection.worldToPixels(mCoords, 0, mPixels, 0, points, mScale, mOffsetX, mOffsetY);
+        return mPixels[points];
+    }
+
+    @Benchmark
+    public boolean collectVisible() {
+        mBuilder.begin(mScale, mOffsetX, mOffsetY, mClip);
+        mBuilder.addLine(mCoords, points, mChunks, null, ZOOM, 0);
+        return mBuilder.isClipInside(0, 0, 1, 1);
+    }
+
+    @Benchmark
+    public boolean collectVisibleSimplified() {
+        mBuilder.begin(mScale, mOffsetX, mOffsetY, mClip);
+        mBuilder.addLine(mCoords, points, mChunks, mLevels, ZOOM, 0);
+        return mBuilder.isClipInside(0, 0, 1, 1);
+    }
+
+    @Benchmark
+    public PathLevels buildLevels() {
+        return PathLevels.build(mCoords, points, Projection.getTileSize(), 0);
+    }
+}
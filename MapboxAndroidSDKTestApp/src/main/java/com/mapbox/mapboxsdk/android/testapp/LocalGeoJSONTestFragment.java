@@ -8,7 +8,7 @@ import android.view.ViewGroup;
 import com.cocoahero.android.geojson.FeatureCollection;
 import com.mapbox.mapboxsdk.geometry.LatLng;
 import com.mapbox.mapboxsdk.overlay.Marker;
-import com.mapbox.mapboxsdk.overlay.PathOverlay;
+import com.mapbox.mapboxsdk.overlay.Overlay;
 import com.mapbox.mapboxsdk.util.DataLoadingUtils;
 import com.mapbox.mapboxsdk.views.MapView;
 import java.util.ArrayList;
@@ -41,8 +41,8 @@ public class LocalGeoJSONTestFragment extends Fragment {
             for (Object obj : uiObjects) {
                 if (obj instanceof Marker) {
                     mapView.addMarker((Marker) obj);
-                } else if (obj instanceof PathOverlay) {
-                    mapView.getOverlays().add((PathOverlay) obj);
+                } else if (obj instanceof Overlay) {
+                    mapView.getOverlays().add((Overlay) obj);
                 }
             }
             if (uiObjects.size() > 0) {
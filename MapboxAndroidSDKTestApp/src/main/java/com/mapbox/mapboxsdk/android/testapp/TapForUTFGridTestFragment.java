@@ -8,9 +8,13 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 import com.mapbox.mapboxsdk.api.ILatLng;
+import com.mapbox.mapboxsdk.constants.MapboxConstants;
 import com.mapbox.mapboxsdk.geometry.LatLng;
+import com.mapbox.mapboxsdk.overlay.UTFGridOverlay;
+import com.mapbox.mapboxsdk.tileprovider.modules.UTFGridProvider;
 import com.mapbox.mapboxsdk.util.MapboxUtils;
 import com.mapbox.mapboxsdk.views.MapView;
+import org.json.JSONObject;
 
 public class TapForUTFGridTestFragment extends Fragment {
 
@@ -31,7 +35,19 @@ public class TapForUTFGridTestFragment extends Fragment {
             }
         });
 
-
+        UTFGridProvider grids = new UTFGridProvider(MapboxConstants.MAPBOX_BASE_URL_V4
+                + getString(R.string.mapbox_id_terrain) + "/{z}/{x}/{y}.grid.json?access_token="
+                + MapboxUtils.getAccessToken());
+        mv.addOverlay(new UTFGridOverlay(grids).setOnFeatureTapListener(
+                new UTFGridOverlay.OnFeatureTapListener() {
+                    @Override
+                    public void onFeatureTap(ILatLng point, String key, JSONObject data) {
+                        Log.i("TapForUTFGridTestFragment", String.format("key = '%s', data = '%s'", key, data));
+                        if (key != null) {
+                            Toast.makeText(getActivity(), key + " == " + data, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                }));
 
         return view;
     }